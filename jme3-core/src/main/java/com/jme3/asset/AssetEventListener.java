@@ -73,4 +73,17 @@ public interface AssetEventListener {
      */
     public void assetDependencyNotFound(AssetKey parentKey, AssetKey dependentAssetKey);
 
+    /**
+     * Called when an asset is requested while another asset is being loaded,
+     * after {@link #assetRequested(AssetKey)}. This gives the dependencies of
+     * the assets, including the indirect ones, e.g. the textures of the
+     * materials of a model.
+     *
+     * @param parentKey The key of the parent asset that is being loaded
+     * from within the user application.
+     * @param dependentAssetKey The key of the requested dependent asset.
+     */
+    public default void assetDependencyRequested(AssetKey parentKey, AssetKey dependentAssetKey) {
+    }
+
 }
@@ -32,6 +32,7 @@
 package com.jme3.asset;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * The result of locating an asset through an AssetKey. Provides
@@ -72,4 +73,22 @@ public abstract class AssetInfo {
      * @return The asset data.
      */
     public abstract InputStream openStream();
+
+    /**
+     * Returns the asset data as a direct buffer, if the locator can provide
+     * it without going through a stream, e.g. as a slice of a memory mapped
+     * archive. Loaders which can read a buffer should try this method before
+     * {@link #openStream()}.
+     * <p>
+     * Each invocation of this method should return a new buffer, whose
+     * position is at the beginning of the asset data and whose limit is at
+     * its end. The buffer may be read-only, and its content may be shared
+     * with other assets, so it must not be modified.
+     *
+     * @return a new direct buffer, or null if the data is only available
+     *     through {@link #openStream()} (default)
+     */
+    public ByteBuffer openBuffer() {
+        return null;
+    }
 }
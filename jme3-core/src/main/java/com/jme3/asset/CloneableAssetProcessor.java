@@ -31,9 +31,14 @@
  */
 package com.jme3.asset;
 
+import com.jme3.scene.Spatial;
+import jme3tools.optimize.MeshPostProcessor;
+
 /**
  * <code>CloneableAssetProcessor</code> simply calls {@link Object#clone() }
- * on assets to clone them. No processing is applied.
+ * on assets to clone them. No processing is applied, except for the models
+ * loaded with a {@link ModelKey#setMeshPostProcessor(MeshPostProcessor)
+ * mesh post-processor}.
  * 
  * @author Kirill Vainer
  */
@@ -41,6 +46,12 @@ public class CloneableAssetProcessor implements AssetProcessor {
 
     @Override
     public Object postProcess(AssetKey key, Object obj) {
+        if (key instanceof ModelKey && obj instanceof Spatial) {
+            MeshPostProcessor processor = ((ModelKey) key).getMeshPostProcessor();
+            if (processor != null) {
+                processor.process((Spatial) obj);
+            }
+        }
         return obj;
     }
 
@@ -54,6 +54,7 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -76,6 +77,9 @@ public class DesktopAssetManager implements AssetManager {
     @Deprecated
     final private List<ClassLoader> classLoaders = Collections.synchronizedList(new ArrayList<>());
 
+    private volatile ThreadingManager threadingManager;
+    private volatile DiskAssetCache diskCache;
+
     public DesktopAssetManager() {
         this(null);
     }
@@ -202,6 +206,10 @@ public class DesktopAssetManager implements AssetManager {
 
     @Override
     public AssetInfo locateAsset(AssetKey<?> key) {
+        DiskAssetCache disk = diskCache;
+        if (disk != null) {
+            disk.recordRequest(key);
+        }
         AssetInfo info = handler.tryLocate(key);
         if (info == null) {
             logger.log(Level.WARNING, "Cannot locate resource: {0}", key);
@@ -271,7 +279,8 @@ public class DesktopAssetManager implements AssetManager {
         Object obj;
         try {
             handler.establishParentKey(key);
-            obj = loader.load(info);
+            DiskAssetCache disk = diskCache;
+            obj = disk != null ? disk.load(key, info, loader) : loader.load(info);
         } catch (IOException ex) {
             throw new AssetLoadException("An exception has occurred while loading asset: " + key, ex);
         } finally {
@@ -363,14 +372,27 @@ public class DesktopAssetManager implements AssetManager {
         if (key == null)
             throw new IllegalArgumentException("key cannot be null");
 
+        AssetKey parentKey = handler.getParentKey();
         for (AssetEventListener listener : eventListeners) {
             listener.assetRequested(key);
+            if (parentKey != null && !parentKey.equals(key)) {
+                listener.assetDependencyRequested(parentKey, key);
+            }
+        }
+        DiskAssetCache disk = diskCache;
+        if (disk != null) {
+            disk.recordRequest(key);
         }
 
         AssetCache cache = handler.getCache(key.getCacheType());
         AssetProcessor proc = handler.getProcessor(key.getProcessorType());
 
         Object obj = cache != null ? cache.getFromCache(key) : null;
+        ThreadingManager threads = threadingManager;
+        if (obj == null && cache != null && threads != null && threads.awaitLoading(key)) {
+            // loaded asynchronously in the meantime
+            obj = cache.getFromCache(key);
+        }
         if (obj == null) {
             // Asset not in cache, load it from file system.
             AssetInfo info = handler.tryLocate(key);
@@ -399,6 +421,91 @@ public class DesktopAssetManager implements AssetManager {
         return clone;
     }
 
+    /**
+     * Loads an asset on a loading thread, with the
+     * {@link AssetLoadPriority#VISIBLE VISIBLE} priority.
+     *
+     * @param <T> the type of the asset
+     * @param key the key of the asset to load (not null)
+     * @return a new future for the asset
+     * @see #loadAssetAsync(AssetKey, AssetLoadPriority)
+     */
+    public <T> Future<T> loadAssetAsync(AssetKey<T> key) {
+        return loadAssetAsync(key, AssetLoadPriority.VISIBLE);
+    }
+
+    /**
+     * Loads an asset on a loading thread. Concurrent requests for the same key
+     * share one load, and the dependencies recorded during a previous load of
+     * the asset, such as the materials and textures of a model, are loaded in
+     * parallel with it. See {@link ThreadingManager} for the details.
+     *
+     * @param <T> the type of the asset
+     * @param key the key of the asset to load (not null)
+     * @param priority the priority class of the request (not null)
+     * @return a new future for the asset, which can be cancelled while the
+     *     load hasn't started
+     */
+    public <T> Future<T> loadAssetAsync(AssetKey<T> key, AssetLoadPriority priority) {
+        return getThreadingManager().loadAsset(key, priority);
+    }
+
+    /**
+     * Sets the cache which keeps the results of the asset loaders on disk,
+     * so that the assets which didn't change aren't parsed again on the next
+     * run.
+     *
+     * @param diskCache the cache to use, or null to disable it (default=null)
+     */
+    public void setDiskCache(DiskAssetCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Returns the cache which keeps the results of the asset loaders on disk.
+     *
+     * @return the pre-existing instance, or null if disabled
+     */
+    public DiskAssetCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Returns the cache of a cache type, creating it if needed. This is the
+     * instance used for the keys which return the type from
+     * {@link AssetKey#getCacheType()}, e.g. to configure a
+     * {@link com.jme3.asset.cache.LruAssetCache} or to read its metrics.
+     *
+     * @param <T> the type of the cache
+     * @param cacheType the class of the cache (not null)
+     * @return the pre-existing or a new instance (not null)
+     */
+    public <T extends AssetCache> T getCache(Class<T> cacheType) {
+        if (cacheType == null) {
+            throw new IllegalArgumentException("cacheType cannot be null");
+        }
+        return handler.getCache(cacheType);
+    }
+
+    /**
+     * Returns the manager of the loading threads, creating it if needed.
+     *
+     * @return the pre-existing or a new instance (not null)
+     */
+    public ThreadingManager getThreadingManager() {
+        ThreadingManager result = threadingManager;
+        if (result == null) {
+            synchronized (this) {
+                result = threadingManager;
+                if (result == null) {
+                    result = new ThreadingManager(this);
+                    threadingManager = result;
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public Object loadAsset(String name) {
         return loadAsset(new AssetKey<>(name));
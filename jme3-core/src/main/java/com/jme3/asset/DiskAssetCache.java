@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.export.binary.BinaryLoader;
+import com.jme3.system.JmeVersion;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * <code>DiskAssetCache</code> keeps the results of the asset loaders in a
+ * local directory, in the J3O format, so that the assets which didn't change
+ * are read back from it instead of being parsed and decoded again. It's
+ * enabled with {@link DesktopAssetManager#setDiskCache(DiskAssetCache)}.
+ * <p>
+ * An entry is identified by the asset key, including its settings, and by
+ * the version of the loader and of the engine. It records a hash of the
+ * located bytes of the asset, and of all the assets requested while it was
+ * loaded, like the buffers of a glTF model or the materials of an OBJ model.
+ * An entry is only used if all these hashes still match, and if its content
+ * passes a checksum. Otherwise it's replaced once the asset is loaded.
+ * <p>
+ * Only the results which are {@link Savable} are kept, e.g. models and
+ * images. The asset processors still run on the read results, e.g. to wrap
+ * an image in a texture, as they are cheap compared to the loaders. J3O files
+ * are never cached, since they don't need any parsing.
+ * <p>
+ * Entries are written to a temporary file which is then moved in place, so
+ * several processes can share a directory: a reader sees either a complete
+ * old entry or a complete new one.
+ */
+public class DiskAssetCache {
+
+    private static final Logger logger = Logger.getLogger(DiskAssetCache.class.getName());
+
+    private static final int MAGIC = 0x4A4D4543; // "JMEC"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".jcache";
+    private static final byte[] MISSING = new byte[32];
+
+    private final File directory;
+    // the assets requested by the loads of this thread, innermost last
+    private final ThreadLocal<List<Set<String>>> recorders = new ThreadLocal<List<Set<String>>>() {
+        @Override
+        protected List<Set<String>> initialValue() {
+            return new ArrayList<>();
+        }
+    };
+    // Key - asset name, object - all the assets requested while it was loaded
+    private final ConcurrentHashMap<String, List<String>> knownDependencies = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache which stores its entries in the specified directory,
+     * creating it if needed.
+     *
+     * @param directory the directory of the entries (not null)
+     */
+    public DiskAssetCache(File directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the directory of the entries.
+     *
+     * @return the directory (not null)
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Deletes all the entries of the cache.
+     */
+    public void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(EXTENSION)) {
+                    file.delete();
+                }
+            }
+        }
+        knownDependencies.clear();
+    }
+
+    /**
+     * Determines whether the results of a loader are cached. By default, all
+     * the loaders are except the {@link BinaryLoader}.
+     *
+     * @param key the key of the asset being loaded
+     * @param loader the loader of the asset
+     * @return true to look the asset up in the cache, otherwise false
+     */
+    protected boolean isCacheable(AssetKey<?> key, AssetLoader loader) {
+        return !(loader instanceof BinaryLoader);
+    }
+
+    /**
+     * Returns the version of a loader, which is part of the identity of the
+     * entries. By default, this is the class of the loader, the
+     * implementation version of its package if any, and the version of the
+     * engine.
+     *
+     * @param loader the loader of the asset
+     * @return a string identifying the loader (not null)
+     */
+    protected String getLoaderVersion(AssetLoader loader) {
+        Package pkg = loader.getClass().getPackage();
+        String implementation = pkg == null ? null : pkg.getImplementationVersion();
+        return loader.getClass().getName() + "/" + implementation + "/" + JmeVersion.FULL_NAME;
+    }
+
+    /**
+     * Records that an asset is requested, for all the loads in progress on
+     * the current thread. Invoked by the asset manager.
+     *
+     * @param key the key of the requested asset
+     */
+    void recordRequest(AssetKey<?> key) {
+        List<Set<String>> stack = recorders.get();
+        if (stack.isEmpty()) {
+            return;
+        }
+        String name = key.getName();
+        List<String> dependencies = knownDependencies.get(name);
+        for (Set<String> recorder : stack) {
+            recorder.add(name);
+            if (dependencies != null) {
+                recorder.addAll(dependencies);
+            }
+        }
+    }
+
+    /**
+     * Reads an asset from the cache, or loads it and stores the result.
+     * Invoked by the asset manager in place of {@link AssetLoader#load}.
+     *
+     * @param key the key of the asset
+     * @param info the located asset
+     * @param loader the loader of the asset
+     * @return the asset (may be null if the loader returns null)
+     * @throws IOException if the loader fails
+     */
+    Object load(AssetKey<?> key, AssetInfo info, AssetLoader loader) throws IOException {
+        if (!isCacheable(key, loader)) {
+            return loader.load(info);
+        }
+        String loaderVersion = getLoaderVersion(loader);
+        byte[] keyHash;
+        byte[] sourceHash;
+        try {
+            keyHash = hashKey(key, loaderVersion);
+            sourceHash = hash(info);
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.FINE, "Cannot identify " + key + " in the disk cache", ex);
+            return loader.load(info);
+        }
+        File file = new File(directory, toHex(keyHash) + EXTENSION);
+
+        Object cached = read(file, key, info.getManager(), keyHash, sourceHash);
+        if (cached != null) {
+            return cached;
+        }
+
+        Set<String> recorder = new LinkedHashSet<>();
+        List<Set<String>> stack = recorders.get();
+        stack.add(recorder);
+        Object obj;
+        try {
+            obj = loader.load(info);
+        } finally {
+            stack.remove(stack.size() - 1);
+        }
+        recorder.remove(key.getName());
+        List<String> dependencies = new ArrayList<>(recorder);
+        knownDependencies.put(key.getName(), dependencies);
+        if (obj instanceof Savable) {
+            write(file, (Savable) obj, info.getManager(), keyHash, sourceHash, dependencies);
+        }
+        return obj;
+    }
+
+    private Object read(File file, AssetKey<?> key, AssetManager manager,
+            byte[] keyHash, byte[] sourceHash) {
+        if (!file.isFile()) {
+            return null;
+        }
+        byte[] payload;
+        List<String> dependencies = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !Arrays.equals(readHash(in), keyHash)
+                    || !Arrays.equals(readHash(in), sourceHash)) {
+                return null;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] hash = readHash(in);
+                if (!Arrays.equals(hash(manager, name), hash)) {
+                    return null;
+                }
+                dependencies.add(name);
+            }
+            long checksum = in.readLong();
+            payload = new byte[in.readInt()];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            if (crc.getValue() != checksum) {
+                logger.log(Level.WARNING, "Corrupted disk cache entry {0} for {1}",
+                        new Object[]{file, key});
+                return null;
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Cannot read disk cache entry " + file + " for " + key, ex);
+            return null;
+        }
+
+        knownDependencies.put(key.getName(), dependencies);
+        for (String name : dependencies) {
+            recordRequest(new AssetKey<>(name));
+        }
+        BinaryImporter importer = BinaryImporter.getInstance();
+        Object obj = importer.load(new AssetInfo(manager, key) {
+            @Override
+            public InputStream openStream() {
+                return new ByteArrayInputStream(payload);
+            }
+        });
+        if (obj != null && logger.isLoggable(Level.FINER)) {
+            logger.log(Level.FINER, "Read {0} from the disk cache", key);
+        }
+        return obj;
+    }
+
+    private void write(File file, Savable obj, AssetManager manager, byte[] keyHash,
+            byte[] sourceHash, List<String> dependencies) {
+        File temp = null;
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            BinaryExporter.getInstance().save(obj, payload);
+            CRC32 crc = new CRC32();
+            byte[] bytes = payload.toByteArray();
+            crc.update(bytes, 0, bytes.length);
+
+            directory.mkdirs();
+            temp = File.createTempFile(file.getName(), ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(keyHash);
+                out.write(sourceHash);
+                out.writeInt(dependencies.size());
+                for (String name : dependencies) {
+                    out.writeUTF(name);
+                    out.write(hash(manager, name));
+                }
+                out.writeLong(crc.getValue());
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (IOException | RuntimeException ex) {
+            // e.g. a scene with user data which can't be saved
+            logger.log(Level.FINE, "Cannot store " + file + " in the disk cache", ex);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static byte[] readHash(DataInputStream in) throws IOException {
+        byte[] hash = new byte[32];
+        in.readFully(hash);
+        return hash;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] hashKey(AssetKey<?> key, String loaderVersion) throws IOException {
+        // the saved key includes its settings, e.g. the flip of a TextureKey
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(key, bytes);
+        MessageDigest digest = createDigest();
+        digest.update(loaderVersion.getBytes(StandardCharsets.UTF_8));
+        digest.update(bytes.toByteArray());
+        return digest.digest();
+    }
+
+    /**
+     * Hashes a dependency, which may be missing, e.g. the optional material
+     * file of a model.
+     */
+    private static byte[] hash(AssetManager manager, String name) throws IOException {
+        AssetInfo info = manager.locateAsset(new AssetKey<>(name));
+        return info == null ? MISSING : hash(info);
+    }
+
+    private static byte[] hash(AssetInfo info) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = info.openStream()) {
+            if (in == null) {
+                throw new IOException("Cannot open " + info.getKey());
+            }
+            for (int read; (read = in.read(buffer)) != -1;) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -34,6 +34,7 @@ package com.jme3.asset;
 import com.jme3.asset.cache.AssetCache;
 import com.jme3.asset.cache.WeakRefCloneAssetCache;
 import com.jme3.scene.Spatial;
+import jme3tools.optimize.MeshPostProcessor;
 
 /**
  * Used to load model files, such as OBJ or Blender models.
@@ -46,6 +47,8 @@ import com.jme3.scene.Spatial;
  */
 public class ModelKey extends AssetKey<Spatial> {
 
+    private transient MeshPostProcessor meshPostProcessor;
+
     public ModelKey(String name) {
         super(name);
     }
@@ -54,6 +57,38 @@ public class ModelKey extends AssetKey<Spatial> {
         super();
     }
 
+    /**
+     * Returns the processor applied to the meshes of the loaded model.
+     *
+     * @return the processor, or null if none
+     */
+    public MeshPostProcessor getMeshPostProcessor() {
+        return meshPostProcessor;
+    }
+
+    /**
+     * Sets a processor applied to the meshes of the model once it's loaded,
+     * before it's cached. The models loaded with distinct processors are
+     * cached separately.
+     *
+     * @param meshPostProcessor the processor, or null for none (default: null)
+     */
+    public void setMeshPostProcessor(MeshPostProcessor meshPostProcessor) {
+        this.meshPostProcessor = meshPostProcessor;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ModelKey other = (ModelKey) obj;
+        if (!super.equals(other)) {
+            return false;
+        }
+        return meshPostProcessor == other.meshPostProcessor;
+    }
+
     @Override
     public Class<? extends AssetCache> getCacheType() {
         return WeakRefCloneAssetCache.class;
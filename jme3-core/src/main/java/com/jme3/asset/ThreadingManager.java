@@ -31,25 +31,66 @@
  */
 package com.jme3.asset;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <code>ThreadingManager</code> manages the threads used to load content
  * within the Content Manager system. A pool of threads and a task queue
  * is used to load resource data and perform I/O while the application's
  * render thread is active.
+ *
+ * <p>Queued loads are started by {@link AssetLoadPriority priority class},
+ * then in request order. Concurrent requests for the same key share one
+ * load, which is only cancelled once all its requests are. The dependencies
+ * requested while an asset is loaded are recorded, and requested along with
+ * the asset the next time it's loaded asynchronously, so that they are loaded
+ * in parallel with it. They are kept after the asset is evicted from the
+ * cache, since that's when they are useful, but only for the
+ * {@link #MAX_RECORDED_ASSETS} most recently requested assets.
  */
 public class ThreadingManager {
 
-    protected final ExecutorService executor =
-            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
-                    new LoadingThreadFactory());
+    /**
+     * The maximum number of assets whose dependencies are recorded.
+     */
+    public static final int MAX_RECORDED_ASSETS = 1024;
+
+    protected final ThreadPoolExecutor executor;
 
     protected final AssetManager owner;
     protected int nextThreadId = 0;
 
+    private final AtomicLong nextSequence = new AtomicLong();
+    //Key - asset key, object - the load of the asset
+    private final ConcurrentHashMap<AssetKey<?>, LoadingFuture<?>> pending
+            = new ConcurrentHashMap<>();
+    //Key - asset key, object - the assets requested while loading it,
+    //in access order so that the least recently used entries are evicted
+    private final Map<AssetKey<?>, Set<AssetKey<?>>> dependencies
+            = Collections.synchronizedMap(
+                    new LinkedHashMap<AssetKey<?>, Set<AssetKey<?>>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<AssetKey<?>, Set<AssetKey<?>>> eldest) {
+                    return size() > MAX_RECORDED_ASSETS;
+                }
+            });
+    private final ThreadLocal<LoadingFuture<?>> currentTask = new ThreadLocal<>();
+
     public ThreadingManager(AssetManager owner) {
         this.owner = owner;
+        int threads = Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), new LoadingThreadFactory());
+        // so that every task goes through the priority queue
+        executor.prestartAllCoreThreads();
+        owner.addAssetEventListener(new DependencyRecorder());
     }
 
     protected class LoadingThreadFactory implements ThreadFactory {
@@ -77,10 +118,269 @@ public class ThreadingManager {
     }
 
     public <T> Future<T> loadAsset(AssetKey<T> assetKey) {
-        return executor.submit(new LoadingTask<>(assetKey));
+        return loadAsset(assetKey, AssetLoadPriority.VISIBLE);
+    }
+
+    /**
+     * Requests the asynchronous load of an asset. If the asset is already
+     * being loaded, the request shares that load, and raises its priority if
+     * needed. The recorded dependencies of the asset are requested with the
+     * same priority, and kept until the asset is loaded.
+     *
+     * <p>The requests sharing a load get their own clone of the asset, if
+     * it's cached. Cancelling the returned future only cancels the load once every
+     * request sharing it is cancelled, and only if it hasn't started yet.
+     *
+     * @param <T> the type of the asset
+     * @param assetKey the key of the asset to load (not null)
+     * @param priority the priority class of the request (not null)
+     * @return a new future for the asset
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Future<T> loadAsset(AssetKey<T> assetKey, AssetLoadPriority priority) {
+        if (assetKey == null || priority == null) {
+            throw new IllegalArgumentException("assetKey and priority cannot be null");
+        }
+        while (true) {
+            LoadingFuture<T> task = (LoadingFuture<T>) pending.get(assetKey);
+            if (task == null) {
+                task = new LoadingFuture<>(assetKey, priority);
+                if (pending.putIfAbsent(assetKey, task) != null) {
+                    continue;
+                }
+                prefetchDependencies(task);
+                executor.execute(task);
+                return new Request<>(task, false);
+            }
+            if (!task.isDone() && task.addRequest()) {
+                raisePriority(task, priority);
+                return new Request<>(task, true);
+            }
+            // completed or cancelled in the meantime
+            pending.remove(assetKey, task);
+        }
+    }
+
+    /**
+     * Returns the dependencies recorded for an asset: all the assets which
+     * were requested while it was being loaded.
+     *
+     * @param assetKey the key of the asset (not null)
+     * @return an unmodifiable set of keys (not null)
+     */
+    public Set<AssetKey<?>> getDependencies(AssetKey<?> assetKey) {
+        Set<AssetKey<?>> result = dependencies.get(assetKey);
+        return result == null ? Collections.emptySet() : Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Waits for the asynchronous load of an asset, if there is one. A load
+     * which hasn't started yet is run by the calling thread, so that loaders
+     * waiting for their dependencies can't block each other.
+     *
+     * @param assetKey the key of the asset (not null)
+     * @return true if a load has been waited for, otherwise false
+     */
+    public boolean awaitLoading(AssetKey<?> assetKey) {
+        LoadingFuture<?> task = pending.get(assetKey);
+        if (task == null || task == currentTask.get() || task.isCancelled()) {
+            return false;
+        }
+        task.run();
+        try {
+            task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException ex) {
+            // reported to the requests of the load
+        }
+        return true;
     }
 
     public static boolean isLoadingThread() {
         return Thread.currentThread().getName().startsWith("jME3-threadpool");
     }
+
+    private void prefetchDependencies(LoadingFuture<?> task) {
+        Set<AssetKey<?>> keys = dependencies.get(task.key);
+        if (keys == null) {
+            return;
+        }
+        for (AssetKey<?> key : keys) {
+            // the assets which aren't cached can't be reused by the loader
+            if (key.getCacheType() != null && owner.getFromCache(key) == null) {
+                task.prefetched.add(loadAsset(key, task.priority));
+            }
+        }
+    }
+
+    private void raisePriority(LoadingFuture<?> task, AssetLoadPriority priority) {
+        synchronized (task) {
+            if (priority.ordinal() >= task.priority.ordinal()) {
+                return;
+            }
+            // only a queued task can be moved
+            if (!executor.remove(task)) {
+                return;
+            }
+            task.priority = priority;
+        }
+        executor.execute(task);
+    }
+
+    private class LoadingFuture<T> extends FutureTask<T> implements Comparable<LoadingFuture<?>> {
+
+        private final AssetKey<T> key;
+        private final long sequence = nextSequence.getAndIncrement();
+        private volatile AssetLoadPriority priority;
+        // guarded by this
+        private int requests = 1;
+        private final List<Future<?>> prefetched = new ArrayList<>();
+
+        LoadingFuture(AssetKey<T> key, AssetLoadPriority priority) {
+            super(new LoadingTask<>(key));
+            this.key = key;
+            this.priority = priority;
+        }
+
+        AssetManager owner() {
+            return owner;
+        }
+
+        synchronized boolean addRequest() {
+            if (requests == 0) {
+                return false;
+            }
+            requests++;
+            return true;
+        }
+
+        void removeRequest() {
+            synchronized (this) {
+                if (--requests > 0) {
+                    return;
+                }
+            }
+            if (cancel(false)) {
+                executor.remove(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            LoadingFuture<?> previous = currentTask.get();
+            currentTask.set(this);
+            try {
+                super.run();
+            } finally {
+                currentTask.set(previous);
+            }
+        }
+
+        @Override
+        protected void done() {
+            pending.remove(key, this);
+            // the prefetched assets were kept alive for the loader
+            for (Future<?> future : prefetched) {
+                future.cancel(false);
+            }
+            prefetched.clear();
+        }
+
+        @Override
+        public int compareTo(LoadingFuture<?> other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * The future of one request, which may share its load with other ones.
+     */
+    private static class Request<T> implements Future<T> {
+
+        private final LoadingFuture<T> task;
+        private final boolean shared;
+        private volatile boolean cancelled;
+
+        Request(LoadingFuture<T> task, boolean shared) {
+            this.task = task;
+            this.shared = shared;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if (cancelled || task.isDone()) {
+                    return false;
+                }
+                cancelled = true;
+            }
+            task.removeRequest();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled || task.isDone();
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            return share(task.get());
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            return share(task.get(timeout, unit));
+        }
+
+        private T share(T asset) {
+            if (!shared || task.key.getCacheType() == null) {
+                return asset;
+            }
+            // the cache hands out a clone of the asset if needed
+            return task.owner().loadAsset(task.key);
+        }
+    }
+
+    /**
+     * Records the dependencies of the loaded assets.
+     */
+    private class DependencyRecorder implements AssetEventListener {
+
+        @Override
+        public void assetLoaded(AssetKey key) {
+        }
+
+        @Override
+        public void assetRequested(AssetKey key) {
+        }
+
+        @Override
+        public void assetDependencyRequested(AssetKey parentKey, AssetKey dependentAssetKey) {
+            dependencies.computeIfAbsent(parentKey, k -> ConcurrentHashMap.newKeySet())
+                    .add(dependentAssetKey);
+        }
+
+        @Override
+        public void assetDependencyNotFound(AssetKey parentKey, AssetKey dependentAssetKey) {
+            Set<AssetKey<?>> keys = dependencies.get(parentKey);
+            if (keys != null) {
+                keys.remove(dependentAssetKey);
+            }
+        }
+    }
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.audio.AudioBuffer;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>LruAssetCache</code> is an asset cache with a byte budget. Once the
+ * estimated size of the cached assets exceeds the budget, the least recently
+ * used ones are removed from the cache. An asset bigger than the whole
+ * budget isn't kept.
+ * <p>
+ * The size of an asset is the size of its native data: the data of an
+ * {@link Image} or of the image of a {@link Texture}, the buffers of a
+ * {@link Mesh}, the meshes of a {@link Spatial}, and the data of an
+ * {@link AudioBuffer}. Other assets are counted as empty, override
+ * {@link #estimateSize(com.jme3.asset.AssetKey, java.lang.Object) } to
+ * account for them. Removing an asset from the cache doesn't destroy it, its
+ * data is released once it isn't used anymore.
+ * <p>
+ * The asset manager creates one cache per cache type, with its empty
+ * constructor, so each budget is given by a subclass:
+ * <pre>
+ * public class TextureCache extends LruAssetCache {
+ *     public TextureCache() {
+ *         super(512 * 1024 * 1024);
+ *     }
+ * }
+ * </pre>
+ * and used by the keys which return it from
+ * {@link AssetKey#getCacheType() }. The cache of a type can be retrieved
+ * with {@link com.jme3.asset.DesktopAssetManager#getCache(java.lang.Class) },
+ * to change its budget or to read its hit, miss and eviction counts.
+ */
+public class LruAssetCache implements AssetCache {
+
+    private static final Logger logger = Logger.getLogger(LruAssetCache.class.getName());
+
+    /**
+     * The budget of the caches created with the empty constructor, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    // guarded by this, in access order
+    private final LinkedHashMap<AssetKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private long sizeInBytes;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private static final class Entry {
+
+        final Object asset;
+        final long size;
+
+        Entry(Object asset, long size) {
+            this.asset = asset;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Creates a cache with the {@link #DEFAULT_MAX_BYTES default} budget.
+     */
+    public LruAssetCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a cache with the specified budget.
+     *
+     * @param maxBytes the maximum estimated size of the cached assets, in
+     *     bytes (&ge;0)
+     */
+    public LruAssetCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public <T> void addToCache(AssetKey<T> key, T obj) {
+        long size = estimateSize(key, obj);
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(obj, size));
+            if (previous != null) {
+                sizeInBytes -= previous.size;
+            }
+            sizeInBytes += size;
+            trim();
+        }
+    }
+
+    @Override
+    public <T> void registerAssetClone(AssetKey<T> key, T clone) {
+    }
+
+    @Override
+    public void notifyNoAssetClone() {
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getFromCache(AssetKey<T> key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return (T) entry.asset;
+    }
+
+    @Override
+    public synchronized boolean deleteFromCache(AssetKey key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        sizeInBytes -= entry.size;
+        return true;
+    }
+
+    @Override
+    public synchronized void clearCache() {
+        entries.clear();
+        sizeInBytes = 0;
+    }
+
+    /**
+     * Changes the budget of the cache, and removes the least recently used
+     * assets if needed.
+     *
+     * @param maxBytes the maximum estimated size of the cached assets, in
+     *     bytes (&ge;0)
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative");
+        }
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    /**
+     * Returns the budget of the cache.
+     *
+     * @return the maximum estimated size of the cached assets, in bytes
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the estimated size of the cached assets.
+     *
+     * @return the size in bytes (&ge;0)
+     */
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Returns the number of cached assets.
+     *
+     * @return the count (&ge;0)
+     */
+    public synchronized int getAssetCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups which found their asset in the cache.
+     *
+     * @return the count since the creation of the cache (&ge;0)
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of lookups which didn't find their asset in the
+     * cache.
+     *
+     * @return the count since the creation of the cache (&ge;0)
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of assets removed to stay within the budget.
+     *
+     * @return the count since the creation of the cache (&ge;0)
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Estimates the memory used by an asset. Invoked once when the asset is
+     * added to the cache, outside of its lock.
+     *
+     * @param key the key of the asset
+     * @param asset the asset to measure
+     * @return the size in bytes (&ge;0)
+     */
+    protected long estimateSize(AssetKey<?> key, Object asset) {
+        if (asset instanceof Texture) {
+            return sizeOf(((Texture) asset).getImage());
+        } else if (asset instanceof Image) {
+            return sizeOf((Image) asset);
+        } else if (asset instanceof Mesh) {
+            return sizeOf((Mesh) asset);
+        } else if (asset instanceof Spatial) {
+            return sizeOf((Spatial) asset);
+        } else if (asset instanceof AudioBuffer) {
+            ByteBuffer data = ((AudioBuffer) asset).getData();
+            return data == null ? 0 : data.capacity();
+        }
+        return 0;
+    }
+
+    private void trim() {
+        int evicted = 0;
+        Iterator<Entry> it = entries.values().iterator();
+        while (sizeInBytes > maxBytes && it.hasNext()) {
+            sizeInBytes -= it.next().size;
+            it.remove();
+            evicted++;
+        }
+        if (evicted > 0) {
+            evictionCount.add(evicted);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "LruAssetCache: {0} assets were evicted from the cache.", evicted);
+            }
+        }
+    }
+
+    private static long sizeOf(Image image) {
+        long size = 0;
+        if (image != null) {
+            for (ByteBuffer data : image.getData()) {
+                if (data != null) {
+                    size += data.capacity();
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long sizeOf(Mesh mesh) {
+        long size = 0;
+        for (VertexBuffer vb : mesh.getBufferList()) {
+            Buffer data = vb.getData();
+            if (data != null) {
+                size += (long) data.capacity() * vb.getFormat().getComponentSize();
+            }
+        }
+        return size;
+    }
+
+    private static long sizeOf(Spatial spatial) {
+        // shared meshes are counted once
+        Set<Mesh> meshes = Collections.newSetFromMap(new IdentityHashMap<>());
+        spatial.depthFirstTraversal(s -> {
+            if (s instanceof Geometry) {
+                meshes.add(((Geometry) s).getMesh());
+            }
+        });
+        long size = 0;
+        for (Mesh mesh : meshes) {
+            if (mesh != null) {
+                size += sizeOf(mesh);
+            }
+        }
+        return size;
+    }
+}
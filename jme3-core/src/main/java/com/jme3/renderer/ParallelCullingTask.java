@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Culls a contiguous range of the children of a <code>Node</code> on a
+ * fork-join worker.
+ *
+ * <p>Each leaf task works on its own copy of the camera, so the plane state
+ * used by {@link Camera#contains(com.jme3.bounding.BoundingVolume)} is never
+ * shared between threads. Like the serial traversal, nodes are descended
+ * through {@link Node#getCullingCandidates(Camera)}, which is safe as each
+ * node is culled by a single task. Visible spatials which either are geometries or
+ * have controls are recorded in traversal order; the render thread then
+ * {@link #drain(RenderManager, ViewPort) drains} the tasks in child order,
+ * which yields exactly the same queue content as the serial traversal.
+ */
+final class ParallelCullingTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Spatial> children;
+    private final int start;
+    private final int end;
+    private final Camera cam;
+    private final int camState;
+    private final int threshold;
+
+    private ParallelCullingTask left;
+    private ParallelCullingTask right;
+    private Spatial[] visible;
+    private int visibleCount;
+
+    /**
+     * Creates a task for the children in the range [start, end).
+     *
+     * @param children the children of the node being culled (not null)
+     * @param start the index of the first child (inclusive)
+     * @param end the index of the last child (exclusive)
+     * @param cam the camera to cull against (not null, unaffected)
+     * @param camState the camera plane state of the parent node
+     * @param threshold the maximum number of children culled by one leaf task
+     */
+    ParallelCullingTask(List<Spatial> children, int start, int end,
+            Camera cam, int camState, int threshold) {
+        this.children = children;
+        this.start = start;
+        this.end = end;
+        this.cam = cam;
+        this.camState = camState;
+        this.threshold = Math.max(1, threshold);
+    }
+
+    @Override
+    protected void compute() {
+        if (end - start > threshold) {
+            int mid = (start + end) >>> 1;
+            left = new ParallelCullingTask(children, start, mid, cam, camState, threshold);
+            right = new ParallelCullingTask(children, mid, end, cam, camState, threshold);
+            invokeAll(left, right);
+            return;
+        }
+
+        Camera localCam = cam.clone();
+        visible = new Spatial[Math.max(16, end - start)];
+        for (int i = start; i < end; i++) {
+            localCam.setPlaneState(camState);
+            cull(children.get(i), localCam);
+        }
+    }
+
+    private void cull(Spatial scene, Camera localCam) {
+        if (!scene.checkCulling(localCam)) {
+            return;
+        }
+
+        if (scene.getNumControls() > 0) {
+            record(scene);
+        }
+        if (scene instanceof Node) {
+            int state = localCam.getPlaneState();
+            List<Spatial> nodeChildren = ((Node) scene).getCullingCandidates(localCam);
+            for (int i = 0; i < nodeChildren.size(); i++) {
+                localCam.setPlaneState(state);
+                cull(nodeChildren.get(i), localCam);
+            }
+        } else if (scene instanceof Geometry) {
+            Geometry gm = (Geometry) scene;
+            if (gm.getMaterial() == null) {
+                throw new IllegalStateException("No material is set for Geometry: " + gm.getName());
+            }
+            if (scene.getNumControls() == 0) {
+                record(scene);
+            }
+        }
+    }
+
+    private void record(Spatial spatial) {
+        if (visibleCount == visible.length) {
+            Spatial[] temp = new Spatial[visibleCount * 2];
+            System.arraycopy(visible, 0, temp, 0, visibleCount);
+            visible = temp;
+        }
+        visible[visibleCount++] = spatial;
+    }
+
+    /**
+     * Runs the render callbacks of the recorded controls and enqueues the
+     * recorded geometries, in traversal order. Must be invoked on the render
+     * thread once the task has completed.
+     *
+     * @param rm the RenderManager (not null)
+     * @param vp the ViewPort whose queue receives the geometries (not null)
+     */
+    void drain(RenderManager rm, ViewPort vp) {
+        if (left != null) {
+            left.drain(rm, vp);
+            right.drain(rm, vp);
+            return;
+        }
+
+        for (int i = 0; i < visibleCount; i++) {
+            Spatial spatial = visible[i];
+            spatial.runControlRender(rm, vp);
+            if (spatial instanceof Geometry) {
+                vp.getQueue().addToQueue((Geometry) spatial, spatial.getQueueBucket());
+            }
+            visible[i] = null;
+        }
+        visibleCount = 0;
+    }
+}
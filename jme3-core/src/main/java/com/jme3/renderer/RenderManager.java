@@ -32,6 +32,7 @@
 package com.jme3.renderer;
 
 import com.jme3.light.DefaultLightFilter;
+import com.jme3.light.Light;
 import com.jme3.light.LightFilter;
 import com.jme3.light.LightList;
 import com.jme3.material.MatParamOverride;
@@ -55,6 +56,7 @@ import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.instancing.AutoInstancedGeometry;
 import com.jme3.shader.Shader;
 import com.jme3.shader.UniformBinding;
 import com.jme3.shader.UniformBindingManager;
@@ -62,10 +64,13 @@ import com.jme3.shader.VarType;
 import com.jme3.system.NullRenderer;
 import com.jme3.system.Timer;
 import com.jme3.texture.FrameBuffer;
+import com.jme3.util.IntMap;
+import com.jme3.util.RadixSort;
 import com.jme3.util.SafeArrayList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
 
@@ -106,6 +111,18 @@ public class RenderManager {
     private int singlePassLightBatchSize = 1;
     private MatParamOverride boundDrawBufferId=new MatParamOverride(VarType.Int,"BoundDrawBuffer",0);
     private Predicate<Geometry> renderFilter;
+    private ForkJoinPool cullingPool;
+    private int parallelCullingThreshold = 1024;
+    private boolean stateGroupingEnabled = false;
+    private final RadixSort<Geometry> stateGroupSort = new RadixSort<>();
+    private final IntMap<Integer> shaderGroups = new IntMap<>();
+    private final IntMap<Integer> textureGroups = new IntMap<>();
+    private Geometry[] stateGroupBuffer = new Geometry[0];
+    private boolean autoInstancingEnabled = false;
+    private final ArrayList<AutoInstancedGeometry> autoInstances = new ArrayList<>();
+    private int numAutoInstancesUsed;
+    private Geometry[] instanceRun = new Geometry[16];
+    private final LightList instanceLightList = new LightList(null);
 
 
     /**
@@ -629,6 +646,25 @@ public class RenderManager {
      */
     public void renderGeometry(Geometry geom) {
         if (renderFilter != null && !renderFilter.test(geom)) return;
+        renderGeometry(geom, filterLights(geom));
+    }
+
+    /**
+     * Returns the lights affecting the given geometry, as selected by the
+     * {@link #setLightFilter(com.jme3.light.LightFilter) light filter}. The
+     * result may be reused by the next invocation.
+     */
+    private LightList filterLights(Geometry geom) {
+        LightList lightList = geom.getWorldLightList();
+        if (lightFilter != null) {
+            filteredLightList.clear();
+            lightFilter.filterLights(geom, filteredLightList);
+            lightList = filteredLightList;
+        }
+        return lightList;
+    }
+
+    private void renderGeometry(Geometry geom, LightList lightList) {
         this.renderer.pushDebugGroup(geom.getName());
         if (geom.isIgnoreTransform()) {
             setWorldMatrix(Matrix4f.IDENTITY);
@@ -642,15 +678,6 @@ public class RenderManager {
             this.boundDrawBufferId.setValue(currentFb.getTargetIndex());
         }
 
-        // Perform light filtering if we have a light filter.
-        LightList lightList = geom.getWorldLightList();
-
-        if (lightFilter != null) {
-            filteredLightList.clear();
-            lightFilter.filterLights(geom, filteredLightList);
-            lightList = filteredLightList;
-        }
-
         Material material = geom.getMaterial();
         
         // If forcedTechnique exists, we try to force it for the render.
@@ -703,17 +730,166 @@ public class RenderManager {
      * <p>For every geometry in the list, the
      * {@link #renderGeometry(com.jme3.scene.Geometry) } method is called.
      *
+     * <p>If {@link #setStateGroupingEnabled(boolean) state grouping} is
+     * enabled, the list is first reordered so that geometries using the same
+     * shader, then the same set of textures, are rendered consecutively.
+     *
+     * <p>If {@link #setAutoInstancingEnabled(boolean) auto instancing} is
+     * enabled, consecutive geometries which can share a draw call are
+     * rendered with a single instanced draw.
+     *
      * @param gl The geometry list to render.
      *
      * @see GeometryList
      * @see #renderGeometry(com.jme3.scene.Geometry)
      */
     public void renderGeometryList(GeometryList gl) {
+        if (stateGroupingEnabled && gl.size() > 2) {
+            groupByState(gl);
+        }
+        if (autoInstancingEnabled && forcedMaterial == null) {
+            renderInstancedGeometryList(gl);
+            return;
+        }
         for (int i = 0; i < gl.size(); i++) {
             renderGeometry(gl.get(i));
         }
     }
 
+    /**
+     * Renders the list, drawing every run of geometries with the same mesh,
+     * material and LOD level with as few instanced draws as possible.
+     *
+     * @param gl the list to render (not null)
+     */
+    private void renderInstancedGeometryList(GeometryList gl) {
+        int size = gl.size();
+        int start = 0;
+        while (start < size) {
+            Geometry first = gl.get(start);
+            int end = start + 1;
+            if (AutoInstancedGeometry.canInstance(first)) {
+                // even a single geometry goes through the instanced path,
+                // as its technique reads the per-instance world matrix
+                while (end < size && AutoInstancedGeometry.isSameInstance(first, gl.get(end))) {
+                    end++;
+                }
+                renderInstancedRun(gl, start, end);
+            } else {
+                renderGeometry(first);
+            }
+            start = end;
+        }
+
+        for (int i = 0; i < numAutoInstancesUsed; i++) {
+            autoInstances.get(i).clearInstances();
+        }
+        numAutoInstancesUsed = 0;
+    }
+
+    /**
+     * Renders the geometries in the range [start, end) of the list, which
+     * share their mesh and material. Since lights are bound per draw call,
+     * the run is split wherever the filtered lights change.
+     */
+    private void renderInstancedRun(GeometryList gl, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            Geometry geom = gl.get(i);
+            if (renderFilter != null && !renderFilter.test(geom)) {
+                continue;
+            }
+            LightList lightList = filterLights(geom);
+            if (count > 0 && !hasSameLights(lightList)) {
+                flushInstances(count);
+                count = 0;
+            }
+            if (count == 0) {
+                instanceLightList.clear();
+                for (int j = 0; j < lightList.size(); j++) {
+                    instanceLightList.add(lightList.get(j));
+                }
+            }
+            if (count == instanceRun.length) {
+                Geometry[] temp = new Geometry[count * 2];
+                System.arraycopy(instanceRun, 0, temp, 0, count);
+                instanceRun = temp;
+            }
+            instanceRun[count++] = geom;
+        }
+        if (count > 0) {
+            flushInstances(count);
+        }
+    }
+
+    private boolean hasSameLights(LightList lightList) {
+        if (lightList.size() != instanceLightList.size()) {
+            return false;
+        }
+        for (int i = 0; i < lightList.size(); i++) {
+            Light light = lightList.get(i);
+            if (light != instanceLightList.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void flushInstances(int count) {
+        if (numAutoInstancesUsed == autoInstances.size()) {
+            autoInstances.add(new AutoInstancedGeometry());
+        }
+        AutoInstancedGeometry instances = autoInstances.get(numAutoInstancesUsed++);
+        instances.setInstances(instanceRun, count);
+        renderGeometry(instances, instanceLightList);
+        for (int i = 0; i < count; i++) {
+            instanceRun[i] = null;
+        }
+    }
+
+    /**
+     * Reorders the list into runs of geometries sharing the same shader and,
+     * within those, the same textures, as identified by
+     * {@link Material#getSortId()}. Groups keep the order of their first
+     * geometry, and geometries keep their order within a group.
+     *
+     * @param gl the list to reorder (not null, modified)
+     */
+    private void groupByState(GeometryList gl) {
+        int size = gl.size();
+        if (stateGroupBuffer.length < size) {
+            stateGroupBuffer = new Geometry[Math.max(size, stateGroupBuffer.length * 2)];
+        }
+        long[] keys = stateGroupSort.getKeys(size);
+        shaderGroups.clear();
+        textureGroups.clear();
+        for (int i = 0; i < size; i++) {
+            Geometry geom = gl.get(i);
+            Material material = forcedMaterial != null ? forcedMaterial : geom.getMaterial();
+            int sortId = material.getSortId();
+
+            Integer shaderGroup = shaderGroups.get(sortId >>> 16);
+            if (shaderGroup == null) {
+                shaderGroup = shaderGroups.size();
+                shaderGroups.put(sortId >>> 16, shaderGroup);
+            }
+            Integer textureGroup = textureGroups.get(sortId);
+            if (textureGroup == null) {
+                textureGroup = textureGroups.size();
+                textureGroups.put(sortId, textureGroup);
+            }
+
+            keys[i] = ((long) shaderGroup << 32) | textureGroup;
+            stateGroupBuffer[i] = geom;
+        }
+
+        stateGroupSort.sort(stateGroupBuffer, size);
+        for (int i = 0; i < size; i++) {
+            gl.set(i, stateGroupBuffer[i]);
+            stateGroupBuffer[i] = null;
+        }
+    }
+
     /**
      * Preloads a scene for rendering.
      *
@@ -810,9 +986,13 @@ public class RenderManager {
         if (scene instanceof Node) {
             // Recurse for all children
             Node n = (Node) scene;
-            List<Spatial> children = n.getChildren();
             // Saving cam state for culling
             int camState = vp.getCamera().getPlaneState();
+            List<Spatial> children = n.getCullingCandidates(vp.getCamera());
+            if (cullingPool != null && children.size() >= parallelCullingThreshold) {
+                renderChildrenParallel(children, camState, vp);
+                return;
+            }
             for (int i = 0; i < children.size(); i++) {
                 // Restoring cam state before proceeding children recursively
                 vp.getCamera().setPlaneState(camState);
@@ -829,6 +1009,24 @@ public class RenderManager {
         }
     }
 
+    /**
+     * Culls the children of a large node on the culling pool, then enqueues
+     * the visible geometries in the same order as the serial traversal.
+     *
+     * @param children the children to cull (not null, unaffected)
+     * @param camState the camera plane state of the parent node
+     * @param vp the ViewPort to render in (not null)
+     */
+    private void renderChildrenParallel(List<Spatial> children, int camState, ViewPort vp) {
+        int leafSize = Math.max(parallelCullingThreshold / 4,
+                children.size() / (cullingPool.getParallelism() * 4));
+        ParallelCullingTask task = new ParallelCullingTask(children, 0, children.size(),
+                vp.getCamera(), camState, leafSize);
+        cullingPool.invoke(task);
+        task.drain(this, vp);
+        vp.getCamera().setPlaneState(camState);
+    }
+
     /**
      * Returns the camera currently used for rendering.
      *
@@ -1347,6 +1545,128 @@ public class RenderManager {
         renderFilter = filter;
     }
 
+    /**
+     * Enables or disables state grouping in
+     * {@link #renderGeometryList(com.jme3.renderer.queue.GeometryList)}.
+     * When enabled, geometries are submitted in runs sharing the same shader,
+     * then the same textures, which reduces the number of shader and texture
+     * binds. The {@link com.jme3.renderer.queue.RenderQueue.Bucket#Opaque opaque}
+     * bucket and the shadow queues are flushed through this method; the
+     * buckets whose order affects blending are never regrouped.
+     *
+     * <p>The resulting bind counts can be observed through the
+     * {@link Statistics} of the renderer.
+     *
+     * @param enabled true to enable grouping, false to disable it
+     *     (default=false)
+     */
+    public void setStateGroupingEnabled(boolean enabled) {
+        this.stateGroupingEnabled = enabled;
+    }
+
+    /**
+     * Tests whether state grouping is enabled.
+     *
+     * @return true if enabled, otherwise false
+     * @see #setStateGroupingEnabled(boolean)
+     */
+    public boolean isStateGroupingEnabled() {
+        return stateGroupingEnabled;
+    }
+
+    /**
+     * Enables or disables automatic instancing in
+     * {@link #renderGeometryList(com.jme3.renderer.queue.GeometryList)}.
+     * When enabled, consecutive geometries sharing the same
+     * {@link Mesh}, {@link Material} instance, LOD level, material parameter
+     * overrides and filtered lights are drawn with a single instanced draw
+     * call, their world matrices being packed into an instance data buffer.
+     * Unlike with an {@link com.jme3.scene.instancing.InstancedNode}, the
+     * scene graph doesn't need to be restructured.
+     *
+     * <p>Only the geometries whose material has the "UseInstancing"
+     * parameter set to true are instanced, as the shaders must read the
+     * world matrix from the instance data. Nothing is instanced while a
+     * {@link #setForcedMaterial(com.jme3.material.Material) forced material}
+     * is set.
+     *
+     * <p>The reduced number of draw calls can be observed through the
+     * objects and instances counts of the {@link Statistics}.
+     *
+     * @param enabled true to enable auto instancing, false to disable it
+     *     (default=false)
+     */
+    public void setAutoInstancingEnabled(boolean enabled) {
+        this.autoInstancingEnabled = enabled;
+        if (!enabled) {
+            autoInstances.clear();
+        }
+    }
+
+    /**
+     * Tests whether auto instancing is enabled.
+     *
+     * @return true if enabled, otherwise false
+     * @see #setAutoInstancingEnabled(boolean)
+     */
+    public boolean isAutoInstancingEnabled() {
+        return autoInstancingEnabled;
+    }
+
+    /**
+     * Enables parallel frustum culling. When a pool is set,
+     * {@link #renderScene(com.jme3.scene.Spatial, com.jme3.renderer.ViewPort)}
+     * splits the culling of every node having at least
+     * {@link #getParallelCullingThreshold() threshold} children across the
+     * pool's workers. The geometries are enqueued in the same order as the
+     * serial traversal, so the rendered result is identical.
+     *
+     * <p>While the pool is culling, the scene graph must not be modified.
+     * {@link com.jme3.scene.control.Control#render(com.jme3.renderer.RenderManager, com.jme3.renderer.ViewPort)
+     * Control.render()} is still invoked on the render thread, but for the
+     * spatials of a parallel subtree it is invoked after their culling, so it
+     * can't change the cull hint of the subtree for the current frame.
+     *
+     * @param pool the pool to use, or null to cull on the render thread only
+     *     (default=null)
+     */
+    public void setCullingPool(ForkJoinPool pool) {
+        this.cullingPool = pool;
+    }
+
+    /**
+     * Returns the pool used for parallel frustum culling.
+     *
+     * @return the pool, or null if culling is done on the render thread only
+     */
+    public ForkJoinPool getCullingPool() {
+        return cullingPool;
+    }
+
+    /**
+     * Sets the minimum number of children a node must have for its culling
+     * to be split across the culling pool. Smaller nodes are culled on the
+     * render thread, as the fork-join overhead would exceed the gain.
+     *
+     * @param threshold the minimum number of children (&ge;1, default=1024)
+     */
+    public void setParallelCullingThreshold(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be at least 1");
+        }
+        this.parallelCullingThreshold = threshold;
+    }
+
+    /**
+     * Returns the minimum number of children a node must have for its culling
+     * to be split across the culling pool.
+     *
+     * @return the threshold (&ge;1)
+     */
+    public int getParallelCullingThreshold() {
+        return parallelCullingThreshold;
+    }
+
     /**
      * Returns the render filter that the RenderManager is currently using
      * 
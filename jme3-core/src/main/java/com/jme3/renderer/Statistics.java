@@ -32,6 +32,7 @@
 package com.jme3.renderer;
 
 import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
 import com.jme3.shader.Shader;
 import com.jme3.texture.FrameBuffer;
 import com.jme3.texture.Image;
@@ -55,6 +56,11 @@ public class Statistics {
      * Number of object used during the current frame.
      */
     protected int numObjects;
+    /**
+     * Number of mesh instances rendered during the current frame. Equals the
+     * number of objects unless instanced draws were issued.
+     */
+    protected int numInstances;
     /**
      * Number of mesh primitives rendered during the current frame.
      */
@@ -79,6 +85,22 @@ public class Statistics {
      * Number of uniforms set during the current frame.
      */
     protected int numUniformsSet;
+    /**
+     * Number of vertex buffer (VBO) binds during the current frame.
+     */
+    protected int numVertexBufferBinds;
+    /**
+     * Number of vertex array object (VAO) binds during the current frame.
+     */
+    protected int numVertexArrayBinds;
+    /**
+     * Number of blend state changes during the current frame.
+     */
+    protected int numBlendStateChanges;
+    /**
+     * Number of depth state changes during the current frame.
+     */
+    protected int numDepthStateChanges;
 
     /**
      * Number of active shaders.
@@ -135,7 +157,15 @@ public class Statistics {
 
                              "FrameBuffers (S)",
                              "FrameBuffers (F)",
-                             "FrameBuffers (M)" };
+                             "FrameBuffers (M)",
+
+                             "VertexBuffers (S)",
+                             "VertexArrays (S)",
+
+                             "BlendState (S)",
+                             "DepthState (S)",
+
+                             "Instances (F)" };
 
     }
 
@@ -163,6 +193,14 @@ public class Statistics {
         data[10] = numFboSwitches;
         data[11] = fbosUsed.size();
         data[12] = memoryFrameBuffers;
+
+        data[13] = numVertexBufferBinds;
+        data[14] = numVertexArrayBinds;
+
+        data[15] = numBlendStateChanges;
+        data[16] = numDepthStateChanges;
+
+        data[17] = numInstances;
     }
 
     /**
@@ -178,6 +216,7 @@ public class Statistics {
         }
 
         numObjects += 1;
+        numInstances += count;
         numTriangles += mesh.getTriangleCount(lod) * count;
         numVertices += mesh.getVertexCount() * count;
     }
@@ -275,6 +314,60 @@ public class Statistics {
         }
     }
 
+    /**
+     * Called by the Renderer when a vertex buffer has been bound.
+     *
+     * @param vb The vertex buffer that was used
+     * @param wasSwitched If true, the buffer required a state switch
+     */
+    public void onVertexBufferUse(VertexBuffer vb, boolean wasSwitched) {
+        if (!enabled) {
+            return;
+        }
+
+        if (wasSwitched) {
+            numVertexBufferBinds++;
+        }
+    }
+
+    /**
+     * Called by the Renderer when a vertex array object has been bound.
+     *
+     * @param mesh The mesh whose vertex array was used
+     * @param wasSwitched If true, the vertex array required a state switch
+     */
+    public void onVertexArrayUse(Mesh mesh, boolean wasSwitched) {
+        if (!enabled) {
+            return;
+        }
+
+        if (wasSwitched) {
+            numVertexArrayBinds++;
+        }
+    }
+
+    /**
+     * Called by the Renderer when the blend state (blend enable, blend
+     * function or blend equation) has been changed.
+     */
+    public void onBlendStateChange() {
+        if (!enabled) {
+            return;
+        }
+        numBlendStateChanges++;
+    }
+
+    /**
+     * Called by the Renderer when the depth state (depth test, depth function
+     * or depth write) has been changed.
+     */
+    public void onDepthStateChange() {
+        if (!enabled) {
+            return;
+        }
+        numDepthStateChanges++;
+    }
+
     /**
      * Clears all frame-specific statistics such as objects used per frame.
      */
@@ -284,12 +377,17 @@ public class Statistics {
         fbosUsed.clear();
 
         numObjects = 0;
+        numInstances = 0;
         numTriangles = 0;
         numVertices = 0;
         numShaderSwitches = 0;
         numTextureBinds = 0;
         numFboSwitches = 0;
         numUniformsSet = 0;
+        numVertexBufferBinds = 0;
+        numVertexArrayBinds = 0;
+        numBlendStateChanges = 0;
+        numDepthStateChanges = 0;
 
         lastShader = -1;
     }
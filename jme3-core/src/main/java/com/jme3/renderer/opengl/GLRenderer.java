@@ -71,6 +71,7 @@ import com.jme3.util.NativeObjectManager;
 import jme3tools.shader.ShaderDebug;
 
 import java.lang.ref.WeakReference;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
@@ -839,21 +840,26 @@ public final class GLRenderer implements Renderer {
         if (state.isDepthTest() && !context.depthTestEnabled) {
             gl.glEnable(GL.GL_DEPTH_TEST);
             context.depthTestEnabled = true;
+            statistics.onDepthStateChange();
         } else if (!state.isDepthTest() && context.depthTestEnabled) {
             gl.glDisable(GL.GL_DEPTH_TEST);
             context.depthTestEnabled = false;
+            statistics.onDepthStateChange();
         }
         if (state.isDepthTest() && state.getDepthFunc() != context.depthFunc) {
             gl.glDepthFunc(convertTestFunction(state.getDepthFunc()));
             context.depthFunc = state.getDepthFunc();
+            statistics.onDepthStateChange();
         }
 
         if (state.isDepthWrite() && !context.depthWriteEnabled) {
             gl.glDepthMask(true);
             context.depthWriteEnabled = true;
+            statistics.onDepthStateChange();
         } else if (!state.isDepthWrite() && context.depthWriteEnabled) {
             gl.glDepthMask(false);
             context.depthWriteEnabled = false;
+            statistics.onDepthStateChange();
         }
 
         if (state.isColorWrite() && !context.colorWriteEnabled) {
@@ -1027,8 +1033,10 @@ public final class GLRenderer implements Renderer {
         if (blendMode != context.blendMode) {
             if (blendMode == RenderState.BlendMode.Off) {
                 gl.glDisable(GL.GL_BLEND);
+                statistics.onBlendStateChange();
             } else if (context.blendMode == RenderState.BlendMode.Off) {
                 gl.glEnable(GL.GL_BLEND);
+                statistics.onBlendStateChange();
             }
 
             context.blendMode = blendMode;
@@ -1044,6 +1052,7 @@ public final class GLRenderer implements Renderer {
             gl.glBlendEquationSeparate(glBlendEquation, glBlendEquationAlpha);
             context.blendEquation = blendEquation;
             context.blendEquationAlpha = blendEquationAlpha;
+            statistics.onBlendStateChange();
         }
     }
 
@@ -1060,6 +1069,7 @@ public final class GLRenderer implements Renderer {
             context.dfactorRGB = dfactor;
             context.sfactorAlpha = sfactor;
             context.dfactorAlpha = dfactor;
+            statistics.onBlendStateChange();
         }
     }
 
@@ -1079,6 +1089,7 @@ public final class GLRenderer implements Renderer {
             context.dfactorRGB = dfactorRGB;
             context.sfactorAlpha = sfactorAlpha;
             context.dfactorAlpha = dfactorAlpha;
+            statistics.onBlendStateChange();
         }
     }
 
@@ -2915,21 +2926,27 @@ public final class GLRenderer implements Renderer {
             if (context.boundElementArrayVBO != bufId) {
                 gl.glBindBuffer(target, bufId);
                 context.boundElementArrayVBO = bufId;
-                //statistics.onVertexBufferUse(vb, true);
+                statistics.onVertexBufferUse(vb, true);
             } else {
-                //statistics.onVertexBufferUse(vb, false);
+                statistics.onVertexBufferUse(vb, false);
             }
         } else {
             target = GL.GL_ARRAY_BUFFER;
             if (context.boundArrayVBO != bufId) {
                 gl.glBindBuffer(target, bufId);
                 context.boundArrayVBO = bufId;
-                //statistics.onVertexBufferUse(vb, true);
+                statistics.onVertexBufferUse(vb, true);
             } else {
-                //statistics.onVertexBufferUse(vb, false);
+                statistics.onVertexBufferUse(vb, false);
             }
         }
 
+        if (!created && vb.getUpdateRangeStart() != -1 && vb.getStride() == 0) {
+            updateBufferSubData(target, vb);
+            vb.clearUpdateNeeded();
+            return;
+        }
+
         int usage = convertUsage(vb.getUsage());
         vb.getData().rewind();
 
@@ -2956,6 +2973,48 @@ public final class GLRenderer implements Renderer {
         vb.clearUpdateNeeded();
     }
 
+    /**
+     * Sends the modified range of the vertex buffer data to the bound buffer
+     * object.
+     */
+    private void updateBufferSubData(int target, VertexBuffer vb) {
+        int components = vb.getNumComponents();
+        // Half is stored in a ByteBuffer
+        int elementsPerComponent = vb.getFormat() == VertexBuffer.Format.Half ? 2 : 1;
+        int start = vb.getUpdateRangeStart() * components * elementsPerComponent;
+        int end = vb.getUpdateRangeEnd() * components * elementsPerComponent;
+        long offset = (long) vb.getUpdateRangeStart() * components * vb.getFormat().getComponentSize();
+
+        Buffer data = vb.getData();
+        int limit = data.limit();
+        data.limit(Math.min(end, limit));
+        data.position(Math.min(start, data.limit()));
+
+        switch (vb.getFormat()) {
+            case Byte:
+            case UnsignedByte:
+            case Half:
+                gl.glBufferSubData(target, offset, (ByteBuffer) data);
+                break;
+            case Short:
+            case UnsignedShort:
+                gl.glBufferSubData(target, offset, (ShortBuffer) data);
+                break;
+            case Int:
+            case UnsignedInt:
+                glext.glBufferSubData(target, offset, (IntBuffer) data);
+                break;
+            case Float:
+                gl.glBufferSubData(target, offset, (FloatBuffer) data);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown buffer format.");
+        }
+
+        data.limit(limit);
+        data.rewind();
+    }
+
     private int resolveUsageHint(BufferObject.AccessHint ah, BufferObject.NatureHint nh) {
         switch (ah) {
             case Dynamic: {
@@ -3159,9 +3218,9 @@ public final class GLRenderer implements Renderer {
             if (context.boundArrayVBO != bufId) {
                 gl.glBindBuffer(GL.GL_ARRAY_BUFFER, bufId);
                 context.boundArrayVBO = bufId;
-                //statistics.onVertexBufferUse(vb, true);
+                statistics.onVertexBufferUse(vb, true);
             } else {
-                //statistics.onVertexBufferUse(vb, false);
+                statistics.onVertexBufferUse(vb, false);
             }
 
             if (slotsRequired == 1) {
@@ -3252,9 +3311,9 @@ public final class GLRenderer implements Renderer {
         if (context.boundElementArrayVBO != bufId) {
             gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, bufId);
             context.boundElementArrayVBO = bufId;
-            //statistics.onVertexBufferUse(indexBuf, true);
+            statistics.onVertexBufferUse(indexBuf, true);
         } else {
-            //statistics.onVertexBufferUse(indexBuf, true);
+            statistics.onVertexBufferUse(indexBuf, false);
         }
 
         int vertCount = mesh.getVertexCount();
@@ -3359,6 +3418,9 @@ public final class GLRenderer implements Renderer {
         if (context.boundVertexArray != id) {
             gl3.glBindVertexArray(id);
             context.boundVertexArray = id;
+            statistics.onVertexArrayUse(mesh, true);
+        } else {
+            statistics.onVertexArrayUse(mesh, false);
         }
 
         VertexBuffer interleavedData = mesh.getBuffer(Type.InterleavedData);
@@ -37,6 +37,7 @@ import java.util.NoSuchElementException;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 import com.jme3.util.ListSort;
+import com.jme3.util.RadixSort;
 
 /**
  * This class is a special purpose list of {@link Geometry} objects for render
@@ -52,6 +53,8 @@ public class GeometryList implements Iterable<Geometry>{
 
     private Geometry[] geometries;
     private final ListSort listSort;
+    private RadixSort<Geometry> radixSort;
+    private boolean radixSortEnabled = false;
     private int size;
     private GeometryComparator comparator;
 
@@ -82,6 +85,30 @@ public class GeometryList implements Iterable<Geometry>{
         return comparator;
     }
 
+    /**
+     * Enables or disables radix sorting. When enabled, and the comparator is a
+     * {@link KeyedGeometryComparator}, {@link #sort()} computes one key per
+     * geometry and sorts the keys with a {@link RadixSort} instead of calling
+     * the comparator for every pair of geometries. The resulting order is the
+     * same. Other comparators are always used through the comparison sort.
+     *
+     * @param enabled true to enable radix sorting, false to disable it
+     *     (default=false)
+     */
+    public void setRadixSortEnabled(boolean enabled) {
+        this.radixSortEnabled = enabled;
+    }
+
+    /**
+     * Tests whether radix sorting is enabled.
+     *
+     * @return true if enabled, otherwise false
+     * @see #setRadixSortEnabled(boolean)
+     */
+    public boolean isRadixSortEnabled() {
+        return radixSortEnabled;
+    }
+
     /**
      * Set the camera that will be set on the geometry comparators
      * via {@link GeometryComparator#setCamera(com.jme3.renderer.Camera)}.
@@ -153,7 +180,9 @@ public class GeometryList implements Iterable<Geometry>{
      */
     @SuppressWarnings("unchecked")
     public void sort() {
-        if (size > 1) {
+        if (size > 1 && radixSortEnabled && comparator instanceof KeyedGeometryComparator) {
+            radixSort((KeyedGeometryComparator) comparator);
+        } else if (size > 1) {
             // sort the spatial list using the comparator
             if (listSort.getLength() != size) {
                 listSort.allocateStack(size);
@@ -162,6 +191,17 @@ public class GeometryList implements Iterable<Geometry>{
         }
     }
 
+    private void radixSort(KeyedGeometryComparator keyedComparator) {
+        if (radixSort == null) {
+            radixSort = new RadixSort<>();
+        }
+        long[] keys = radixSort.getKeys(size);
+        for (int i = 0; i < size; i++) {
+            keys[i] = keyedComparator.getSortKey(geometries[i]);
+        }
+        radixSort.sort(geometries, size);
+    }
+
     @Override
     public Iterator<Geometry> iterator() {
         return new Iterator<Geometry>() {
@@ -36,7 +36,7 @@ import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 
-public class OpaqueComparator implements GeometryComparator {
+public class OpaqueComparator implements KeyedGeometryComparator {
 
     private Camera cam;
     private final Vector3f tempVec  = new Vector3f();
@@ -92,4 +92,26 @@ public class OpaqueComparator implements GeometryComparator {
             return compareResult;
         }
     }
+
+    /**
+     * Packs the material sort id in the upper 32 bits and the camera
+     * distance in the lower 32 bits, both mapped so that their unsigned
+     * ordering matches {@link #compare(com.jme3.scene.Geometry, com.jme3.scene.Geometry)}.
+     *
+     * @param geom the geometry (not null)
+     * @return the key, to be compared as an unsigned value
+     */
+    @Override
+    public long getSortKey(Geometry geom) {
+        int sortId = geom.getMaterial().getSortId() ^ Integer.MIN_VALUE;
+        float distance = distanceToCam(geom);
+        if (distance == 0f) {
+            // -0 and +0 compare as equal
+            distance = 0f;
+        }
+        int bits = Float.floatToIntBits(distance);
+        // flip all bits of negative floats, only the sign bit of positive ones
+        bits ^= (bits >> 31) | Integer.MIN_VALUE;
+        return ((long) sortId << 32) | (bits & 0xFFFFFFFFL);
+    }
 }
@@ -187,6 +187,7 @@ public class RenderQueue {
      * @param c the comparator to use (alias created)
      */
     public void setGeometryComparator(Bucket bucket, GeometryComparator c) {
+        boolean radixSortEnabled = isRadixSortEnabled(bucket);
         switch (bucket) {
             case Gui:
                 guiList = new GeometryList(c);
@@ -206,6 +207,7 @@ public class RenderQueue {
             default:
                 throw new UnsupportedOperationException("Unknown bucket type: " + bucket);
         }
+        setRadixSortEnabled(bucket, radixSortEnabled);
     }
 
     /**
@@ -232,6 +234,48 @@ public class RenderQueue {
         }
     }
 
+    /**
+     * Enables or disables radix sorting for the specified bucket. This only
+     * has an effect if the bucket's comparator is a
+     * {@link KeyedGeometryComparator}, such as the default
+     * {@link OpaqueComparator}.
+     *
+     * @param bucket which Bucket to modify (not null)
+     * @param enabled true to enable radix sorting, false to disable it
+     *     (default=false)
+     * @see GeometryList#setRadixSortEnabled(boolean)
+     */
+    public void setRadixSortEnabled(Bucket bucket, boolean enabled) {
+        getGeometryList(bucket).setRadixSortEnabled(enabled);
+    }
+
+    /**
+     * Tests whether radix sorting is enabled for the specified bucket.
+     *
+     * @param bucket which Bucket to test (not null)
+     * @return true if enabled, otherwise false
+     */
+    public boolean isRadixSortEnabled(Bucket bucket) {
+        return getGeometryList(bucket).isRadixSortEnabled();
+    }
+
+    private GeometryList getGeometryList(Bucket bucket) {
+        switch (bucket) {
+            case Gui:
+                return guiList;
+            case Opaque:
+                return opaqueList;
+            case Sky:
+                return skyList;
+            case Transparent:
+                return transparentList;
+            case Translucent:
+                return translucentList;
+            default:
+                throw new UnsupportedOperationException("Unknown bucket type: " + bucket);
+        }
+    }
+
     /**
      * Adds a geometry to the given bucket.
      * The {@link RenderManager} automatically handles this task
@@ -278,9 +322,27 @@ public class RenderQueue {
         }
     }
 
+    /**
+     * Renders a list whose order doesn't affect the result, letting the
+     * RenderManager regroup it by render state.
+     *
+     * @see RenderManager#setStateGroupingEnabled(boolean)
+     */
+    private void renderUnorderedGeometryList(GeometryList list, RenderManager rm, Camera cam, boolean clear) {
+        list.setCamera(cam); // select camera for sorting
+        list.sort();
+        rm.renderGeometryList(list);
+        for (int i = 0; i < list.size(); i++) {
+            list.get(i).queueDistance = Float.NEGATIVE_INFINITY;
+        }
+        if (clear) {
+            list.clear();
+        }
+    }
+
     public void renderShadowQueue(GeometryList list, RenderManager rm, Camera cam, boolean clear) {
         rm.getRenderer().pushDebugGroup("ShadowQueue");
-        renderGeometryList(list, rm, cam, clear);
+        renderUnorderedGeometryList(list, rm, cam, clear);
         rm.getRenderer().popDebugGroup();
     }
 
@@ -312,7 +374,7 @@ public class RenderQueue {
                 renderGeometryList(guiList, rm, cam, clear);
                 break;
             case Opaque:
-                renderGeometryList(opaqueList, rm, cam, clear);
+                renderUnorderedGeometryList(opaqueList, rm, cam, clear);
                 break;
             case Sky:
                 renderGeometryList(skyList, rm, cam, clear);
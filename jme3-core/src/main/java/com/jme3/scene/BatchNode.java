@@ -34,9 +34,11 @@ package com.jme3.scene;
 import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -63,6 +65,9 @@ import com.jme3.util.clone.JmeCloneable;
  * Sub geoms can be added after the batch() method has been called but won't be batched and will just be rendered as normal geometries.
  * To integrate them in the batch you have to call the batch() method again on the batchNode.
  * <p>
+ * Large batches can be rebuilt on a worker thread with {@link #batchInBackground(Executor)}: the previous batch keeps
+ * being rendered until the new one is swapped in, during the first logical update following its completion.
+ * <p>
  * TODO more automagic (batch when needed in the updateLogicalState)
  *
  * @author Nehon
@@ -87,6 +92,14 @@ public class BatchNode extends GeometryGroupNode {
     int maxVertCount = 0;
     boolean useTangents = false;
     boolean needsFullRebatch = true;
+    /**
+     * the batch being built in the background, if any
+     */
+    private BatchBuild pendingBuild;
+    /**
+     * true if the model bound of a batch is out of date
+     */
+    private boolean boundsNeedUpdate = false;
 
     /**
      * Construct a batchNode
@@ -151,19 +164,39 @@ public class BatchNode extends GeometryGroupNode {
             Matrix4f transformMat = getTransformMatrix(bg);
             doTransforms(oposBuf, onormBuf, otanBuf, posBuf, normBuf, tanBuf, bg.startIndex, bg.startIndex + bg.getVertexCount(), transformMat);
 
-            pvb.updateData(posBuf);
+            // only the vertices of this geometry need to be uploaded again
+            int vertexCount = bg.getVertexCount();
+            pvb.updateDataRange(bg.startIndex, vertexCount);
 
             if (nvb != null) {
-                nvb.updateData(normBuf);
+                nvb.updateDataRange(bg.startIndex, vertexCount);
             }
             if (tvb != null) {
-                tvb.updateData(tanBuf);
+                tvb.updateDataRange(bg.startIndex, vertexCount);
             }
 
-            batch.geometry.updateModelBound();
+            // the bound is recomputed once, after all the moved geometries
+            // have been updated
+            batch.boundNeedsUpdate = true;
+            boundsNeedUpdate = true;
         }
     }
 
+    @Override
+    protected void updateWorldBound() {
+        if (boundsNeedUpdate) {
+            boundsNeedUpdate = false;
+            for (Batch batch : batches.getArray()) {
+                if (batch.boundNeedsUpdate) {
+                    batch.boundNeedsUpdate = false;
+                    batch.geometry.getMesh().updateBound();
+                    batch.geometry.updateWorldBound();
+                }
+            }
+        }
+        super.updateWorldBound();
+    }
+
     private FloatBuffer getFloatBuffer(VertexBuffer vb) {
         if (vb == null) {
             return null;
@@ -176,6 +209,8 @@ public class BatchNode extends GeometryGroupNode {
      * every geometry of the sub scene graph of this node will be batched into a single mesh that will be rendered in one call
      */
     public void batch() {
+        // a synchronous batch supersedes the one being built in the background
+        pendingBuild = null;
         doBatch();
         //we set the batch geometries to ignore transforms to avoid transforms of parent nodes to be applied twice
         for (Batch batch : batches.getArray()) {
@@ -184,11 +219,136 @@ public class BatchNode extends GeometryGroupNode {
         }
     }
 
+    /**
+     * Batches this BatchNode on a worker thread.
+     * The geometries of the sub scene graph and their world transforms are captured immediately, then the merged
+     * meshes are built by the given executor. Until the new batch is ready, the current one (or the unbatched
+     * geometries) keeps being rendered. The new batch is swapped in during the first
+     * {@link #updateLogicalState(float) logical update} after its completion; the geometries which have moved in
+     * the meantime are then updated in place.
+     * <p>
+     * While the batch is being built, the meshes of the geometries must not be modified. If the sub scene graph
+     * is changed in a way that invalidates the build, the result is discarded and a new build is started.
+     * Calling {@link #batch()} cancels the pending build.
+     *
+     * @param executor the executor to build the batch with (not null)
+     */
+    public void batchInBackground(Executor executor) {
+        Map<Material, List<Geometry>> matMap = new HashMap<>();
+        gatherGeometries(matMap, this, true, false);
+        BatchBuild build = new BatchBuild(this, matMap, executor);
+        pendingBuild = build;
+        executor.execute(build);
+    }
+
+    /**
+     * Tests whether a batch is being built in the background.
+     *
+     * @return true if a batch is pending, otherwise false
+     * @see #batchInBackground(Executor)
+     */
+    public boolean isBatchPending() {
+        return pendingBuild != null;
+    }
+
+    @Override
+    public void updateLogicalState(float tpf) {
+        BatchBuild build = pendingBuild;
+        if (build != null && build.done) {
+            pendingBuild = null;
+            applyBuild(build);
+        }
+        super.updateLogicalState(tpf);
+    }
+
+    /**
+     * Swaps the batches built in the background in place of the current
+     * ones.
+     */
+    private void applyBuild(BatchBuild build) {
+        if (build.error != null) {
+            throw new IllegalStateException("Failed to batch " + name, build.error);
+        }
+        for (int i = 0; i < build.geometries.length; i++) {
+            Geometry geom = build.geometries[i];
+            if (geom.getMesh() != build.meshes[i] || !hasDescendant(geom)) {
+                // the scene graph changed while batching, start over
+                batchInBackground(build.executor);
+                return;
+            }
+        }
+
+        for (Batch batch : batches.getArray()) {
+            batch.geometry.removeFromParent();
+        }
+        batches.clear();
+        batchesByGeom.clear();
+
+        maxVertCount = 0;
+        for (int i = 0; i < build.materials.length; i++) {
+            Batch batch = new Batch();
+            batch.geometry = new Geometry(name + "-batch" + batches.size());
+            batch.geometry.setMaterial(build.materials[i]);
+            batch.geometry.setMesh(build.results[i]);
+            if (isWorldSpaceBatch()) {
+                batch.geometry.setIgnoreTransform(true);
+                batch.geometry.setUserData(UserData.JME_PHYSICSIGNORE, true);
+            }
+            this.attachChild(batch.geometry);
+            batches.add(batch);
+
+            int vertIndex = 0;
+            for (int j = build.groupStarts[i]; j < build.groupStarts[i + 1]; j++) {
+                Geometry geom = build.geometries[j];
+                geom.associateWithGroupNode(this, vertIndex);
+                batchesByGeom.put(geom, batch);
+                vertIndex += geom.getVertexCount();
+                maxVertCount = Math.max(maxVertCount, geom.getVertexCount());
+            }
+        }
+        for (Mesh mesh : build.results) {
+            if (mesh.getBuffer(VertexBuffer.Type.Tangent) != null) {
+                useTangents = true;
+            }
+        }
+        needsFullRebatch = batches.isEmpty();
+        initTempFloatArrays();
+
+        // catch up with the geometries which moved while batching
+        for (int i = 0; i < build.geometries.length; i++) {
+            if (!getTransformMatrix(build.geometries[i]).equals(build.transforms[i])) {
+                updateSubBatch(build.geometries[i]);
+            }
+        }
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "Batched {0} geometries in {1} batches in the background.",
+                    new Object[]{build.geometries.length, batches.size()});
+        }
+    }
+
+    /**
+     * Tests whether the batched meshes are in world space, in which case the
+     * batch geometries ignore their transform.
+     */
+    boolean isWorldSpaceBatch() {
+        return true;
+    }
+
+    private boolean hasDescendant(Spatial spatial) {
+        for (Node node = spatial.getParent(); node != null; node = node.getParent()) {
+            if (node == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected void doBatch() {
         Map<Material, List<Geometry>> matMap = new HashMap<>();
         int nbGeoms = 0;
 
-        gatherGeometries(matMap, this, needsFullRebatch);
+        gatherGeometries(matMap, this, needsFullRebatch, true);
         if (needsFullRebatch) {
             for (Batch batch : batches.getArray()) {
                 batch.geometry.removeFromParent();
@@ -279,7 +439,7 @@ public class BatchNode extends GeometryGroupNode {
     }
 
 
-    private void gatherGeometries(Map<Material, List<Geometry>> map, Spatial n, boolean rebatch) {
+    private void gatherGeometries(Map<Material, List<Geometry>> map, Spatial n, boolean rebatch, boolean refresh) {
 
         if (n instanceof Geometry) {
 
@@ -302,7 +462,9 @@ public class BatchNode extends GeometryGroupNode {
                         list = new ArrayList<Geometry>();
                         map.put(g.getMaterial(), list);
                     }
-                    g.setTransformRefresh();
+                    if (refresh) {
+                        g.setTransformRefresh();
+                    }
                     list.add(g);
                 }
             }
@@ -312,7 +474,7 @@ public class BatchNode extends GeometryGroupNode {
                 if (child instanceof BatchNode) {
                     continue;
                 }
-                gatherGeometries(map, child, rebatch);
+                gatherGeometries(map, child, rebatch, refresh);
             }
         }
 
@@ -371,6 +533,32 @@ public class BatchNode extends GeometryGroupNode {
      * @param outMesh
      */
     private void mergeGeometries(Mesh outMesh, List<Geometry> geometries) {
+        mergeMeshes(outMesh, geometries);
+        if (outMesh.getBuffer(VertexBuffer.Type.Tangent) != null) {
+            useTangents = true;
+        }
+
+        int globalVertIndex = 0;
+        for (Geometry geom : geometries) {
+            if (maxVertCount < geom.getVertexCount()) {
+                maxVertCount = geom.getVertexCount();
+            }
+            if (!isBatch(geom)) {
+                geom.associateWithGroupNode(this, globalVertIndex);
+            }
+            globalVertIndex += geom.getVertexCount();
+        }
+    }
+
+    /**
+     * Copies the meshes of the geometries, in model space, into the output
+     * mesh. Only reads the geometries, so it can be invoked from a worker
+     * thread.
+     *
+     * @param outMesh the mesh to fill (not null, modified)
+     * @param geometries the geometries to merge (not null, unaffected)
+     */
+    private static void mergeMeshes(Mesh outMesh, List<Geometry> geometries) {
         int[] compsForBuf = new int[VertexBuffer.Type.values().length];
         VertexBuffer.Format[] formatForBuf = new VertexBuffer.Format[compsForBuf.length];
         boolean[] normForBuf = new boolean[VertexBuffer.Type.values().length];
@@ -385,9 +573,6 @@ public class BatchNode extends GeometryGroupNode {
             totalVerts += geom.getVertexCount();
             totalTris += geom.getTriangleCount();
             totalLodLevels = Math.min(totalLodLevels, geom.getMesh().getNumLodLevels());
-            if (maxVertCount < geom.getVertexCount()) {
-                maxVertCount = geom.getVertexCount();
-            }
             Mesh.Mode listMode;
             //float listLineWidth = 1f;
             int components;
@@ -469,9 +654,6 @@ public class BatchNode extends GeometryGroupNode {
 
         for (Geometry geom : geometries) {
             Mesh inMesh = geom.getMesh();
-            if (!isBatch(geom)) {
-                geom.associateWithGroupNode(this, globalVertIndex);
-            }
 
             int geomVertCount = inMesh.getVertexCount();
             int geomTriCount = inMesh.getTriangleCount();
@@ -505,9 +687,6 @@ public class BatchNode extends GeometryGroupNode {
                     FloatBuffer inPos = (FloatBuffer) inBuf.getData();
                     FloatBuffer outPos = (FloatBuffer) outBuf.getData();
                     doCopyBuffer(inPos, globalVertIndex, outPos, compsForBuf[bufType]);
-                    if (VertexBuffer.Type.Tangent.ordinal() == bufType) {
-                        useTangents = true;
-                    }
                 } else {
                     if (inBuf == null) {
                         throw new IllegalArgumentException("Geometry " + geom.getName() + " has no " + outBuf.getBufferType() + " buffer whereas other geoms have. all geometries should have the same types of buffers.\n Try to use GeometryBatchFactory.alignBuffer() on the BatchNode before batching");
@@ -525,12 +704,18 @@ public class BatchNode extends GeometryGroupNode {
     }
 
     private void doTransforms(FloatBuffer bindBufPos, FloatBuffer bindBufNorm, FloatBuffer bindBufTangents, FloatBuffer bufPos, FloatBuffer bufNorm, FloatBuffer bufTangents, int start, int end, Matrix4f transform) {
+        validateTempFloatArrays(end - start);
+        doTransforms(bindBufPos, bindBufNorm, bindBufTangents, bufPos, bufNorm, bufTangents, start, end, transform,
+                tmpFloat, tmpFloatN, tmpFloatT);
+    }
+
+    private static void doTransforms(FloatBuffer bindBufPos, FloatBuffer bindBufNorm, FloatBuffer bindBufTangents, FloatBuffer bufPos, FloatBuffer bufNorm, FloatBuffer bufTangents, int start, int end, Matrix4f transform,
+            float[] tmpFloat, float[] tmpFloatN, float[] tmpFloatT) {
         TempVars vars = TempVars.get();
         Vector3f pos = vars.vect1;
         Vector3f norm = vars.vect2;
         Vector3f tan = vars.vect3;
 
-        validateTempFloatArrays(end - start);
         int length = (end - start) * 3;
         int tanLength = (end - start) * 4;
 
@@ -627,7 +812,7 @@ public class BatchNode extends GeometryGroupNode {
         }
     }
 
-    private void doCopyBuffer(FloatBuffer inBuf, int offset, FloatBuffer outBuf, int componentSize) {
+    private static void doCopyBuffer(FloatBuffer inBuf, int offset, FloatBuffer outBuf, int componentSize) {
         TempVars vars = TempVars.get();
         Vector3f pos = vars.vect1;
 
@@ -662,6 +847,7 @@ public class BatchNode extends GeometryGroupNode {
         }
 
         Geometry geometry;
+        boolean boundNeedsUpdate;
 
         public final Geometry getGeometry() {
             return geometry;
@@ -683,6 +869,105 @@ public class BatchNode extends GeometryGroupNode {
 
     }
 
+    /**
+     * A snapshot of the geometries to batch, merged and transformed into
+     * world space on a worker thread.
+     */
+    private static final class BatchBuild implements Runnable {
+
+        final Executor executor;
+        final Material[] materials;
+        final int[] groupStarts;
+        final Geometry[] geometries;
+        final Mesh[] meshes;
+        final Matrix4f[] transforms;
+        Mesh[] results;
+        Throwable error;
+        volatile boolean done;
+
+        BatchBuild(BatchNode node, Map<Material, List<Geometry>> matMap, Executor executor) {
+            this.executor = executor;
+            int count = 0;
+            for (List<Geometry> list : matMap.values()) {
+                count += list.size();
+            }
+            materials = new Material[matMap.size()];
+            groupStarts = new int[materials.length + 1];
+            geometries = new Geometry[count];
+            meshes = new Mesh[count];
+            transforms = new Matrix4f[count];
+
+            int group = 0;
+            int index = 0;
+            for (Map.Entry<Material, List<Geometry>> entry : matMap.entrySet()) {
+                materials[group] = entry.getKey();
+                groupStarts[group++] = index;
+                for (Geometry geom : entry.getValue()) {
+                    geometries[index] = geom;
+                    meshes[index] = geom.getMesh();
+                    transforms[index++] = node.getTransformMatrix(geom).clone();
+                }
+            }
+            groupStarts[group] = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                results = new Mesh[materials.length];
+                for (int i = 0; i < materials.length; i++) {
+                    results[i] = build(groupStarts[i], groupStarts[i + 1]);
+                }
+            } catch (RuntimeException | Error exception) {
+                error = exception;
+            } finally {
+                done = true;
+            }
+        }
+
+        private Mesh build(int start, int end) {
+            Mesh mesh = new Mesh();
+            mergeMeshes(mesh, Arrays.asList(geometries).subList(start, end));
+            mesh.setDynamic();
+
+            FloatBuffer posBuf = getData(mesh, VertexBuffer.Type.Position);
+            FloatBuffer normBuf = getData(mesh, VertexBuffer.Type.Normal);
+            FloatBuffer tanBuf = getData(mesh, VertexBuffer.Type.Tangent);
+            int maxVerts = 0;
+            for (int i = start; i < end; i++) {
+                maxVerts = Math.max(maxVerts, meshes[i].getVertexCount());
+            }
+            float[] tmpPos = new float[maxVerts * 3];
+            float[] tmpNorm = new float[maxVerts * 3];
+            float[] tmpTan = tanBuf != null ? new float[maxVerts * 4] : null;
+
+            int vertIndex = 0;
+            for (int i = start; i < end; i++) {
+                int vertCount = meshes[i].getVertexCount();
+                // duplicates, so that the positions of shared buffers are untouched
+                FloatBuffer bindPos = duplicate(meshes[i], VertexBuffer.Type.Position);
+                FloatBuffer bindNorm = normBuf != null ? duplicate(meshes[i], VertexBuffer.Type.Normal) : null;
+                FloatBuffer bindTan = tanBuf != null ? duplicate(meshes[i], VertexBuffer.Type.Tangent) : null;
+                doTransforms(bindPos, bindNorm, bindTan, posBuf, normBuf, tanBuf, vertIndex, vertIndex + vertCount,
+                        transforms[i], tmpPos, tmpNorm, tmpTan);
+                vertIndex += vertCount;
+            }
+
+            mesh.updateCounts();
+            mesh.updateBound();
+            return mesh;
+        }
+
+        private static FloatBuffer getData(Mesh mesh, VertexBuffer.Type type) {
+            VertexBuffer vb = mesh.getBuffer(type);
+            return vb == null ? null : (FloatBuffer) vb.getData();
+        }
+
+        private static FloatBuffer duplicate(Mesh mesh, VertexBuffer.Type type) {
+            return ((FloatBuffer) mesh.getBuffer(type).getData()).duplicate();
+        }
+    }
+
     protected void setNeedsFullRebatch(boolean needsFullRebatch) {
         this.needsFullRebatch = needsFullRebatch;
     }
@@ -715,6 +1000,8 @@ public class BatchNode extends GeometryGroupNode {
         super.cloneFields(cloner, original);
 
         this.batches = cloner.clone(batches);
+        // the background build targets the original geometries
+        this.pendingBuild = null;
         this.tmpFloat = cloner.clone(tmpFloat);
         this.tmpFloatN = cloner.clone(tmpFloatN);
         this.tmpFloatT = cloner.clone(tmpFloatT);
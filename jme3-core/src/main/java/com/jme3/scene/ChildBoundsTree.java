@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bounding volume hierarchy over the world bounds of the children of a
+ * <code>Node</code>, used to reject whole clusters of children at once when
+ * culling or picking.
+ *
+ * <p>The tree is built top-down, splitting the children at the median of
+ * their bound centers along the largest axis, and stores its boxes in flat
+ * float arrays. When the world bound of the node is updated the boxes are
+ * refitted, keeping the topology; the tree is rebuilt only after the children
+ * changed, or when refitting made the boxes grow too much.
+ *
+ * <p>Queries return candidates, in child order: a superset of the children
+ * which pass their own culling or collision test. Children without a world
+ * bound, with {@link Spatial.CullHint#Never} or in the
+ * {@link Bucket#Gui Gui bucket} are always returned.
+ */
+final class ChildBoundsTree {
+
+    /**
+     * Maximum number of children in a leaf of the tree.
+     */
+    private static final int LEAF_SIZE = 4;
+    /**
+     * The tree is rebuilt when the total surface of its boxes grows beyond
+     * this factor of its surface right after the last build.
+     */
+    private static final float REBUILD_RATIO = 2f;
+    /**
+     * Relative padding of the boxes, so that rounding never makes a box
+     * smaller than the bounds it contains.
+     */
+    private static final float PADDING = 1e-5f;
+
+    private final Node node;
+    private boolean valid;
+
+    // per child, indexed by child index
+    private float[] childMin = new float[0];
+    private float[] childMax = new float[0];
+    private float[] centers = new float[0];
+
+    // children in the tree, in leaf order, then the always returned ones
+    private int[] items = new int[0];
+    private int boundedCount;
+    private int childCount;
+
+    // tree nodes in pre-order: the left child of an internal node directly
+    // follows it, rights[] holds the right child or -1 for a leaf
+    private int nodeCount;
+    private int[] rights = new int[0];
+    private int[] starts = new int[0];
+    private int[] ends = new int[0];
+    private float[] mins = new float[0];
+    private float[] maxs = new float[0];
+    private float builtArea;
+
+    private final BoundingBox box = new BoundingBox();
+    private final ArrayList<Spatial> candidates = new ArrayList<>();
+    private int[] candidateIndices = new int[0];
+
+    /**
+     * Creates a tree for the children of the given node. It's built on the
+     * next {@link #update()}.
+     *
+     * @param node the node (not null, alias created)
+     */
+    ChildBoundsTree(Node node) {
+        this.node = node;
+    }
+
+    /**
+     * Marks the tree for a rebuild, after a child was attached, detached or
+     * reordered, or after the culling settings of a child changed.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Tests whether the tree matches the children and their world bounds.
+     *
+     * @return true if the tree can be queried, otherwise false
+     */
+    boolean isValid() {
+        return valid && node.refreshFlags == 0;
+    }
+
+    /**
+     * Refits the tree to the current world bounds of the children, or
+     * rebuilds it when needed. The world bounds of the children must be up
+     * to date.
+     */
+    void update() {
+        if (!valid || !refit()) {
+            build();
+        }
+    }
+
+    private static boolean isBounded(Spatial child) {
+        BoundingVolume bound = child.worldBound;
+        if (!(bound instanceof BoundingBox) && !(bound instanceof BoundingSphere)) {
+            return false;
+        }
+        return child.cullHint != Spatial.CullHint.Never && child.queueBucket != Bucket.Gui;
+    }
+
+    /**
+     * Stores the box of a child.
+     *
+     * @return false if the child can't be in the tree
+     */
+    private boolean loadChildBox(Spatial child, int index) {
+        if (!isBounded(child)) {
+            return false;
+        }
+        BoundingVolume bound = child.worldBound;
+        Vector3f center = bound.getCenter();
+        float x, y, z;
+        if (bound instanceof BoundingBox) {
+            BoundingBox bb = (BoundingBox) bound;
+            x = bb.getXExtent();
+            y = bb.getYExtent();
+            z = bb.getZExtent();
+        } else {
+            x = y = z = ((BoundingSphere) bound).getRadius();
+        }
+        int i = index * 3;
+        x += (Math.abs(center.x) + x) * PADDING;
+        y += (Math.abs(center.y) + y) * PADDING;
+        z += (Math.abs(center.z) + z) * PADDING;
+        childMin[i] = center.x - x;
+        childMin[i + 1] = center.y - y;
+        childMin[i + 2] = center.z - z;
+        childMax[i] = center.x + x;
+        childMax[i + 1] = center.y + y;
+        childMax[i + 2] = center.z + z;
+        centers[i] = center.x;
+        centers[i + 1] = center.y;
+        centers[i + 2] = center.z;
+        return true;
+    }
+
+    private void build() {
+        Spatial[] children = node.children.getArray();
+        childCount = children.length;
+        if (items.length < childCount) {
+            int size = Math.max(childCount, items.length * 2);
+            items = new int[size];
+            childMin = new float[size * 3];
+            childMax = new float[size * 3];
+            centers = new float[size * 3];
+            // leaves hold at least 2 children
+            int maxNodes = size + 1;
+            rights = new int[maxNodes];
+            starts = new int[maxNodes];
+            ends = new int[maxNodes];
+            mins = new float[maxNodes * 3];
+            maxs = new float[maxNodes * 3];
+        }
+
+        boundedCount = 0;
+        int last = childCount;
+        for (int i = 0; i < childCount; i++) {
+            if (loadChildBox(children[i], i)) {
+                items[boundedCount++] = i;
+            } else {
+                items[--last] = i;
+            }
+        }
+        // keep the unbounded children in child order
+        Arrays.sort(items, boundedCount, childCount);
+
+        nodeCount = 0;
+        if (boundedCount > 0) {
+            buildNode(0, boundedCount);
+        }
+        builtArea = computeArea();
+        valid = true;
+    }
+
+    private int buildNode(int start, int end) {
+        int index = nodeCount++;
+        fitLeafBox(index, start, end);
+        starts[index] = start;
+        ends[index] = end;
+        if (end - start <= LEAF_SIZE) {
+            rights[index] = -1;
+            return index;
+        }
+
+        // split along the largest axis of the box
+        int i = index * 3;
+        int axis = 0;
+        float size = maxs[i] - mins[i];
+        for (int a = 1; a < 3; a++) {
+            if (maxs[i + a] - mins[i + a] > size) {
+                size = maxs[i + a] - mins[i + a];
+                axis = a;
+            }
+        }
+        int mid = (start + end) >>> 1;
+        select(start, end - 1, mid, axis);
+        buildNode(start, mid);
+        rights[index] = buildNode(mid, end);
+        return index;
+    }
+
+    /**
+     * Partially sorts items[left..right] so that the item at k has the k-th
+     * smallest center along the axis.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            float pivot = centers[items[(left + right) >>> 1] * 3 + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (centers[items[i] * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (centers[items[j] * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int temp = items[i];
+                    items[i++] = items[j];
+                    items[j--] = temp;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Refits the boxes to the world bounds of the children.
+     *
+     * @return false if the tree must be rebuilt instead
+     */
+    private boolean refit() {
+        Spatial[] children = node.children.getArray();
+        if (children.length != childCount) {
+            return false;
+        }
+        for (int i = 0; i < boundedCount; i++) {
+            int child = items[i];
+            if (!loadChildBox(children[child], child)) {
+                return false;
+            }
+        }
+        for (int i = boundedCount; i < childCount; i++) {
+            if (isBounded(children[items[i]])) {
+                return false;
+            }
+        }
+
+        // children have higher indices than their parent
+        for (int index = nodeCount - 1; index >= 0; index--) {
+            int right = rights[index];
+            if (right < 0) {
+                fitLeafBox(index, starts[index], ends[index]);
+            } else {
+                int i = index * 3;
+                int l = (index + 1) * 3;
+                int r = right * 3;
+                for (int a = 0; a < 3; a++) {
+                    mins[i + a] = Math.min(mins[l + a], mins[r + a]);
+                    maxs[i + a] = Math.max(maxs[l + a], maxs[r + a]);
+                }
+            }
+        }
+        return computeArea() <= builtArea * REBUILD_RATIO;
+    }
+
+    private void fitLeafBox(int index, int start, int end) {
+        int i = index * 3;
+        for (int a = 0; a < 3; a++) {
+            mins[i + a] = Float.POSITIVE_INFINITY;
+            maxs[i + a] = Float.NEGATIVE_INFINITY;
+        }
+        for (int j = start; j < end; j++) {
+            int c = items[j] * 3;
+            for (int a = 0; a < 3; a++) {
+                mins[i + a] = Math.min(mins[i + a], childMin[c + a]);
+                maxs[i + a] = Math.max(maxs[i + a], childMax[c + a]);
+            }
+        }
+    }
+
+    private float computeArea() {
+        float area = 0f;
+        for (int index = 0; index < nodeCount; index++) {
+            int i = index * 3;
+            float x = maxs[i] - mins[i];
+            float y = maxs[i + 1] - mins[i + 1];
+            float z = maxs[i + 2] - mins[i + 2];
+            area += x * y + y * z + z * x;
+        }
+        return area;
+    }
+
+    /**
+     * Collects the children which may be inside the frustum of the camera.
+     * The plane state of the camera is restored before returning.
+     *
+     * @param cam the camera (not null)
+     * @return the candidates, in child order (reused by the next call)
+     */
+    List<Spatial> cull(Camera cam) {
+        int planeState = cam.getPlaneState();
+        int count = 0;
+        if (nodeCount > 0) {
+            count = cullNode(cam, 0, planeState, 0);
+        }
+        cam.setPlaneState(planeState);
+        return collect(count);
+    }
+
+    private int cullNode(Camera cam, int index, int planeState, int count) {
+        int i = index * 3;
+        box.getCenter().set((mins[i] + maxs[i]) * 0.5f, (mins[i + 1] + maxs[i + 1]) * 0.5f,
+                (mins[i + 2] + maxs[i + 2]) * 0.5f);
+        box.setXExtent((maxs[i] - mins[i]) * 0.5f);
+        box.setYExtent((maxs[i + 1] - mins[i + 1]) * 0.5f);
+        box.setZExtent((maxs[i + 2] - mins[i + 2]) * 0.5f);
+        cam.setPlaneState(planeState);
+        Camera.FrustumIntersect intersect = cam.contains(box);
+        if (intersect == Camera.FrustumIntersect.Outside) {
+            return count;
+        }
+        int right = rights[index];
+        if (right < 0 || intersect == Camera.FrustumIntersect.Inside) {
+            return addItems(starts[index], ends[index], count);
+        }
+        int state = cam.getPlaneState();
+        count = cullNode(cam, index + 1, state, count);
+        return cullNode(cam, right, state, count);
+    }
+
+    private int addItems(int start, int end, int count) {
+        if (count + end - start > candidateIndices.length) {
+            candidateIndices = Arrays.copyOf(candidateIndices,
+                    Math.max(count + end - start, candidateIndices.length * 2));
+        }
+        System.arraycopy(items, start, candidateIndices, count, end - start);
+        return count + end - start;
+    }
+
+    private List<Spatial> collect(int count) {
+        count = addItems(boundedCount, childCount, count);
+        Arrays.sort(candidateIndices, 0, count);
+        candidates.clear();
+        Spatial[] children = node.children.getArray();
+        for (int i = 0; i < count; i++) {
+            candidates.add(children[candidateIndices[i]]);
+        }
+        return candidates;
+    }
+
+    /**
+     * Collects the children whose world bound may be hit by the ray. Unlike
+     * {@link #cull(Camera)}, this doesn't reuse any buffer, so that picking
+     * may run concurrently with the render thread.
+     *
+     * @param ray the ray (not null, unaffected)
+     * @return a new list of candidates, in child order
+     */
+    List<Spatial> collide(Ray ray) {
+        int[] found = new int[16];
+        int count = 0;
+        if (nodeCount > 0) {
+            int[] stack = new int[64];
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int index = stack[--top];
+                if (!intersects(ray, index)) {
+                    continue;
+                }
+                int right = rights[index];
+                if (right >= 0) {
+                    if (top + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = right;
+                    stack[top++] = index + 1;
+                    continue;
+                }
+                for (int j = starts[index]; j < ends[index]; j++) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = items[j];
+                }
+            }
+        }
+
+        int total = count + childCount - boundedCount;
+        if (total > found.length) {
+            found = Arrays.copyOf(found, total);
+        }
+        System.arraycopy(items, boundedCount, found, count, childCount - boundedCount);
+        Arrays.sort(found, 0, total);
+        Spatial[] children = node.children.getArray();
+        List<Spatial> result = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            result.add(children[found[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Slab test of the ray against the box of a tree node, ignoring the limit
+     * of the ray.
+     */
+    private boolean intersects(Ray ray, int index) {
+        Vector3f origin = ray.getOrigin();
+        Vector3f direction = ray.getDirection();
+        int i = index * 3;
+        float near = 0f;
+        float far = Float.POSITIVE_INFINITY;
+        for (int a = 0; a < 3; a++) {
+            float o = origin.get(a);
+            float d = direction.get(a);
+            float min = mins[i + a];
+            float max = maxs[i + a];
+            if (d == 0f) {
+                if (o < min || o > max) {
+                    return false;
+                }
+                continue;
+            }
+            float t1 = (min - o) / d;
+            float t2 = (max - o) / d;
+            if (t1 > t2) {
+                float temp = t1;
+                t1 = t2;
+                t2 = temp;
+            }
+            near = Math.max(near, t1);
+            far = Math.min(far, t2);
+            if (near > far) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -40,6 +40,7 @@ import com.jme3.export.JmeExporter;
 import com.jme3.export.JmeImporter;
 import com.jme3.export.OutputCapsule;
 import com.jme3.material.Material;
+import com.jme3.math.Matrix3f;
 import com.jme3.math.Matrix4f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.VertexBuffer.Type;
@@ -423,14 +424,11 @@ public class Geometry extends Spatial {
         if (ignoreTransform) {
             return;
         }
-        cachedWorldMat.setRotationQuaternion(worldTransform.getRotation());
-        cachedWorldMat.setTranslation(worldTransform.getTranslation());
 
+        // scale, then rotate, then translate, without a full matrix product
         TempVars vars = TempVars.get();
-        Matrix4f scaleMat = vars.tempMat4;
-        scaleMat.loadIdentity();
-        scaleMat.scale(worldTransform.getScale());
-        cachedWorldMat.multLocal(scaleMat);
+        Matrix3f rotation = worldTransform.getRotation().toRotationMatrix(vars.tempMat3);
+        cachedWorldMat.setTransform(worldTransform.getTranslation(), worldTransform.getScale(), rotation);
         vars.release();
     }
 
@@ -38,6 +38,9 @@ import com.jme3.collision.CollisionResults;
 import com.jme3.export.JmeExporter;
 import com.jme3.export.JmeImporter;
 import com.jme3.material.Material;
+import com.jme3.math.Ray;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.util.SafeArrayList;
 import com.jme3.util.clone.Cloner;
 import java.io.IOException;
@@ -77,6 +80,10 @@ public class Node extends Spatial {
      * a whole list every time the scene graph changes.
      */
     private boolean updateListValid = false;
+    /**
+     * The bounding volume hierarchy over the children, or null if disabled.
+     */
+    private ChildBoundsTree childBoundsTree = null;
 
     /**
      * Instantiate a <code>Node</code> with no name, no parent, and no children.
@@ -169,6 +176,10 @@ public class Node extends Spatial {
             resultBound = new BoundingBox(getWorldTranslation(), 0f, 0f, 0f);
         }
         this.worldBound = resultBound;
+
+        if (childBoundsTree != null) {
+            childBoundsTree.update();
+        }
     }
 
     @Override
@@ -240,6 +251,74 @@ public class Node extends Spatial {
         }
     }
 
+    /**
+     * Enables or disables the bounding volume hierarchy over the children of
+     * this node. When enabled, the world bounds of the children are kept in a
+     * tree, refitted whenever the world bound of this node is updated, so
+     * that culling and picking with a {@link Ray} reject whole clusters of
+     * children at once instead of testing every child.
+     *
+     * <p>This pays off for nodes with many spatially clustered children.
+     *
+     * @param enabled true to enable the tree, false to disable it
+     *     (default=false)
+     */
+    public void setChildBoundsTreeEnabled(boolean enabled) {
+        if (enabled && childBoundsTree == null) {
+            childBoundsTree = new ChildBoundsTree(this);
+            if (refreshFlags == 0) {
+                childBoundsTree.update();
+            }
+        } else if (!enabled) {
+            childBoundsTree = null;
+        }
+    }
+
+    /**
+     * Tests whether the bounding volume hierarchy over the children of this
+     * node is enabled.
+     *
+     * @return true if enabled, otherwise false
+     * @see #setChildBoundsTreeEnabled(boolean)
+     */
+    public boolean isChildBoundsTreeEnabled() {
+        return childBoundsTree != null;
+    }
+
+    /**
+     * (Internal use only) Returns the children of this node which may be
+     * inside the frustum of the given camera, in child order. Once this node
+     * passed its own culling test, the children which are not returned would
+     * be culled anyway.
+     *
+     * <p>Without a {@link #setChildBoundsTreeEnabled(boolean) tree}, or when
+     * the tree can't be used, all the children are returned.
+     *
+     * @param cam the camera to cull against (not null, plane state restored)
+     * @return the candidates (not null, must not be modified)
+     */
+    public List<Spatial> getCullingCandidates(Camera cam) {
+        if (childBoundsTree == null || refreshFlags != 0
+                || frustrumIntersects == Camera.FrustumIntersect.Inside
+                || getCullHint() != CullHint.Dynamic || getQueueBucket() == Bucket.Gui) {
+            return children;
+        }
+        if (!childBoundsTree.isValid()) {
+            childBoundsTree.update();
+        }
+        return childBoundsTree.cull(cam);
+    }
+
+    /**
+     * Called when a child was attached, detached or reordered, or when the
+     * culling settings of a child changed.
+     */
+    void invalidateChildBoundsTree() {
+        if (childBoundsTree != null) {
+            childBoundsTree.invalidate();
+        }
+    }
+
     @Override
     public void updateGeometricState() {
         if (refreshFlags == 0) {
@@ -367,6 +446,7 @@ public class Node extends Spatial {
                         new Object[]{child.getName(), getName()});
             }
             invalidateUpdateList();
+            invalidateChildBoundsTree();
         }
         return children.size();
     }
@@ -446,6 +526,7 @@ public class Node extends Spatial {
             child.setMatParamOverrideRefresh();
 
             invalidateUpdateList();
+            invalidateChildBoundsTree();
         }
         return child;
     }
@@ -488,6 +569,7 @@ public class Node extends Spatial {
         children.add(index1, c2);
         children.remove(index2);
         children.add(index2, c1);
+        invalidateChildBoundsTree();
     }
 
     /**
@@ -615,6 +697,13 @@ public class Node extends Spatial {
           if (bv.collideWith(other) == 0) return 0;
         }
         */
+        if (other instanceof Ray && childBoundsTree != null && childBoundsTree.isValid()) {
+            // only the children whose bound may be hit
+            for (Spatial child : childBoundsTree.collide((Ray) other)) {
+                total += child.collideWith(other, results);
+            }
+            return total;
+        }
         for (Spatial child : children.getArray()) {
             total += child.collideWith(other, results);
         }
@@ -749,6 +838,10 @@ public class Node extends Spatial {
         // or not... after all, we might be cloning a root node in which case
         // cloning this list is fine.
         this.updateList = cloner.clone(updateList);
+
+        if (childBoundsTree != null) {
+            childBoundsTree = new ChildBoundsTree(this);
+        }
     }
 
     @Override
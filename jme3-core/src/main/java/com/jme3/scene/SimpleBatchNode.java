@@ -96,4 +96,9 @@ public class SimpleBatchNode extends BatchNode {
     public void batch() {
         doBatch();
     }
+
+    @Override
+    boolean isWorldSpaceBatch() {
+        return false;
+    }
 }
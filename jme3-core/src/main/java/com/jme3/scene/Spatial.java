@@ -1689,6 +1689,9 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      */
     public void setCullHint(CullHint hint) {
         cullHint = hint;
+        if (parent != null) {
+            parent.invalidateChildBoundsTree();
+        }
     }
 
     /**
@@ -1729,6 +1732,9 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      */
     public void setQueueBucket(RenderQueue.Bucket queueBucket) {
         this.queueBucket = queueBucket;
+        if (parent != null) {
+            parent.invalidateChildBoundsTree();
+        }
     }
 
     /**
@@ -332,6 +332,12 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
     protected boolean normalized = false;
     protected int instanceSpan = 0;
     protected transient boolean dataSizeChanged = false;
+    /**
+     * the range of elements to send to the GPU, when only part of the data
+     * has been modified, otherwise -1
+     */
+    protected transient int updateRangeStart = -1;
+    protected transient int updateRangeEnd = -1;
     protected String name;
 
     /**
@@ -720,10 +726,70 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         return dataSizeChanged;
     }
 
+    /**
+     * Indicates that only the given range of elements of the data buffer has
+     * been modified, so the renderer may send just that range to the GPU.
+     * Successive ranges are merged until the next update. If the whole
+     * buffer must already be sent, this has no further effect.
+     *
+     * @param startElement the index of the first modified element (&ge;0)
+     * @param numElements the number of modified elements (&ge;0)
+     * @see #updateData(java.nio.Buffer)
+     */
+    public void updateDataRange(int startElement, int numElements) {
+        if (startElement < 0 || numElements < 0) {
+            throw new IllegalArgumentException("Invalid range: " + startElement + ", " + numElements);
+        }
+        int end = startElement + numElements;
+        if (!isUpdateNeeded()) {
+            updateRangeStart = startElement;
+            updateRangeEnd = end;
+        } else if (updateRangeStart != -1) {
+            updateRangeStart = Math.min(updateRangeStart, startElement);
+            updateRangeEnd = Math.max(updateRangeEnd, end);
+        }
+        super.setUpdateNeeded();
+    }
+
+    /**
+     * Returns the index of the first element to send to the GPU, if only a
+     * range of the data has been modified.
+     * Internal use only.
+     *
+     * @return the index of the first modified element, or -1 if the whole
+     *     buffer must be sent
+     * @see #updateDataRange(int, int)
+     */
+    public int getUpdateRangeStart() {
+        return updateRangeStart;
+    }
+
+    /**
+     * Returns the index following the last element to send to the GPU, if
+     * only a range of the data has been modified.
+     * Internal use only.
+     *
+     * @return the end of the modified range (exclusive), or -1 if the whole
+     *     buffer must be sent
+     * @see #updateDataRange(int, int)
+     */
+    public int getUpdateRangeEnd() {
+        return updateRangeEnd;
+    }
+
+    @Override
+    public void setUpdateNeeded() {
+        super.setUpdateNeeded();
+        updateRangeStart = -1;
+        updateRangeEnd = -1;
+    }
+
     @Override
     public void clearUpdateNeeded() {
         super.clearUpdateNeeded();
         dataSizeChanged = false;
+        updateRangeStart = -1;
+        updateRangeEnd = -1;
     }
 
     /**
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.control;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.Spatial.CullHint;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.TempVars;
+import com.jme3.util.clone.Cloner;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+
+/**
+ * Switches between the representations of a cluster of objects, based on the
+ * error their simplification would make on the screen.
+ *
+ * <p>The control holds a list of levels, from the most detailed to the
+ * coarsest one, each with the geometric error it makes in world units. Every
+ * frame, the error is projected at the distance of the edge of the world
+ * bound of the controlled spatial, and the coarsest level whose error stays
+ * below {@link #setMaxScreenError(float) the maximum screen error} is
+ * displayed; all the other levels are culled. The levels are usually children
+ * of the controlled spatial: the first level holds the original objects (with
+ * an error of 0), possibly themselves grouped in smaller clusters with their
+ * own <code>HlodControl</code>.
+ *
+ * <p>The coarsest level may be an impostor: a quad textured with one of
+ * several views of the cluster baked around the Y axis, in cells of an atlas.
+ * When it is displayed, the texture coordinates of its mesh are updated to
+ * show the view closest to the direction of the camera.
+ *
+ * <p>The levels are built by {@link jme3tools.optimize.HlodGenerator}.
+ */
+public class HlodControl extends AbstractControl {
+
+    private Spatial[] levels = new Spatial[0];
+    private float[] errors = new float[0];
+    private float maxScreenError = 2f;
+    private Geometry impostor;
+    private int impostorViews;
+    private int impostorCell;
+    private int atlasColumns = 1;
+    private int atlasRows = 1;
+    private transient int currentLevel = -1;
+    private transient int currentView = -1;
+
+    /**
+     * Creates a new <code>HlodControl</code> with no level.
+     */
+    public HlodControl() {
+    }
+
+    /**
+     * Adds a level, coarser than the ones already added.
+     *
+     * @param level the spatial displayed at this level (not null)
+     * @param geometricError the error made by this level, in world units
+     * (&ge;0, not less than the error of the previous level)
+     */
+    public void addLevel(Spatial level, float geometricError) {
+        if (geometricError < 0
+                || (errors.length > 0 && geometricError < errors[errors.length - 1])) {
+            throw new IllegalArgumentException("The levels must be added from"
+                    + " the finest to the coarsest");
+        }
+        Spatial[] newLevels = new Spatial[levels.length + 1];
+        float[] newErrors = new float[errors.length + 1];
+        System.arraycopy(levels, 0, newLevels, 0, levels.length);
+        System.arraycopy(errors, 0, newErrors, 0, errors.length);
+        newLevels[levels.length] = level;
+        newErrors[errors.length] = geometricError;
+        levels = newLevels;
+        errors = newErrors;
+        currentLevel = -1;
+    }
+
+    /**
+     * Returns the number of levels.
+     *
+     * @return the number of levels (&ge;0)
+     */
+    public int getNumLevels() {
+        return levels.length;
+    }
+
+    /**
+     * Returns the spatial displayed at the specified level.
+     *
+     * @param index the level index (0 being the most detailed)
+     * @return the pre-existing spatial
+     */
+    public Spatial getLevel(int index) {
+        return levels[index];
+    }
+
+    /**
+     * Returns the geometric error of the specified level.
+     *
+     * @param index the level index (0 being the most detailed)
+     * @return the error in world units
+     */
+    public float getGeometricError(int index) {
+        return errors[index];
+    }
+
+    /**
+     * Returns the index of the level displayed during the last render.
+     *
+     * @return the level index, or -1 if not rendered yet
+     */
+    public int getCurrentLevel() {
+        return currentLevel;
+    }
+
+    /**
+     * Returns the maximum error allowed on the screen.
+     *
+     * @return the error in pixels
+     * @see #setMaxScreenError(float)
+     */
+    public float getMaxScreenError() {
+        return maxScreenError;
+    }
+
+    /**
+     * Sets the maximum error allowed on the screen. The coarsest level whose
+     * geometric error, projected on the screen, stays below this value is
+     * displayed. The default value is 2.
+     *
+     * @param maxScreenError the error in pixels (&ge;0)
+     */
+    public void setMaxScreenError(float maxScreenError) {
+        this.maxScreenError = maxScreenError;
+    }
+
+    /**
+     * Declares the coarsest level as an impostor, whose views around the Y
+     * axis are stored in consecutive cells of an atlas, row by row starting
+     * from the bottom left. The view <code>i</code> is seen from the
+     * direction (sin(a), 0, cos(a)) of the local space, with
+     * <code>a = 2 * PI * i / views</code>.
+     *
+     * @param impostor the quad displaying the views, whose mesh has 4 vertices
+     * ordered bottom-left, bottom-right, top-right, top-left (not null)
+     * @param views the number of views (&gt;0)
+     * @param firstCell the index of the cell of the first view
+     * @param columns the number of cells in a row of the atlas (&gt;0)
+     * @param rows the number of rows of the atlas (&gt;0)
+     */
+    public void setImpostor(Geometry impostor, int views, int firstCell,
+            int columns, int rows) {
+        if (levels.length == 0 || levels[levels.length - 1] != impostor) {
+            throw new IllegalArgumentException("The impostor must be the coarsest level");
+        }
+        this.impostor = impostor;
+        this.impostorViews = views;
+        this.impostorCell = firstCell;
+        this.atlasColumns = columns;
+        this.atlasRows = rows;
+        currentView = -1;
+    }
+
+    /**
+     * Returns the impostor, if any.
+     *
+     * @return the pre-existing quad, or null if the coarsest level isn't an
+     * impostor
+     */
+    public Geometry getImpostor() {
+        return impostor;
+    }
+
+    @Override
+    protected void controlUpdate(float tpf) {
+    }
+
+    @Override
+    protected void controlRender(RenderManager rm, ViewPort vp) {
+        if (levels.length == 0) {
+            return;
+        }
+        Camera cam = vp.getCamera();
+        BoundingVolume bound = spatial.getWorldBound();
+        int level = 0;
+        if (bound != null) {
+            float pixelsPerUnit;
+            if (cam.isParallelProjection()) {
+                pixelsPerUnit = cam.getHeight() / (cam.getFrustumTop() - cam.getFrustumBottom());
+            } else {
+                float distance = bound.distanceToEdge(cam.getLocation());
+                pixelsPerUnit = distance <= 0 ? Float.POSITIVE_INFINITY
+                        : cam.getHeight() * cam.getFrustumNear()
+                        / (2f * distance * cam.getFrustumTop());
+            }
+            for (int i = levels.length - 1; i > 0; i--) {
+                if (errors[i] * pixelsPerUnit <= maxScreenError) {
+                    level = i;
+                    break;
+                }
+            }
+        }
+
+        if (level != currentLevel) {
+            for (int i = 0; i < levels.length; i++) {
+                levels[i].setCullHint(i == level ? CullHint.Inherit : CullHint.Always);
+            }
+            currentLevel = level;
+        }
+        if (impostor != null && levels[level] == impostor) {
+            updateImpostorView(cam.getLocation());
+        }
+    }
+
+    private void updateImpostorView(Vector3f camLocation) {
+        TempVars vars = TempVars.get();
+        // the quad is only rotated around Y by its billboard control, so the
+        // direction is measured in the space of its parent
+        Vector3f dir = vars.vect1.set(camLocation);
+        if (impostor.getParent() != null) {
+            impostor.getParent().worldToLocal(camLocation, dir);
+        }
+        dir.subtractLocal(impostor.getLocalTranslation());
+        float angle = FastMath.atan2(dir.x, dir.z);
+        vars.release();
+
+        if (angle < 0) {
+            angle += FastMath.TWO_PI;
+        }
+        int view = Math.round(angle * impostorViews / FastMath.TWO_PI) % impostorViews;
+        if (view == currentView) {
+            return;
+        }
+        currentView = view;
+
+        int cell = impostorCell + view;
+        float u0 = (cell % atlasColumns) / (float) atlasColumns;
+        float v0 = (cell / atlasColumns) / (float) atlasRows;
+        float u1 = u0 + 1f / atlasColumns;
+        float v1 = v0 + 1f / atlasRows;
+        Mesh mesh = impostor.getMesh();
+        VertexBuffer texCoords = mesh.getBuffer(VertexBuffer.Type.TexCoord);
+        FloatBuffer data = (FloatBuffer) texCoords.getData();
+        data.put(0, u0).put(1, v0);
+        data.put(2, u1).put(3, v0);
+        data.put(4, u1).put(5, v1);
+        data.put(6, u0).put(7, v1);
+        texCoords.setUpdateNeeded();
+    }
+
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        super.cloneFields(cloner, original);
+        levels = cloner.clone(levels);
+        errors = errors.clone();
+        impostor = cloner.clone(impostor);
+        currentLevel = -1;
+        currentView = -1;
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+        super.write(ex);
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.write(levels, "levels", null);
+        oc.write(errors, "errors", null);
+        oc.write(maxScreenError, "maxScreenError", 2f);
+        oc.write(impostor, "impostor", null);
+        oc.write(impostorViews, "impostorViews", 0);
+        oc.write(impostorCell, "impostorCell", 0);
+        oc.write(atlasColumns, "atlasColumns", 1);
+        oc.write(atlasRows, "atlasRows", 1);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+        super.read(im);
+        InputCapsule ic = im.getCapsule(this);
+        Savable[] savables = ic.readSavableArray("levels", null);
+        if (savables == null) {
+            levels = new Spatial[0];
+        } else {
+            levels = new Spatial[savables.length];
+            System.arraycopy(savables, 0, levels, 0, savables.length);
+        }
+        errors = ic.readFloatArray("errors", new float[0]);
+        maxScreenError = ic.readFloat("maxScreenError", 2f);
+        impostor = (Geometry) ic.readSavable("impostor", null);
+        impostorViews = ic.readInt("impostorViews", 0);
+        impostorCell = ic.readInt("impostorCell", 0);
+        atlasColumns = ic.readInt("atlasColumns", 1);
+        atlasRows = ic.readInt("atlasRows", 1);
+    }
+}
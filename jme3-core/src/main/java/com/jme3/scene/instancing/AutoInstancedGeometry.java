@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.instancing;
+
+import com.jme3.material.MatParam;
+import com.jme3.material.Material;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.TempVars;
+import java.nio.FloatBuffer;
+
+/**
+ * An <code>InstancedGeometry</code> used by the
+ * {@link com.jme3.renderer.RenderManager} to draw a run of geometries sharing
+ * the same mesh and material with a single instanced draw call, when
+ * {@link com.jme3.renderer.RenderManager#setAutoInstancingEnabled(boolean)
+ * auto instancing} is enabled.
+ *
+ * <p>Unlike with an {@link InstancedNode}, the geometries stay where they are
+ * in the scene graph: their world matrices are packed into the instance data
+ * right before the draw.
+ *
+ * <p><em>Internal use only.</em>
+ */
+public class AutoInstancedGeometry extends InstancedGeometry {
+
+    private int numInstances;
+
+    /**
+     * Creates an empty auto instanced geometry.
+     */
+    public AutoInstancedGeometry() {
+        super("AutoInstancedGeometry");
+    }
+
+    /**
+     * Tests whether the specified geometry can be drawn as an instance: it
+     * must have a transform and its material must have the "UseInstancing"
+     * parameter set to true.
+     *
+     * @param geom the geometry to test (not null, unaffected)
+     * @return true if it can be instanced, otherwise false
+     */
+    public static boolean canInstance(Geometry geom) {
+        if (geom instanceof InstancedGeometry || geom.isIgnoreTransform()) {
+            return false;
+        }
+        Material material = geom.getMaterial();
+        MatParam param = material.getParam("UseInstancing");
+        return param != null && Boolean.TRUE.equals(param.getValue());
+    }
+
+    /**
+     * Tests whether two geometries can be drawn by the same instanced draw
+     * call, assuming {@link #canInstance(com.jme3.scene.Geometry)} returns
+     * true for the first one.
+     *
+     * @param first the first geometry of the run (not null, unaffected)
+     * @param geom the geometry to test (not null, unaffected)
+     * @return true if both share their mesh, LOD level, material and
+     *     material parameter overrides, otherwise false
+     */
+    public static boolean isSameInstance(Geometry first, Geometry geom) {
+        if (geom.getMesh() != first.getMesh()
+                || geom.getMaterial() != first.getMaterial()
+                || geom.getLodLevel() != first.getLodLevel()
+                || geom instanceof InstancedGeometry
+                || geom.isIgnoreTransform()) {
+            return false;
+        }
+        return geom.getWorldMatParamOverrides().equals(first.getWorldMatParamOverrides());
+    }
+
+    /**
+     * Packs the world matrices of the specified geometries into the instance
+     * data, and takes the mesh, material and overrides of the first one.
+     *
+     * @param geometries the geometries to draw (not null, unaffected)
+     * @param count the number of geometries to use (&ge;1)
+     */
+    public void setInstances(Geometry[] geometries, int count) {
+        Geometry first = geometries[0];
+        Mesh mesh = first.getMesh();
+        if (getMesh() != mesh) {
+            setMesh(mesh);
+        }
+        setMaterial(first.getMaterial());
+        lodLevel = first.getLodLevel();
+        worldOverrides.clear();
+        worldOverrides.addAll(first.getWorldMatParamOverrides());
+
+        if (getMaxNumInstances() < count) {
+            setMaxNumInstances(Math.max(count, getMaxNumInstances() * 2));
+        }
+        VertexBuffer transforms = getTransformUserInstanceData();
+        FloatBuffer fb = (FloatBuffer) transforms.getData();
+        fb.clear();
+        TempVars vars = TempVars.get();
+        float[] temp = vars.matrixWrite;
+        for (int i = 0; i < count; i++) {
+            updateInstance(geometries[i].getWorldMatrix(), temp, 0, vars.tempMat3, vars.quat1);
+            fb.put(temp);
+        }
+        vars.release();
+        fb.flip();
+        transforms.updateData(fb);
+        numInstances = count;
+    }
+
+    /**
+     * Releases the material and overrides of the last run, so they can be
+     * garbage collected.
+     */
+    public void clearInstances() {
+        setMaterial(null);
+        worldOverrides.clear();
+        numInstances = 0;
+    }
+
+    @Override
+    public int getNumVisibleInstances() {
+        return numInstances;
+    }
+
+    @Override
+    public int getNumInstances() {
+        return numInstances;
+    }
+
+    @Override
+    public void updateInstances(Camera cam) {
+        // the instance data is packed by setInstances()
+    }
+}
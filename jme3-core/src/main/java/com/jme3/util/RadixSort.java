@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.util.Arrays;
+
+/**
+ * Stable least-significant-digit radix sort over unsigned 64-bit keys.
+ *
+ * Unlike {@link ListSort}, no comparator is involved: each element is given a
+ * single <code>long</code> key up front, and the elements are ordered by
+ * comparing those keys as unsigned values. Passes over bytes that are the same
+ * for every key are skipped, so keys using only a few distinct high bytes cost
+ * fewer passes.
+ *
+ * Usage : like ListSort, a RadixSort has to be instantiated and kept with the
+ * list it sorts. The temporary buffers grow with the list and are reused
+ * across calls.
+ *
+ * @param <T> the type of the sorted elements
+ */
+public class RadixSort<T> {
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int PASSES = Long.SIZE / RADIX_BITS;
+
+    private long[] keys = new long[0];
+    private long[] tmpKeys = new long[0];
+    private Object[] tmpArray = new Object[0];
+    private final int[] histograms = new int[PASSES * RADIX];
+
+    /**
+     * Returns the key buffer to fill before calling
+     * {@link #sort(java.lang.Object[], int)}. The buffer is only valid until
+     * the next call to this method.
+     *
+     * @param length the number of elements to be sorted (&ge;0)
+     * @return a buffer whose length is at least <code>length</code>
+     */
+    public long[] getKeys(int length) {
+        if (keys.length < length) {
+            int capacity = Math.max(length, keys.length * 2);
+            keys = new long[capacity];
+            tmpKeys = new long[capacity];
+            tmpArray = new Object[capacity];
+        }
+        return keys;
+    }
+
+    /**
+     * Sorts the first <code>length</code> elements of the array, using the
+     * keys previously written into {@link #getKeys(int)}: the key at index i
+     * belongs to the element at index i. Elements with equal keys keep their
+     * relative order.
+     *
+     * @param array the array to sort (not null, modified)
+     * @param length the number of elements to sort
+     */
+    @SuppressWarnings("unchecked")
+    public void sort(T[] array, int length) {
+        if (length < 2) {
+            return;
+        }
+
+        int[] counts = histograms;
+        Arrays.fill(counts, 0);
+        long[] srcKeys = keys;
+        for (int i = 0; i < length; i++) {
+            long key = srcKeys[i];
+            for (int pass = 0; pass < PASSES; pass++) {
+                counts[pass * RADIX + (int) ((key >>> (pass * RADIX_BITS)) & (RADIX - 1))]++;
+            }
+        }
+
+        Object[] src = array;
+        Object[] dst = tmpArray;
+        long[] dstKeys = tmpKeys;
+        for (int pass = 0; pass < PASSES; pass++) {
+            int offset = pass * RADIX;
+            int shift = pass * RADIX_BITS;
+
+            // all keys share this digit, the pass would not change anything
+            if (counts[offset + (int) ((srcKeys[0] >>> shift) & (RADIX - 1))] == length) {
+                continue;
+            }
+
+            int sum = 0;
+            for (int i = 0; i < RADIX; i++) {
+                int count = counts[offset + i];
+                counts[offset + i] = sum;
+                sum += count;
+            }
+
+            for (int i = 0; i < length; i++) {
+                long key = srcKeys[i];
+                int dest = counts[offset + (int) ((key >>> shift) & (RADIX - 1))]++;
+                dstKeys[dest] = key;
+                dst[dest] = src[i];
+            }
+
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            Object[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+
+        if (src != array) {
+            System.arraycopy(src, 0, array, 0, length);
+        }
+        // the temporary array must not keep references alive
+        Arrays.fill(tmpArray, 0, length, null);
+        keys = srcKeys;
+        tmpKeys = dstKeys;
+    }
+}
@@ -115,37 +115,49 @@ public class MikktspaceTangentGenerator {
 
         } else if (s instanceof Geometry) {
             Geometry g = (Geometry) s;
-            Mesh mesh = g.getMesh();
-
-            Mesh.Mode mode = mesh.getMode();
-            boolean hasTriangles;
-            switch (mode) {
-                case Points:
-                case Lines:
-                case LineStrip:
-                case LineLoop:
-                    hasTriangles = false; // skip this mesh
-                    break;
-
-                case Triangles:
-                case TriangleFan:
-                case TriangleStrip:
-                    hasTriangles = true;
-                    break;
-
-                default:
-                    String message = "Tangent generation isn't implemented for mode=" + mode;
-                    throw new UnsupportedOperationException(message);
+            if (!generate(g.getMesh())) {
+                logger.log(Level.SEVERE, "Failed to generate tangents for geometry {0}", g.getName());
             }
+        }
+    }
 
-            if (hasTriangles) {
-                MikkTSpaceImpl context = new MikkTSpaceImpl(mesh);
-                if (!genTangSpaceDefault(context)) {
-                    logger.log(Level.SEVERE, "Failed to generate tangents for geometry {0}", g.getName());
-                }
-                TangentUtils.generateBindPoseTangentsIfNecessary(mesh);
-            }
+    /**
+     * Generates the tangents of a mesh, replacing any existing ones. Meshes
+     * made of points or lines are left unchanged. Distinct meshes can be
+     * processed concurrently.
+     *
+     * @param mesh the mesh to process (not null)
+     * @return false if the generation failed, otherwise true
+     */
+    public static boolean generate(Mesh mesh) {
+        Mesh.Mode mode = mesh.getMode();
+        boolean hasTriangles;
+        switch (mode) {
+            case Points:
+            case Lines:
+            case LineStrip:
+            case LineLoop:
+                hasTriangles = false; // skip this mesh
+                break;
+
+            case Triangles:
+            case TriangleFan:
+            case TriangleStrip:
+                hasTriangles = true;
+                break;
+
+            default:
+                String message = "Tangent generation isn't implemented for mode=" + mode;
+                throw new UnsupportedOperationException(message);
+        }
+
+        boolean success = true;
+        if (hasTriangles) {
+            MikkTSpaceImpl context = new MikkTSpaceImpl(mesh);
+            success = genTangSpaceDefault(context);
+            TangentUtils.generateBindPoseTangentsIfNecessary(mesh);
         }
+        return success;
     }
     
     public static boolean genTangSpaceDefault(MikkTSpaceContext mikkTSpace) {
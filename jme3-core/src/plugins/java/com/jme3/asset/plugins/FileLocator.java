@@ -60,7 +60,10 @@ public class FileLocator implements AssetLocator {
         }
     }
 
-    private static class AssetInfoFile extends AssetInfo {
+    /**
+     * The information about an asset located in a local file.
+     */
+    public static class AssetInfoFile extends AssetInfo {
 
         final private File file;
 
@@ -79,6 +82,13 @@ public class FileLocator implements AssetLocator {
                 throw new AssetLoadException("Failed to open file: " + file, ex);
             }
         }
+
+        /**
+         * @return the file holding the asset data
+         */
+        public File getFile() {
+            return file;
+        }
     }
 
     @Override
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.plugins;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetLoadException;
+import com.jme3.asset.AssetLocator;
+import com.jme3.asset.AssetManager;
+import com.jme3.util.BufferUtils;
+import com.jme3.util.ByteBufferInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * <code>MappedZipLocator</code> is a locator that looks up resources in a
+ * <code>.ZIP</code> file, like {@link ZipLocator}, through a read-only
+ * memory mapping of the whole archive.
+ * <p>
+ * The root path must be a valid ZIP or ZIP-like {@link File file}, such as a
+ * JAR or a PAK file, smaller than 2 GB and without ZIP64 extensions. Its
+ * central directory is indexed once, and shared by the locators of all the
+ * threads and asset managers.
+ * <p>
+ * The stored (uncompressed) entries are returned by
+ * {@link AssetInfo#openBuffer()} as slices of the mapping, without any copy,
+ * so the loaders which read buffers (J3O, DDS, KTX and WAV) decode them in
+ * place. The compressed entries are inflated into a new direct buffer, with
+ * an inflater taken from a pool shared by the loading threads. Storing the
+ * large binary assets of an archive without compression (e.g.
+ * <code>zip -0</code>) gives the best load times.
+ */
+public class MappedZipLocator implements AssetLocator {
+
+    // Key - canonical path of the archive, object - its index
+    private static final ConcurrentHashMap<String, Archive> archives = new ConcurrentHashMap<>();
+
+    private static final int MAX_POOLED_INFLATERS = 16;
+    private static final ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    private Archive archive;
+
+    private static final class Entry {
+
+        final String name;
+        final boolean deflate;
+        final int headerOffset;
+        final int compSize;
+        final int length;
+        // the offset of the data, once the local header is read
+        int dataOffset = -1;
+
+        Entry(String name, boolean deflate, int headerOffset, int compSize, int length) {
+            this.name = name;
+            this.deflate = deflate;
+            this.headerOffset = headerOffset;
+            this.compSize = compSize;
+            this.length = length;
+        }
+    }
+
+    private static final class Archive {
+
+        final long length;
+        final long lastModified;
+        // read-only, little-endian
+        final ByteBuffer data;
+        final HashMap<String, Entry> entries;
+
+        Archive(File file) throws IOException {
+            length = file.length();
+            lastModified = file.lastModified();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("The archive is larger than 2 GB, use a ZipLocator instead");
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, length)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            entries = readCentralDirectory(data);
+        }
+
+        ByteBuffer slice(int offset, int size) {
+            ByteBuffer slice = data.duplicate();
+            slice.limit(offset + size).position(offset);
+            return slice.slice();
+        }
+
+        /**
+         * Returns the compressed data of an entry.
+         */
+        ByteBuffer getData(Entry entry) throws IOException {
+            int offset = entry.dataOffset;
+            if (offset < 0) {
+                // idempotent, so it doesn't need any synchronization
+                if (data.getInt(entry.headerOffset) != ZipEntry.LOCSIG) {
+                    throw new IOException("Local header error, expected 'PK34' for " + entry.name);
+                }
+                offset = entry.headerOffset + ZipEntry.LOCHDR
+                        + (data.getShort(entry.headerOffset + ZipEntry.LOCNAM) & 0xFFFF)
+                        + (data.getShort(entry.headerOffset + ZipEntry.LOCEXT) & 0xFFFF);
+                entry.dataOffset = offset;
+            }
+            if (offset + (long) entry.compSize > data.capacity()) {
+                throw new IOException("Truncated entry " + entry.name);
+            }
+            return slice(offset, entry.compSize);
+        }
+    }
+
+    private static HashMap<String, Entry> readCentralDirectory(ByteBuffer data) throws IOException {
+        // the end header is followed by a comment of up to 65535 bytes
+        int end = -1;
+        int min = Math.max(0, data.capacity() - ZipEntry.ENDHDR - 0xFFFF);
+        for (int i = data.capacity() - ZipEntry.ENDHDR; i >= min; i--) {
+            if (data.getInt(i) == ZipEntry.ENDSIG) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            throw new IOException("Cannot find Zip End Header in file!");
+        }
+        int numEntries = data.getShort(end + ZipEntry.ENDTOT) & 0xFFFF;
+        long tableOffset = data.getInt(end + ZipEntry.ENDOFF) & 0xFFFFFFFFL;
+        if (numEntries == 0xFFFF || tableOffset == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 archives are not supported, use a ZipLocator instead");
+        }
+
+        HashMap<String, Entry> entries = new HashMap<>(numEntries * 2);
+        int offset = (int) tableOffset;
+        for (int i = 0; i < numEntries; i++) {
+            if (data.getInt(offset) != ZipEntry.CENSIG) {
+                throw new IOException("Central directory error, expected 'PK12'");
+            }
+            int nameLen = data.getShort(offset + ZipEntry.CENNAM) & 0xFFFF;
+            int extraLen = data.getShort(offset + ZipEntry.CENEXT) & 0xFFFF;
+            int commentLen = data.getShort(offset + ZipEntry.CENCOM) & 0xFFFF;
+            int flags = data.getShort(offset + ZipEntry.CENFLG) & 0xFFFF;
+            int method = data.getShort(offset + ZipEntry.CENHOW) & 0xFFFF;
+            int nextOffset = offset + ZipEntry.CENHDR + nameLen + extraLen + commentLen;
+
+            // ignore the encrypted entries, the unknown compression methods
+            // and the directories
+            if ((flags & 1) == 0 && (method == ZipEntry.STORED || method == ZipEntry.DEFLATED)) {
+                byte[] nameBytes = new byte[nameLen];
+                ByteBuffer name = data.duplicate();
+                name.position(offset + ZipEntry.CENHDR);
+                name.get(nameBytes);
+                String entryName = new String(nameBytes, StandardCharsets.UTF_8);
+                if (!entryName.isEmpty() && !entryName.endsWith("/")) {
+                    entries.put(entryName, new Entry(entryName,
+                            method == ZipEntry.DEFLATED,
+                            data.getInt(offset + ZipEntry.CENOFF),
+                            data.getInt(offset + ZipEntry.CENSIZ),
+                            data.getInt(offset + ZipEntry.CENLEN)));
+                }
+            }
+            offset = nextOffset;
+        }
+        return entries;
+    }
+
+    private static Inflater acquireInflater() {
+        Inflater inflater = inflaters.poll();
+        return inflater != null ? inflater : new Inflater(true);
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (inflaters.size() < MAX_POOLED_INFLATERS) {
+            inflaters.offer(inflater);
+        } else {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Inflates a whole entry into a new direct buffer.
+     */
+    private static ByteBuffer inflate(Entry entry, ByteBuffer compressed) throws IOException {
+        ByteBuffer result = BufferUtils.createByteBuffer(entry.length);
+        Inflater inflater = acquireInflater();
+        try {
+            byte[] input = new byte[Math.max(1, Math.min(compressed.remaining(), 64 * 1024))];
+            byte[] output = new byte[Math.min(Math.max(entry.length, 1), 64 * 1024)];
+            boolean eof = false;
+            while (result.hasRemaining()) {
+                if (inflater.needsInput()) {
+                    int count = Math.min(input.length, compressed.remaining());
+                    if (count == 0) {
+                        if (eof) {
+                            throw new IOException("Truncated entry " + entry.name);
+                        }
+                        // the inflater may need a dummy byte in nowrap mode
+                        input[0] = 0;
+                        count = 1;
+                        eof = true;
+                    } else {
+                        compressed.get(input, 0, count);
+                    }
+                    inflater.setInput(input, 0, count);
+                }
+                int inflated = inflater.inflate(output, 0, Math.min(output.length, result.remaining()));
+                if (inflated == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated entry " + entry.name);
+                }
+                result.put(output, 0, inflated);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid compressed data in " + entry.name, ex);
+        } finally {
+            releaseInflater(inflater);
+        }
+        result.flip();
+        return result;
+    }
+
+    private static Archive getArchive(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        Archive archive = archives.get(path);
+        if (archive == null || archive.length != file.length()
+                || archive.lastModified != file.lastModified()) {
+            archive = new Archive(file);
+            archives.put(path, archive);
+        }
+        return archive;
+    }
+
+    private class MappedZipAssetInfo extends AssetInfo {
+
+        private final Entry entry;
+
+        public MappedZipAssetInfo(AssetManager manager, AssetKey key, Entry entry) {
+            super(manager, key);
+            this.entry = entry;
+        }
+
+        @Override
+        public InputStream openStream() {
+            try {
+                InputStream in = new ByteBufferInputStream(archive.getData(entry));
+                if (!entry.deflate) {
+                    return in;
+                }
+                Inflater inflater = acquireInflater();
+                return new InflaterInputStream(in, inflater, 8192) {
+                    private boolean closed;
+                    private boolean eof;
+
+                    @Override
+                    protected void fill() throws IOException {
+                        if (eof) {
+                            throw new EOFException("Unexpected end of ZLIB input stream");
+                        }
+                        len = this.in.read(buf, 0, buf.length);
+                        if (len == -1) {
+                            // the inflater may need a dummy byte in nowrap mode
+                            buf[0] = 0;
+                            len = 1;
+                            eof = true;
+                        }
+                        inf.setInput(buf, 0, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            super.close();
+                            releaseInflater(inflater);
+                        }
+                    }
+                };
+            } catch (IOException ex) {
+                throw new AssetLoadException("Failed to load zip entry: " + entry.name, ex);
+            }
+        }
+
+        @Override
+        public ByteBuffer openBuffer() {
+            try {
+                ByteBuffer data = archive.getData(entry);
+                return entry.deflate ? inflate(entry, data) : data;
+            } catch (IOException ex) {
+                throw new AssetLoadException("Failed to load zip entry: " + entry.name, ex);
+            }
+        }
+    }
+
+    @Override
+    public void setRootPath(String rootPath) {
+        try {
+            archive = getArchive(new File(rootPath));
+        } catch (IOException ex) {
+            throw new AssetLoadException("Failed to open zip file: " + rootPath, ex);
+        }
+    }
+
+    @Override
+    public AssetInfo locate(AssetManager manager, AssetKey key) {
+        String name = key.getName();
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        Entry entry = archive.entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        return new MappedZipAssetInfo(manager, key, entry);
+    }
+}
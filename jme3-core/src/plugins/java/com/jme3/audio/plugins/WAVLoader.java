@@ -39,6 +39,7 @@ import com.jme3.audio.AudioKey;
 import com.jme3.audio.AudioStream;
 import com.jme3.audio.SeekableStream;
 import com.jme3.util.BufferUtils;
+import com.jme3.util.ByteBufferInputStream;
 import com.jme3.util.LittleEndien;
 import java.io.BufferedInputStream;
 import java.io.IOException;
@@ -67,6 +68,8 @@ public class WAVLoader implements AssetLoader {
 
     private ResettableInputStream in;
     private int inOffset = 0;
+    // the data of the file if it's read from a buffer
+    private ByteBuffer source;
     
     private static class ResettableInputStream extends LittleEndien implements SeekableStream {
         
@@ -144,6 +147,16 @@ public class WAVLoader implements AssetLoader {
     }
 
     private void readDataChunkForBuffer(int len) throws IOException {
+        if (source != null) {
+            // the samples are used in place
+            ByteBuffer data = source.duplicate();
+            int start = source.position() + inOffset;
+            data.limit((int) Math.min(source.limit(), (long) start + len));
+            data.position(Math.min(start, data.limit()));
+            audioBuffer.updateData(data.slice());
+            in.close();
+            return;
+        }
         ByteBuffer data = BufferUtils.createByteBuffer(len);
         byte[] buf = new byte[512];
         int read = 0;
@@ -220,9 +233,19 @@ public class WAVLoader implements AssetLoader {
     public Object load(AssetInfo info) throws IOException {
         AudioData data;
         InputStream inputStream = null;
+        boolean stream = ((AudioKey) info.getKey()).isStream();
+        ByteBuffer buffer = stream ? null : info.openBuffer();
+        if (buffer != null) {
+            source = buffer;
+            try {
+                return load(info, new ByteBufferInputStream(buffer.duplicate()), false);
+            } finally {
+                source = null;
+            }
+        }
         try {
             inputStream = info.openStream();
-            data = load(info, inputStream, ((AudioKey)info.getKey()).isStream());
+            data = load(info, inputStream, stream);
             if (data instanceof AudioStream){
                 inputStream = null;
             }
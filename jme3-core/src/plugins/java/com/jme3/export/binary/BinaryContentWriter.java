@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the capsule-data section of a streaming export to a temporary file,
+ * as each capsule is finished, so that the exporter never holds the whole
+ * section in memory.
+ *
+ * <p>The class alias of each record is written on one byte, as the final
+ * alias width is only known once every object has been processed. If more
+ * width is needed in the end, the records are widened while being copied to
+ * the output, and {@link #relocate(int)} gives their final locations.
+ *
+ * <p>Identical capsules of the same class are only written once, as with a
+ * regular export: a record is compared with the previous records of the same
+ * class, size and checksum, and dropped if one of them has the same bytes.
+ */
+final class BinaryContentWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BinaryExporter exporter;
+    private final File file;
+    private final FileChannel channel;
+    // little-endian, the byte order of the buffer data
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 checksum = new CRC32();
+    private long flushed;
+
+    private int[] locations = new int[64];
+    private BinaryClassObject[] classObjects = new BinaryClassObject[64];
+    private int recordCount;
+    //Key - class, size and checksum, object - the records with these
+    private final HashMap<String, ArrayList<Integer>> records = new HashMap<>();
+    private byte[] copyBuffer;
+
+    /**
+     * Creates a writer backed by a new temporary file.
+     *
+     * @param exporter the exporter which formats the class aliases (not null)
+     * @param directory the directory of the temporary file, or null for the
+     *     default temporary directory
+     * @throws IOException if the file can't be created
+     */
+    BinaryContentWriter(BinaryExporter exporter, File directory) throws IOException {
+        this.exporter = exporter;
+        this.file = File.createTempFile("export", ".j3o.tmp", directory);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Appends the record of a finished capsule, unless an identical one has
+     * already been written.
+     *
+     * @param bco the class of the capsule (not null)
+     * @param className the name of the class (not null)
+     * @param cap the finished capsule (not null, unaffected)
+     * @return the location of the record in the capsule-data section, before
+     *     relocation
+     * @throws IOException if the temporary file can't be written
+     */
+    int write(BinaryClassObject bco, String className, BinaryOutputCapsule cap) throws IOException {
+        long start = size();
+        if (start > Integer.MAX_VALUE) {
+            throw new IOException("The capsule data exceeds 2 GiB");
+        }
+        checksum.reset();
+        // a wider alias means that the records have to be widened anyway
+        byte alias = bco.alias.length == 1 ? bco.alias[0] : 0;
+        put(new byte[]{alias}, 0, 1);
+        put(ByteUtils.convertToBytes(getDataLength(cap)), 0, 4);
+        int offset = 0;
+        if (cap.buffers != null) {
+            for (int i = 0; i < cap.buffers.size(); i++) {
+                put(cap.bytes, offset, cap.bufferOffsets[i] - offset);
+                offset = cap.bufferOffsets[i];
+                put(cap.buffers.get(i));
+            }
+        }
+        put(cap.bytes, offset, cap.bytes.length - offset);
+
+        int location = (int) start;
+        long length = size() - start;
+        String key = className + ':' + length + ':' + checksum.getValue();
+        ArrayList<Integer> bucket = records.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>(1);
+            records.put(key, bucket);
+        } else {
+            for (int i = bucket.size(); --i >= 0;) {
+                int previous = locations[bucket.get(i)];
+                if (regionsEqual(previous, start, length)) {
+                    flush();
+                    channel.truncate(start);
+                    channel.position(start);
+                    flushed = start;
+                    return previous;
+                }
+            }
+        }
+        if (recordCount == locations.length) {
+            locations = Arrays.copyOf(locations, recordCount * 2);
+            classObjects = Arrays.copyOf(classObjects, recordCount * 2);
+        }
+        bucket.add(recordCount);
+        locations[recordCount] = location;
+        classObjects[recordCount++] = bco;
+        return location;
+    }
+
+    /**
+     * @param cap a finished capsule (not null, unaffected)
+     * @return the size of its data in bytes
+     */
+    static int getDataLength(BinaryOutputCapsule cap) {
+        long length = cap.bytes.length;
+        if (cap.buffers != null) {
+            for (Buffer data : cap.buffers) {
+                length += (long) data.remaining() * getElementSize(data);
+            }
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The capsule data exceeds 2 GiB");
+        }
+        return (int) length;
+    }
+
+    private static int getElementSize(Buffer data) {
+        if (data instanceof ByteBuffer) {
+            return 1;
+        } else if (data instanceof ShortBuffer) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    /**
+     * Gives the final location of a record, once the width of the class
+     * aliases is known.
+     *
+     * @param location the location returned by
+     *     {@link #write(BinaryClassObject, String, BinaryOutputCapsule)}
+     * @param width the final width of the class aliases in bytes
+     * @return the location of the record in the output
+     */
+    int relocate(int location, int width) {
+        if (width == 1) {
+            return location;
+        }
+        int index = Arrays.binarySearch(locations, 0, recordCount, location);
+        return location + index * (width - 1);
+    }
+
+    /**
+     * Copies the capsule-data section to the output.
+     *
+     * @param out the output, flushed before anything is written to the
+     *     target channel (not null)
+     * @param target the channel behind the output, or null to write
+     *     everything through the output
+     * @param width the final width of the class aliases in bytes
+     * @return the number of bytes written
+     * @throws IOException if the copy fails
+     */
+    long copyTo(OutputStream out, WritableByteChannel target, int width) throws IOException {
+        flush();
+        if (width == 1) {
+            // the records already have their final layout
+            return copy(0, flushed, out, target);
+        }
+        long written = 0;
+        for (int i = 0; i < recordCount; i++) {
+            long start = locations[i];
+            long end = i + 1 < recordCount ? locations[i + 1] : flushed;
+            byte[] alias = exporter.fixClassAlias(classObjects[i].alias, width);
+            out.write(alias);
+            written += alias.length + copy(start + 1, end, out, null);
+        }
+        return written;
+    }
+
+    private long copy(long start, long end, OutputStream out, WritableByteChannel target)
+            throws IOException {
+        if (target != null) {
+            out.flush();
+            for (long position = start; position < end;) {
+                position += channel.transferTo(position, end - position, target);
+            }
+        } else {
+            if (copyBuffer == null) {
+                copyBuffer = new byte[BUFFER_SIZE];
+            }
+            byte[] bytes = copyBuffer;
+            ByteBuffer data = ByteBuffer.wrap(bytes);
+            for (long position = start; position < end;) {
+                data.clear();
+                data.limit((int) Math.min(BUFFER_SIZE, end - position));
+                int read = channel.read(data, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                out.write(bytes, 0, read);
+                position += read;
+            }
+        }
+        return end - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private long size() {
+        return flushed + buffer.position();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushed += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void put(byte[] bytes, int offset, int length) throws IOException {
+        checksum.update(bytes, offset, length);
+        while (length > 0) {
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            offset += count;
+            length -= count;
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes the data of a buffer in little-endian order. Large byte buffers
+     * are written straight from the source, the other ones are converted
+     * through the write buffer.
+     */
+    private void put(Buffer data) throws IOException {
+        if (data instanceof ByteBuffer && data.remaining() >= BUFFER_SIZE) {
+            ByteBuffer bytes = (ByteBuffer) data;
+            checksum.update(bytes.duplicate());
+            flush();
+            while (bytes.hasRemaining()) {
+                flushed += channel.write(bytes);
+            }
+            return;
+        }
+
+        int elementSize = getElementSize(data);
+        while (data.hasRemaining()) {
+            int count = Math.min(data.remaining(), buffer.remaining() / elementSize);
+            if (count == 0) {
+                flush();
+                continue;
+            }
+            int start = buffer.position();
+            int end = data.position() + count;
+            if (data instanceof ByteBuffer) {
+                ByteBuffer part = ((ByteBuffer) data).duplicate();
+                part.limit(end);
+                buffer.put(part);
+            } else if (data instanceof FloatBuffer) {
+                FloatBuffer part = ((FloatBuffer) data).duplicate();
+                part.limit(end);
+                buffer.asFloatBuffer().put(part);
+            } else if (data instanceof IntBuffer) {
+                IntBuffer part = ((IntBuffer) data).duplicate();
+                part.limit(end);
+                buffer.asIntBuffer().put(part);
+            } else {
+                ShortBuffer part = ((ShortBuffer) data).duplicate();
+                part.limit(end);
+                buffer.asShortBuffer().put(part);
+            }
+            data.position(end);
+            buffer.position(start + count * elementSize);
+
+            ByteBuffer written = buffer.duplicate();
+            written.flip();
+            written.position(start);
+            checksum.update(written);
+        }
+    }
+
+    private boolean regionsEqual(long first, long second, long length) throws IOException {
+        flush();
+        ByteBuffer a = ByteBuffer.allocate(8192);
+        ByteBuffer b = ByteBuffer.allocate(8192);
+        for (long offset = 0; offset < length;) {
+            int count = (int) Math.min(a.capacity(), length - offset);
+            a.clear().limit(count);
+            b.clear().limit(count);
+            readFully(a, first + offset);
+            readFully(b, second + offset);
+            a.flip();
+            b.flip();
+            if (!a.equals(b)) {
+                return false;
+            }
+            offset += count;
+        }
+        return true;
+    }
+
+    private void readFully(ByteBuffer store, long position) throws IOException {
+        while (store.hasRemaining()) {
+            int read = channel.read(store, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+            position += read;
+        }
+    }
+}
@@ -39,9 +39,11 @@ import com.jme3.export.Savable;
 import com.jme3.export.SavableClassUtil;
 import com.jme3.math.FastMath;
 import java.io.*;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -114,6 +116,13 @@ import java.util.logging.Logger;
  * <p>19. "capsule data" - X bytes of data, where X = the number of bytes from
  * item 18
  *
+ * <p>In {@link #setStreaming(boolean) streaming} mode, the capsule data is
+ * written to a temporary file as each capsule is finished, and copied after
+ * the tables once every object has been processed. The data of large NIO
+ * buffers is written straight from the buffers. The memory used is then
+ * bounded by the largest capsules being written at the same time, instead of
+ * the size of the file.
+ *
  * @author Joshua Slack
  */
 
@@ -139,9 +148,36 @@ public class BinaryExporter implements JmeExporter {
     public static boolean debug = false;
     public static boolean useFastBufs = true;
 
+    private boolean streaming;
+    private BinaryContentWriter contentWriter;
+
     public BinaryExporter() {
     }
 
+    /**
+     * Enables or disables the streaming mode, which writes the capsule data
+     * through a temporary file instead of keeping it in memory until the end
+     * of the export. The temporary file is created next to the target file
+     * when saving to a file, otherwise in the default temporary directory.
+     *
+     * <p>The objects must not be modified while they are being exported, as
+     * the large buffers are only read once their capsule is finished.
+     *
+     * @param streaming true to stream the capsule data, false to keep it in
+     *     memory (default false)
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @return true if the capsule data is streamed, otherwise false
+     * @see #setStreaming(boolean)
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     public static BinaryExporter getInstance() {
         return new BinaryExporter();
     }
@@ -174,13 +210,13 @@ public class BinaryExporter implements JmeExporter {
 
     @Override
     public void save(Savable object, OutputStream os) throws IOException {
+        if (streaming) {
+            saveStreaming(object, os, null, null);
+            return;
+        }
+
         // reset some vars
-        aliasCount = 1;
-        idCount = 1;
-        classes.clear();
-        contentTable.clear();
-        locationTable.clear();
-        contentKeys.clear();
+        reset();
 
         // write signature and version
         os.write(ByteUtils.convertToBytes(FormatVersion.SIGNATURE)); // 1. "signature"
@@ -189,48 +225,11 @@ public class BinaryExporter implements JmeExporter {
         int id = processBinarySavable(object);
 
         // write out tag table
-        int classTableSize = 0;
         int classNum = classes.keySet().size();
         int aliasSize = ((int) FastMath.log(classNum, 256) + 1); // make all
                                                                   // aliases a
                                                                   // fixed width
-
-        os.write(ByteUtils.convertToBytes(classNum)); // 3. "number of classes"
-        for (String key : classes.keySet()) {
-            BinaryClassObject bco = classes.get(key);
-
-            // write alias
-            byte[] aliasBytes = fixClassAlias(bco.alias,
-                    aliasSize);
-            os.write(aliasBytes);                     // 4. "class alias"
-            classTableSize += aliasSize;
-
-            // jME3 NEW: Write class hierarchy version numbers
-            os.write( bco.classHierarchyVersions.length );
-            for (int version : bco.classHierarchyVersions){
-                os.write(ByteUtils.convertToBytes(version));
-            }
-            classTableSize += 1 + bco.classHierarchyVersions.length * 4;
-
-            // write classname size & classname
-            byte[] classBytes = key.getBytes();
-            os.write(ByteUtils.convertToBytes(classBytes.length)); // 5. "full class-name size"
-            os.write(classBytes);                                  // 6. "full class name"
-            classTableSize += 4 + classBytes.length;
-
-            // for each field, write alias, type, and name
-            os.write(ByteUtils.convertToBytes(bco.nameFields.size())); // 7. "number of fields"
-            for (String fieldName : bco.nameFields.keySet()) {
-                BinaryClassField bcf = bco.nameFields.get(fieldName);
-                os.write(bcf.alias);                                   // 8. "field alias"
-                os.write(bcf.type);                                    // 9. "field type"
-
-                byte[] fNameBytes = fieldName.getBytes();
-                os.write(ByteUtils.convertToBytes(fNameBytes.length)); // 10. "field-name size"
-                os.write(fNameBytes);                                  // 11. "field name"
-                classTableSize += 2 + 4 + fNameBytes.length;
-            }
-        }
+        int classTableSize = writeClassTable(os, aliasSize);
 
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         // write out data to a separate stream
@@ -267,21 +266,8 @@ public class BinaryExporter implements JmeExporter {
         }
 
         // write out location table
-        // tag/location
         int numLocations = locationTable.keySet().size();
-        os.write(ByteUtils.convertToBytes(numLocations)); // 12. "number of capsules"
-        int locationTableSize = 0;
-        for (Integer key : locationTable.keySet()) {
-            os.write(ByteUtils.convertToBytes(key));                    // 13. "data id"
-            os.write(ByteUtils.convertToBytes(locationTable.get(key))); // 14. "data location"
-            locationTableSize += 8;
-        }
-
-        // write out number of root ids - hardcoded 1 for now
-        os.write(ByteUtils.convertToBytes(1));  // 15. "future use"
-
-        // write out root id
-        os.write(ByteUtils.convertToBytes(id)); // 16. "root id"
+        int locationTableSize = writeLocationTable(os, id);
 
         // append stream to the output stream
         out.writeTo(os);
@@ -300,6 +286,141 @@ public class BinaryExporter implements JmeExporter {
         }
     }
 
+    private void reset() {
+        aliasCount = 1;
+        idCount = 1;
+        classes.clear();
+        contentTable.clear();
+        locationTable.clear();
+        contentKeys.clear();
+    }
+
+    /**
+     * Saves an object, writing each capsule to a temporary file as soon as
+     * it's finished.
+     *
+     * @param object the object to save
+     * @param os the output
+     * @param target the channel behind the output, or null to write
+     *     everything through the output
+     * @param directory the directory of the temporary file, or null for the
+     *     default temporary directory
+     */
+    private void saveStreaming(Savable object, OutputStream os,
+            WritableByteChannel target, File directory) throws IOException {
+        reset();
+
+        // write signature and version
+        os.write(ByteUtils.convertToBytes(FormatVersion.SIGNATURE)); // 1. "signature"
+        os.write(ByteUtils.convertToBytes(FormatVersion.VERSION));   // 2. "version"
+
+        try (BinaryContentWriter writer = new BinaryContentWriter(this, directory)) {
+            contentWriter = writer;
+            int id;
+            try {
+                id = processBinarySavable(object);
+            } finally {
+                contentWriter = null;
+            }
+
+            // write out tag table
+            int classNum = classes.keySet().size();
+            int aliasSize = ((int) FastMath.log(classNum, 256) + 1);
+            int classTableSize = writeClassTable(os, aliasSize);
+
+            // the records are widened if the aliases take more than one byte
+            for (Map.Entry<Integer, Integer> entry : locationTable.entrySet()) {
+                entry.setValue(writer.relocate(entry.getValue(), aliasSize));
+            }
+            int numLocations = locationTable.keySet().size();
+            int locationTableSize = writeLocationTable(os, id);
+
+            // append the capsule data
+            long dataSize = writer.copyTo(os, target, aliasSize);
+
+            if (debug) {
+                logger.fine("Stats:");
+                logger.log(Level.FINE, "classes: {0}", classNum);
+                logger.log(Level.FINE, "class table: {0} bytes", classTableSize);
+                logger.log(Level.FINE, "objects: {0}", numLocations);
+                logger.log(Level.FINE, "location table: {0} bytes", locationTableSize);
+                logger.log(Level.FINE, "data: {0} bytes", dataSize);
+            }
+        }
+        contentTable.clear();
+        contentKeys.clear();
+    }
+
+    /**
+     * Writes the class table, items 3 thru 11.
+     *
+     * @return the size of the class table in bytes
+     */
+    private int writeClassTable(OutputStream os, int aliasSize) throws IOException {
+        int classTableSize = 0;
+        os.write(ByteUtils.convertToBytes(classes.size())); // 3. "number of classes"
+        for (String key : classes.keySet()) {
+            BinaryClassObject bco = classes.get(key);
+
+            // write alias
+            byte[] aliasBytes = fixClassAlias(bco.alias,
+                    aliasSize);
+            os.write(aliasBytes);                     // 4. "class alias"
+            classTableSize += aliasSize;
+
+            // jME3 NEW: Write class hierarchy version numbers
+            os.write( bco.classHierarchyVersions.length );
+            for (int version : bco.classHierarchyVersions){
+                os.write(ByteUtils.convertToBytes(version));
+            }
+            classTableSize += 1 + bco.classHierarchyVersions.length * 4;
+
+            // write classname size & classname
+            byte[] classBytes = key.getBytes();
+            os.write(ByteUtils.convertToBytes(classBytes.length)); // 5. "full class-name size"
+            os.write(classBytes);                                  // 6. "full class name"
+            classTableSize += 4 + classBytes.length;
+
+            // for each field, write alias, type, and name
+            os.write(ByteUtils.convertToBytes(bco.nameFields.size())); // 7. "number of fields"
+            for (String fieldName : bco.nameFields.keySet()) {
+                BinaryClassField bcf = bco.nameFields.get(fieldName);
+                os.write(bcf.alias);                                   // 8. "field alias"
+                os.write(bcf.type);                                    // 9. "field type"
+
+                byte[] fNameBytes = fieldName.getBytes();
+                os.write(ByteUtils.convertToBytes(fNameBytes.length)); // 10. "field-name size"
+                os.write(fNameBytes);                                  // 11. "field name"
+                classTableSize += 2 + 4 + fNameBytes.length;
+            }
+        }
+        return classTableSize;
+    }
+
+    /**
+     * Writes the location table and the root id, items 12 thru 16.
+     *
+     * @return the size of the location table in bytes
+     */
+    private int writeLocationTable(OutputStream os, int id) throws IOException {
+        // tag/location
+        int numLocations = locationTable.keySet().size();
+        os.write(ByteUtils.convertToBytes(numLocations)); // 12. "number of capsules"
+        int locationTableSize = 0;
+        for (Integer key : locationTable.keySet()) {
+            os.write(ByteUtils.convertToBytes(key));                    // 13. "data id"
+            os.write(ByteUtils.convertToBytes(locationTable.get(key))); // 14. "data location"
+            locationTableSize += 8;
+        }
+
+        // write out number of root ids - hardcoded 1 for now
+        os.write(ByteUtils.convertToBytes(1));  // 15. "future use"
+
+        // write out root id
+        os.write(ByteUtils.convertToBytes(id)); // 16. "root id"
+        return locationTableSize;
+    }
+
     private String getChunk(BinaryIdContentPair pair) {
         return new String(pair.getContent().bytes, 0, Math.min(64, pair
                 .getContent().bytes.length));
@@ -336,7 +457,11 @@ public class BinaryExporter implements JmeExporter {
 
         try (FileOutputStream fos = new FileOutputStream(f);
                 BufferedOutputStream bos = new BufferedOutputStream(fos)) {
-            save(object, bos);
+            if (streaming) {
+                saveStreaming(object, bos, fos.getChannel(), f.getAbsoluteFile().getParentFile());
+            } else {
+                save(object, bos);
+            }
         }
     }
 
@@ -378,6 +503,12 @@ public class BinaryExporter implements JmeExporter {
         }
         object.write(this);
         newPair.getContent().finish();
+        if (contentWriter != null) {
+            // the capsule isn't needed anymore once it's written
+            int location = contentWriter.write(bco, clazz.getName(), newPair.getContent());
+            locationTable.put(newPair.getId(), location);
+            newPair.setContent(null);
+        }
         return newPair.getId();
 
     }
@@ -33,13 +33,23 @@ package com.jme3.export.binary;
 
 import com.jme3.asset.AssetInfo;
 import com.jme3.asset.AssetManager;
+import com.jme3.asset.plugins.FileLocator;
 import com.jme3.export.*;
 import com.jme3.math.FastMath;
+import com.jme3.util.ByteBufferInputStream;
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,11 +78,29 @@ public final class BinaryImporter implements JmeImporter {
 
     public static boolean debug = false;
 
-    private byte[] dataArray;
+    private ByteBuffer dataBuffer;
     private int aliasWidth;
     private int formatVersion;
 
+    // the file being loaded through a mapping, and the offset of its data
+    private FileChannel mappedChannel;
+    private long dataOffset;
+    // the content being loaded from a direct buffer, e.g. a mapped archive
+    private ByteBuffer mappedContent;
+
     private static final boolean fastRead = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private static volatile boolean memoryMapping = true;
+    private static volatile int mappedBufferThreshold = -1;
+
+    // the objects smaller than this are always decoded by the loading thread
+    private static final int PARALLEL_DECODE_THRESHOLD = 16 * 1024;
+    private static volatile ExecutorService decodeExecutor;
+
+    //Key - id, object - the decoding of a large object
+    private final HashMap<Integer, FutureTask<BinaryInputCapsule>> decodeTasks
+            = new HashMap<>();
+    private volatile boolean decoding;
     
     public BinaryImporter() {
     }
@@ -86,6 +114,90 @@ public final class BinaryImporter implements JmeImporter {
         return fastRead;
     }
 
+    /**
+     * Enables or disables the direct loading of local files. When enabled
+     * (the default), {@link #load(File)} and the assets located by a
+     * {@link FileLocator} are read into a single buffer and decoded from it,
+     * instead of being copied through a stream first. The file is memory
+     * mapped instead of read only if the
+     * {@link #setMappedBufferThreshold(int) mapped buffer threshold} is
+     * enabled. The assets whose locator provides a
+     * {@link AssetInfo#openBuffer() buffer}, such as a
+     * {@link com.jme3.asset.plugins.MappedZipLocator}, are decoded straight
+     * from that buffer.
+     *
+     * @param enabled true to load local files directly, false to read them
+     *     as streams
+     */
+    public static void setMemoryMappingEnabled(boolean enabled) {
+        memoryMapping = enabled;
+    }
+
+    /**
+     * @return true if local files are memory mapped, otherwise false
+     * @see #setMemoryMappingEnabled(boolean)
+     */
+    public static boolean isMemoryMappingEnabled() {
+        return memoryMapping;
+    }
+
+    /**
+     * Sets the size from which the NIO buffers of a memory mapped file are
+     * not copied, but returned as read-only mappings of the file region
+     * holding their data. This avoids copying large vertex and image data,
+     * but the resulting buffers can't be modified: only enable it for assets
+     * which aren't altered after loading (no software skinning, no tangent
+     * generation, etc.). It has no effect on big-endian platforms, where the
+     * data has to be converted anyway.
+     *
+     * <p>When enabled, {@link #load(File)} also decodes the file from a
+     * mapping of it. A mapping is only released once it's garbage collected,
+     * and some platforms, such as Windows, don't allow to overwrite or delete
+     * a file while parts of it are mapped: the file may stay locked after
+     * loading. Destroying a mapped buffer with
+     * {@link com.jme3.util.BufferUtils#destroyDirectBuffer(java.nio.Buffer)}
+     * only releases its own mapping.
+     *
+     * @param bytes the minimum size of a mapped buffer in bytes, or a
+     *     negative value to always copy the data (default -1)
+     */
+    public static void setMappedBufferThreshold(int bytes) {
+        mappedBufferThreshold = bytes;
+    }
+
+    /**
+     * @return the minimum size of a mapped buffer in bytes, or a negative
+     *     value if the buffers are always copied
+     * @see #setMappedBufferThreshold(int)
+     */
+    public static int getMappedBufferThreshold() {
+        return mappedBufferThreshold;
+    }
+
+    /**
+     * Sets the executor which decodes the large objects of a file, such as
+     * vertex buffers and images, in parallel with the loading thread. The
+     * file is located through its location table, so the objects are decoded
+     * ahead of time in file order, and the loading thread then reads them in
+     * the usual order, decoding itself any object which no worker has started
+     * yet. The result is the same as with a serial load.
+     *
+     * @param executor the executor to use, or null to decode everything on
+     *     the loading thread (default null)
+     */
+    public static void setDecodeExecutor(ExecutorService executor) {
+        decodeExecutor = executor;
+    }
+
+    /**
+     * @return the executor which decodes the large objects, or null if
+     *     everything is decoded on the loading thread
+     * @see #setDecodeExecutor(ExecutorService)
+     */
+    public static ExecutorService getDecodeExecutor() {
+        return decodeExecutor;
+    }
+
     public static BinaryImporter getInstance() {
         return new BinaryImporter();
     }
@@ -108,6 +220,13 @@ public final class BinaryImporter implements JmeImporter {
 
         InputStream is = null;
         try {
+            if (info instanceof FileLocator.AssetInfoFile) {
+                return load(((FileLocator.AssetInfoFile) info).getFile());
+            }
+            ByteBuffer data = memoryMapping ? info.openBuffer() : null;
+            if (data != null) {
+                return load(data, null);
+            }
             is = info.openStream();
             Savable s = load(is);
             
@@ -133,8 +252,35 @@ public final class BinaryImporter implements JmeImporter {
     }
 
     public Savable load(InputStream is, ReadListener listener, ByteArrayOutputStream baos) throws IOException {
-        contentTable.clear();
         BufferedInputStream bis = new BufferedInputStream(is);
+        int id = readHeader(bis, listener);
+
+        if (baos == null) {
+                baos = new ByteArrayOutputStream(4096);
+        } else {
+                baos.reset();
+        }
+        int size = -1;
+        byte[] cache = new byte[4096];
+        while((size = bis.read(cache)) != -1) {
+            baos.write(cache, 0, size);
+            if (listener != null) listener.readBytes(size);
+        }
+        bis = null;
+
+        ByteBuffer data = ByteBuffer.wrap(baos.toByteArray());
+        baos = null;
+
+        return readContent(id, data);
+    }
+
+    /**
+     * Reads the class and location tables.
+     *
+     * @return the id of the root object
+     */
+    private int readHeader(InputStream bis, ReadListener listener) throws IOException {
+        contentTable.clear();
         
         int numClasses;
         
@@ -226,31 +372,100 @@ public final class BinaryImporter implements JmeImporter {
         bytes += 8;
         if (listener != null) listener.readBytes(bytes);
 
-        if (baos == null) {
-                baos = new ByteArrayOutputStream(bytes);
-        } else {
-                baos.reset();
+        return id;
+    }
+
+    private Savable readContent(int id, ByteBuffer data) {
+        dataBuffer = data;
+        ExecutorService executor = decodeExecutor;
+        if (executor != null) {
+            startDecoding(executor);
         }
-        int size = -1;
-        byte[] cache = new byte[4096];
-        while((size = bis.read(cache)) != -1) {
-            baos.write(cache, 0, size);
-            if (listener != null) listener.readBytes(size);
+        try {
+            Savable rVal = readObject(id);
+            if (debug) {
+                logger.fine("Importer Stats: ");
+                logger.log(Level.FINE, "Tags: {0}", classes.size());
+                logger.log(Level.FINE, "Objects: {0}", locationTable.size());
+                logger.log(Level.FINE, "Data Size: {0}", data.capacity());
+            }
+            return rVal;
+        } finally {
+            stopDecoding();
+            dataBuffer = null;
         }
-        bis = null;
+    }
 
-        dataArray = baos.toByteArray();
-        baos = null;
+    /**
+     * Submits the decoding of the large objects, in file order.
+     */
+    private void startDecoding(ExecutorService executor) {
+        final ByteBuffer data = dataBuffer;
+        List<int[]> objects = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : locationTable.entrySet()) {
+            int loc = entry.getValue();
+            if (data.getInt(loc + aliasWidth) >= PARALLEL_DECODE_THRESHOLD) {
+                objects.add(new int[]{loc, entry.getKey()});
+            }
+        }
+        objects.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        decoding = true;
+        for (int[] object : objects) {
+            int loc = object[0];
+            final BinaryClassObject bco;
+            try {
+                bco = classes.get(readString(aliasWidth, loc));
+            } catch (IOException ex) {
+                continue;
+            }
+            if (bco == null) {
+                // reported by readObject()
+                continue;
+            }
+            final int start = loc + aliasWidth + 4;
+            final int limit = start + data.getInt(loc + aliasWidth);
+            FutureTask<BinaryInputCapsule> task = new FutureTask<>(() -> {
+                if (!decoding) {
+                    return null;
+                }
+                BinaryInputCapsule cap = new BinaryInputCapsule(this, null, bco);
+                cap.setContent(data, start, limit);
+                return cap;
+            });
+            decodeTasks.put(object[1], task);
+            executor.execute(task);
+        }
+    }
 
-        Savable rVal = readObject(id);
-        if (debug) {
-            logger.fine("Importer Stats: ");
-            logger.log(Level.FINE, "Tags: {0}", numClasses);
-            logger.log(Level.FINE, "Objects: {0}", numLocs);
-            logger.log(Level.FINE, "Data Size: {0}", dataArray.length);
+    /**
+     * Waits for the decoding tasks which are still running, as they may use
+     * the file mapping, and skips the other ones.
+     */
+    private void stopDecoding() {
+        decoding = false;
+        for (FutureTask<BinaryInputCapsule> task : decodeTasks.values()) {
+            task.run();
+            try {
+                task.get();
+            } catch (Exception ex) {
+                // the object isn't part of the result
+            }
         }
-        dataArray = null;
-        return rVal;
+        decodeTasks.clear();
+    }
+
+    /**
+     * Returns the capsule of an object decoded by the executor, if any. An
+     * object which no worker has started yet is decoded by this thread.
+     */
+    private BinaryInputCapsule takeDecoded(int id) throws Exception {
+        FutureTask<BinaryInputCapsule> task = decodeTasks.remove(id);
+        if (task == null) {
+            return null;
+        }
+        task.run();
+        return task.get();
     }
 
     public Savable load(URL f) throws IOException {
@@ -269,11 +484,68 @@ public final class BinaryImporter implements JmeImporter {
     }
 
     public Savable load(File f, ReadListener listener) throws IOException {
-        FileInputStream fis = new FileInputStream(f);
+        if (!memoryMapping || f.length() > Integer.MAX_VALUE) {
+            FileInputStream fis = new FileInputStream(f);
+            try {
+                return load(fis, listener);
+            } finally {
+                fis.close();
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            // only map the file when the loaded buffers may be mappings of it
+            // anyway, as a mapping is only released once garbage collected
+            boolean mapped = fastRead && mappedBufferThreshold >= 0;
+            ByteBuffer file;
+            if (mapped) {
+                file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                file = ByteBuffer.allocate((int) channel.size());
+                while (file.hasRemaining()) {
+                    if (channel.read(file) < 0) {
+                        break;
+                    }
+                }
+                file.flip();
+            }
+            int id = readHeader(new ByteBufferInputStream(file), listener);
+            if (listener != null) listener.readBytes(file.remaining());
+
+            // the locations are relative to the end of the header
+            dataOffset = file.position();
+            mappedChannel = mapped ? channel : null;
+            try {
+                return readContent(id, file.slice());
+            } finally {
+                mappedChannel = null;
+            }
+        }
+    }
+
+    /**
+     * Loads an object from a buffer holding a J3O file, such as a slice of a
+     * memory mapped archive. If the buffer is direct, the NIO buffers above
+     * the {@link #setMappedBufferThreshold(int) mapped buffer threshold} are
+     * slices of it instead of copies.
+     *
+     * @param data the content of the file, from its position to its limit
+     *     (not null, unaffected)
+     * @param listener the listener notified of the progress, or null
+     * @return the loaded object
+     * @throws IOException if the content is invalid
+     */
+    public Savable load(ByteBuffer data, ReadListener listener) throws IOException {
+        ByteBuffer file = data.duplicate();
+        int id = readHeader(new ByteBufferInputStream(file), listener);
+        if (listener != null) listener.readBytes(file.remaining());
+
+        ByteBuffer content = file.slice();
+        mappedContent = content.isDirect() ? content : null;
         try {
-            return load(fis, listener);
+            return readContent(id, content);
         } finally {
-            fis.close();
+            mappedContent = null;
         }
     }
 
@@ -284,6 +556,30 @@ public final class BinaryImporter implements JmeImporter {
         return rVal;
     }
 
+    /**
+     * Maps the data of a buffer field of the file being loaded, if it's large
+     * enough.
+     *
+     * @param offset the offset of the data, relative to the end of the header
+     * @param length the size of the data in bytes
+     * @return a new read-only buffer in native order, or null if the data
+     *     has to be copied
+     */
+    ByteBuffer mapBuffer(int offset, int length) throws IOException {
+        int threshold = mappedBufferThreshold;
+        if ((mappedChannel == null && mappedContent == null) || !fastRead || threshold < 0
+                || length == 0 || length < threshold) {
+            return null;
+        }
+        if (mappedContent != null) {
+            ByteBuffer slice = mappedContent.duplicate();
+            slice.limit(offset + length).position(offset);
+            return slice.slice().order(ByteOrder.nativeOrder());
+        }
+        return mappedChannel.map(FileChannel.MapMode.READ_ONLY, dataOffset + offset, length)
+                .order(ByteOrder.nativeOrder());
+    }
+
     @Override
     public InputCapsule getCapsule(Savable id) {
         return capsuleTable.get(id);
@@ -301,7 +597,7 @@ public final class BinaryImporter implements JmeImporter {
     protected String readString(int length, int offset) throws IOException {
         byte[] data = new byte[length];
         for(int j = 0; j < length; j++) {
-            data[j] = dataArray[j+offset];
+            data[j] = dataBuffer.get(j+offset);
         }
 
         return new String(data);
@@ -326,13 +622,18 @@ public final class BinaryImporter implements JmeImporter {
                 return null;
             }
 
-            int dataLength = ByteUtils.convertIntFromBytes(dataArray, loc);
+            int dataLength = dataBuffer.getInt(loc);
             loc+=4;
 
             Savable  out = SavableClassUtil.fromName(bco.className);
 
-            BinaryInputCapsule cap = new BinaryInputCapsule(this, out, bco);
-            cap.setContent(dataArray, loc, loc+dataLength);
+            BinaryInputCapsule cap = takeDecoded(id);
+            if (cap != null) {
+                cap.savable = out;
+            } else {
+                cap = new BinaryInputCapsule(this, out, bco);
+                cap.setContent(dataBuffer, loc, loc+dataLength);
+            }
 
             capsuleTable.put(out, cap);
             contentTable.put(id, out);
@@ -348,4 +649,4 @@ public final class BinaryImporter implements JmeImporter {
             return null;
         }
     }
-}
\ No newline at end of file
+}
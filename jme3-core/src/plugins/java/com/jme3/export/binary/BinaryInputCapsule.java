@@ -70,10 +70,10 @@ final class BinaryInputCapsule implements InputCapsule {
         this.savable = savable;
     }
 
-    public void setContent(byte[] content, int start, int limit) {
+    public void setContent(ByteBuffer content, int start, int limit) {
         fieldData = new HashMap<Byte, Object>();
         for (index = start; index < limit;) {
-            byte alias = content[index];
+            byte alias = content.get(index);
 
             index++;
 
@@ -252,7 +252,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
             } catch (IOException e) {
                 logger.logp(Level.SEVERE, this.getClass().toString(),
-                        "setContent(byte[] content)", "Exception", e);
+                        "setContent(ByteBuffer content)", "Exception", e);
             }
         }
     }
@@ -785,29 +785,35 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // byte primitive
 
-    protected byte readByte(byte[] content) throws IOException {
-        byte value = content[index];
+    protected byte readByte(ByteBuffer content) throws IOException {
+        byte value = content.get(index);
         index++;
         return value;
     }
 
-    protected byte readByteForBuffer(byte[] content) throws IOException {
-        byte value = content[index];
+    protected byte readByteForBuffer(ByteBuffer content) throws IOException {
+        byte value = content.get(index);
         index++;
         return value;
     }
 
-    protected byte[] readByteArray(byte[] content) throws IOException {
+    protected byte[] readByteArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
         byte[] value = new byte[length];
-        for (int x = 0; x < length; x++)
-            value[x] = readByte(content);
+        readBytes(content, value);
         return value;
     }
 
-    protected byte[][] readByteArray2D(byte[] content) throws IOException {
+    private void readBytes(ByteBuffer content, byte[] store) {
+        ByteBuffer data = content.duplicate();
+        data.position(index);
+        data.get(store);
+        index += store.length;
+    }
+
+    protected byte[][] readByteArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -819,16 +825,16 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // int primitive
 
-    protected int readIntForBuffer(byte[] content){
-        int number = ((content[index+3] & 0xFF) << 24)
-                   + ((content[index+2] & 0xFF) << 16)
-                   + ((content[index+1] & 0xFF) << 8)
-                   +  (content[index]   & 0xFF);
+    protected int readIntForBuffer(ByteBuffer content){
+        int number = ((content.get(index+3) & 0xFF) << 24)
+                   + ((content.get(index+2) & 0xFF) << 16)
+                   + ((content.get(index+1) & 0xFF) << 8)
+                   +  (content.get(index)   & 0xFF);
         index += 4;
         return number;
     }
 
-    protected int readInt(byte[] content) throws IOException {
+    protected int readInt(ByteBuffer content) throws IOException {
         byte[] bytes = inflateFrom(content, index);
         index += 1 + bytes.length;
         bytes = ByteUtils.rightAlignBytes(bytes, 4);
@@ -839,7 +845,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected int[] readIntArray(byte[] content) throws IOException {
+    protected int[] readIntArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -849,7 +855,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected int[][] readIntArray2D(byte[] content) throws IOException {
+    protected int[][] readIntArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -861,18 +867,18 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // float primitive
 
-    protected float readFloat(byte[] content) throws IOException {
-        float value = ByteUtils.convertFloatFromBytes(content, index);
+    protected float readFloat(ByteBuffer content) throws IOException {
+        float value = content.getFloat(index);
         index += 4;
         return value;
     }
 
-    protected float readFloatForBuffer(byte[] content) throws IOException {
+    protected float readFloatForBuffer(ByteBuffer content) throws IOException {
         int number = readIntForBuffer(content);
         return Float.intBitsToFloat(number);
     }
 
-    protected float[] readFloatArray(byte[] content) throws IOException {
+    protected float[] readFloatArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -882,7 +888,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected float[][] readFloatArray2D(byte[] content) throws IOException {
+    protected float[][] readFloatArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -894,13 +900,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // double primitive
 
-    protected double readDouble(byte[] content) throws IOException {
-        double value = ByteUtils.convertDoubleFromBytes(content, index);
+    protected double readDouble(ByteBuffer content) throws IOException {
+        double value = content.getDouble(index);
         index += 8;
         return value;
     }
 
-    protected double[] readDoubleArray(byte[] content) throws IOException {
+    protected double[] readDoubleArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -910,7 +916,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected double[][] readDoubleArray2D(byte[] content) throws IOException {
+    protected double[][] readDoubleArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -922,7 +928,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // long primitive
 
-    protected long readLong(byte[] content) throws IOException {
+    protected long readLong(ByteBuffer content) throws IOException {
         byte[] bytes = inflateFrom(content, index);
         index += 1 + bytes.length;
         bytes = ByteUtils.rightAlignBytes(bytes, 8);
@@ -930,7 +936,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected long[] readLongArray(byte[] content) throws IOException {
+    protected long[] readLongArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -940,7 +946,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected long[][] readLongArray2D(byte[] content) throws IOException {
+    protected long[][] readLongArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -952,20 +958,20 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // short primitive
 
-    protected short readShort(byte[] content) throws IOException {
-        short value = ByteUtils.convertShortFromBytes(content, index);
+    protected short readShort(ByteBuffer content) throws IOException {
+        short value = content.getShort(index);
         index += 2;
         return value;
     }
 
-    protected short readShortForBuffer(byte[] content) throws IOException {
-        short number = (short) ((content[index+0] & 0xFF)
-                             + ((content[index+1] & 0xFF) << 8));
+    protected short readShortForBuffer(ByteBuffer content) throws IOException {
+        short number = (short) ((content.get(index+0) & 0xFF)
+                             + ((content.get(index+1) & 0xFF) << 8));
         index += 2;
         return number;
     }
 
-    protected short[] readShortArray(byte[] content) throws IOException {
+    protected short[] readShortArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -975,7 +981,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected short[][] readShortArray2D(byte[] content) throws IOException {
+    protected short[][] readShortArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -987,13 +993,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // boolean primitive
 
-    protected boolean readBoolean(byte[] content) throws IOException {
-        boolean value = ByteUtils.convertBooleanFromBytes(content, index);
+    protected boolean readBoolean(ByteBuffer content) throws IOException {
+        boolean value = content.get(index) != 0;
         index += 1;
         return value;
     }
 
-    protected boolean[] readBooleanArray(byte[] content) throws IOException {
+    protected boolean[] readBooleanArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1003,7 +1009,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected boolean[][] readBooleanArray2D(byte[] content) throws IOException {
+    protected boolean[][] readBooleanArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1013,20 +1019,18 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected String readString(byte[] content) throws IOException {
+    protected String readString(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         byte[] bytes = new byte[length];
-        for (int x = 0; x < length; x++) {
-            bytes[x] =  content[index++];
-        }
+        readBytes(content, bytes);
 
         return new String(bytes, StandardCharsets.UTF_8);
     }
 
-    protected String[] readStringArray(byte[] content) throws IOException {
+    protected String[] readStringArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1036,7 +1040,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected String[][] readStringArray2D(byte[] content) throws IOException {
+    protected String[][] readStringArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1048,7 +1052,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BitSet
 
-    protected BitSet readBitSet(byte[] content) throws IOException {
+    protected BitSet readBitSet(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1060,8 +1064,8 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // INFLATOR for int and long
 
-    protected static byte[] inflateFrom(byte[] contents, int index) {
-        byte firstByte = contents[index];
+    protected static byte[] inflateFrom(ByteBuffer contents, int index) {
+        byte firstByte = contents.get(index);
         if (firstByte == BinaryOutputCapsule.NULL_OBJECT)
             return ByteUtils.convertToBytes(BinaryOutputCapsule.NULL_OBJECT);
         else if (firstByte == BinaryOutputCapsule.DEFAULT_OBJECT)
@@ -1071,14 +1075,14 @@ final class BinaryInputCapsule implements InputCapsule {
         else {
             byte[] rVal = new byte[firstByte];
             for (int x = 0; x < rVal.length; x++)
-                rVal[x] = contents[x + 1 + index];
+                rVal[x] = contents.get(x + 1 + index);
             return rVal;
         }
     }
 
     // BinarySavable
 
-    protected ID readSavable(byte[] content) throws IOException {
+    protected ID readSavable(ByteBuffer content) throws IOException {
         int id = readInt(content);
         if (id == BinaryOutputCapsule.NULL_OBJECT) {
             return null;
@@ -1089,7 +1093,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BinarySavable array
 
-    protected ID[] readSavableArray(byte[] content) throws IOException {
+    protected ID[] readSavableArray(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1100,7 +1104,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected ID[][] readSavableArray2D(byte[] content) throws IOException {
+    protected ID[][] readSavableArray2D(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1111,7 +1115,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected ID[][][] readSavableArray3D(byte[] content) throws IOException {
+    protected ID[][][] readSavableArray3D(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1124,7 +1128,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BinarySavable map
 
-    protected ID[][] readSavableMap(byte[] content) throws IOException {
+    protected ID[][] readSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1135,7 +1139,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected StringIDMap readStringSavableMap(byte[] content) throws IOException {
+    protected StringIDMap readStringSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1147,7 +1151,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected IntIDMap readIntSavableMap(byte[] content) throws IOException {
+    protected IntIDMap readIntSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1162,7 +1166,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // ArrayList<FloatBuffer>
 
-    protected ArrayList<FloatBuffer> readFloatBufferArrayList(byte[] content)
+    protected ArrayList<FloatBuffer> readFloatBufferArrayList(ByteBuffer content)
             throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT) {
@@ -1177,7 +1181,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // ArrayList<ByteBuffer>
 
-    protected ArrayList<ByteBuffer> readByteBufferArrayList(byte[] content)
+    protected ArrayList<ByteBuffer> readByteBufferArrayList(ByteBuffer content)
             throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT) {
@@ -1191,18 +1195,34 @@ final class BinaryInputCapsule implements InputCapsule {
     }
 
     // NIO BUFFERS
+
+    /**
+     * Reads the little-endian data of a buffer, in native order. It's mapped
+     * from the file if the importer allows it, otherwise it's copied into a
+     * new direct buffer.
+     */
+    private ByteBuffer readBufferData(ByteBuffer content, int bytes) throws IOException {
+        ByteBuffer value = importer.mapBuffer(index, bytes);
+        if (value == null) {
+            ByteBuffer data = content.duplicate();
+            data.limit(index + bytes);
+            data.position(index);
+            value = BufferUtils.createByteBuffer(bytes);
+            value.put(data).rewind();
+        }
+        index += bytes;
+        return value;
+    }
+
     // float buffer
 
-    protected FloatBuffer readFloatBuffer(byte[] content) throws IOException {
+    protected FloatBuffer readFloatBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 4);
-            value.put(content, index, length * 4).rewind();
-            index += length * 4;
-            return value.asFloatBuffer();
+            return readBufferData(content, length * 4).asFloatBuffer();
         }else{
             FloatBuffer value = BufferUtils.createFloatBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1215,16 +1235,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // int buffer
 
-    protected IntBuffer readIntBuffer(byte[] content) throws IOException {
+    protected IntBuffer readIntBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 4);
-            value.put(content, index, length * 4).rewind();
-            index += length * 4;
-            return value.asIntBuffer();
+            return readBufferData(content, length * 4).asIntBuffer();
         }else{
             IntBuffer value = BufferUtils.createIntBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1237,16 +1254,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // byte buffer
 
-    protected ByteBuffer readByteBuffer(byte[] content) throws IOException {
+    protected ByteBuffer readByteBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length);
-            value.put(content, index, length).rewind();
-            index += length;
-            return value;
+            return readBufferData(content, length);
         }else{
             ByteBuffer value = BufferUtils.createByteBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1259,16 +1273,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // short buffer
 
-    protected ShortBuffer readShortBuffer(byte[] content) throws IOException {
+    protected ShortBuffer readShortBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 2);
-            value.put(content, index, length * 2).rewind();
-            index += length * 2;
-            return value.asShortBuffer();
+            return readBufferData(content, length * 2).asShortBuffer();
         }else{
             ShortBuffer value = BufferUtils.createShortBuffer(length);
             for (int x = 0; x < length; x++) {
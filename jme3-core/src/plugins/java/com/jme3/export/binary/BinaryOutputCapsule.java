@@ -37,6 +37,7 @@ import com.jme3.util.IntMap;
 import com.jme3.util.IntMap.Entry;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
@@ -58,11 +59,19 @@ final class BinaryOutputCapsule implements OutputCapsule {
     public static byte[] NULL_BYTES = new byte[] { (byte) -1 };
     public static byte[] DEFAULT_BYTES = new byte[] { (byte) -2 };
 
+    // the buffers smaller than this are always copied into the capsule
+    private static final int WRITE_THROUGH_THRESHOLD = 4096;
+
     protected ByteArrayOutputStream baos;
     protected byte[] bytes;
     protected BinaryExporter exporter;
     protected BinaryClassObject cObj;
 
+    // the large buffers left to a streaming exporter, and the offsets of
+    // their data in the bytes
+    protected ArrayList<Buffer> buffers;
+    protected int[] bufferOffsets;
+
     public BinaryOutputCapsule(BinaryExporter exporter, BinaryClassObject bco) {
         this.baos = new ByteArrayOutputStream();
         this.exporter = exporter;
@@ -472,6 +481,30 @@ final class BinaryOutputCapsule implements OutputCapsule {
         baos = null;
     }
 
+    /**
+     * Leaves the data of a large buffer to a streaming exporter, which writes
+     * it straight from the buffer once the capsule is finished.
+     *
+     * @param value a view of the data to write (not null)
+     * @param size the size of the data in bytes
+     * @return true if the data is left to the exporter, false if it has to be
+     *     written into the capsule
+     */
+    private boolean writeThrough(Buffer value, int size) {
+        if (!exporter.isStreaming() || size < WRITE_THROUGH_THRESHOLD) {
+            return false;
+        }
+        if (buffers == null) {
+            buffers = new ArrayList<>();
+            bufferOffsets = new int[4];
+        } else if (buffers.size() == bufferOffsets.length) {
+            bufferOffsets = Arrays.copyOf(bufferOffsets, bufferOffsets.length * 2);
+        }
+        bufferOffsets[buffers.size()] = baos.size();
+        buffers.add(value);
+        return true;
+    }
+
     // byte primitive
 
     protected void write(byte value) throws IOException {
@@ -916,6 +949,9 @@ final class BinaryOutputCapsule implements OutputCapsule {
         value.rewind();
         int length = value.limit();
         write(length);
+        if (writeThrough(value.duplicate(), length * 4)) {
+            return;
+        }
         for (int x = 0; x < length; x++) {
             writeForBuffer(value.get());
         }
@@ -932,6 +968,9 @@ final class BinaryOutputCapsule implements OutputCapsule {
         value.rewind();
         int length = value.limit();
         write(length);
+        if (writeThrough(value.duplicate(), length * 4)) {
+            return;
+        }
 
         for (int x = 0; x < length; x++) {
             writeForBuffer(value.get());
@@ -949,6 +988,9 @@ final class BinaryOutputCapsule implements OutputCapsule {
         value.rewind();
         int length = value.limit();
         write(length);
+        if (writeThrough(value.duplicate(), length)) {
+            return;
+        }
         for (int x = 0; x < length; x++) {
             writeForBuffer(value.get());
         }
@@ -965,6 +1007,9 @@ final class BinaryOutputCapsule implements OutputCapsule {
         value.rewind();
         int length = value.limit();
         write(length);
+        if (writeThrough(value.duplicate(), length * 2)) {
+            return;
+        }
         for (int x = 0; x < length; x++) {
             writeForBuffer(value.get());
         }
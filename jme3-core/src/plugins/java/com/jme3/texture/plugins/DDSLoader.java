@@ -39,11 +39,14 @@ import com.jme3.texture.Image.Format;
 import com.jme3.texture.Texture;
 import com.jme3.texture.image.ColorSpace;
 import com.jme3.util.BufferUtils;
+import com.jme3.util.ByteBufferInputStream;
 import com.jme3.util.LittleEndien;
 import java.io.DataInput;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -110,6 +113,8 @@ public class DDSLoader implements AssetLoader {
     private int[] sizes;
     private int redMask, greenMask, blueMask, alphaMask;
     private DataInput in;
+    // the data of the file if it's read from a buffer, positioned like in
+    private ByteBuffer source;
 
     public DDSLoader() {
     }
@@ -121,17 +126,51 @@ public class DDSLoader implements AssetLoader {
         }
 
         TextureKey textureKey = (TextureKey) info.getKey();
+        ByteBuffer buffer = info.openBuffer();
+        if (buffer != null) {
+            // the image data is copied straight from the buffer
+            source = buffer.order(ByteOrder.LITTLE_ENDIAN);
+            in = new ByteBufferInputStream(source);
+            try {
+                return load(textureKey);
+            } finally {
+                source = null;
+            }
+        }
         try (InputStream stream = info.openStream()) {
             in = new LittleEndien(stream);
-            loadHeader();
-            if (texture3D) {
-                textureKey.setTextureTypeHint(Texture.Type.ThreeDimensional);
-            } else if (depth > 1) {
-                textureKey.setTextureTypeHint(Texture.Type.CubeMap);
+            return load(textureKey);
+        }
+    }
+
+    private Image load(TextureKey textureKey) throws IOException {
+        loadHeader();
+        if (texture3D) {
+            textureKey.setTextureTypeHint(Texture.Type.ThreeDimensional);
+        } else if (depth > 1) {
+            textureKey.setTextureTypeHint(Texture.Type.CubeMap);
+        }
+        ArrayList<ByteBuffer> data = readData(textureKey.isFlipY());
+        return new Image(pixelFormat, width, height, depth, data, sizes, ColorSpace.sRGB);
+    }
+
+    /**
+     * Reads the next bytes of the image data, as a slice of the source buffer
+     * if there is one.
+     */
+    private ByteBuffer readBytes(int length) throws IOException {
+        if (source != null) {
+            if (length > source.remaining()) {
+                throw new EOFException();
             }
-            ArrayList<ByteBuffer> data = readData(textureKey.isFlipY());
-            return new Image(pixelFormat, width, height, depth, data, sizes, ColorSpace.sRGB);
+            ByteBuffer data = source.slice();
+            data.limit(length);
+            source.position(source.position() + length);
+            return data;
         }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return ByteBuffer.wrap(data);
     }
 
     public Image load(InputStream stream) throws IOException {
@@ -514,12 +553,13 @@ public class DDSLoader implements AssetLoader {
         int mipHeight = height;
 
         for (int mip = 0; mip < mipMapCount; mip++) {
-            byte[] data = new byte[sizes[mip]];
-            in.readFully(data);
             if (flip) {
-                data = flipData(data, mipWidth * bpp / 8, mipHeight);
+                byte[] data = new byte[sizes[mip]];
+                in.readFully(data);
+                buffer.put(flipData(data, mipWidth * bpp / 8, mipHeight));
+            } else {
+                buffer.put(readBytes(sizes[mip]));
             }
-            buffer.put(data);
 
             mipWidth = Math.max(mipWidth / 2, 1);
             mipHeight = Math.max(mipHeight / 2, 1);
@@ -613,16 +653,11 @@ public class DDSLoader implements AssetLoader {
 
         for (int mip = 0; mip < mipMapCount; mip++) {
             if (flip) {
-                byte[] data = new byte[sizes[mip]];
-                in.readFully(data);
-                ByteBuffer wrapped = ByteBuffer.wrap(data);
-                wrapped.rewind();
-                ByteBuffer flipped = DXTFlipper.flipDXT(wrapped, mipWidth, mipHeight, pixelFormat);
+                ByteBuffer data = readBytes(sizes[mip]);
+                ByteBuffer flipped = DXTFlipper.flipDXT(data, mipWidth, mipHeight, pixelFormat);
                 buffer.put(flipped);
             } else {
-                byte[] data = new byte[sizes[mip]];
-                in.readFully(data);
-                buffer.put(data);
+                buffer.put(readBytes(sizes[mip]));
             }
 
             mipWidth = Math.max(mipWidth / 2, 1);
@@ -655,12 +690,13 @@ public class DDSLoader implements AssetLoader {
             int mipHeight = height;
 
             for (int mip = 0; mip < mipMapCount; mip++) {
-                byte[] data = new byte[sizes[mip]];
-                in.readFully(data);
                 if (flip) {
-                    data = flipData(data, mipWidth * bpp / 8, mipHeight);
+                    byte[] data = new byte[sizes[mip]];
+                    in.readFully(data);
+                    buffer.put(flipData(data, mipWidth * bpp / 8, mipHeight));
+                } else {
+                    buffer.put(readBytes(sizes[mip]));
                 }
-                buffer.put(data);
 
                 mipWidth = Math.max(mipWidth / 2, 1);
                 mipHeight = Math.max(mipHeight / 2, 1);
@@ -758,17 +794,12 @@ public class DDSLoader implements AssetLoader {
             int mipHeight = height;
             for (int mip = 0; mip < mipMapCount; mip++) {
                 if (flip) {
-                    byte[] data = new byte[sizes[mip]];
-                    in.readFully(data);
-                    ByteBuffer wrapped = ByteBuffer.wrap(data);
-                    wrapped.rewind();
-                    ByteBuffer flipped = DXTFlipper.flipDXT(wrapped, mipWidth, mipHeight, pixelFormat);
+                    ByteBuffer data = readBytes(sizes[mip]);
+                    ByteBuffer flipped = DXTFlipper.flipDXT(data, mipWidth, mipHeight, pixelFormat);
                     flipped.rewind();
                     buffer.put(flipped);
                 } else {
-                    byte[] data = new byte[sizes[mip]];
-                    in.readFully(data);
-                    buffer.put(data);
+                    buffer.put(readBytes(sizes[mip]));
                 }
 
                 mipWidth = Math.max(mipWidth / 2, 1);
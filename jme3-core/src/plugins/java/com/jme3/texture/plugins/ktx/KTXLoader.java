@@ -40,12 +40,14 @@ import com.jme3.renderer.opengl.GLImageFormats;
 import com.jme3.texture.Image;
 import com.jme3.texture.image.ColorSpace;
 import com.jme3.util.BufferUtils;
+import com.jme3.util.ByteBufferInputStream;
 import com.jme3.util.LittleEndien;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -77,6 +79,11 @@ public class KTXLoader implements AssetLoader {
             throw new IllegalArgumentException("Texture assets must be loaded using a TextureKey");
         }
 
+        ByteBuffer buffer = info.openBuffer();
+        if (buffer != null) {
+            // the pixels are read straight from the buffer
+            return load(new ByteBufferInputStream(buffer.order(ByteOrder.BIG_ENDIAN)));
+        }
         InputStream in = null;
         try {
             in = info.openStream();
@@ -93,7 +100,8 @@ public class KTXLoader implements AssetLoader {
 
         byte[] fileId = new byte[12];
 
-        DataInput in = new DataInputStream(stream);
+        DataInput in = stream instanceof ByteBufferInputStream
+                ? (ByteBufferInputStream) stream : new DataInputStream(stream);
         try {
             stream.read(fileId, 0, 12);
             if (!checkFileIdentifier(fileId)) {
@@ -103,7 +111,11 @@ public class KTXLoader implements AssetLoader {
             int endianness = in.readInt();
             //opposite endianness
             if (endianness == 0x01020304) {
-                in = new LittleEndien(stream);
+                if (stream instanceof ByteBufferInputStream) {
+                    ((ByteBufferInputStream) stream).getBuffer().order(ByteOrder.LITTLE_ENDIAN);
+                } else {
+                    in = new LittleEndien(stream);
+                }
             }
             int glType = in.readInt();
             int glTypeSize = in.readInt();
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the DiskAssetCache reuses the loaded assets across asset
+ * managers, and only while their sources and dependencies are unchanged.
+ */
+public class DiskAssetCacheTest {
+
+    private static final Map<String, String> CONTENTS = new ConcurrentHashMap<>();
+    private static final AtomicInteger LOAD_COUNT = new AtomicInteger();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        CONTENTS.clear();
+        LOAD_COUNT.set(0);
+        directory = Files.createTempDirectory("diskcache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        new DiskAssetCache(directory).clear();
+        directory.delete();
+    }
+
+    private DesktopAssetManager createAssetManager() {
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator("/", MemoryLocator.class);
+        assetManager.registerLoader(ModelLoader.class, "model");
+        assetManager.registerLoader(ImageLoader.class, "image");
+        assetManager.setDiskCache(new DiskAssetCache(directory));
+        return assetManager;
+    }
+
+    private Spatial loadModel() {
+        return createAssetManager().loadModel("scene.model");
+    }
+
+    @Test
+    public void testReuse() {
+        CONTENTS.put("scene.model", "box\nboxes.list");
+        CONTENTS.put("boxes.list", "2");
+
+        Spatial first = loadModel();
+        Assert.assertEquals(1, LOAD_COUNT.get());
+        Spatial second = loadModel();
+        Assert.assertEquals(1, LOAD_COUNT.get());
+        Assert.assertEquals(first.getName(), second.getName());
+        Assert.assertEquals(2, ((Node) second).getQuantity());
+        Assert.assertEquals(first.getTriangleCount(), second.getTriangleCount());
+    }
+
+    @Test
+    public void testChangedSource() {
+        CONTENTS.put("scene.model", "box\nboxes.list");
+        CONTENTS.put("boxes.list", "2");
+        loadModel();
+
+        CONTENTS.put("scene.model", "cube\nboxes.list");
+        Assert.assertEquals("cube", loadModel().getName());
+        Assert.assertEquals(2, LOAD_COUNT.get());
+        loadModel();
+        Assert.assertEquals(2, LOAD_COUNT.get());
+    }
+
+    @Test
+    public void testChangedDependency() {
+        CONTENTS.put("scene.model", "box\nboxes.list");
+        CONTENTS.put("boxes.list", "2");
+        loadModel();
+
+        CONTENTS.put("boxes.list", "3");
+        Assert.assertEquals(3, ((Node) loadModel()).getQuantity());
+        Assert.assertEquals(2, LOAD_COUNT.get());
+    }
+
+    @Test
+    public void testCorruptedEntry() throws IOException {
+        CONTENTS.put("scene.model", "box\nboxes.list");
+        CONTENTS.put("boxes.list", "2");
+        loadModel();
+
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(".jcache"));
+        Assert.assertEquals(1, entries.length);
+        try (RandomAccessFile file = new RandomAccessFile(entries[0], "rw")) {
+            file.seek(file.length() - 10);
+            file.write(0x55);
+        }
+        Assert.assertEquals(2, ((Node) loadModel()).getQuantity());
+        Assert.assertEquals(2, LOAD_COUNT.get());
+        loadModel();
+        Assert.assertEquals(2, LOAD_COUNT.get());
+    }
+
+    @Test
+    public void testImage() {
+        CONTENTS.put("red.image", "");
+        Texture first = createAssetManager().loadTexture("red.image");
+        Texture second = createAssetManager().loadTexture("red.image");
+        Assert.assertEquals(1, LOAD_COUNT.get());
+        Assert.assertEquals(first.getImage().getWidth(), second.getImage().getWidth());
+        Assert.assertEquals(first.getImage().getData(0), second.getImage().getData(0));
+    }
+
+    public static class MemoryLocator implements AssetLocator {
+
+        @Override
+        public void setRootPath(String rootPath) {
+        }
+
+        @Override
+        public AssetInfo locate(AssetManager manager, AssetKey key) {
+            String content = CONTENTS.get(key.getName());
+            if (content == null) {
+                return null;
+            }
+            return new AssetInfo(manager, key) {
+                @Override
+                public InputStream openStream() {
+                    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+                }
+            };
+        }
+    }
+
+    /**
+     * Loads a node with the name on the first line, and as many boxes as
+     * given by the asset named on the second line.
+     */
+    public static class ModelLoader implements AssetLoader {
+
+        @Override
+        public Object load(AssetInfo assetInfo) throws IOException {
+            LOAD_COUNT.incrementAndGet();
+            String name;
+            String list;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    assetInfo.openStream(), StandardCharsets.UTF_8))) {
+                name = reader.readLine();
+                list = reader.readLine();
+            }
+            AssetInfo listInfo = assetInfo.getManager().locateAsset(new AssetKey<>(list));
+            int count;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    listInfo.openStream(), StandardCharsets.UTF_8))) {
+                count = Integer.parseInt(reader.readLine());
+            }
+            Node node = new Node(name);
+            for (int i = 0; i < count; i++) {
+                node.attachChild(new Geometry("box" + i, new Box(i + 1, 1, 1)));
+            }
+            return node;
+        }
+    }
+
+    public static class ImageLoader implements AssetLoader {
+
+        @Override
+        public Object load(AssetInfo assetInfo) {
+            LOAD_COUNT.incrementAndGet();
+            ByteBuffer data = BufferUtils.createByteBuffer(4 * 4 * 4);
+            for (int i = 0; i < 16; i++) {
+                data.put((byte) 255).put((byte) 0).put((byte) 0).put((byte) 255);
+            }
+            data.flip();
+            return new Image(Image.Format.RGBA8, 4, 4, data, ColorSpace.sRGB);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the asynchronous loads of the DesktopAssetManager: deduplication,
+ * priorities, cancellation, and prefetching of the recorded dependencies.
+ */
+public class ThreadingManagerTest {
+
+    // the assets, each one is the list of its dependencies
+    private static final Map<String, String> CONTENTS = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> LOAD_COUNTS = new ConcurrentHashMap<>();
+    private static final Map<String, CountDownLatch> BLOCKERS = new ConcurrentHashMap<>();
+    private static final List<String> LOAD_ORDER = new CopyOnWriteArrayList<>();
+
+    private DesktopAssetManager assetManager;
+
+    @Before
+    public void setUp() {
+        CONTENTS.clear();
+        LOAD_COUNTS.clear();
+        BLOCKERS.clear();
+        LOAD_ORDER.clear();
+        assetManager = new DesktopAssetManager();
+        assetManager.registerLocator("/", MemoryLocator.class);
+        assetManager.registerLoader(DependencyLoader.class, "dep");
+    }
+
+    @After
+    public void tearDown() {
+        // release any blocked load, then stop the loading threads
+        for (CountDownLatch blocker : BLOCKERS.values()) {
+            blocker.countDown();
+        }
+        assetManager.getThreadingManager().executor.shutdownNow();
+    }
+
+    /**
+     * Concurrent requests for the same key share one load.
+     */
+    @Test
+    public void testDeduplication() throws Exception {
+        CONTENTS.put("model.dep", "");
+        CountDownLatch blocker = block(poolSize());
+
+        AssetKey<String> key = new AssetKey<>("model.dep");
+        Future<String> first = assetManager.loadAssetAsync(key);
+        Future<String> second = assetManager.loadAssetAsync(key, AssetLoadPriority.CRITICAL);
+        blocker.countDown();
+
+        Assert.assertEquals("model.dep", first.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("model.dep", second.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, loadCount("model.dep"));
+    }
+
+    /**
+     * The queued loads start by priority class, then in request order.
+     */
+    @Test
+    public void testPriorities() throws Exception {
+        CONTENTS.put("prefetch.dep", "");
+        CONTENTS.put("visible.dep", "");
+        CONTENTS.put("critical.dep", "");
+        CONTENTS.put("raised.dep", "");
+        int threads = poolSize();
+        CountDownLatch[] blockers = new CountDownLatch[threads];
+        for (int i = 0; i < threads; i++) {
+            blockers[i] = block(1);
+        }
+
+        Future<?> prefetch = assetManager.loadAssetAsync(
+                new AssetKey<>("prefetch.dep"), AssetLoadPriority.PREFETCH);
+        Future<?> raised = assetManager.loadAssetAsync(
+                new AssetKey<>("raised.dep"), AssetLoadPriority.PREFETCH);
+        Future<?> visible = assetManager.loadAssetAsync(
+                new AssetKey<>("visible.dep"), AssetLoadPriority.VISIBLE);
+        Future<?> critical = assetManager.loadAssetAsync(
+                new AssetKey<>("critical.dep"), AssetLoadPriority.CRITICAL);
+        assetManager.loadAssetAsync(new AssetKey<>("raised.dep"), AssetLoadPriority.CRITICAL);
+
+        // a single free thread takes the queued loads one by one
+        blockers[0].countDown();
+        prefetch.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(raised.isDone() && visible.isDone() && critical.isDone());
+        Assert.assertEquals("raised.dep", LOAD_ORDER.get(threads));
+        Assert.assertEquals("critical.dep", LOAD_ORDER.get(threads + 1));
+        Assert.assertEquals("visible.dep", LOAD_ORDER.get(threads + 2));
+        Assert.assertEquals("prefetch.dep", LOAD_ORDER.get(threads + 3));
+        for (CountDownLatch blocker : blockers) {
+            blocker.countDown();
+        }
+    }
+
+    /**
+     * A shared load is only cancelled once all its requests are.
+     */
+    @Test
+    public void testCancellation() throws Exception {
+        CONTENTS.put("stale.dep", "");
+        CONTENTS.put("shared.dep", "");
+        CountDownLatch blocker = block(poolSize());
+
+        Future<String> stale = assetManager.loadAssetAsync(new AssetKey<>("stale.dep"));
+        Future<String> shared = assetManager.loadAssetAsync(new AssetKey<>("shared.dep"));
+        Future<String> cancelled = assetManager.loadAssetAsync(new AssetKey<>("shared.dep"));
+        Assert.assertTrue(stale.cancel(false));
+        Assert.assertTrue(cancelled.cancel(false));
+        Assert.assertTrue(stale.isCancelled());
+        blocker.countDown();
+
+        Assert.assertEquals("shared.dep", shared.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, loadCount("stale.dep"));
+        Assert.assertEquals(1, loadCount("shared.dep"));
+    }
+
+    /**
+     * The dependencies requested while loading an asset are recorded, and
+     * loaded along with it the next time, without being loaded twice.
+     */
+    @Test
+    public void testPrefetchDependencies() throws Exception {
+        CONTENTS.put("model.dep", "material.dep");
+        CONTENTS.put("material.dep", "texture1.dep\ntexture2.dep");
+        CONTENTS.put("texture1.dep", "");
+        CONTENTS.put("texture2.dep", "");
+        AssetKey<String> model = new AssetKey<>("model.dep");
+
+        assetManager.loadAssetAsync(model).get(5, TimeUnit.SECONDS);
+        ThreadingManager threadingManager = assetManager.getThreadingManager();
+        Assert.assertEquals(3, threadingManager.getDependencies(model).size());
+        Assert.assertTrue(threadingManager.getDependencies(model)
+                .contains(new AssetKey<>("texture2.dep")));
+
+        assetManager.clearCache();
+        LOAD_COUNTS.clear();
+        LOAD_ORDER.clear();
+        Assert.assertEquals("model.dep", assetManager.loadAssetAsync(model).get(5, TimeUnit.SECONDS));
+        for (String name : CONTENTS.keySet()) {
+            Assert.assertEquals(name, 1, loadCount(name));
+        }
+        Assert.assertEquals(4, LOAD_ORDER.size());
+    }
+
+    /**
+     * Only the dependencies of the most recently requested assets are kept.
+     */
+    @Test
+    public void testRecordedDependenciesBound() {
+        ThreadingManager threadingManager = assetManager.getThreadingManager();
+        CONTENTS.put("texture.dep", "");
+        int count = ThreadingManager.MAX_RECORDED_ASSETS + 1;
+        for (int i = 0; i < count; i++) {
+            CONTENTS.put("model" + i + ".dep", "texture.dep");
+            assetManager.loadAsset(new AssetKey<>("model" + i + ".dep"));
+        }
+
+        Assert.assertTrue(threadingManager.getDependencies(new AssetKey<>("model0.dep")).isEmpty());
+        for (int i = 1; i < count; i++) {
+            Assert.assertEquals(1, threadingManager.getDependencies(
+                    new AssetKey<>("model" + i + ".dep")).size());
+        }
+    }
+
+    private int poolSize() {
+        return assetManager.getThreadingManager().executor.getCorePoolSize();
+    }
+
+    /**
+     * Occupies loading threads until the returned latch is released.
+     */
+    private CountDownLatch block(int threads) throws InterruptedException {
+        CountDownLatch blocker = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            String name = "block" + BLOCKERS.size() + ".dep";
+            CONTENTS.put(name, "");
+            BLOCKERS.put(name, blocker);
+            LOAD_COUNTS.put(name, new AtomicInteger());
+            assetManager.loadAssetAsync(new AssetKey<>(name), AssetLoadPriority.CRITICAL);
+        }
+        // wait for the loads to start
+        while (LOAD_ORDER.size() < BLOCKERS.size()) {
+            Thread.sleep(1);
+        }
+        return blocker;
+    }
+
+    private static int loadCount(String name) {
+        AtomicInteger count = LOAD_COUNTS.get(name);
+        return count == null ? 0 : count.get();
+    }
+
+    public static class MemoryLocator implements AssetLocator {
+
+        @Override
+        public void setRootPath(String rootPath) {
+        }
+
+        @Override
+        public AssetInfo locate(AssetManager manager, AssetKey key) {
+            String content = CONTENTS.get(key.getName());
+            if (content == null) {
+                return null;
+            }
+            return new AssetInfo(manager, key) {
+                @Override
+                public InputStream openStream() {
+                    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+                }
+            };
+        }
+    }
+
+    /**
+     * Loads the dependencies listed in an asset, and returns its name.
+     */
+    public static class DependencyLoader implements AssetLoader {
+
+        @Override
+        public Object load(AssetInfo assetInfo) throws java.io.IOException {
+            String name = assetInfo.getKey().getName();
+            LOAD_ORDER.add(name);
+            LOAD_COUNTS.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+            CountDownLatch blocker = BLOCKERS.get(name);
+            if (blocker != null) {
+                try {
+                    blocker.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (String dependency : CONTENTS.get(name).split("\n")) {
+                if (!dependency.isEmpty()) {
+                    assetInfo.getManager().loadAsset(new AssetKey<>(dependency));
+                }
+            }
+            return name;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.TextureKey;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the byte accounting and the eviction order of the LruAssetCache.
+ */
+public class LruAssetCacheTest {
+
+    private static Image image(int size) {
+        return new Image(Image.Format.RGBA8, size, size,
+                BufferUtils.createByteBuffer(size * size * 4), ColorSpace.Linear);
+    }
+
+    @Test
+    public void testSizeEstimates() {
+        LruAssetCache cache = new LruAssetCache();
+        cache.addToCache(new AssetKey<>("image"), image(16));
+        Assert.assertEquals(16 * 16 * 4, cache.getSizeInBytes());
+
+        cache.addToCache(new TextureKey("texture"), new Texture2D(image(8)));
+        Assert.assertEquals(16 * 16 * 4 + 8 * 8 * 4, cache.getSizeInBytes());
+        cache.clearCache();
+
+        // the shared mesh is counted once
+        Box box = new Box(1, 1, 1);
+        Node model = new Node("model");
+        model.attachChild(new Geometry("a", box));
+        model.attachChild(new Geometry("b", box));
+        cache.addToCache(new AssetKey<>("model"), model);
+        long meshSize = 24 * 3 * 4 + 24 * 3 * 4 + 24 * 2 * 4 + 36 * 2;
+        Assert.assertEquals(meshSize, cache.getSizeInBytes());
+
+        Assert.assertTrue(cache.deleteFromCache(new AssetKey<>("model")));
+        Assert.assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        int imageSize = 16 * 16 * 4;
+        LruAssetCache cache = new LruAssetCache(3 * imageSize);
+        AssetKey<Image> a = new AssetKey<>("a");
+        AssetKey<Image> b = new AssetKey<>("b");
+        AssetKey<Image> c = new AssetKey<>("c");
+        AssetKey<Image> d = new AssetKey<>("d");
+        cache.addToCache(a, image(16));
+        cache.addToCache(b, image(16));
+        cache.addToCache(c, image(16));
+        Assert.assertNotNull(cache.getFromCache(a));
+
+        // b is the least recently used one
+        cache.addToCache(d, image(16));
+        Assert.assertNull(cache.getFromCache(b));
+        Assert.assertNotNull(cache.getFromCache(a));
+        Assert.assertNotNull(cache.getFromCache(c));
+        Assert.assertNotNull(cache.getFromCache(d));
+        Assert.assertEquals(3 * imageSize, cache.getSizeInBytes());
+        Assert.assertEquals(4, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getEvictionCount());
+
+        // replacing an asset updates its size
+        cache.addToCache(a, image(8));
+        Assert.assertEquals(2 * imageSize + 8 * 8 * 4, cache.getSizeInBytes());
+
+        cache.setMaxBytes(imageSize);
+        Assert.assertEquals(1, cache.getAssetCount());
+        Assert.assertNotNull(cache.getFromCache(a));
+        Assert.assertEquals(3, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testAssetBiggerThanBudget() {
+        LruAssetCache cache = new LruAssetCache(100);
+        cache.addToCache(new AssetKey<>("small"), image(2));
+        cache.addToCache(new AssetKey<>("big"), image(16));
+        Assert.assertEquals(0, cache.getAssetCount());
+        Assert.assertEquals(0, cache.getSizeInBytes());
+    }
+
+    public static class TestCache extends LruAssetCache {
+        public TestCache() {
+            super(1024);
+        }
+    }
+
+    @Test
+    public void testAssetManagerCache() {
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        AssetKey<Image> key = new AssetKey<Image>("image") {
+            @Override
+            public Class<? extends AssetCache> getCacheType() {
+                return TestCache.class;
+            }
+        };
+        Image image = image(8);
+        assetManager.addToCache(key, image);
+        Assert.assertSame(image, assetManager.getFromCache(key));
+
+        TestCache cache = assetManager.getCache(TestCache.class);
+        Assert.assertEquals(1024, cache.getMaxBytes());
+        Assert.assertEquals(8 * 8 * 4, cache.getSizeInBytes());
+        Assert.assertEquals(1, cache.getHitCount());
+    }
+}
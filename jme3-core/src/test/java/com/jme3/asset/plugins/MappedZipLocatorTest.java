@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.plugins;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.asset.TextureKey;
+import com.jme3.audio.AudioBuffer;
+import com.jme3.audio.AudioKey;
+import com.jme3.audio.plugins.WAVLoader;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.export.binary.BinaryLoader;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.texture.Image;
+import com.jme3.texture.plugins.DDSLoader;
+import com.jme3.texture.plugins.ktx.KTXLoader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the stored and compressed entries of the MappedZipLocator, and the
+ * loaders which read them as buffers.
+ */
+public class MappedZipLocatorTest {
+
+    private static final String[] TEXTURES = {
+        "Textures/Terrain/BrickWall/BrickWall.dds",
+        "Textures/Terrain/BrickWall/BrickWall_dxt5.dds",
+        "Textures/ktx/rgba-reference.ktx"
+    };
+
+    private static File archive;
+    private static byte[] text;
+    private static byte[] samples;
+
+    @BeforeClass
+    public static void createArchive() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        text = sb.toString().getBytes("UTF-8");
+        samples = new byte[4000];
+        new Random(1).nextBytes(samples);
+
+        ByteArrayOutputStream model = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(new Geometry("sphere", new Sphere(32, 32, 1f)), model);
+
+        archive = File.createTempFile("mappedzip", ".zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.setComment("a comment after the end header");
+            putEntry(zip, "Text/stored.txt", text, false);
+            putEntry(zip, "Text/deflated.txt", text, true);
+            putEntry(zip, "Models/sphere.j3o", model.toByteArray(), false);
+            putEntry(zip, "Models/deflated.j3o", model.toByteArray(), true);
+            putEntry(zip, "Sounds/noise.wav", createWav(samples), false);
+            for (String texture : TEXTURES) {
+                try (InputStream in = MappedZipLocatorTest.class.getResourceAsStream("/" + texture)) {
+                    putEntry(zip, texture, readAll(in), false);
+                }
+            }
+        }
+    }
+
+    @AfterClass
+    public static void deleteArchive() {
+        archive.delete();
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, byte[] data,
+            boolean deflate) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (!deflate) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    private static byte[] createWav(byte[] samples) {
+        ByteBuffer wav = ByteBuffer.allocate(44 + samples.length).order(ByteOrder.LITTLE_ENDIAN);
+        wav.putInt(0x46464952).putInt(36 + samples.length).putInt(0x45564157);
+        wav.putInt(0x20746D66).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(22050).putInt(44100).putShort((short) 2).putShort((short) 16);
+        wav.putInt(0x61746164).putInt(samples.length).put(samples);
+        return wav.array();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        for (int read; (read = in.read(buffer)) != -1;) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+    private DesktopAssetManager createAssetManager() {
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator(archive.getAbsolutePath(), MappedZipLocator.class);
+        assetManager.registerLoader(BinaryLoader.class, "j3o");
+        assetManager.registerLoader(WAVLoader.class, "wav");
+        assetManager.registerLoader(DDSLoader.class, "dds");
+        assetManager.registerLoader(KTXLoader.class, "ktx");
+        return assetManager;
+    }
+
+    @Test
+    public void testEntries() throws IOException {
+        DesktopAssetManager assetManager = createAssetManager();
+        AssetInfo stored = assetManager.locateAsset(new AssetKey<>("Text/stored.txt"));
+        AssetInfo deflated = assetManager.locateAsset(new AssetKey<>("/Text/deflated.txt"));
+        Assert.assertNull(assetManager.locateAsset(new AssetKey<>("Text/missing.txt")));
+
+        Assert.assertArrayEquals(text, readAll(stored.openStream()));
+        Assert.assertArrayEquals(text, readAll(deflated.openStream()));
+        // twice, to reuse the pooled inflater
+        Assert.assertArrayEquals(text, readAll(deflated.openStream()));
+
+        ByteBuffer storedBuffer = stored.openBuffer();
+        Assert.assertTrue(storedBuffer.isDirect());
+        Assert.assertTrue(storedBuffer.isReadOnly());
+        Assert.assertArrayEquals(text, toArray(storedBuffer));
+        ByteBuffer deflatedBuffer = deflated.openBuffer();
+        Assert.assertTrue(deflatedBuffer.isDirect());
+        Assert.assertArrayEquals(text, toArray(deflatedBuffer));
+    }
+
+    @Test
+    public void testBinaryImporter() {
+        int threshold = BinaryImporter.getMappedBufferThreshold();
+        BinaryImporter.setMappedBufferThreshold(1024);
+        try {
+            DesktopAssetManager assetManager = createAssetManager();
+            Geometry stored = (Geometry) assetManager.loadModel(new ModelKey("Models/sphere.j3o"));
+            Geometry deflated = (Geometry) assetManager.loadModel(new ModelKey("Models/deflated.j3o"));
+            Assert.assertEquals(new Sphere(32, 32, 1f).getVertexCount(), stored.getMesh().getVertexCount());
+            Assert.assertEquals(stored.getMesh().getVertexCount(), deflated.getMesh().getVertexCount());
+
+            if (BinaryImporter.canUseFastBuffers()) {
+                // the positions are a slice of the archive
+                VertexBuffer positions = stored.getMesh().getBuffer(VertexBuffer.Type.Position);
+                Assert.assertTrue(positions.getData().isReadOnly());
+            }
+            Assert.assertEquals(
+                    stored.getMesh().getBuffer(VertexBuffer.Type.Position).getData(),
+                    deflated.getMesh().getBuffer(VertexBuffer.Type.Position).getData());
+        } finally {
+            BinaryImporter.setMappedBufferThreshold(threshold);
+        }
+    }
+
+    @Test
+    public void testWav() {
+        DesktopAssetManager assetManager = createAssetManager();
+        AudioBuffer audio = (AudioBuffer) assetManager.loadAudio(new AudioKey("Sounds/noise.wav"));
+        Assert.assertEquals(22050, audio.getSampleRate());
+        Assert.assertEquals(16, audio.getBitsPerSample());
+        Assert.assertArrayEquals(samples, toArray(audio.getData()));
+    }
+
+    @Test
+    public void testTextures() {
+        DesktopAssetManager zipManager = createAssetManager();
+        // the same archive, read through streams
+        DesktopAssetManager streamManager = new DesktopAssetManager();
+        streamManager.registerLocator(archive.getAbsolutePath(), ZipLocator.class);
+        streamManager.registerLoader(DDSLoader.class, "dds");
+        streamManager.registerLoader(KTXLoader.class, "ktx");
+
+        for (String texture : TEXTURES) {
+            for (boolean flip : new boolean[]{false, true}) {
+                Image expected = streamManager.loadTexture(new TextureKey(texture, flip)).getImage();
+                Image actual = zipManager.loadTexture(new TextureKey(texture, flip)).getImage();
+                Assert.assertEquals(expected.getFormat(), actual.getFormat());
+                Assert.assertEquals(expected.getData().size(), actual.getData().size());
+                for (int i = 0; i < expected.getData().size(); i++) {
+                    Assert.assertEquals(texture, expected.getData(i), actual.getData(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that the streaming mode of the BinaryExporter writes the same
+ * objects as the regular mode.
+ */
+public class BinaryExporterTest {
+
+    private File regularFile;
+    private File streamedFile;
+
+    @After
+    public void tearDown() {
+        if (regularFile != null) {
+            regularFile.delete();
+        }
+        if (streamedFile != null) {
+            streamedFile.delete();
+        }
+    }
+
+    /**
+     * A streamed file holds the same objects, with the same duplicates
+     * removed, so it has the same size as a regular one.
+     */
+    @Test
+    public void testStreamingToFile() throws IOException {
+        Node scene = createScene();
+        regularFile = File.createTempFile("regular", ".j3o");
+        streamedFile = File.createTempFile("streamed", ".j3o");
+        BinaryExporter.getInstance().save(scene, regularFile);
+        BinaryExporter exporter = BinaryExporter.getInstance();
+        exporter.setStreaming(true);
+        exporter.save(scene, streamedFile);
+
+        Assert.assertEquals(regularFile.length(), streamedFile.length());
+        assertSameScene(scene, (Node) BinaryImporter.getInstance().load(streamedFile));
+    }
+
+    /**
+     * Streaming also works without a target file.
+     */
+    @Test
+    public void testStreamingToStream() throws IOException {
+        Node scene = createScene();
+        ByteArrayOutputStream regular = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(scene, regular);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        BinaryExporter exporter = BinaryExporter.getInstance();
+        exporter.setStreaming(true);
+        exporter.save(scene, streamed);
+
+        Assert.assertEquals(regular.size(), streamed.size());
+        assertSameScene(scene, (Node) BinaryImporter.getInstance().load(streamed.toByteArray()));
+    }
+
+    /**
+     * Records written with one-byte aliases are widened when the aliases
+     * need more bytes in the end.
+     */
+    @Test
+    public void testWidenedAliases() throws IOException {
+        BinaryExporter exporter = BinaryExporter.getInstance();
+        BinaryClassObject small = new BinaryClassObject();
+        small.alias = new byte[]{7};
+        small.nameFields = new HashMap<>();
+        BinaryClassObject large = new BinaryClassObject();
+        large.alias = new byte[]{1, 2};
+        large.nameFields = new HashMap<>();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryContentWriter writer = new BinaryContentWriter(exporter, null)) {
+            int first = writer.write(small, "Small", capsule(exporter, small, 3));
+            int second = writer.write(large, "Large", capsule(exporter, large, 5));
+            int duplicate = writer.write(small, "Small", capsule(exporter, small, 3));
+            Assert.assertEquals(first, duplicate);
+            Assert.assertEquals(0, writer.relocate(first, 2));
+            Assert.assertEquals(second + 1, writer.relocate(second, 2));
+            Assert.assertEquals(2 + 4 + 1 + 2 + 4 + 1, writer.copyTo(out, null, 2));
+        }
+
+        byte[] data = out.toByteArray();
+        Assert.assertArrayEquals(new byte[]{
+            0, 7, 0, 0, 0, 1, 3,
+            1, 2, 0, 0, 0, 1, 5}, data);
+    }
+
+    private static BinaryOutputCapsule capsule(BinaryExporter exporter,
+            BinaryClassObject bco, int value) throws IOException {
+        BinaryOutputCapsule cap = new BinaryOutputCapsule(exporter, bco);
+        cap.write((byte) value);
+        cap.finish();
+        return cap;
+    }
+
+    private static Node createScene() {
+        Node scene = new Node("scene");
+        // large buffers, and identical objects which are only written once
+        for (int i = 0; i < 3; i++) {
+            Geometry sphere = new Geometry("sphere" + i, new Sphere(64, 64, 2f));
+            sphere.setUserData("direction", new Vector3f(0f, 1f, 0f));
+            scene.attachChild(sphere);
+        }
+        scene.attachChild(new Geometry("box", new Box(1f, 2f, 3f)));
+
+        ByteBuffer pixels = BufferUtils.createByteBuffer(256 * 256 * 4);
+        for (int i = 0; i < pixels.capacity(); i++) {
+            pixels.put((byte) (i * 31));
+        }
+        pixels.flip();
+        scene.setUserData("image", new Image(Image.Format.RGBA8, 256, 256,
+                pixels, ColorSpace.Linear));
+        return scene;
+    }
+
+    private static void assertSameScene(Node expected, Node actual) {
+        Assert.assertEquals(expected.getQuantity(), actual.getQuantity());
+        for (int i = 0; i < expected.getQuantity(); i++) {
+            Geometry expectedGeometry = (Geometry) expected.getChild(i);
+            Geometry actualGeometry = (Geometry) actual.getChild(i);
+            Assert.assertEquals(expectedGeometry.getName(), actualGeometry.getName());
+            Assert.assertEquals((Object) expectedGeometry.getUserData("direction"),
+                    actualGeometry.getUserData("direction"));
+            Mesh expectedMesh = expectedGeometry.getMesh();
+            Mesh actualMesh = actualGeometry.getMesh();
+            for (VertexBuffer vb : expectedMesh.getBufferList()) {
+                Buffer data = vb.getData();
+                Buffer actualData = actualMesh.getBuffer(vb.getBufferType()).getData();
+                data.rewind();
+                actualData.rewind();
+                Assert.assertEquals(vb.getBufferType().name(), data, actualData);
+            }
+        }
+        Image expectedImage = expected.getUserData("image");
+        Image actualImage = actual.getUserData("image");
+        Assert.assertEquals(expectedImage.getData(0).rewind(), actualImage.getData(0).rewind());
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Sphere;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that memory mapped files, and files decoded in parallel, are
+ * loaded the same way as streams.
+ */
+public class BinaryImporterTest {
+
+    private File file;
+
+    @After
+    public void tearDown() {
+        BinaryImporter.setMemoryMappingEnabled(true);
+        BinaryImporter.setMappedBufferThreshold(-1);
+        BinaryImporter.setDecodeExecutor(null);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Loads a file both ways and compares the results.
+     */
+    @Test
+    public void testMappedLoad() throws IOException {
+        Node scene = createScene();
+        file = save(scene);
+
+        BinaryImporter.setMemoryMappingEnabled(false);
+        Node streamed = (Node) BinaryImporter.getInstance().load(file);
+        BinaryImporter.setMemoryMappingEnabled(true);
+        Node mapped = (Node) BinaryImporter.getInstance().load(file);
+
+        assertSameScene(streamed, mapped);
+        Buffer positions = getMesh(mapped).getBuffer(VertexBuffer.Type.Position).getData();
+        Assert.assertFalse(positions.isReadOnly());
+    }
+
+    /**
+     * Buffers above the threshold are mapped, the other ones are copied.
+     */
+    @Test
+    public void testMappedBuffers() throws IOException {
+        Node scene = createScene();
+        file = save(scene);
+
+        Mesh mesh = getMesh(scene);
+        int positionBytes = mesh.getBuffer(VertexBuffer.Type.Position).getData().limit() * 4;
+        BinaryImporter.setMappedBufferThreshold(positionBytes);
+        Node mapped = (Node) BinaryImporter.getInstance().load(file);
+
+        assertSameScene(scene, mapped);
+        Mesh mappedMesh = getMesh(mapped);
+        Assert.assertTrue(mappedMesh.getBuffer(VertexBuffer.Type.Position).getData().isReadOnly());
+        Assert.assertFalse(mappedMesh.getBuffer(VertexBuffer.Type.TexCoord).getData().isReadOnly());
+    }
+
+    /**
+     * Assets located by a FileLocator are loaded through a mapping.
+     */
+    @Test
+    public void testFileLocator() throws IOException {
+        Node scene = createScene();
+        file = save(scene);
+
+        AssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLoader(BinaryLoader.class, "j3o");
+        assetManager.registerLocator(file.getParent(), FileLocator.class);
+        BinaryImporter.setMappedBufferThreshold(0);
+        Spatial loaded = assetManager.loadModel(new ModelKey(file.getName()));
+
+        assertSameScene(scene, (Node) loaded);
+        Assert.assertTrue(getMesh((Node) loaded).getBuffer(VertexBuffer.Type.Index)
+                .getData().isReadOnly());
+    }
+
+    /**
+     * The large objects decoded by an executor are stitched into the same
+     * scene as with a serial load, whether the file is mapped or not.
+     */
+    @Test
+    public void testParallelDecode() throws Exception {
+        Node scene = createScene();
+        file = save(scene);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BinaryImporter.setDecodeExecutor(executor);
+            assertSameScene(scene, (Node) BinaryImporter.getInstance().load(file));
+            try (InputStream in = new FileInputStream(file)) {
+                assertSameScene(scene, (Node) BinaryImporter.getInstance().load(in));
+            }
+            BinaryImporter.setMappedBufferThreshold(0);
+            assertSameScene(scene, (Node) BinaryImporter.getInstance().load(file));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A load running on the only thread of the decoding executor doesn't wait
+     * for tasks which can't start.
+     */
+    @Test
+    public void testDecodeOnExecutorThread() throws Exception {
+        Node scene = createScene();
+        file = save(scene);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            BinaryImporter.setDecodeExecutor(executor);
+            Future<?> loaded = executor.submit(() -> BinaryImporter.getInstance().load(file));
+            assertSameScene(scene, (Node) loaded.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Node createScene() {
+        Node scene = new Node("scene");
+        Geometry geometry = new Geometry("sphere", new Sphere(64, 64, 2f));
+        geometry.setLocalTranslation(1f, 2f, 3f);
+        geometry.setUserData("name", "mapped");
+        geometry.setUserData("count", 42);
+        geometry.setUserData("direction", new Vector3f(0f, 1f, 0f));
+        scene.attachChild(geometry);
+        scene.setUserData("scale", 0.5f);
+        return scene;
+    }
+
+    private static File save(Node scene) throws IOException {
+        File result = File.createTempFile("mapped", ".j3o");
+        BinaryExporter.getInstance().save(scene, result);
+        return result;
+    }
+
+    private static Mesh getMesh(Node scene) {
+        return ((Geometry) scene.getChild("sphere")).getMesh();
+    }
+
+    private static void assertSameScene(Node expected, Node actual) {
+        Assert.assertEquals((Float) expected.getUserData("scale"), actual.getUserData("scale"));
+        Spatial expectedChild = expected.getChild("sphere");
+        Spatial actualChild = actual.getChild("sphere");
+        Assert.assertEquals(expectedChild.getLocalTranslation(), actualChild.getLocalTranslation());
+        for (String key : expectedChild.getUserDataKeys()) {
+            Assert.assertEquals((Object) expectedChild.getUserData(key), actualChild.getUserData(key));
+        }
+
+        Mesh expectedMesh = getMesh(expected);
+        Mesh actualMesh = getMesh(actual);
+        Assert.assertEquals(expectedMesh.getVertexCount(), actualMesh.getVertexCount());
+        Assert.assertEquals(expectedMesh.getTriangleCount(), actualMesh.getTriangleCount());
+        for (VertexBuffer vb : expectedMesh.getBufferList()) {
+            Buffer data = vb.getData();
+            Buffer actualData = actualMesh.getBuffer(vb.getBufferType()).getData();
+            data.rewind();
+            actualData.rewind();
+            Assert.assertEquals(vb.getBufferType().name(), data, actualData);
+        }
+    }
+}
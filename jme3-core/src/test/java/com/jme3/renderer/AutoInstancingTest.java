@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.light.DirectionalLight;
+import com.jme3.material.Material;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that the RenderManager merges runs of geometries sharing the same
+ * mesh and material into instanced draw calls.
+ */
+public class AutoInstancingTest {
+
+    private final List<Integer> drawCounts = new ArrayList<>();
+    private final List<float[]> drawData = new ArrayList<>();
+    private final NullRenderer renderer = new NullRenderer() {
+        @Override
+        public EnumSet<Caps> getCaps() {
+            return EnumSet.of(Caps.GLSL100, Caps.GLSL110, Caps.GLSL120, Caps.GLSL130,
+                    Caps.GLSL140, Caps.GLSL150);
+        }
+
+        @Override
+        public void renderMesh(Mesh mesh, int lod, int count, VertexBuffer[] instanceData) {
+            getStatistics().onMeshDrawn(mesh, lod, count);
+            drawCounts.add(count);
+            if (instanceData == null) {
+                drawData.add(null);
+            } else {
+                FloatBuffer fb = (FloatBuffer) instanceData[0].getData();
+                float[] data = new float[fb.limit()];
+                fb.duplicate().get(data);
+                drawData.add(data);
+            }
+        }
+    };
+
+    private AssetManager assetManager;
+    private RenderManager renderManager;
+    private Camera cam;
+    private RenderQueue queue;
+
+    @Before
+    public void setUp() {
+        assetManager = TestUtil.createAssetManager();
+        renderManager = TestUtil.createRenderManager(renderer);
+        renderer.getStatistics().setEnabled(true);
+        cam = new Camera(16, 16);
+        renderManager.setCamera(cam, false);
+        queue = new RenderQueue();
+        queue.setGeometryComparator(Bucket.Opaque, new NullComparator());
+    }
+
+    private Material material(boolean instancing) {
+        Material material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setBoolean("UseInstancing", instancing);
+        return material;
+    }
+
+    private Geometry geometry(Mesh mesh, Material material, int index) {
+        Geometry geom = new Geometry("geom" + index, mesh);
+        geom.setMaterial(material);
+        geom.setLocalTranslation(index, 2 * index, -3 * index);
+        geom.setLocalRotation(new Quaternion().fromAngles(0.1f * index, 0.2f, 0f));
+        geom.setLocalScale(1f + index, 1f, 2f);
+        geom.updateGeometricState();
+        return geom;
+    }
+
+    private int statistic(String label) {
+        Statistics statistics = renderer.getStatistics();
+        String[] labels = statistics.getLabels();
+        int[] data = new int[labels.length];
+        statistics.getData(data);
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equals(label)) {
+                return data[i];
+            }
+        }
+        throw new AssertionError("No statistic named " + label);
+    }
+
+    @Test
+    public void testSingleDrawForRun() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material material = material(true);
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Geometry geom = geometry(mesh, material, i);
+            geometries.add(geom);
+            queue.addToQueue(geom, Bucket.Opaque);
+        }
+
+        renderManager.setAutoInstancingEnabled(true);
+        queue.renderQueue(Bucket.Opaque, renderManager, cam);
+
+        Assert.assertEquals(1, drawCounts.size());
+        Assert.assertEquals(10, drawCounts.get(0).intValue());
+        Assert.assertEquals(1, statistic("Objects"));
+        Assert.assertEquals(10, statistic("Instances (F)"));
+        Assert.assertEquals(10 * mesh.getTriangleCount(), statistic("Triangles"));
+
+        // the instance data holds the world matrices, in queue order
+        float[] data = drawData.get(0);
+        Assert.assertEquals(10 * 16, data.length);
+        for (int i = 0; i < 10; i++) {
+            float[] matrix = new float[16];
+            geometries.get(i).getWorldMatrix().get(matrix, false);
+            for (int j = 0; j < 16; j++) {
+                if (j % 4 != 3) {
+                    Assert.assertEquals(matrix[j], data[i * 16 + j], 1e-6f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material material = material(true);
+        for (int i = 0; i < 10; i++) {
+            queue.addToQueue(geometry(mesh, material, i), Bucket.Opaque);
+        }
+
+        queue.renderQueue(Bucket.Opaque, renderManager, cam);
+
+        Assert.assertEquals(10, drawCounts.size());
+        Assert.assertEquals(10, statistic("Objects"));
+        Assert.assertEquals(10, statistic("Instances (F)"));
+        for (float[] data : drawData) {
+            Assert.assertNull(data);
+        }
+    }
+
+    @Test
+    public void testRequiresInstancingMaterial() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material material = material(false);
+        for (int i = 0; i < 6; i++) {
+            queue.addToQueue(geometry(mesh, material, i), Bucket.Opaque);
+        }
+
+        renderManager.setAutoInstancingEnabled(true);
+        queue.renderQueue(Bucket.Opaque, renderManager, cam);
+
+        Assert.assertEquals(6, statistic("Objects"));
+    }
+
+    @Test
+    public void testRunsSplit() {
+        Mesh box = new Box(1, 1, 1);
+        Mesh otherBox = new Box(2, 1, 1);
+        Material material = material(true);
+        Material otherMaterial = material(true);
+        DirectionalLight light = new DirectionalLight(new Vector3f(0, -1, 0));
+        DirectionalLight otherLight = new DirectionalLight(new Vector3f(1, 0, 0));
+
+        // 4 + 3 with different meshes, then 1 with another material,
+        // then 2 + 2 with different lights
+        int index = 0;
+        for (int i = 0; i < 4; i++) {
+            queue.addToQueue(geometry(box, material, index++), Bucket.Opaque);
+        }
+        for (int i = 0; i < 3; i++) {
+            queue.addToQueue(geometry(otherBox, material, index++), Bucket.Opaque);
+        }
+        queue.addToQueue(geometry(otherBox, otherMaterial, index++), Bucket.Opaque);
+        for (int i = 0; i < 4; i++) {
+            Geometry geom = geometry(box, material, index++);
+            geom.addLight(i < 2 ? light : otherLight);
+            geom.updateGeometricState();
+            queue.addToQueue(geom, Bucket.Opaque);
+        }
+
+        renderManager.setAutoInstancingEnabled(true);
+        queue.renderQueue(Bucket.Opaque, renderManager, cam);
+
+        int[] expected = {4, 3, 1, 2, 2};
+        Assert.assertEquals(expected.length, drawCounts.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], drawCounts.get(i).intValue());
+        }
+        // a lone geometry still gets its instance data
+        Assert.assertEquals(16, drawData.get(2).length);
+        Assert.assertEquals(5, statistic("Objects"));
+        Assert.assertEquals(12, statistic("Instances (F)"));
+    }
+
+    @Test
+    public void testRenderFilter() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material material = material(true);
+        for (int i = 0; i < 8; i++) {
+            queue.addToQueue(geometry(mesh, material, i), Bucket.Opaque);
+        }
+
+        renderManager.setRenderFilter(geom -> !geom.getName().equals("geom3"));
+        renderManager.setAutoInstancingEnabled(true);
+        queue.renderQueue(Bucket.Opaque, renderManager, cam);
+
+        Assert.assertEquals(1, drawCounts.size());
+        Assert.assertEquals(7, drawCounts.get(0).intValue());
+    }
+}
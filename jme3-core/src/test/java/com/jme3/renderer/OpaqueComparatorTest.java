@@ -35,6 +35,8 @@ import com.jme3.asset.AssetManager;
 import com.jme3.material.Material;
 import com.jme3.material.TechniqueDef;
 import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
 import com.jme3.renderer.queue.GeometryList;
 import com.jme3.renderer.queue.OpaqueComparator;
 import com.jme3.scene.Geometry;
@@ -49,7 +51,9 @@ import com.jme3.texture.image.ColorSpace;
 import com.jme3.util.BufferUtils;
 import java.nio.ByteBuffer;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -336,4 +340,52 @@ public class OpaqueComparatorTest {
                  mat1140, mat1120, mat1121, mat1122, 
                  mat1220, mat1210, mat1200, mat2000);
     }
+
+    /**
+     * Sorts the same geometries with the comparison sort and the radix sort,
+     * including negative sort ids, negative distances and ties, and checks
+     * that both produce the same order.
+     */
+    @Test
+    public void testRadixSortMatchesListSort() {
+        Random random = new Random(42);
+        int[] sortIds = {Integer.MIN_VALUE, -70000, -1, 0, 1, 0x6D2A0011, Integer.MAX_VALUE};
+        Material[] materials = new Material[sortIds.length];
+        for (int i = 0; i < sortIds.length; i++) {
+            final int sortId = sortIds[i];
+            materials[i] = new Material() {
+                @Override
+                public int getSortId() {
+                    return sortId;
+                }
+            };
+        }
+
+        cam.setLocation(new Vector3f(0, 0, 10));
+        cam.lookAtDirection(new Vector3f(0, 0, -1), Vector3f.UNIT_Y);
+        OpaqueComparator radixComparator = new OpaqueComparator();
+        GeometryList listSorted = new GeometryList(comparator);
+        GeometryList radixSorted = new GeometryList(radixComparator);
+        radixSorted.setRadixSortEnabled(true);
+        for (int i = 0; i < 5000; i++) {
+            Geometry geom = new Geometry("geom" + i, mesh);
+            geom.setMaterial(materials[random.nextInt(materials.length)]);
+            // few distinct positions, so there are many ties
+            float z = FastMath.floor(random.nextFloat() * 40f) - 20f;
+            geom.setLocalTranslation(0, 0, z);
+            geom.updateGeometricState();
+            listSorted.add(geom);
+            radixSorted.add(geom);
+        }
+
+        listSorted.setCamera(cam);
+        radixSorted.setCamera(cam);
+        listSorted.sort();
+        radixSorted.sort();
+
+        Assert.assertEquals(listSorted.size(), radixSorted.size());
+        for (int i = 0; i < listSorted.size(); i++) {
+            Assert.assertSame(listSorted.get(i), radixSorted.get(i));
+        }
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that parallel frustum culling enqueues exactly the same geometries,
+ * in the same order, as the serial traversal.
+ */
+public class ParallelCullingTest {
+
+    private final Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+    private final List<Geometry> rendered = new ArrayList<>();
+    private AssetManager assetManager;
+    private RenderManager renderManager;
+    private ForkJoinPool pool;
+    private ViewPort viewPort;
+
+    @Before
+    public void setUp() {
+        assetManager = TestUtil.createAssetManager();
+        renderManager = TestUtil.createRenderManager();
+        renderManager.setRenderFilter(geometry -> {
+            rendered.add(geometry);
+            return false;
+        });
+        pool = new ForkJoinPool(4);
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 1000f);
+        cam.setLocation(new Vector3f(0f, 0f, 100f));
+        cam.lookAt(new Vector3f(20f, 0f, 0f), Vector3f.UNIT_Y);
+        viewPort = new ViewPort("Test", cam);
+        viewPort.getQueue().setGeometryComparator(Bucket.Opaque, new NullComparator());
+        viewPort.getQueue().setGeometryComparator(Bucket.Transparent, new NullComparator());
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private Node createScene() {
+        Material material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        Node root = new Node("Root");
+        for (int x = 0; x < 60; x++) {
+            Node column = new Node("Column" + x);
+            for (int y = 0; y < 60; y++) {
+                Geometry geometry = new Geometry("Geom" + x + "_" + y, mesh);
+                geometry.setMaterial(material);
+                geometry.setLocalTranslation(x * 3f - 90f, y * 3f - 90f, 0f);
+                if ((x + y) % 7 == 0) {
+                    geometry.setQueueBucket(Bucket.Transparent);
+                }
+                if ((x * y) % 11 == 0) {
+                    geometry.setCullHint(Spatial.CullHint.Always);
+                }
+                column.attachChild(geometry);
+            }
+            root.attachChild(column);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    private List<Geometry> cullAndCollect(Spatial scene) {
+        rendered.clear();
+        renderManager.renderScene(scene, viewPort);
+        viewPort.getQueue().renderQueue(Bucket.Opaque, renderManager, viewPort.getCamera());
+        viewPort.getQueue().renderQueue(Bucket.Transparent, renderManager, viewPort.getCamera());
+        return new ArrayList<>(rendered);
+    }
+
+    @Test
+    public void testSameQueueAsSerial() {
+        Node scene = createScene();
+        List<Geometry> serial = cullAndCollect(scene);
+
+        renderManager.setCullingPool(pool);
+        renderManager.setParallelCullingThreshold(8);
+        List<Geometry> parallel = cullAndCollect(scene);
+
+        Assert.assertFalse(serial.isEmpty());
+        Assert.assertTrue(serial.size() < 3600);
+        Assert.assertEquals(serial, parallel);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissingMaterial() {
+        Node scene = createScene();
+        Node column = (Node) scene.getChild("Column30");
+        column.attachChild(new Geometry("NoMaterial", mesh));
+        scene.updateGeometricState();
+
+        renderManager.setCullingPool(pool);
+        renderManager.setParallelCullingThreshold(8);
+        cullAndCollect(scene);
+    }
+}
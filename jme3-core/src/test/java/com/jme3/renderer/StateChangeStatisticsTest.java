@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.material.Material;
+import com.jme3.material.RenderState;
+import com.jme3.renderer.opengl.GL;
+import com.jme3.renderer.opengl.GLExt;
+import com.jme3.renderer.opengl.GLFbo;
+import com.jme3.renderer.opengl.GLRenderer;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the render state statistics of the GLRenderer against a mock GL,
+ * and the shader/texture grouping of the RenderManager.
+ */
+public class StateChangeStatisticsTest {
+
+    private final List<String> glCalls = new ArrayList<>();
+
+    private <T> T mock(Class<T> glInterface) {
+        return glInterface.cast(Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{glInterface}, (proxy, method, args) -> {
+                    String call = method.getName();
+                    if (call.equals("glEnable") || call.equals("glDisable")) {
+                        call += args[0];
+                    }
+                    glCalls.add(call);
+                    Class<?> type = method.getReturnType();
+                    if (type == boolean.class) {
+                        return false;
+                    } else if (type == int.class) {
+                        return 0;
+                    } else if (type == long.class) {
+                        return 0L;
+                    }
+                    return null;
+                }));
+    }
+
+    private int countCalls(String... names) {
+        int count = 0;
+        for (String call : glCalls) {
+            for (String name : names) {
+                if (call.equals(name)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testBlendAndDepthStateChanges() {
+        GLRenderer renderer = new GLRenderer(mock(GL.class), mock(GLExt.class), mock(GLFbo.class));
+        Statistics statistics = renderer.getStatistics();
+        statistics.setEnabled(true);
+
+        RenderState opaque = new RenderState();
+        RenderState alpha = new RenderState();
+        alpha.setBlendMode(RenderState.BlendMode.Alpha);
+        alpha.setDepthWrite(false);
+        RenderState additive = new RenderState();
+        additive.setBlendMode(RenderState.BlendMode.Additive);
+        additive.setDepthTest(false);
+
+        RenderState[] states = {opaque, opaque, alpha, alpha, additive, opaque, additive, additive};
+        for (RenderState state : states) {
+            renderer.applyRenderState(state);
+        }
+
+        String[] labels = statistics.getLabels();
+        int[] data = new int[labels.length];
+        statistics.getData(data);
+        int blendChanges = data[indexOf(labels, "BlendState (S)")];
+        int depthChanges = data[indexOf(labels, "DepthState (S)")];
+
+        Assert.assertEquals(countCalls("glEnable" + GL.GL_BLEND, "glDisable" + GL.GL_BLEND,
+                "glBlendFunc", "glBlendFuncSeparate", "glBlendEquationSeparate"), blendChanges);
+        Assert.assertEquals(countCalls("glEnable" + GL.GL_DEPTH_TEST, "glDisable" + GL.GL_DEPTH_TEST,
+                "glDepthFunc", "glDepthMask"), depthChanges);
+        Assert.assertTrue(blendChanges > 0);
+        Assert.assertTrue(depthChanges > 0);
+
+        // redundant states must not be counted
+        renderer.applyRenderState(additive);
+        statistics.getData(data);
+        Assert.assertEquals(blendChanges, data[indexOf(labels, "BlendState (S)")]);
+        Assert.assertEquals(depthChanges, data[indexOf(labels, "DepthState (S)")]);
+
+        statistics.clearFrame();
+        statistics.getData(data);
+        Assert.assertEquals(0, data[indexOf(labels, "BlendState (S)")]);
+        Assert.assertEquals(0, data[indexOf(labels, "DepthState (S)")]);
+    }
+
+    private static int indexOf(String[] labels, String label) {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equals(label)) {
+                return i;
+            }
+        }
+        throw new AssertionError("No statistic named " + label);
+    }
+
+    private static Material createMaterial(final int sortId) {
+        return new Material() {
+            @Override
+            public int getSortId() {
+                return sortId;
+            }
+        };
+    }
+
+    @Test
+    public void testStateGrouping() {
+        final List<Geometry> rendered = new ArrayList<>();
+        RenderManager renderManager = TestUtil.createRenderManager();
+        renderManager.setRenderFilter(geometry -> {
+            rendered.add(geometry);
+            return false;
+        });
+        renderManager.setStateGroupingEnabled(true);
+
+        // two shaders, the first one with two texture sets
+        Material[] materials = {
+            createMaterial(0x00010001), createMaterial(0x00020001), createMaterial(0x00010002)
+        };
+        RenderQueue queue = new RenderQueue();
+        queue.setGeometryComparator(Bucket.Opaque, new NullComparator());
+        queue.setGeometryComparator(Bucket.Transparent, new NullComparator());
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Geometry geom = new Geometry("geom" + i, new Box(1, 1, 1));
+            geom.setMaterial(materials[i % 3]);
+            geometries.add(geom);
+            queue.addToQueue(geom, Bucket.Opaque);
+            queue.addToQueue(geom, Bucket.Transparent);
+        }
+
+        Camera cam = new Camera(1, 1);
+        queue.renderQueue(Bucket.Opaque, renderManager, cam);
+        Assert.assertEquals(12, rendered.size());
+        int[] expected = {0, 3, 6, 9, 2, 5, 8, 11, 1, 4, 7, 10};
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertSame(geometries.get(expected[i]), rendered.get(i));
+        }
+
+        // blending buckets keep their order
+        rendered.clear();
+        queue.renderQueue(Bucket.Transparent, renderManager, cam);
+        Assert.assertEquals(geometries, rendered);
+    }
+}
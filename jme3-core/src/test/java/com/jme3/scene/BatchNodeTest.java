@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.Quaternion;
+import com.jme3.renderer.opengl.GL;
+import com.jme3.renderer.opengl.GLExt;
+import com.jme3.renderer.opengl.GLFbo;
+import com.jme3.renderer.opengl.GLRenderer;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.lang.reflect.Proxy;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the background batching and the partial updates of a
+ * <code>BatchNode</code>.
+ */
+public class BatchNodeTest {
+
+    private static final int NUM_GEOMETRIES = 40;
+
+    private final AssetManager assetManager = TestUtil.createAssetManager();
+    private final Mesh mesh = new Box(1, 2, 3);
+    private final Material material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+    private final Material otherMaterial = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+
+    public BatchNodeTest() {
+        otherMaterial.setFloat("AlphaDiscardThreshold", 0.5f);
+    }
+
+    private BatchNode createScene() {
+        BatchNode batchNode = new BatchNode("batch");
+        Node group = new Node("group");
+        group.setLocalTranslation(5, 0, 0);
+        group.setLocalRotation(new Quaternion().fromAngles(0, 0.3f, 0));
+        batchNode.attachChild(group);
+        for (int i = 0; i < NUM_GEOMETRIES; i++) {
+            Geometry geom = new Geometry("geom" + i, mesh);
+            geom.setMaterial(i % 4 == 0 ? otherMaterial : material);
+            geom.setLocalTranslation(i, -i, 2 * i);
+            geom.setLocalRotation(new Quaternion().fromAngles(0.1f * i, 0, 0.2f));
+            geom.setLocalScale(1, 1 + 0.1f * i, 1);
+            (i % 2 == 0 ? batchNode : group).attachChild(geom);
+        }
+        batchNode.updateGeometricState();
+        return batchNode;
+    }
+
+    private static Geometry find(BatchNode batchNode, String name) {
+        return (Geometry) batchNode.getChild(name);
+    }
+
+    private static void assertSameBatches(BatchNode expected, BatchNode actual) {
+        Assert.assertEquals(expected.batches.size(), actual.batches.size());
+        for (int i = 0; i < NUM_GEOMETRIES; i++) {
+            Geometry expectedGeom = find(expected, "geom" + i);
+            Geometry actualGeom = find(actual, "geom" + i);
+            Assert.assertTrue(actualGeom.isGrouped());
+            Mesh expectedMesh = expected.batchesByGeom.get(expectedGeom).getGeometry().getMesh();
+            Mesh actualMesh = actual.batchesByGeom.get(actualGeom).getGeometry().getMesh();
+            for (VertexBuffer.Type type : new VertexBuffer.Type[]{
+                    VertexBuffer.Type.Position, VertexBuffer.Type.Normal}) {
+                FloatBuffer expectedData = (FloatBuffer) expectedMesh.getBuffer(type).getData();
+                FloatBuffer actualData = (FloatBuffer) actualMesh.getBuffer(type).getData();
+                int start = expectedGeom.startIndex * 3;
+                int actualStart = actualGeom.startIndex * 3;
+                for (int j = 0; j < expectedGeom.getVertexCount() * 3; j++) {
+                    Assert.assertEquals(expectedData.get(start + j), actualData.get(actualStart + j), 1e-4f);
+                }
+            }
+        }
+    }
+
+    private static void waitForBatch(BatchNode batchNode) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (batchNode.isBatchPending()) {
+            Assert.assertTrue("Batch timed out", System.currentTimeMillis() < timeout);
+            Thread.sleep(1);
+            batchNode.updateLogicalState(0);
+        }
+        batchNode.updateGeometricState();
+    }
+
+    @Test
+    public void testBatchInBackground() throws InterruptedException {
+        BatchNode expected = createScene();
+        expected.batch();
+        expected.updateGeometricState();
+
+        BatchNode batchNode = createScene();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            batchNode.batchInBackground(executor);
+            waitForBatch(batchNode);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertSameBatches(expected, batchNode);
+        for (BatchNode.Batch batch : batchNode.batches) {
+            Assert.assertTrue(batch.getGeometry().isIgnoreTransform());
+            Assert.assertSame(batchNode, batch.getGeometry().getParent());
+        }
+    }
+
+    @Test
+    public void testPreviousBatchKeptUntilSwap() {
+        BatchNode batchNode = createScene();
+        batchNode.batch();
+        batchNode.updateGeometricState();
+        List<Geometry> oldBatches = new ArrayList<>();
+        for (BatchNode.Batch batch : batchNode.batches) {
+            oldBatches.add(batch.getGeometry());
+        }
+
+        List<Runnable> tasks = new ArrayList<>();
+        batchNode.batchInBackground(tasks::add);
+        batchNode.updateLogicalState(0);
+        Assert.assertTrue(batchNode.isBatchPending());
+        for (Geometry batch : oldBatches) {
+            Assert.assertSame(batchNode, batch.getParent());
+        }
+
+        // move a geometry while the batch is being built
+        Geometry moved = find(batchNode, "geom7");
+        moved.move(0, 10, 0);
+        batchNode.updateGeometricState();
+        tasks.get(0).run();
+        batchNode.updateLogicalState(0);
+        batchNode.updateGeometricState();
+
+        Assert.assertFalse(batchNode.isBatchPending());
+        for (Geometry batch : oldBatches) {
+            Assert.assertNull(batch.getParent());
+        }
+        BatchNode expected = createScene();
+        find(expected, "geom7").move(0, 10, 0);
+        expected.batch();
+        expected.updateGeometricState();
+        assertSameBatches(expected, batchNode);
+    }
+
+    @Test
+    public void testDetachWhileBatching() {
+        BatchNode batchNode = createScene();
+        List<Runnable> tasks = new ArrayList<>();
+        batchNode.batchInBackground(tasks::add);
+        find(batchNode, "geom3").removeFromParent();
+
+        // the result is stale, a new build is started
+        tasks.remove(0).run();
+        batchNode.updateLogicalState(0);
+        Assert.assertTrue(batchNode.isBatchPending());
+        Assert.assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        batchNode.updateLogicalState(0);
+        Assert.assertFalse(batchNode.isBatchPending());
+
+        int vertices = 0;
+        for (BatchNode.Batch batch : batchNode.batches) {
+            vertices += batch.getGeometry().getVertexCount();
+        }
+        Assert.assertEquals((NUM_GEOMETRIES - 1) * mesh.getVertexCount(), vertices);
+    }
+
+    @Test
+    public void testPartialUpdate() {
+        BatchNode batchNode = createScene();
+        batchNode.batch();
+        batchNode.updateGeometricState();
+
+        Geometry moved = find(batchNode, "geom9");
+        Mesh batchMesh = batchNode.batchesByGeom.get(moved).getGeometry().getMesh();
+        VertexBuffer positions = batchMesh.getBuffer(VertexBuffer.Type.Position);
+        // as if the buffers had been uploaded
+        for (VertexBuffer vb : batchMesh.getBufferList()) {
+            vb.clearUpdateNeeded();
+        }
+
+        moved.rotate(0, 0.5f, 0);
+        batchNode.updateGeometricState();
+
+        Assert.assertTrue(positions.isUpdateNeeded());
+        Assert.assertEquals(moved.startIndex, positions.getUpdateRangeStart());
+        Assert.assertEquals(moved.startIndex + mesh.getVertexCount(), positions.getUpdateRangeEnd());
+        Assert.assertEquals(moved.startIndex,
+                batchMesh.getBuffer(VertexBuffer.Type.Normal).getUpdateRangeStart());
+
+        // a full update supersedes the range
+        positions.updateData(positions.getData());
+        Assert.assertEquals(-1, positions.getUpdateRangeStart());
+        positions.updateDataRange(0, 1);
+        Assert.assertEquals(-1, positions.getUpdateRangeStart());
+    }
+
+    @Test
+    public void testBoundsFollowMovedGeometry() {
+        Node root = new Node("root");
+        BatchNode batchNode = createScene();
+        root.attachChild(batchNode);
+        batchNode.batch();
+        root.updateGeometricState();
+
+        Geometry moved = find(batchNode, "geom5");
+        moved.move(1000, 0, 0);
+        root.updateGeometricState();
+
+        Geometry batch = batchNode.batchesByGeom.get(moved).getGeometry();
+        Assert.assertTrue(batch.getWorldBound().contains(moved.getWorldTranslation()));
+        Assert.assertTrue(root.getWorldBound().contains(moved.getWorldTranslation()));
+    }
+
+    @Test
+    public void testPartialUpload() {
+        List<Object[]> uploads = new ArrayList<>();
+        GL gl = (GL) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{GL.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("glGenBuffers")) {
+                        ((IntBuffer) args[0]).put(0, 1);
+                    } else if (method.getName().equals("glBufferData")) {
+                        FloatBuffer data = (FloatBuffer) args[1];
+                        uploads.add(new Object[]{"glBufferData", 0L, data.position(), data.limit()});
+                    } else if (method.getName().equals("glBufferSubData")) {
+                        FloatBuffer data = (FloatBuffer) args[2];
+                        uploads.add(new Object[]{"glBufferSubData", args[1], data.position(), data.limit()});
+                    }
+                    return null;
+                });
+        GLRenderer renderer = new GLRenderer(gl, null, (GLFbo) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{GLFbo.class}, (proxy, method, args) -> null));
+
+        VertexBuffer vb = new VertexBuffer(VertexBuffer.Type.Position);
+        vb.setupData(VertexBuffer.Usage.Dynamic, 3, VertexBuffer.Format.Float,
+                FloatBuffer.allocate(3 * 100));
+        renderer.updateBufferData(vb);
+        Assert.assertEquals("glBufferData", uploads.get(0)[0]);
+
+        vb.updateDataRange(10, 5);
+        vb.updateDataRange(40, 2);
+        renderer.updateBufferData(vb);
+        Assert.assertEquals("glBufferSubData", uploads.get(1)[0]);
+        Assert.assertEquals(10L * 3 * 4, uploads.get(1)[1]);
+        Assert.assertEquals(10 * 3, uploads.get(1)[2]);
+        Assert.assertEquals(42 * 3, uploads.get(1)[3]);
+        Assert.assertFalse(vb.isUpdateNeeded());
+        Assert.assertEquals(3 * 100, vb.getData().limit());
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.collision.CollisionResult;
+import com.jme3.collision.CollisionResults;
+import com.jme3.material.Material;
+import com.jme3.math.FastMath;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that culling and picking through the bounding volume hierarchy of
+ * a Node give the same results as testing every child.
+ */
+public class ChildBoundsTreeTest {
+
+    private final Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+    private final List<Geometry> rendered = new ArrayList<>();
+    private RenderManager renderManager;
+    private Material material;
+    private ViewPort viewPort;
+
+    @Before
+    public void setUp() {
+        AssetManager assetManager = TestUtil.createAssetManager();
+        material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        renderManager = TestUtil.createRenderManager();
+        renderManager.setRenderFilter(geometry -> {
+            rendered.add(geometry);
+            return false;
+        });
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 500f);
+        viewPort = new ViewPort("Test", cam);
+        viewPort.getQueue().setGeometryComparator(Bucket.Opaque, new NullComparator());
+        viewPort.getQueue().setGeometryComparator(Bucket.Gui, new NullComparator());
+    }
+
+    /**
+     * Creates a flat node whose children are grouped in clusters.
+     */
+    private Node createScene(Random random) {
+        Node root = new Node("Root");
+        for (int cluster = 0; cluster < 40; cluster++) {
+            Vector3f center = new Vector3f(random.nextFloat() * 400f - 200f,
+                    random.nextFloat() * 100f - 50f, random.nextFloat() * 400f - 200f);
+            for (int i = 0; i < 50; i++) {
+                Geometry geometry = new Geometry("Geom" + cluster + "_" + i, mesh);
+                geometry.setMaterial(material);
+                geometry.setLocalTranslation(center.add(random.nextFloat() * 10f,
+                        random.nextFloat() * 10f, random.nextFloat() * 10f));
+                root.attachChild(geometry);
+            }
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    private List<Geometry> cull(Node scene) {
+        rendered.clear();
+        renderManager.renderScene(scene, viewPort);
+        viewPort.getQueue().renderQueue(Bucket.Opaque, renderManager, viewPort.getCamera());
+        viewPort.getQueue().renderQueue(Bucket.Gui, renderManager, viewPort.getCamera());
+        return new ArrayList<>(rendered);
+    }
+
+    private static List<String> names(List<? extends Spatial> spatials) {
+        List<String> result = new ArrayList<>();
+        for (Spatial spatial : spatials) {
+            result.add(spatial.getName());
+        }
+        return result;
+    }
+
+    private void lookFrom(Random random) {
+        Camera cam = viewPort.getCamera();
+        float angle = random.nextFloat() * FastMath.TWO_PI;
+        cam.setLocation(new Vector3f(FastMath.cos(angle) * 300f, 20f, FastMath.sin(angle) * 300f));
+        cam.lookAt(new Vector3f(random.nextFloat() * 100f - 50f, 0f, random.nextFloat() * 100f - 50f),
+                Vector3f.UNIT_Y);
+    }
+
+    private static void move(Random random, Node a, Node b) {
+        for (int i = 0; i < 100; i++) {
+            int index = random.nextInt(a.getQuantity());
+            Vector3f offset = new Vector3f(random.nextFloat() * 40f - 20f, 0f, random.nextFloat() * 40f - 20f);
+            a.getChild(index).move(offset);
+            b.getChild(index).move(offset);
+        }
+        a.updateGeometricState();
+        b.updateGeometricState();
+    }
+
+    @Test
+    public void testCullingMatchesLinear() {
+        Node linear = createScene(new Random(1));
+        Node tree = createScene(new Random(1));
+        tree.setChildBoundsTreeEnabled(true);
+        Assert.assertTrue(tree.isChildBoundsTreeEnabled());
+
+        // children which must not be rejected with their cluster
+        tree.getChild(5).setCullHint(Spatial.CullHint.Never);
+        linear.getChild(5).setCullHint(Spatial.CullHint.Never);
+        tree.getChild(7).setQueueBucket(Bucket.Gui);
+        linear.getChild(7).setQueueBucket(Bucket.Gui);
+
+        Random random = new Random(2);
+        boolean rejected = false;
+        for (int frame = 0; frame < 50; frame++) {
+            lookFrom(random);
+            List<String> expected = names(cull(linear));
+            List<String> actual = names(cull(tree));
+            Assert.assertEquals(expected, actual);
+            Assert.assertTrue(actual.contains(tree.getChild(5).getName()));
+
+            tree.checkCulling(viewPort.getCamera());
+            rejected |= tree.getCullingCandidates(viewPort.getCamera()).size() < tree.getQuantity();
+            move(random, linear, tree);
+        }
+        Assert.assertTrue(rejected);
+    }
+
+    @Test
+    public void testPickingMatchesLinear() {
+        Node linear = createScene(new Random(3));
+        Node tree = createScene(new Random(3));
+        tree.setChildBoundsTreeEnabled(true);
+
+        Random random = new Random(4);
+        for (int frame = 0; frame < 50; frame++) {
+            for (int i = 0; i < 20; i++) {
+                Vector3f origin = new Vector3f(random.nextFloat() * 600f - 300f, random.nextFloat() * 200f - 100f,
+                        random.nextFloat() * 600f - 300f);
+                Vector3f target = tree.getChild(random.nextInt(tree.getQuantity())).getWorldTranslation();
+                Ray ray = new Ray(origin, target.subtract(origin).normalizeLocal());
+
+                CollisionResults expected = new CollisionResults();
+                CollisionResults actual = new CollisionResults();
+                linear.collideWith(ray, expected);
+                tree.collideWith(ray, actual);
+                Assert.assertEquals(expected.size(), actual.size());
+                Assert.assertTrue(actual.size() > 0);
+                for (int j = 0; j < expected.size(); j++) {
+                    CollisionResult e = expected.getCollision(j);
+                    CollisionResult a = actual.getCollision(j);
+                    Assert.assertEquals(e.getGeometry().getName(), a.getGeometry().getName());
+                    Assert.assertEquals(e.getDistance(), a.getDistance(), 0f);
+                }
+            }
+            move(random, linear, tree);
+        }
+    }
+
+    @Test
+    public void testAttachAndDetach() {
+        Node tree = createScene(new Random(5));
+        tree.setChildBoundsTreeEnabled(true);
+
+        Geometry geometry = new Geometry("Added", mesh);
+        geometry.setMaterial(material);
+        geometry.setLocalTranslation(1000f, 0f, 0f);
+        tree.attachChild(geometry);
+        tree.detachChildAt(0);
+        tree.updateGeometricState();
+
+        CollisionResults results = new CollisionResults();
+        tree.collideWith(new Ray(new Vector3f(1000.1f, 0.2f, 100f), new Vector3f(0f, 0f, -1f)), results);
+        Assert.assertEquals(2, results.size());
+        Assert.assertSame(geometry, results.getClosestCollision().getGeometry());
+        Assert.assertSame(geometry, results.getFarthestCollision().getGeometry());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests selected methods of the Geometry class.
+ */
+public class GeometryTest {
+
+    /**
+     * Tests that the world matrix applies the scale, then the rotation, then
+     * the translation of the world transform.
+     */
+    @Test
+    public void testWorldMatrix() {
+        Node parent = new Node("parent");
+        parent.setLocalTranslation(1f, -2f, 3f);
+        parent.setLocalRotation(new Quaternion().fromAngles(0.3f, -1.2f, 0.7f));
+        parent.setLocalScale(2f, 0.5f, 3f);
+        Geometry geom = new Geometry("geom", new Box(1, 1, 1));
+        geom.setLocalTranslation(-4f, 5f, 0.25f);
+        geom.setLocalRotation(new Quaternion().fromAngles(-0.9f, 0.1f, 2.2f));
+        geom.setLocalScale(0.75f, 1.5f, 4f);
+        parent.attachChild(geom);
+        parent.updateGeometricState();
+
+        Matrix4f expected = geom.getWorldTransform().toTransformMatrix();
+        Matrix4f actual = geom.getWorldMatrix();
+        for (int row = 0; row < 4; row++) {
+            for (int column = 0; column < 4; column++) {
+                Assert.assertEquals(expected.get(row, column), actual.get(row, column), 1e-5f);
+            }
+        }
+
+        Vector3f point = new Vector3f(0.5f, -1f, 2f);
+        Vector3f expectedPoint = geom.localToWorld(point, null);
+        Vector3f actualPoint = actual.mult(point, null);
+        Assert.assertEquals(0f, expectedPoint.distance(actualPoint), 1e-4f);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.tools;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.control.HlodControl;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.system.TestUtil;
+import com.jme3.texture.Image;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import jme3tools.optimize.GeometryBatchFactory;
+import jme3tools.optimize.HlodGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the HLOD trees built by {@link HlodGenerator} and the level switch of
+ * {@link HlodControl}.
+ */
+public class HlodGeneratorTest {
+
+    private final AssetManager assetManager = TestUtil.createAssetManager();
+
+    private Node createScene(int count) {
+        Node scene = new Node("scene");
+        Sphere sphere = new Sphere(12, 16, 1f);
+        Material red = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        red.setColor("Color", ColorRGBA.Red);
+        Material blue = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        blue.setColor("Color", ColorRGBA.Blue);
+        Node row = new Node("row");
+        row.setLocalTranslation(0, 0, -10);
+        scene.attachChild(row);
+        for (int i = 0; i < count; i++) {
+            Geometry geom = new Geometry("sphere" + i, sphere);
+            geom.setMaterial(i % 2 == 0 ? red : blue);
+            geom.setLocalTranslation(i * 3f, 0, 0);
+            row.attachChild(geom);
+        }
+        return scene;
+    }
+
+    private static ViewPort createViewPort(Vector3f location) {
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 10000f);
+        cam.setLocation(location);
+        return new ViewPort("vp", cam);
+    }
+
+    private static int countTriangles(Spatial spatial) {
+        List<Geometry> geoms = new ArrayList<>();
+        GeometryBatchFactory.gatherGeoms(spatial, geoms);
+        int count = 0;
+        for (Geometry geom : geoms) {
+            count += geom.getTriangleCount();
+        }
+        return count;
+    }
+
+    /**
+     * Collects the geometries of the detail levels of the leaf clusters.
+     */
+    private static void gatherDetail(Node cluster, List<Geometry> store) {
+        HlodControl control = cluster.getControl(HlodControl.class);
+        for (Spatial child : ((Node) control.getLevel(0)).getChildren()) {
+            if (child instanceof Geometry) {
+                store.add((Geometry) child);
+            } else {
+                gatherDetail((Node) child, store);
+            }
+        }
+    }
+
+    @Test
+    public void testTree() {
+        Node scene = createScene(20);
+        HlodGenerator generator = new HlodGenerator();
+        generator.setMaxClusterSize(4);
+        Node result = generator.generate(scene);
+
+        // the source scene is unchanged
+        Assert.assertEquals(20, ((Node) scene.getChild("row")).getQuantity());
+
+        Assert.assertEquals(1, result.getQuantity());
+        Node root = (Node) result.getChild(0);
+        HlodControl control = root.getControl(HlodControl.class);
+        Assert.assertNotNull(control);
+        Assert.assertEquals(2, control.getNumLevels());
+
+        List<Geometry> detail = new ArrayList<>();
+        gatherDetail(root, detail);
+        Assert.assertEquals(20, detail.size());
+        for (Geometry geom : detail) {
+            int index = Integer.parseInt(geom.getName().substring("sphere".length()));
+            Assert.assertEquals(new Vector3f(index * 3f, 0, -10), geom.getWorldTranslation());
+        }
+
+        // one merged mesh per material, simplified
+        Node proxy = (Node) control.getLevel(1);
+        Assert.assertEquals(2, proxy.getQuantity());
+        Assert.assertTrue(countTriangles(proxy) < countTriangles(scene) / 2);
+        Assert.assertTrue(control.getGeometricError(1) > 0);
+        for (Spatial child : proxy.getChildren()) {
+            Geometry geom = (Geometry) child;
+            Assert.assertEquals(geom.getMesh().getVertexCount(),
+                    geom.getMesh().getBuffer(VertexBuffer.Type.Position).getNumElements());
+            int max = 0;
+            for (int i = 0; i < geom.getMesh().getIndexBuffer().size(); i++) {
+                max = Math.max(max, geom.getMesh().getIndexBuffer().get(i));
+            }
+            Assert.assertEquals(geom.getMesh().getVertexCount() - 1, max);
+        }
+
+        // the errors grow toward the root
+        Node child = (Node) ((Node) control.getLevel(0)).getChild(0);
+        Assert.assertTrue(child.getControl(HlodControl.class).getGeometricError(1)
+                <= control.getGeometricError(1));
+    }
+
+    @Test
+    public void testLevelSwitch() {
+        HlodGenerator generator = new HlodGenerator();
+        generator.setMaxClusterSize(4);
+        Node result = generator.generate(createScene(20));
+        result.updateGeometricState();
+        Node root = (Node) result.getChild(0);
+        HlodControl control = root.getControl(HlodControl.class);
+
+        control.render(null, createViewPort(new Vector3f(30, 0, 20)));
+        Assert.assertEquals(0, control.getCurrentLevel());
+        Assert.assertEquals(Spatial.CullHint.Inherit, control.getLevel(0).getLocalCullHint());
+        Assert.assertEquals(Spatial.CullHint.Always, control.getLevel(1).getLocalCullHint());
+
+        control.render(null, createViewPort(new Vector3f(30, 0, 5000)));
+        Assert.assertEquals(1, control.getCurrentLevel());
+        Assert.assertEquals(Spatial.CullHint.Always, control.getLevel(0).getLocalCullHint());
+        Assert.assertEquals(Spatial.CullHint.Inherit, control.getLevel(1).getLocalCullHint());
+    }
+
+    @Test
+    public void testImpostors() {
+        HlodGenerator generator = new HlodGenerator(assetManager);
+        generator.setMaxClusterSize(4);
+        generator.setImpostorSize(16);
+        generator.setImpostorViews(4);
+        Node result = generator.generate(createScene(20));
+        result.updateGeometricState();
+        Node root = (Node) result.getChild(0);
+        HlodControl control = root.getControl(HlodControl.class);
+        Assert.assertEquals(3, control.getNumLevels());
+        Geometry impostor = control.getImpostor();
+        Assert.assertSame(impostor, control.getLevel(2));
+
+        // every cell has covered and transparent pixels
+        Image atlas = impostor.getMaterial().getTextureParam("ColorMap").getTextureValue().getImage();
+        ByteBuffer data = atlas.getData(0);
+        int columns = atlas.getWidth() / 16;
+        int rows = atlas.getHeight() / 16;
+        int cells = 0;
+        for (int cell = 0; cell < columns * rows; cell++) {
+            int covered = 0;
+            for (int y = 0; y < 16; y++) {
+                for (int x = 0; x < 16; x++) {
+                    int px = (cell % columns) * 16 + x;
+                    int py = (cell / columns) * 16 + y;
+                    if (data.get((py * atlas.getWidth() + px) * 4 + 3) != 0) {
+                        covered++;
+                    }
+                }
+            }
+            if (covered > 0) {
+                Assert.assertTrue(covered < 256);
+                cells++;
+            }
+        }
+        Assert.assertTrue(cells >= 4);
+
+        // the view follows the camera
+        control.render(null, createViewPort(new Vector3f(30, 0, 100000)));
+        Assert.assertEquals(2, control.getCurrentLevel());
+        FloatBuffer texCoords = impostor.getMesh().getFloatBuffer(VertexBuffer.Type.TexCoord);
+        float front = texCoords.get(0) + texCoords.get(1) * 1000;
+        control.render(null, createViewPort(new Vector3f(100000, 0, -10)));
+        float side = texCoords.get(0) + texCoords.get(1) * 1000;
+        Assert.assertTrue(front != side);
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        HlodGenerator generator = new HlodGenerator(assetManager);
+        generator.setMaxClusterSize(4);
+        generator.setImpostorSize(8);
+        Node result = generator.generate(createScene(10));
+        Node loaded = BinaryExporter.saveAndLoad(assetManager, result);
+
+        Node root = (Node) loaded.getChild(0);
+        HlodControl control = root.getControl(HlodControl.class);
+        Assert.assertEquals(3, control.getNumLevels());
+        for (int i = 0; i < control.getNumLevels(); i++) {
+            Assert.assertSame(root, control.getLevel(i).getParent());
+        }
+        Assert.assertSame(control.getLevel(2), control.getImpostor());
+
+        Node clone = root.clone(false);
+        HlodControl cloneControl = clone.getControl(HlodControl.class);
+        Assert.assertSame(clone, cloneControl.getLevel(0).getParent());
+        Assert.assertSame(cloneControl.getLevel(2), cloneControl.getImpostor());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.tools;
+
+import com.jme3.asset.CloneableAssetProcessor;
+import com.jme3.asset.ModelKey;
+import com.jme3.bounding.BoundingBox;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.util.BufferUtils;
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jme3tools.optimize.MeshPostProcessor;
+import jme3tools.optimize.MeshPostProcessor.TangentGeneration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link MeshPostProcessor} gives the same results on an
+ * executor as on the calling thread.
+ */
+public class MeshPostProcessorTest {
+
+    /**
+     * Returns a scene of spheres, some of them with 32-bit indices and one
+     * mesh shared by two geometries.
+     */
+    private static Node createScene() {
+        Node scene = new Node("scene");
+        for (int i = 0; i < 12; i++) {
+            Mesh mesh = new Sphere(8 + i * 3, 10 + i * 2, 1f + i);
+            if (i % 2 == 0) {
+                setIntIndices(mesh);
+            }
+            Geometry geom = new Geometry("sphere" + i, mesh);
+            geom.setLocalTranslation(i * 10f, 0f, 0f);
+            scene.attachChild(geom);
+        }
+        Node child = new Node("child");
+        child.attachChild(new Geometry("shared", ((Geometry) scene.getChild(0)).getMesh()));
+        scene.attachChild(child);
+        scene.updateGeometricState();
+        return scene;
+    }
+
+    private static void setIntIndices(Mesh mesh) {
+        ShortBuffer indices = (ShortBuffer) mesh.getBuffer(VertexBuffer.Type.Index).getData();
+        IntBuffer ints = BufferUtils.createIntBuffer(indices.limit());
+        for (int i = 0; i < indices.limit(); i++) {
+            ints.put(indices.get(i) & 0xffff);
+        }
+        mesh.clearBuffer(VertexBuffer.Type.Index);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, ints);
+    }
+
+    @Test
+    public void testParallelMatchesSerial() throws Exception {
+        for (TangentGeneration tangents : TangentGeneration.values()) {
+            Node serial = createScene();
+            Node parallel = createScene();
+
+            MeshPostProcessor processor = new MeshPostProcessor();
+            processor.setTangentGeneration(tangents);
+            processor.setOptimizeVertexCache(true);
+            processor.setRemapVertices(true);
+            processor.process(serial);
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                processor.setExecutor(executor);
+                processor.process(parallel);
+            } finally {
+                executor.shutdown();
+            }
+
+            serial.updateGeometricState();
+            parallel.updateGeometricState();
+            Assert.assertEquals(serial.getWorldBound(), parallel.getWorldBound());
+            for (int i = 0; i < 12; i++) {
+                Mesh expected = ((Geometry) serial.getChild(i)).getMesh();
+                Mesh actual = ((Geometry) parallel.getChild(i)).getMesh();
+                Assert.assertEquals(tangents != TangentGeneration.None,
+                        actual.getBuffer(VertexBuffer.Type.Tangent) != null);
+                assertSameBuffers(expected, actual);
+            }
+        }
+    }
+
+    private static void assertSameBuffers(Mesh expected, Mesh actual) {
+        Assert.assertEquals(expected.getBufferList().size(), actual.getBufferList().size());
+        for (VertexBuffer vb : expected.getBufferList()) {
+            VertexBuffer other = actual.getBuffer(vb.getBufferType());
+            Assert.assertNotNull(other);
+            Assert.assertEquals(vb.getFormat(), other.getFormat());
+            Buffer data = vb.getData();
+            Buffer otherData = other.getData();
+            data.rewind();
+            otherData.rewind();
+            Assert.assertEquals(data, otherData);
+        }
+        Assert.assertEquals(expected.getBound(), actual.getBound());
+    }
+
+    @Test
+    public void testCompactIndices() {
+        Mesh mesh = new Sphere(10, 10, 1f);
+        ShortBuffer original = BufferUtils.clone((ShortBuffer) mesh.getBuffer(VertexBuffer.Type.Index).getData());
+        setIntIndices(mesh);
+
+        new MeshPostProcessor().process(mesh);
+        VertexBuffer indices = mesh.getBuffer(VertexBuffer.Type.Index);
+        Assert.assertEquals(VertexBuffer.Format.UnsignedShort, indices.getFormat());
+        Assert.assertEquals(3, indices.getNumComponents());
+        original.rewind();
+        indices.getData().rewind();
+        Assert.assertEquals(original, indices.getData());
+        Assert.assertEquals(original.limit() / 3, mesh.getTriangleCount());
+
+        MeshPostProcessor processor = new MeshPostProcessor();
+        processor.setCompactIndices(false);
+        setIntIndices(mesh);
+        processor.process(mesh);
+        Assert.assertEquals(VertexBuffer.Format.UnsignedInt,
+                mesh.getBuffer(VertexBuffer.Type.Index).getFormat());
+    }
+
+    @Test
+    public void testCompactBuffers() {
+        Mesh mesh = new Box(1f, 1f, 1f);
+        int vertexCount = mesh.getVertexCount();
+        FloatBuffer texCoords = BufferUtils.createFloatBuffer(vertexCount * 2 + 10);
+        texCoords.put((FloatBuffer) mesh.getBuffer(VertexBuffer.Type.TexCoord).getData());
+        mesh.clearBuffer(VertexBuffer.Type.TexCoord);
+        mesh.setBuffer(VertexBuffer.Type.TexCoord, 2, texCoords);
+
+        new MeshPostProcessor().process(mesh);
+        Assert.assertEquals(vertexCount * 2,
+                mesh.getBuffer(VertexBuffer.Type.TexCoord).getData().capacity());
+    }
+
+    @Test
+    public void testModelKey() {
+        Geometry geom = new Geometry("box", new Box(1f, 2f, 3f));
+        geom.getMesh().setBound(new BoundingBox());
+        ModelKey key = new ModelKey("Models/box.j3o");
+        MeshPostProcessor processor = new MeshPostProcessor();
+        processor.setTangentGeneration(TangentGeneration.MikkTSpace);
+        key.setMeshPostProcessor(processor);
+
+        Spatial result = (Spatial) new CloneableAssetProcessor().postProcess(key, geom);
+        Assert.assertSame(geom, result);
+        Assert.assertNotNull(geom.getMesh().getBuffer(VertexBuffer.Type.Tangent));
+        Assert.assertEquals(2f, ((BoundingBox) geom.getMesh().getBound()).getYExtent(), 0f);
+
+        // the processed models are cached apart from the others
+        ModelKey plain = new ModelKey("Models/box.j3o");
+        Assert.assertNotEquals(key, plain);
+        Assert.assertNotEquals(plain, key);
+        Assert.assertEquals(key.hashCode(), plain.hashCode());
+        Assert.assertEquals(key, key.clone());
+
+        // the subclasses of ModelKey never equal a model key, either way
+        ModelKey subclassKey = new ModelKey("Models/box.j3o") {
+        };
+        Assert.assertNotEquals(plain, subclassKey);
+        Assert.assertNotEquals(subclassKey, plain);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.tools;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.scene.shape.Sphere;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jme3tools.optimize.LodGenerator.TriangleReductionMethod;
+import jme3tools.optimize.QuadricLodGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the levels computed by {@link QuadricLodGenerator}.
+ */
+public class QuadricLodGeneratorTest {
+
+    private static final float[] REDUCTION_VALUES = {0.25f, 0.5f, 0.75f, 0.9f};
+
+    /**
+     * Returns a flat grid in the XY plane, with the given number of quads
+     * along each side.
+     */
+    private static Mesh grid(int size) {
+        int n = size + 1;
+        float[] positions = new float[n * n * 3];
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                int i = (y * n + x) * 3;
+                positions[i] = x;
+                positions[i + 1] = y;
+            }
+        }
+        short[] indices = new short[size * size * 6];
+        int i = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                short a = (short) (y * n + x);
+                short b = (short) (a + 1);
+                short c = (short) (a + n);
+                short d = (short) (c + 1);
+                indices[i++] = a;
+                indices[i++] = b;
+                indices[i++] = d;
+                indices[i++] = a;
+                indices[i++] = d;
+                indices[i++] = c;
+            }
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, indices);
+        mesh.updateCounts();
+        mesh.updateBound();
+        return mesh;
+    }
+
+    private static int triangles(VertexBuffer lod) {
+        return lod.getNumElements();
+    }
+
+    private static void assertValid(Mesh mesh, VertexBuffer lod) {
+        IndexBuffer indices = IndexBuffer.wrapIndexBuffer(lod.getData());
+        for (int i = 0; i < indices.size(); i += 3) {
+            int a = indices.get(i);
+            int b = indices.get(i + 1);
+            int c = indices.get(i + 2);
+            Assert.assertTrue(a < mesh.getVertexCount());
+            Assert.assertTrue(b < mesh.getVertexCount());
+            Assert.assertTrue(c < mesh.getVertexCount());
+            Assert.assertTrue(a != b && b != c && a != c);
+        }
+    }
+
+    @Test
+    public void testProportionalReduction() {
+        Mesh mesh = new Sphere(16, 24, 1f);
+        QuadricLodGenerator generator = new QuadricLodGenerator(mesh);
+        VertexBuffer[] lods = generator.computeLods(TriangleReductionMethod.PROPORTIONAL,
+                REDUCTION_VALUES);
+
+        Assert.assertEquals(REDUCTION_VALUES.length + 1, lods.length);
+        Assert.assertSame(mesh.getBuffer(VertexBuffer.Type.Index), lods[0]);
+        int total = mesh.getTriangleCount();
+        for (int i = 1; i < lods.length; i++) {
+            Assert.assertTrue(triangles(lods[i]) < triangles(lods[i - 1]));
+            int target = (int) (total - total * REDUCTION_VALUES[i - 1]);
+            Assert.assertTrue(triangles(lods[i]) <= target);
+            // a collapse removes at most a few triangles
+            Assert.assertTrue(triangles(lods[i]) >= target - 4);
+            assertValid(mesh, lods[i]);
+        }
+    }
+
+    @Test
+    public void testParallelLevelsMatchProgressive() {
+        Mesh mesh = new Sphere(20, 30, 2f);
+        QuadricLodGenerator generator = new QuadricLodGenerator(mesh);
+        VertexBuffer[] serial = generator.computeLods(TriangleReductionMethod.PROPORTIONAL,
+                REDUCTION_VALUES);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            VertexBuffer[] parallel = generator.computeLods(executor,
+                    TriangleReductionMethod.PROPORTIONAL, REDUCTION_VALUES);
+            Assert.assertEquals(serial.length, parallel.length);
+            for (int i = 0; i < serial.length; i++) {
+                Assert.assertEquals(serial[i].getData(), parallel[i].getData());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFlatGridKeepsItsOutline() {
+        Mesh mesh = grid(16);
+        VertexBuffer[] lods = new QuadricLodGenerator(mesh).computeLods(
+                TriangleReductionMethod.PROPORTIONAL, 0.9f);
+        Assert.assertEquals(2, lods.length);
+        assertValid(mesh, lods[1]);
+
+        // the four corners are kept, and the grid still covers its area
+        IndexBuffer indices = IndexBuffer.wrapIndexBuffer(lods[1].getData());
+        FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        boolean[] used = new boolean[mesh.getVertexCount()];
+        float area = 0;
+        for (int i = 0; i < indices.size(); i += 3) {
+            int a = indices.get(i);
+            int b = indices.get(i + 1);
+            int c = indices.get(i + 2);
+            used[a] = used[b] = used[c] = true;
+            float abx = positions.get(b * 3) - positions.get(a * 3);
+            float aby = positions.get(b * 3 + 1) - positions.get(a * 3 + 1);
+            float acx = positions.get(c * 3) - positions.get(a * 3);
+            float acy = positions.get(c * 3 + 1) - positions.get(a * 3 + 1);
+            float cross = abx * acy - aby * acx;
+            // no triangle is flipped
+            Assert.assertTrue(cross > 0);
+            area += cross * 0.5f;
+        }
+        Assert.assertTrue(used[0] && used[16] && used[16 * 17] && used[17 * 17 - 1]);
+        Assert.assertEquals(256f, area, 1e-3f);
+    }
+
+    @Test
+    public void testCollapseCost() {
+        // a flat grid can be simplified without any error
+        Mesh mesh = grid(8);
+        VertexBuffer[] lods = new QuadricLodGenerator(mesh).computeLods(
+                TriangleReductionMethod.COLLAPSE_COST, 0f);
+        Assert.assertEquals(2, lods.length);
+        Assert.assertTrue(triangles(lods[1]) <= 8);
+    }
+
+    @Test
+    public void testBakeScene() {
+        Mesh shared = new Sphere(12, 16, 1f);
+        Mesh other = new Sphere(10, 10, 1f);
+        Node scene = new Node("scene");
+        scene.attachChild(new Geometry("a", shared));
+        scene.attachChild(new Geometry("b", shared));
+        scene.attachChild(new Geometry("c", other));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            QuadricLodGenerator.bakeLods(scene, executor,
+                    TriangleReductionMethod.PROPORTIONAL, 0.5f, 0.75f);
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(3, shared.getNumLodLevels());
+        Assert.assertEquals(3, other.getNumLodLevels());
+        Assert.assertTrue(shared.getLodLevel(2).getNumElements() < shared.getLodLevel(1).getNumElements());
+    }
+}
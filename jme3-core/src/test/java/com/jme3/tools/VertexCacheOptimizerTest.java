@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.tools;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import jme3tools.optimize.VertexCacheOptimizer;
+import jme3tools.optimize.VertexCacheOptimizer.CacheStatistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link VertexCacheOptimizer} improves the cache efficiency
+ * of meshes without changing what they render.
+ */
+public class VertexCacheOptimizerTest {
+
+    /**
+     * Returns a sphere whose triangles are in a random order.
+     */
+    private static Mesh shuffledSphere() {
+        Mesh mesh = new Sphere(40, 40, 1f);
+        IndexBuffer indices = mesh.getIndexBuffer();
+        List<int[]> triangles = new ArrayList<>();
+        for (int i = 0; i < indices.size(); i += 3) {
+            triangles.add(new int[]{indices.get(i), indices.get(i + 1), indices.get(i + 2)});
+        }
+        Collections.shuffle(triangles, new Random(42));
+        for (int i = 0; i < triangles.size(); i++) {
+            for (int k = 0; k < 3; k++) {
+                indices.put(i * 3 + k, triangles.get(i)[k]);
+            }
+        }
+        return mesh;
+    }
+
+    /**
+     * Returns the triangles of a mesh as sorted strings of their vertex
+     * positions, each triangle starting at its smallest position to be
+     * independent of the rotation of its vertices.
+     */
+    private static List<String> triangles(Mesh mesh) {
+        IndexBuffer indices = mesh.getIndexBuffer();
+        FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < indices.size(); i += 3) {
+            String[] corners = new String[3];
+            for (int k = 0; k < 3; k++) {
+                int index = indices.get(i + k);
+                corners[k] = new Vector3f(positions.get(index * 3), positions.get(index * 3 + 1),
+                        positions.get(index * 3 + 2)).toString();
+            }
+            int first = 0;
+            for (int k = 1; k < 3; k++) {
+                if (corners[k].compareTo(corners[first]) < 0) {
+                    first = k;
+                }
+            }
+            result.add(corners[first] + corners[(first + 1) % 3] + corners[(first + 2) % 3]);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    public void testOptimize() {
+        Mesh mesh = shuffledSphere();
+        List<String> expected = triangles(mesh);
+        CacheStatistics before = VertexCacheOptimizer.analyze(mesh, VertexCacheOptimizer.DEFAULT_CACHE_SIZE);
+
+        VertexCacheOptimizer.optimize(mesh);
+        CacheStatistics after = VertexCacheOptimizer.analyze(mesh, VertexCacheOptimizer.DEFAULT_CACHE_SIZE);
+        Assert.assertEquals(expected, triangles(mesh));
+        Assert.assertEquals(before.getTriangleCount(), after.getTriangleCount());
+        Assert.assertTrue(before + " -> " + after, before.getAcmr() > 2f);
+        Assert.assertTrue(before + " -> " + after, after.getAcmr() < 0.85f);
+
+        VertexCacheOptimizer.optimizeOverdraw(mesh, VertexCacheOptimizer.DEFAULT_CACHE_SIZE);
+        CacheStatistics sorted = VertexCacheOptimizer.analyze(mesh, VertexCacheOptimizer.DEFAULT_CACHE_SIZE);
+        Assert.assertEquals(expected, triangles(mesh));
+        Assert.assertTrue(after + " -> " + sorted, sorted.getAcmr() < after.getAcmr() * 1.05f);
+    }
+
+    @Test
+    public void testRemapVertices() {
+        Mesh mesh = shuffledSphere();
+        VertexBuffer lod = new VertexBuffer(VertexBuffer.Type.Index);
+        lod.setupData(VertexBuffer.Usage.Static, 3, VertexBuffer.Format.UnsignedShort,
+                BufferUtils.createShortBuffer((short) 5, (short) 6, (short) 7));
+        mesh.setLodLevels(new VertexBuffer[]{mesh.getBuffer(VertexBuffer.Type.Index), lod});
+        FloatBuffer positions = BufferUtils.clone(mesh.getFloatBuffer(VertexBuffer.Type.Position));
+        List<String> expected = triangles(mesh);
+
+        VertexCacheOptimizer.remapVertices(mesh);
+        Assert.assertEquals(expected, triangles(mesh));
+        // the vertices are in the order of their first use
+        IndexBuffer indices = mesh.getIndexBuffer();
+        int next = 0;
+        for (int i = 0; i < indices.size(); i++) {
+            int index = indices.get(i);
+            Assert.assertTrue(index <= next);
+            if (index == next) {
+                next++;
+            }
+        }
+        // the LOD level references the same positions as before
+        IndexBuffer level = IndexBuffer.wrapIndexBuffer(mesh.getLodLevel(1).getData());
+        FloatBuffer remapped = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        for (int i = 0; i < 3; i++) {
+            for (int c = 0; c < 3; c++) {
+                Assert.assertEquals(positions.get((5 + i) * 3 + c), remapped.get(level.get(i) * 3 + c), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testAnalyze() {
+        CacheStatistics single = VertexCacheOptimizer.analyze(new int[]{0, 1, 2}, 3, 16);
+        Assert.assertEquals(3f, single.getAcmr(), 0f);
+        Assert.assertEquals(1f, single.getAtvr(), 0f);
+
+        // the second triangle reuses two vertices, then the cache is too
+        // small for the first vertex
+        CacheStatistics strip = VertexCacheOptimizer.analyze(new int[]{0, 1, 2, 2, 1, 3, 0, 3, 4}, 5, 3);
+        Assert.assertEquals(3, strip.getTriangleCount());
+        Assert.assertEquals(5, strip.getVertexCount());
+        Assert.assertEquals(6, strip.getMissCount());
+    }
+}
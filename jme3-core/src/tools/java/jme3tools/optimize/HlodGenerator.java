@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3tools.optimize;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.material.MatParam;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.control.BillboardControl;
+import com.jme3.scene.control.HlodControl;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds a hierarchical level of detail (HLOD) tree over the static
+ * geometries of a scene, so that distant groups of objects are drawn with a
+ * few simplified meshes instead of one draw call per object.
+ *
+ * <p>The geometries are recursively split in two halves along the longest
+ * axis of their bounds, until a cluster holds at most
+ * {@link #setMaxClusterSize(int) a given number of geometries}. Every
+ * cluster, from the leaves up to the root, gets a proxy: the geometries of
+ * the cluster (or the proxies of its two sub-clusters) merged by material
+ * with {@link GeometryBatchFactory} and simplified with
+ * {@link LodGenerator}. When an asset manager is available and
+ * {@link #setImpostorSize(int) impostors are enabled}, every cluster also
+ * gets a billboard impostor, whose views around the Y axis are rendered on
+ * the CPU into an atlas shared by the whole tree.
+ *
+ * <p>Each cluster is a <code>Node</code> with an {@link HlodControl}, whose
+ * levels are its "detail" node (the geometries or the sub-clusters), its
+ * "proxy" node and its optional impostor. The geometric error of a proxy is
+ * estimated from the average size of its triangles, and the one of an
+ * impostor is the radius of the cluster.
+ *
+ * <p>The generator doesn't need a renderer, so it can run offline, e.g. to
+ * convert a j3o scene (see jme3test.stress.TestHlodGenerator). The
+ * geometries of the scene must be static: they are copied in world space, and the source
+ * scene is left unchanged. Geometries which aren't made of triangles are
+ * copied as is, outside of the tree.
+ */
+public class HlodGenerator {
+
+    private static final Logger logger = Logger.getLogger(HlodGenerator.class.getName());
+
+    private final AssetManager assetManager;
+    private int maxClusterSize = 8;
+    private float reduction = 0.5f;
+    private int impostorSize = 0;
+    private int impostorViews = 8;
+    private float maxScreenError = 2f;
+
+    /**
+     * Creates a generator which doesn't make impostors.
+     */
+    public HlodGenerator() {
+        this(null);
+    }
+
+    /**
+     * Creates a generator.
+     *
+     * @param assetManager the asset manager used to load the material of the
+     * impostors, or null to not make impostors
+     */
+    public HlodGenerator(AssetManager assetManager) {
+        this.assetManager = assetManager;
+    }
+
+    /**
+     * Returns the maximum number of geometries in a leaf cluster.
+     *
+     * @return the number of geometries
+     */
+    public int getMaxClusterSize() {
+        return maxClusterSize;
+    }
+
+    /**
+     * Sets the maximum number of geometries in a leaf cluster. The default
+     * value is 8.
+     *
+     * @param maxClusterSize the number of geometries (&gt;0)
+     */
+    public void setMaxClusterSize(int maxClusterSize) {
+        if (maxClusterSize < 1) {
+            throw new IllegalArgumentException("maxClusterSize must be positive");
+        }
+        this.maxClusterSize = maxClusterSize;
+    }
+
+    /**
+     * Returns the proportion of triangles removed at each level.
+     *
+     * @return the proportion
+     */
+    public float getReduction() {
+        return reduction;
+    }
+
+    /**
+     * Sets the proportion of triangles removed from the merged meshes of a
+     * cluster to make its proxy. As the proxy of a cluster is made from the
+     * proxies of its sub-clusters, the meshes get coarser at each level of the
+     * tree. The default value is 0.5.
+     *
+     * @param reduction the proportion (between 0 and 1, 0 to not simplify)
+     */
+    public void setReduction(float reduction) {
+        if (reduction < 0 || reduction >= 1) {
+            throw new IllegalArgumentException("reduction must be in [0, 1)");
+        }
+        this.reduction = reduction;
+    }
+
+    /**
+     * Returns the size of a view of an impostor.
+     *
+     * @return the size in pixels, 0 if impostors are disabled
+     */
+    public int getImpostorSize() {
+        return impostorSize;
+    }
+
+    /**
+     * Sets the size of a view of an impostor in the atlas. Impostors require
+     * an asset manager, and are disabled by default.
+     *
+     * @param impostorSize the size in pixels (&ge;0, 0 to disable impostors)
+     */
+    public void setImpostorSize(int impostorSize) {
+        this.impostorSize = impostorSize;
+    }
+
+    /**
+     * Returns the number of views of an impostor around the Y axis.
+     *
+     * @return the number of views
+     */
+    public int getImpostorViews() {
+        return impostorViews;
+    }
+
+    /**
+     * Sets the number of views of an impostor around the Y axis. The default
+     * value is 8.
+     *
+     * @param impostorViews the number of views (&gt;0)
+     */
+    public void setImpostorViews(int impostorViews) {
+        if (impostorViews < 1) {
+            throw new IllegalArgumentException("impostorViews must be positive");
+        }
+        this.impostorViews = impostorViews;
+    }
+
+    /**
+     * Returns the maximum screen error given to the controls.
+     *
+     * @return the error in pixels
+     */
+    public float getMaxScreenError() {
+        return maxScreenError;
+    }
+
+    /**
+     * Sets the maximum screen error given to the controls, see
+     * {@link HlodControl#setMaxScreenError(float)}. The default value is 2.
+     *
+     * @param maxScreenError the error in pixels (&ge;0)
+     */
+    public void setMaxScreenError(float maxScreenError) {
+        this.maxScreenError = maxScreenError;
+    }
+
+    /**
+     * Builds the HLOD tree of the geometries of a scene.
+     *
+     * @param scene the scene to process (not null, unaffected)
+     * @return a new node holding the root cluster and the geometries left out
+     * of the tree
+     */
+    public Node generate(Spatial scene) {
+        Node result = new Node(scene.getName() + "-hlod");
+
+        List<Geometry> geometries = new ArrayList<>();
+        GeometryBatchFactory.gatherGeoms(scene, geometries);
+        List<Geometry> sources = new ArrayList<>();
+        for (Geometry geom : geometries) {
+            Geometry copy = geom.clone(false);
+            copy.setLocalTransform(geom.getWorldTransform());
+            copy.updateGeometricState();
+            if (isTriangleMesh(copy.getMesh()) && copy.getMaterial() != null) {
+                sources.add(copy);
+            } else {
+                result.attachChild(copy);
+            }
+        }
+        if (sources.isEmpty()) {
+            return result;
+        }
+
+        List<Cluster> clusters = new ArrayList<>();
+        Cluster root = buildCluster(sources, clusters);
+        if (impostorSize > 0 && assetManager != null) {
+            makeImpostors(clusters);
+        }
+        for (Cluster cluster : clusters) {
+            cluster.control.setMaxScreenError(maxScreenError);
+        }
+        result.attachChild(root.node);
+        result.updateGeometricState();
+        logger.log(Level.FINE, "Built {0} clusters from {1} geometries",
+                new Object[]{clusters.size(), sources.size()});
+        return result;
+    }
+
+    private static boolean isTriangleMesh(Mesh mesh) {
+        if (mesh == null || mesh.getBuffer(VertexBuffer.Type.Position) == null) {
+            return false;
+        }
+        switch (mesh.getMode()) {
+            case Triangles:
+            case TriangleStrip:
+            case TriangleFan:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Cluster buildCluster(List<Geometry> geometries, List<Cluster> clusters) {
+        Cluster cluster = new Cluster();
+        cluster.node = new Node("hlod-" + clusters.size());
+        clusters.add(cluster);
+        Node detail = new Node("detail");
+        cluster.node.attachChild(detail);
+
+        List<Geometry> proxySources = new ArrayList<>();
+        float childError = 0;
+        if (geometries.size() <= maxClusterSize) {
+            for (Geometry geom : geometries) {
+                detail.attachChild(geom);
+            }
+            proxySources.addAll(geometries);
+        } else {
+            for (List<Geometry> half : split(geometries)) {
+                Cluster child = buildCluster(half, clusters);
+                detail.attachChild(child.node);
+                for (Spatial proxy : child.proxy.getChildren()) {
+                    proxySources.add((Geometry) proxy);
+                }
+                childError = Math.max(childError, child.proxyError);
+            }
+        }
+
+        cluster.proxy = new Node("proxy");
+        int triangles = 0;
+        float area = 0;
+        for (Geometry batch : GeometryBatchFactory.makeBatches(proxySources)) {
+            simplify(batch.getMesh());
+            triangles += batch.getMesh().getTriangleCount();
+            area += surfaceArea(batch.getMesh());
+            cluster.proxy.attachChild(batch);
+        }
+        cluster.proxyError = Math.max(childError,
+                triangles == 0 ? 0 : FastMath.sqrt(area / triangles));
+        cluster.proxy.setCullHint(Spatial.CullHint.Always);
+        cluster.node.attachChild(cluster.proxy);
+
+        cluster.control = new HlodControl();
+        cluster.control.addLevel(detail, 0);
+        cluster.control.addLevel(cluster.proxy, cluster.proxyError);
+        cluster.node.addControl(cluster.control);
+        return cluster;
+    }
+
+    /**
+     * Splits the geometries in two halves at the median of the centers of
+     * their bounds, along the longest axis.
+     */
+    private static List<List<Geometry>> split(List<Geometry> geometries) {
+        Vector3f min = new Vector3f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        Vector3f max = new Vector3f(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+        for (Geometry geom : geometries) {
+            Vector3f center = geom.getWorldBound().getCenter();
+            min.minLocal(center);
+            max.maxLocal(center);
+        }
+        Vector3f extent = max.subtractLocal(min);
+        final int axis = extent.x >= extent.y && extent.x >= extent.z ? 0
+                : extent.y >= extent.z ? 1 : 2;
+
+        Geometry[] sorted = geometries.toArray(new Geometry[geometries.size()]);
+        Arrays.sort(sorted, new Comparator<Geometry>() {
+            @Override
+            public int compare(Geometry a, Geometry b) {
+                return Float.compare(a.getWorldBound().getCenter().get(axis),
+                        b.getWorldBound().getCenter().get(axis));
+            }
+        });
+        int half = sorted.length / 2;
+        List<List<Geometry>> result = new ArrayList<>(2);
+        result.add(new ArrayList<>(Arrays.asList(sorted).subList(0, half)));
+        result.add(new ArrayList<>(Arrays.asList(sorted).subList(half, sorted.length)));
+        return result;
+    }
+
+    private void simplify(Mesh mesh) {
+        if (reduction <= 0 || mesh.getMode() != Mesh.Mode.Triangles
+                || mesh.getBuffer(VertexBuffer.Type.Index) == null
+                || mesh.getTriangleCount() < 2) {
+            return;
+        }
+        VertexBuffer[] lods = new LodGenerator(mesh).computeLods(
+                LodGenerator.TriangleReductionMethod.PROPORTIONAL, reduction);
+        if (lods.length < 2) {
+            return;
+        }
+        mesh.clearBuffer(VertexBuffer.Type.Index);
+        mesh.setBuffer(lods[1]);
+        removeUnusedVertices(mesh);
+        mesh.updateCounts();
+        mesh.updateBound();
+    }
+
+    /**
+     * Removes the vertices which are no longer referenced by the index
+     * buffer, after a simplification.
+     */
+    static void removeUnusedVertices(Mesh mesh) {
+        IndexBuffer indices = mesh.getIndexBuffer();
+        int vertexCount = mesh.getVertexCount();
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int used = 0;
+        for (int i = 0; i < indices.size(); i++) {
+            int index = indices.get(i);
+            if (remap[index] < 0) {
+                remap[index] = used++;
+            }
+        }
+        if (used == vertexCount) {
+            return;
+        }
+
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            if (vb.getBufferType() == VertexBuffer.Type.Index) {
+                continue;
+            }
+            mesh.clearBuffer(vb.getBufferType());
+            if (vb.getNumElements() != vertexCount) {
+                continue;
+            }
+            Buffer data = VertexBuffer.createBuffer(vb.getFormat(), vb.getNumComponents(), used);
+            VertexBuffer out = new VertexBuffer(vb.getBufferType());
+            out.setupData(vb.getUsage(), vb.getNumComponents(), vb.getFormat(), data);
+            out.setNormalized(vb.isNormalized());
+            for (int v = 0; v < vertexCount; v++) {
+                if (remap[v] >= 0) {
+                    vb.copyElement(v, out, remap[v]);
+                }
+            }
+            mesh.setBuffer(out);
+        }
+
+        IndexBuffer outIndices = IndexBuffer.createIndexBuffer(used, indices.size());
+        for (int i = 0; i < indices.size(); i++) {
+            outIndices.put(i, remap[indices.get(i)]);
+        }
+        mesh.clearBuffer(VertexBuffer.Type.Index);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, outIndices.getFormat(), outIndices.getBuffer());
+    }
+
+    private static float surfaceArea(Mesh mesh) {
+        Vector3f v1 = new Vector3f();
+        Vector3f v2 = new Vector3f();
+        Vector3f v3 = new Vector3f();
+        float area = 0;
+        for (int i = 0; i < mesh.getTriangleCount(); i++) {
+            mesh.getTriangle(i, v1, v2, v3);
+            v2.subtractLocal(v1);
+            v3.subtractLocal(v1);
+            area += v2.crossLocal(v3).length() * 0.5f;
+        }
+        return area;
+    }
+
+    private void makeImpostors(List<Cluster> clusters) {
+        int cells = clusters.size() * impostorViews;
+        int columns = (int) Math.ceil(Math.sqrt(cells));
+        int rows = (cells + columns - 1) / columns;
+        int width = columns * impostorSize;
+        int height = rows * impostorSize;
+        ByteBuffer data = BufferUtils.createByteBuffer(width * height * 4);
+        float[] depth = new float[impostorSize * impostorSize];
+
+        Texture2D atlas = new Texture2D(new Image(Image.Format.RGBA8, width, height, data,
+                ColorSpace.sRGB));
+        atlas.setMinFilter(Texture.MinFilter.BilinearNoMipMaps);
+        atlas.setMagFilter(Texture.MagFilter.Bilinear);
+        atlas.setWrap(Texture.WrapMode.EdgeClamp);
+        Material material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setTexture("ColorMap", atlas);
+        material.setFloat("AlphaDiscardThreshold", 0.5f);
+
+        for (int c = 0; c < clusters.size(); c++) {
+            Cluster cluster = clusters.get(c);
+            Vector3f center = center(cluster.proxy);
+            float radius = radius(cluster.proxy, center);
+            for (int view = 0; view < impostorViews; view++) {
+                int cell = c * impostorViews + view;
+                float angle = FastMath.TWO_PI * view / impostorViews;
+                ImpostorRasterizer.render(cluster.proxy, center, radius, angle,
+                        impostorSize, depth, data, width,
+                        (cell % columns) * impostorSize, (cell / columns) * impostorSize);
+            }
+
+            Geometry impostor = new Geometry("impostor", makeQuad(radius));
+            impostor.setMaterial(material);
+            impostor.setLocalTranslation(center);
+            impostor.addControl(new BillboardControl());
+            impostor.getControl(BillboardControl.class)
+                    .setAlignment(BillboardControl.Alignment.AxialY);
+            impostor.setCullHint(Spatial.CullHint.Always);
+            cluster.node.attachChild(impostor);
+            cluster.control.addLevel(impostor, Math.max(cluster.proxyError, radius));
+            cluster.control.setImpostor(impostor, impostorViews, c * impostorViews, columns, rows);
+        }
+    }
+
+    /**
+     * Computes the center of the bounds of the meshes, which are in world
+     * space.
+     */
+    private static Vector3f center(Node proxy) {
+        BoundingVolume bound = null;
+        for (Spatial child : proxy.getChildren()) {
+            BoundingVolume meshBound = ((Geometry) child).getMesh().getBound();
+            bound = bound == null ? meshBound.clone() : bound.mergeLocal(meshBound);
+        }
+        return bound.getCenter().clone();
+    }
+
+    /**
+     * Computes the distance from the center to the farthest vertex.
+     */
+    private static float radius(Node proxy, Vector3f center) {
+        Vector3f v1 = new Vector3f();
+        Vector3f v2 = new Vector3f();
+        Vector3f v3 = new Vector3f();
+        float radiusSquared = 0;
+        for (Spatial child : proxy.getChildren()) {
+            Mesh mesh = ((Geometry) child).getMesh();
+            for (int i = 0; i < mesh.getTriangleCount(); i++) {
+                mesh.getTriangle(i, v1, v2, v3);
+                radiusSquared = Math.max(radiusSquared, Math.max(center.distanceSquared(v1),
+                        Math.max(center.distanceSquared(v2), center.distanceSquared(v3))));
+            }
+        }
+        return Math.max(FastMath.sqrt(radiusSquared), FastMath.ZERO_TOLERANCE);
+    }
+
+    private static Mesh makeQuad(float radius) {
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, new float[]{
+            -radius, -radius, 0,
+            radius, -radius, 0,
+            radius, radius, 0,
+            -radius, radius, 0
+        });
+        mesh.setBuffer(VertexBuffer.Type.TexCoord, 2, new float[]{
+            0, 0,
+            1, 0,
+            1, 1,
+            0, 1
+        });
+        mesh.setBuffer(VertexBuffer.Type.Normal, 3, new float[]{
+            0, 0, 1,
+            0, 0, 1,
+            0, 0, 1,
+            0, 0, 1
+        });
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, new short[]{0, 1, 2, 0, 2, 3});
+        // the texture coordinates are changed with the view
+        mesh.getBuffer(VertexBuffer.Type.TexCoord).setUsage(VertexBuffer.Usage.Dynamic);
+        mesh.updateBound();
+        return mesh;
+    }
+
+    /**
+     * Returns the color used to render a geometry in the impostors: the
+     * first color parameter found among the ones of the stock material
+     * definitions, or white.
+     */
+    static ColorRGBA getBaseColor(Material material) {
+        for (String name : new String[]{"Color", "Diffuse", "BaseColor"}) {
+            MatParam param = material.getParam(name);
+            if (param != null && param.getValue() instanceof ColorRGBA) {
+                return (ColorRGBA) param.getValue();
+            }
+        }
+        return ColorRGBA.White;
+    }
+
+    private static class Cluster {
+        Node node;
+        Node proxy;
+        float proxyError;
+        HlodControl control;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3tools.optimize;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Renders the views of the impostors of {@link HlodGenerator} on the CPU, so
+ * that the generator can run without a renderer.
+ *
+ * <p>The geometries are drawn with an orthographic projection, a depth
+ * buffer, and a flat color per geometry lit by a directional light coming
+ * from above the viewer. Textures are ignored.
+ */
+final class ImpostorRasterizer {
+
+    private ImpostorRasterizer() {
+    }
+
+    /**
+     * Renders a view of world-space geometries into a cell of an RGBA8 image.
+     * The view looks at the center from the direction (sin(angle), 0,
+     * cos(angle)), with Y up, and covers a square of side 2 * radius. The
+     * pixels not covered by any triangle are transparent.
+     *
+     * @param geometries a node holding the geometries, with identity
+     * transforms (not null)
+     * @param center the center of the view (not null, unaffected)
+     * @param radius half the side of the square seen by the view (&gt;0)
+     * @param angle the angle of the view around Y, in radians
+     * @param size the side of the cell, in pixels
+     * @param depth a buffer of at least size * size floats
+     * @param image the image data (not null)
+     * @param imageWidth the width of the image, in pixels
+     * @param x0 the abscissa of the first pixel of the cell
+     * @param y0 the ordinate of the first pixel of the cell (from the bottom)
+     */
+    static void render(Node geometries, Vector3f center, float radius, float angle,
+            int size, float[] depth, ByteBuffer image, int imageWidth, int x0, int y0) {
+        Vector3f dir = new Vector3f(FastMath.sin(angle), 0, FastMath.cos(angle));
+        Vector3f right = new Vector3f(FastMath.cos(angle), 0, -FastMath.sin(angle));
+        Vector3f light = dir.add(0, 1, 0).normalizeLocal();
+
+        Arrays.fill(depth, 0, size * size, Float.NEGATIVE_INFINITY);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                putPixel(image, ((y0 + y) * imageWidth + x0 + x) * 4, 0);
+            }
+        }
+
+        float scale = size / (2 * radius);
+        Vector3f[] v = {new Vector3f(), new Vector3f(), new Vector3f()};
+        float[] sx = new float[3];
+        float[] sy = new float[3];
+        float[] sz = new float[3];
+        Vector3f normal = new Vector3f();
+        Vector3f edge = new Vector3f();
+        for (Spatial child : geometries.getChildren()) {
+            Geometry geom = (Geometry) child;
+            ColorRGBA color = HlodGenerator.getBaseColor(geom.getMaterial());
+            Mesh mesh = geom.getMesh();
+            for (int t = 0; t < mesh.getTriangleCount(); t++) {
+                mesh.getTriangle(t, v[0], v[1], v[2]);
+                v[1].subtract(v[0], normal);
+                v[2].subtract(v[0], edge);
+                normal.crossLocal(edge).normalizeLocal();
+                float shade = 0.3f + 0.7f * Math.abs(normal.dot(light));
+
+                for (int i = 0; i < 3; i++) {
+                    v[i].subtractLocal(center);
+                    sx[i] = v[i].dot(right) * scale + size * 0.5f;
+                    sy[i] = v[i].y * scale + size * 0.5f;
+                    sz[i] = v[i].dot(dir);
+                }
+                fillTriangle(sx, sy, sz, size, depth, image, imageWidth, x0, y0,
+                        color, shade);
+            }
+        }
+    }
+
+    private static void fillTriangle(float[] sx, float[] sy, float[] sz, int size,
+            float[] depth, ByteBuffer image, int imageWidth, int x0, int y0,
+            ColorRGBA color, float shade) {
+        float area = (sx[1] - sx[0]) * (sy[2] - sy[0]) - (sx[2] - sx[0]) * (sy[1] - sy[0]);
+        if (Math.abs(area) < 1e-8f) {
+            return;
+        }
+        int minX = Math.max(0, (int) Math.floor(Math.min(sx[0], Math.min(sx[1], sx[2]))));
+        int maxX = Math.min(size - 1, (int) Math.ceil(Math.max(sx[0], Math.max(sx[1], sx[2]))));
+        int minY = Math.max(0, (int) Math.floor(Math.min(sy[0], Math.min(sy[1], sy[2]))));
+        int maxY = Math.min(size - 1, (int) Math.ceil(Math.max(sy[0], Math.max(sy[1], sy[2]))));
+
+        // material colors are linear, while the atlas is in sRGB space
+        ColorRGBA srgb = color.mult(shade).getAsSrgb();
+        int rgba = (toByte(srgb.r) << 24) | (toByte(srgb.g) << 16)
+                | (toByte(srgb.b) << 8) | 0xFF;
+        for (int y = minY; y <= maxY; y++) {
+            float py = y + 0.5f;
+            for (int x = minX; x <= maxX; x++) {
+                float px = x + 0.5f;
+                float w0 = ((sx[1] - px) * (sy[2] - py) - (sx[2] - px) * (sy[1] - py)) / area;
+                float w1 = ((sx[2] - px) * (sy[0] - py) - (sx[0] - px) * (sy[2] - py)) / area;
+                float w2 = 1 - w0 - w1;
+                if (w0 < 0 || w1 < 0 || w2 < 0) {
+                    continue;
+                }
+                float z = w0 * sz[0] + w1 * sz[1] + w2 * sz[2];
+                int d = y * size + x;
+                if (z > depth[d]) {
+                    depth[d] = z;
+                    putPixel(image, ((y0 + y) * imageWidth + x0 + x) * 4, rgba);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the RGBA bytes of a pixel, whatever the byte order of the
+     * buffer.
+     */
+    private static void putPixel(ByteBuffer image, int offset, int rgba) {
+        image.put(offset, (byte) (rgba >>> 24));
+        image.put(offset + 1, (byte) (rgba >>> 16));
+        image.put(offset + 2, (byte) (rgba >>> 8));
+        image.put(offset + 3, (byte) rgba);
+    }
+
+    private static int toByte(float value) {
+        return (int) (FastMath.clamp(value, 0, 1) * 255f + 0.5f);
+    }
+}
@@ -91,6 +91,8 @@ import java.util.logging.Logger;
  * {@link TriangleReductionMethod} reduction value depends on the
  * reductionMethod<p>
  *
+ * <p>For large meshes, {@link QuadricLodGenerator} offers the same interface
+ * with a much faster simplification based on quadric error metrics.</p>
  *
  * @author Nehon
  */
@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3tools.optimize;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+import com.jme3.util.TangentBinormalGenerator;
+import com.jme3.util.mikktspace.MikktspaceTangentGenerator;
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Processes the meshes of a loaded model: generates their tangents, reorders
+ * their triangles and vertices for the vertex cache, narrows their index
+ * buffers, trims the unused capacity of their vertex buffers and updates their
+ * bounds.
+ *
+ * <p>Each mesh is processed by a single task, which only touches that mesh,
+ * so when an executor is {@link #setExecutor(ExecutorService) set}, the
+ * meshes are processed in parallel with exactly the same results as on the
+ * calling thread. The geometries are then refreshed on the calling thread.
+ * A mesh shared by several geometries is processed once.
+ *
+ * <p>A processor can be run on every model loaded with a
+ * {@link com.jme3.asset.ModelKey}, see
+ * {@link com.jme3.asset.ModelKey#setMeshPostProcessor(MeshPostProcessor)}.
+ * It must not be reconfigured while it's processing a model.
+ */
+public class MeshPostProcessor {
+
+    /**
+     * The algorithm used to generate the tangents.
+     */
+    public enum TangentGeneration {
+        /**
+         * The tangents are left as they are.
+         */
+        None,
+        /**
+         * The tangents are generated with {@link MikktspaceTangentGenerator}.
+         */
+        MikkTSpace,
+        /**
+         * The tangents are generated with {@link TangentBinormalGenerator}.
+         */
+        Legacy
+    }
+
+    private static final Logger logger = Logger.getLogger(MeshPostProcessor.class.getName());
+
+    private TangentGeneration tangentGeneration = TangentGeneration.None;
+    private boolean optimizeVertexCache;
+    private boolean remapVertices;
+    private boolean compactIndices = true;
+    private boolean compactBuffers = true;
+    private boolean updateBounds = true;
+    private ExecutorService executor;
+
+    /**
+     * Processes the meshes of the specified scene, in parallel if an executor
+     * is set.
+     *
+     * @param scene the scene whose meshes are processed (not null)
+     */
+    public void process(Spatial scene) {
+        final List<Mesh> meshes = new ArrayList<>();
+        final Map<Mesh, Boolean> visited = new IdentityHashMap<>();
+        scene.depthFirstTraversal(new SceneGraphVisitorAdapter() {
+            @Override
+            public void visit(Geometry geom) {
+                Mesh mesh = geom.getMesh();
+                if (mesh != null && visited.put(mesh, Boolean.TRUE) == null) {
+                    meshes.add(mesh);
+                }
+            }
+        });
+
+        ExecutorService tasks = executor;
+        if (tasks == null || meshes.size() < 2) {
+            for (Mesh mesh : meshes) {
+                process(mesh);
+            }
+        } else {
+            List<Future<?>> futures = new ArrayList<>(meshes.size());
+            for (final Mesh mesh : meshes) {
+                futures.add(tasks.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        process(mesh);
+                        return null;
+                    }
+                }));
+            }
+            // fails with the first mesh that fails on the serial path
+            for (Future<?> future : futures) {
+                getResult(future);
+            }
+        }
+
+        if (updateBounds) {
+            scene.depthFirstTraversal(new SceneGraphVisitorAdapter() {
+                @Override
+                public void visit(Geometry geom) {
+                    geom.forceRefresh(false, true, false);
+                }
+            });
+        }
+    }
+
+    private static void getResult(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing meshes", exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw new IllegalStateException("Unable to process a mesh", exception.getCause());
+        }
+    }
+
+    /**
+     * Processes a single mesh on the calling thread. The geometries using it
+     * have to be refreshed with {@link Geometry#updateModelBound()}
+     * afterwards if its bound changed.
+     *
+     * @param mesh the mesh to process (not null)
+     */
+    public void process(Mesh mesh) {
+        if (compactBuffers) {
+            compactBuffers(mesh);
+        }
+        if (tangentGeneration != TangentGeneration.None && hasTangentData(mesh)) {
+            if (tangentGeneration == TangentGeneration.MikkTSpace) {
+                if (!MikktspaceTangentGenerator.generate(mesh)) {
+                    logger.log(Level.SEVERE, "Failed to generate tangents for mesh {0}", mesh);
+                }
+            } else {
+                TangentBinormalGenerator.generate(mesh, true, false);
+            }
+        }
+        if (optimizeVertexCache) {
+            VertexCacheOptimizer.optimize(mesh);
+        }
+        if (remapVertices) {
+            VertexCacheOptimizer.remapVertices(mesh);
+        }
+        if (compactIndices) {
+            compactIndices(mesh);
+        }
+        if (updateBounds) {
+            mesh.updateBound();
+        }
+    }
+
+    private static boolean hasTangentData(Mesh mesh) {
+        switch (mesh.getMode()) {
+            case Triangles:
+            case TriangleStrip:
+            case TriangleFan:
+                return mesh.getBuffer(VertexBuffer.Type.Normal) != null
+                        && mesh.getBuffer(VertexBuffer.Type.TexCoord) != null
+                        && mesh.getBuffer(VertexBuffer.Type.Position) != null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reduces the vertex buffers whose capacity exceeds the vertex count of
+     * the mesh to the used elements.
+     */
+    private static void compactBuffers(Mesh mesh) {
+        int vertexCount = mesh.getVertexCount();
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            if (vb.getBufferType() == VertexBuffer.Type.Index || vb.isInstanced()
+                    || vb.getFormat() == VertexBuffer.Format.Half) {
+                continue;
+            }
+            Buffer data = vb.getData();
+            if (data != null && vertexCount >= 0
+                    && data.capacity() > vertexCount * vb.getNumComponents()) {
+                vb.compact(vertexCount);
+            }
+        }
+    }
+
+    /**
+     * Stores 32-bit indices as 16-bit ones when the mesh has few enough
+     * vertices, in the index buffer and in the LOD levels.
+     */
+    private static void compactIndices(Mesh mesh) {
+        if (mesh.getVertexCount() > 65536) {
+            return;
+        }
+        VertexBuffer indices = mesh.getBuffer(VertexBuffer.Type.Index);
+        if (indices != null) {
+            VertexBuffer narrowed = narrow(indices);
+            if (narrowed != indices) {
+                mesh.clearBuffer(VertexBuffer.Type.Index);
+                mesh.setBuffer(narrowed);
+            }
+        }
+        if (mesh.getNumLodLevels() > 0) {
+            VertexBuffer[] levels = new VertexBuffer[mesh.getNumLodLevels()];
+            boolean changed = false;
+            for (int i = 0; i < levels.length; i++) {
+                VertexBuffer level = mesh.getLodLevel(i);
+                levels[i] = narrow(level);
+                changed |= levels[i] != level;
+            }
+            if (changed) {
+                mesh.setLodLevels(levels);
+            }
+        }
+    }
+
+    private static VertexBuffer narrow(VertexBuffer indices) {
+        if (indices.getFormat() != VertexBuffer.Format.UnsignedInt
+                && indices.getFormat() != VertexBuffer.Format.Int) {
+            return indices;
+        }
+        IntBuffer source = (IntBuffer) indices.getData();
+        if (source == null) {
+            return indices;
+        }
+        int count = source.limit();
+        ShortBuffer target = BufferUtils.createShortBuffer(count);
+        for (int i = 0; i < count; i++) {
+            target.put((short) source.get(i));
+        }
+        target.flip();
+
+        VertexBuffer result = new VertexBuffer(indices.getBufferType());
+        result.setupData(indices.getUsage(), indices.getNumComponents(),
+                VertexBuffer.Format.UnsignedShort, target);
+        return result;
+    }
+
+    /**
+     * Returns the algorithm used to generate the tangents.
+     *
+     * @return the algorithm (not null, default: None)
+     */
+    public TangentGeneration getTangentGeneration() {
+        return tangentGeneration;
+    }
+
+    /**
+     * Sets the algorithm used to generate the tangents of the triangle meshes
+     * having normals and texture coordinates. Any existing tangents of these
+     * meshes are replaced.
+     *
+     * @param tangentGeneration the algorithm (not null, default: None)
+     */
+    public void setTangentGeneration(TangentGeneration tangentGeneration) {
+        if (tangentGeneration == null) {
+            throw new IllegalArgumentException("tangentGeneration cannot be null");
+        }
+        this.tangentGeneration = tangentGeneration;
+    }
+
+    /**
+     * Tests whether the triangles are reordered for the vertex cache.
+     *
+     * @return true if enabled (default: false)
+     */
+    public boolean isOptimizeVertexCache() {
+        return optimizeVertexCache;
+    }
+
+    /**
+     * Sets whether the triangles of the meshes are reordered for the vertex
+     * cache, see {@link VertexCacheOptimizer#optimize(Mesh)}.
+     *
+     * @param optimizeVertexCache true to enable (default: false)
+     */
+    public void setOptimizeVertexCache(boolean optimizeVertexCache) {
+        this.optimizeVertexCache = optimizeVertexCache;
+    }
+
+    /**
+     * Tests whether the vertices are reordered in the order of their first
+     * use.
+     *
+     * @return true if enabled (default: false)
+     */
+    public boolean isRemapVertices() {
+        return remapVertices;
+    }
+
+    /**
+     * Sets whether the vertices of the meshes are reordered in the order of
+     * their first use, see {@link VertexCacheOptimizer#remapVertices(Mesh)}.
+     * The vertex data of the meshes is then no longer in its authored order.
+     *
+     * @param remapVertices true to enable (default: false)
+     */
+    public void setRemapVertices(boolean remapVertices) {
+        this.remapVertices = remapVertices;
+    }
+
+    /**
+     * Tests whether 32-bit indices are stored as 16-bit ones when possible.
+     *
+     * @return true if enabled (default: true)
+     */
+    public boolean isCompactIndices() {
+        return compactIndices;
+    }
+
+    /**
+     * Sets whether 32-bit indices are stored as 16-bit ones in the meshes
+     * having at most 65536 vertices.
+     *
+     * @param compactIndices true to enable (default: true)
+     */
+    public void setCompactIndices(boolean compactIndices) {
+        this.compactIndices = compactIndices;
+    }
+
+    /**
+     * Tests whether the unused capacity of the vertex buffers is trimmed.
+     *
+     * @return true if enabled (default: true)
+     */
+    public boolean isCompactBuffers() {
+        return compactBuffers;
+    }
+
+    /**
+     * Sets whether the vertex buffers holding more elements than the vertex
+     * count of their mesh are reduced to the used ones.
+     *
+     * @param compactBuffers true to enable (default: true)
+     */
+    public void setCompactBuffers(boolean compactBuffers) {
+        this.compactBuffers = compactBuffers;
+    }
+
+    /**
+     * Tests whether the bounds are updated.
+     *
+     * @return true if enabled (default: true)
+     */
+    public boolean isUpdateBounds() {
+        return updateBounds;
+    }
+
+    /**
+     * Sets whether the mesh bounds are recomputed, and the bounds of the
+     * geometries refreshed.
+     *
+     * @param updateBounds true to enable (default: true)
+     */
+    public void setUpdateBounds(boolean updateBounds) {
+        this.updateBounds = updateBounds;
+    }
+
+    /**
+     * Returns the executor which processes the meshes.
+     *
+     * @return the executor, or null if the meshes are processed on the
+     * calling thread
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor which processes the meshes, one task per mesh. The
+     * calling thread waits for the tasks to complete, so the executor must not
+     * be a single thread which may be the caller.
+     *
+     * @param executor the executor, or null to process the meshes on the
+     * calling thread (default: null)
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+}
@@ -0,0 +1,901 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3tools.optimize;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.BufferUtils;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jme3tools.optimize.LodGenerator.TriangleReductionMethod;
+
+/**
+ * Computes the LOD levels of a triangle mesh with quadric error metrics.
+ *
+ * <p>This is a faster alternative to {@link LodGenerator}, with the same
+ * interface. The vertices sharing a position are welded, each welded vertex
+ * accumulates the quadrics of the planes of its triangles, and the edges are
+ * collapsed in the order of their error, taken from a binary heap. The
+ * collapses are half-edge collapses: a vertex is merged into one of its
+ * neighbors, so the LOD levels still index the vertex buffers of the mesh.
+ * Planes orthogonal to the triangles are added along the borders of the mesh
+ * and along the seams of its vertex attributes, to preserve them. Collapses
+ * which would flip a triangle are rejected.
+ *
+ * <p>All the working data is held in primitive arrays. The mesh is only read
+ * by the constructor, after which {@link #computeLods(ExecutorService,
+ * TriangleReductionMethod, float...)} can compute the levels independently
+ * on several threads, and {@link #bakeLods(Spatial, ExecutorService,
+ * TriangleReductionMethod, float...)} processes the meshes of a scene in
+ * parallel.
+ *
+ * <p>With {@link TriangleReductionMethod#COLLAPSE_COST}, the reduction value
+ * is the maximum error of a collapse, which is a sum of squared distances to
+ * the planes of the original triangles, in the units of the mesh.
+ */
+public class QuadricLodGenerator {
+
+    private static final Logger logger = Logger.getLogger(QuadricLodGenerator.class.getName());
+
+    /**
+     * Weight of the planes which preserve the borders and the seams, relative
+     * to the ones of the triangles.
+     */
+    private static final double BORDER_WEIGHT = 10.0;
+
+    private final Mesh mesh;
+    private final int triangleCount;
+    private final int vertexCount;
+    private final int weldedCount;
+    /** The original vertex of each corner of the triangles. */
+    private final int[] cornerVertices;
+    /** The welded vertex of each corner of the triangles. */
+    private final int[] cornerWelded;
+    /** The positions of the welded vertices. */
+    private final float[] positions;
+    /** The quadrics of the welded vertices, 10 coefficients each. */
+    private final double[] quadrics;
+
+    /**
+     * Constructs a generator for the given mesh. The mesh must be made of
+     * indexed triangles, and isn't modified.
+     *
+     * @param mesh the mesh for which to generate LODs (not null)
+     */
+    public QuadricLodGenerator(Mesh mesh) {
+        if (mesh.getMode() != Mesh.Mode.Triangles) {
+            throw new IllegalArgumentException("Only Triangles meshes are supported");
+        }
+        this.mesh = mesh;
+
+        // in case the model is currently animating with software animation
+        VertexBuffer position = mesh.getBuffer(VertexBuffer.Type.BindPosePosition);
+        if (position == null) {
+            position = mesh.getBuffer(VertexBuffer.Type.Position);
+        }
+        FloatBuffer pos = (FloatBuffer) position.getDataReadOnly();
+        vertexCount = position.getNumElements();
+        IndexBuffer indices = mesh.getIndexBuffer();
+        if (indices == null) {
+            throw new IllegalArgumentException("The mesh has no index buffer");
+        }
+        triangleCount = indices.size() / 3;
+        cornerVertices = new int[triangleCount * 3];
+        for (int i = 0; i < cornerVertices.length; i++) {
+            cornerVertices[i] = indices.get(i);
+        }
+
+        int[] weldedOf = new int[vertexCount];
+        float[] weldedPositions = new float[vertexCount * 3];
+        weldedCount = weld(pos, weldedOf, weldedPositions);
+        positions = Arrays.copyOf(weldedPositions, weldedCount * 3);
+        cornerWelded = new int[cornerVertices.length];
+        for (int i = 0; i < cornerVertices.length; i++) {
+            cornerWelded[i] = weldedOf[cornerVertices[i]];
+        }
+
+        quadrics = new double[weldedCount * 10];
+        computeQuadrics(classifyAttributes(weldedOf));
+    }
+
+    /**
+     * Gives the same index to the vertices which have the same position and
+     * the same values in all the other vertex buffers, so that duplicated
+     * vertices don't make seams.
+     *
+     * @return the index of the class of each vertex
+     */
+    private int[] classifyAttributes(int[] weldedOf) {
+        List<Buffer> attributes = new ArrayList<>();
+        List<Integer> components = new ArrayList<>();
+        for (VertexBuffer vb : mesh.getBufferList()) {
+            if (vb.getBufferType() != VertexBuffer.Type.Index && !vb.isInstanced()
+                    && vb.getNumElements() == vertexCount) {
+                attributes.add(vb.getDataReadOnly());
+                components.add(vb.getNumComponents());
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(vertexCount, 1) * 2 - 1) << 1;
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        int[] classes = new int[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            int hash = weldedOf[v];
+            for (int a = 0; a < attributes.size(); a++) {
+                int n = components.get(a);
+                for (int i = v * n; i < v * n + n; i++) {
+                    hash = hash * 31 + componentBits(attributes.get(a), i);
+                }
+            }
+            int slot = (hash ^ (hash >>> 16)) & (capacity - 1);
+            while (true) {
+                int other = table[slot];
+                if (other < 0) {
+                    table[slot] = v;
+                    classes[v] = v;
+                    break;
+                }
+                if (sameAttributes(attributes, components, weldedOf, v, other)) {
+                    classes[v] = other;
+                    break;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+        }
+        return classes;
+    }
+
+    private static boolean sameAttributes(List<Buffer> attributes, List<Integer> components,
+            int[] weldedOf, int v1, int v2) {
+        if (weldedOf[v1] != weldedOf[v2]) {
+            return false;
+        }
+        for (int a = 0; a < attributes.size(); a++) {
+            int n = components.get(a);
+            for (int i = 0; i < n; i++) {
+                if (componentBits(attributes.get(a), v1 * n + i)
+                        != componentBits(attributes.get(a), v2 * n + i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int componentBits(Buffer buffer, int index) {
+        if (buffer instanceof FloatBuffer) {
+            return Float.floatToIntBits(((FloatBuffer) buffer).get(index) + 0f);
+        } else if (buffer instanceof IntBuffer) {
+            return ((IntBuffer) buffer).get(index);
+        } else if (buffer instanceof ShortBuffer) {
+            return ((ShortBuffer) buffer).get(index);
+        } else if (buffer instanceof ByteBuffer) {
+            return ((ByteBuffer) buffer).get(index);
+        } else if (buffer instanceof DoubleBuffer) {
+            long bits = Double.doubleToLongBits(((DoubleBuffer) buffer).get(index) + 0d);
+            return (int) (bits ^ (bits >>> 32));
+        }
+        throw new UnsupportedOperationException("Unsupported buffer " + buffer);
+    }
+
+    /**
+     * Gives the same index to the vertices which share a position.
+     *
+     * @return the number of distinct positions
+     */
+    private int weld(FloatBuffer pos, int[] weldedOf, float[] weldedPositions) {
+        int capacity = Integer.highestOneBit(Math.max(vertexCount, 1) * 2 - 1) << 1;
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        int count = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            // adding 0 turns -0 into +0, so both get the same hash
+            float x = pos.get(v * 3) + 0f;
+            float y = pos.get(v * 3 + 1) + 0f;
+            float z = pos.get(v * 3 + 2) + 0f;
+            int hash = Float.floatToIntBits(x) * 73856093
+                    ^ Float.floatToIntBits(y) * 19349663
+                    ^ Float.floatToIntBits(z) * 83492791;
+            int slot = (hash ^ (hash >>> 16)) & (capacity - 1);
+            while (true) {
+                int w = table[slot];
+                if (w < 0) {
+                    table[slot] = count;
+                    weldedPositions[count * 3] = x;
+                    weldedPositions[count * 3 + 1] = y;
+                    weldedPositions[count * 3 + 2] = z;
+                    weldedOf[v] = count++;
+                    break;
+                }
+                if (weldedPositions[w * 3] == x && weldedPositions[w * 3 + 1] == y
+                        && weldedPositions[w * 3 + 2] == z) {
+                    weldedOf[v] = w;
+                    break;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+        }
+        return count;
+    }
+
+    private void computeQuadrics(int[] attributeClasses) {
+        // an edge is a border if only one triangle uses it, and a seam if
+        // the triangles which share its position don't share its attributes
+        int cornerCount = cornerWelded.length;
+        long[] weldedEdges = new long[cornerCount];
+        long[] attributeEdges = new long[cornerCount];
+        for (int c = 0; c < cornerCount; c++) {
+            int next = nextCorner(c);
+            weldedEdges[c] = edgeKey(cornerWelded[c], cornerWelded[next]);
+            attributeEdges[c] = edgeKey(attributeClasses[cornerVertices[c]],
+                    attributeClasses[cornerVertices[next]]);
+        }
+        long[] sortedWelded = weldedEdges.clone();
+        long[] sortedAttributes = attributeEdges.clone();
+        Arrays.sort(sortedWelded);
+        Arrays.sort(sortedAttributes);
+
+        for (int t = 0; t < triangleCount; t++) {
+            int a = cornerWelded[t * 3];
+            int b = cornerWelded[t * 3 + 1];
+            int c = cornerWelded[t * 3 + 2];
+            if (a == b || b == c || a == c) {
+                continue;
+            }
+            double abx = positions[b * 3] - positions[a * 3];
+            double aby = positions[b * 3 + 1] - positions[a * 3 + 1];
+            double abz = positions[b * 3 + 2] - positions[a * 3 + 2];
+            double acx = positions[c * 3] - positions[a * 3];
+            double acy = positions[c * 3 + 1] - positions[a * 3 + 1];
+            double acz = positions[c * 3 + 2] - positions[a * 3 + 2];
+            double nx = aby * acz - abz * acy;
+            double ny = abz * acx - abx * acz;
+            double nz = abx * acy - aby * acx;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0) {
+                continue;
+            }
+            double area = length * 0.5;
+            nx /= length;
+            ny /= length;
+            nz /= length;
+            double d = -(nx * positions[a * 3] + ny * positions[a * 3 + 1] + nz * positions[a * 3 + 2]);
+            addPlane(quadrics, a, nx, ny, nz, d, area);
+            addPlane(quadrics, b, nx, ny, nz, d, area);
+            addPlane(quadrics, c, nx, ny, nz, d, area);
+
+            for (int k = 0; k < 3; k++) {
+                int corner = t * 3 + k;
+                int count = count(sortedWelded, weldedEdges[corner]);
+                if (count == 1 || count != count(sortedAttributes, attributeEdges[corner])) {
+                    addBorderPlane(cornerWelded[corner], cornerWelded[nextCorner(corner)],
+                            nx, ny, nz);
+                }
+            }
+        }
+    }
+
+    private void addBorderPlane(int a, int b, double nx, double ny, double nz) {
+        double ex = positions[b * 3] - positions[a * 3];
+        double ey = positions[b * 3 + 1] - positions[a * 3 + 1];
+        double ez = positions[b * 3 + 2] - positions[a * 3 + 2];
+        double lengthSquared = ex * ex + ey * ey + ez * ez;
+        // the plane contains the edge and is orthogonal to the triangle
+        double px = ey * nz - ez * ny;
+        double py = ez * nx - ex * nz;
+        double pz = ex * ny - ey * nx;
+        double length = Math.sqrt(px * px + py * py + pz * pz);
+        if (length == 0) {
+            return;
+        }
+        px /= length;
+        py /= length;
+        pz /= length;
+        double d = -(px * positions[a * 3] + py * positions[a * 3 + 1] + pz * positions[a * 3 + 2]);
+        addPlane(quadrics, a, px, py, pz, d, BORDER_WEIGHT * lengthSquared);
+        addPlane(quadrics, b, px, py, pz, d, BORDER_WEIGHT * lengthSquared);
+    }
+
+    private static int nextCorner(int corner) {
+        return corner % 3 == 2 ? corner - 2 : corner + 1;
+    }
+
+    private static long edgeKey(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    /**
+     * Counts the occurrences of a key in a sorted array.
+     */
+    private static int count(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = low;
+        while (end < sorted.length && sorted[end] == key) {
+            end++;
+        }
+        return end - low;
+    }
+
+    private static void addPlane(double[] q, int vertex, double a, double b, double c,
+            double d, double weight) {
+        int o = vertex * 10;
+        q[o] += weight * a * a;
+        q[o + 1] += weight * a * b;
+        q[o + 2] += weight * a * c;
+        q[o + 3] += weight * a * d;
+        q[o + 4] += weight * b * b;
+        q[o + 5] += weight * b * c;
+        q[o + 6] += weight * b * d;
+        q[o + 7] += weight * c * c;
+        q[o + 8] += weight * c * d;
+        q[o + 9] += weight * d * d;
+    }
+
+    private static double evaluate(double[] q, int vertex, double x, double y, double z) {
+        int o = vertex * 10;
+        return q[o] * x * x + 2 * q[o + 1] * x * y + 2 * q[o + 2] * x * z + 2 * q[o + 3] * x
+                + q[o + 4] * y * y + 2 * q[o + 5] * y * z + 2 * q[o + 6] * y
+                + q[o + 7] * z * z + 2 * q[o + 8] * z + q[o + 9];
+    }
+
+    /**
+     * Returns the number of triangles of the mesh.
+     *
+     * @return the count (&ge;0)
+     */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Computes the LODs, each one simplifying the previous one, on the
+     * calling thread. The reduction values must be increasing.
+     *
+     * @param reductionMethod the reduction method to use
+     * @param reductionValues the reduction value to use for each LOD level
+     * @return the index buffers of the levels, the first one being the index
+     * buffer of the mesh, without the levels which couldn't be reduced
+     * further than the previous one
+     */
+    public VertexBuffer[] computeLods(TriangleReductionMethod reductionMethod,
+            float... reductionValues) {
+        Simplifier simplifier = new Simplifier();
+        VertexBuffer[] lods = new VertexBuffer[reductionValues.length + 1];
+        lods[0] = mesh.getBuffer(VertexBuffer.Type.Index);
+        int lastCount = triangleCount;
+        for (int i = 0; i < reductionValues.length; i++) {
+            simplifier.simplify(targetCount(reductionMethod, reductionValues[i]),
+                    maxCost(reductionMethod, reductionValues[i]));
+            if (simplifier.liveTriangles < lastCount) {
+                lastCount = simplifier.liveTriangles;
+                lods[i + 1] = simplifier.makeLod();
+            }
+        }
+        return removeNulls(lods);
+    }
+
+    /**
+     * Computes the LODs in parallel, each level being simplified from the
+     * original mesh by its own task. The levels are then slightly more
+     * expensive to compute than with {@link
+     * #computeLods(TriangleReductionMethod, float...)}, but don't wait for
+     * each other.
+     *
+     * @param executor the executor which runs the tasks (not null)
+     * @param reductionMethod the reduction method to use
+     * @param reductionValues the reduction value to use for each LOD level,
+     * in increasing order
+     * @return the index buffers of the levels, the first one being the index
+     * buffer of the mesh, without the levels which couldn't be reduced
+     * further than the previous one
+     */
+    public VertexBuffer[] computeLods(ExecutorService executor,
+            final TriangleReductionMethod reductionMethod, float... reductionValues) {
+        List<Future<Simplifier>> futures = new ArrayList<>();
+        for (final float value : reductionValues) {
+            futures.add(executor.submit(new Callable<Simplifier>() {
+                @Override
+                public Simplifier call() {
+                    Simplifier simplifier = new Simplifier();
+                    simplifier.simplify(targetCount(reductionMethod, value),
+                            maxCost(reductionMethod, value));
+                    return simplifier;
+                }
+            }));
+        }
+
+        VertexBuffer[] lods = new VertexBuffer[reductionValues.length + 1];
+        lods[0] = mesh.getBuffer(VertexBuffer.Type.Index);
+        int lastCount = triangleCount;
+        for (int i = 0; i < futures.size(); i++) {
+            Simplifier simplifier = getResult(futures.get(i));
+            if (simplifier.liveTriangles < lastCount) {
+                lastCount = simplifier.liveTriangles;
+                lods[i + 1] = simplifier.makeLod();
+            }
+        }
+        return removeNulls(lods);
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing LODs", exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw new IllegalStateException("Unable to compute LODs", exception.getCause());
+        }
+    }
+
+    /**
+     * Computes the LODs and bakes them into the mesh.
+     *
+     * @param reductionMethod the reduction method to use
+     * @param reductionValues the reduction value to use for each LOD level
+     * @see #computeLods(TriangleReductionMethod, float...)
+     */
+    public void bakeLods(TriangleReductionMethod reductionMethod, float... reductionValues) {
+        mesh.setLodLevels(computeLods(reductionMethod, reductionValues));
+    }
+
+    /**
+     * Computes the LODs of all the triangle meshes of a scene in parallel,
+     * one task per mesh, and bakes them into the meshes. A mesh whose LODs
+     * can't be computed is logged and left unchanged.
+     *
+     * @param scene the scene whose meshes are processed (not null)
+     * @param executor the executor which runs the tasks (not null)
+     * @param reductionMethod the reduction method to use
+     * @param reductionValues the reduction value to use for each LOD level
+     */
+    public static void bakeLods(Spatial scene, ExecutorService executor,
+            final TriangleReductionMethod reductionMethod, final float... reductionValues) {
+        final Map<Mesh, Future<VertexBuffer[]>> futures = new IdentityHashMap<>();
+        final ExecutorService tasks = executor;
+        scene.depthFirstTraversal(new SceneGraphVisitorAdapter() {
+            @Override
+            public void visit(Geometry geom) {
+                final Mesh mesh = geom.getMesh();
+                if (mesh == null || mesh.getMode() != Mesh.Mode.Triangles
+                        || mesh.getBuffer(VertexBuffer.Type.Index) == null
+                        || futures.containsKey(mesh)) {
+                    return;
+                }
+                futures.put(mesh, tasks.submit(new Callable<VertexBuffer[]>() {
+                    @Override
+                    public VertexBuffer[] call() {
+                        return new QuadricLodGenerator(mesh).computeLods(reductionMethod, reductionValues);
+                    }
+                }));
+            }
+        });
+
+        // the meshes are only modified on the calling thread
+        for (Map.Entry<Mesh, Future<VertexBuffer[]>> entry : futures.entrySet()) {
+            try {
+                entry.getKey().setLodLevels(getResult(entry.getValue()));
+            } catch (RuntimeException exception) {
+                logger.log(Level.WARNING, "Error while computing LODs", exception);
+            }
+        }
+    }
+
+    private int targetCount(TriangleReductionMethod reductionMethod, float reductionValue) {
+        switch (reductionMethod) {
+            case PROPORTIONAL:
+                return (int) (triangleCount - triangleCount * reductionValue);
+            case CONSTANT:
+                return Math.max(0, triangleCount - (int) reductionValue);
+            default:
+                return 0;
+        }
+    }
+
+    private static double maxCost(TriangleReductionMethod reductionMethod, float reductionValue) {
+        return reductionMethod == TriangleReductionMethod.COLLAPSE_COST
+                ? reductionValue : Double.POSITIVE_INFINITY;
+    }
+
+    private static VertexBuffer[] removeNulls(VertexBuffer[] lods) {
+        int count = 0;
+        for (VertexBuffer lod : lods) {
+            if (lod != null) {
+                lods[count++] = lod;
+            }
+        }
+        return Arrays.copyOf(lods, count);
+    }
+
+    /**
+     * The state of one simplification, initialized from the data of the
+     * generator, which it doesn't modify.
+     */
+    private class Simplifier {
+
+        /** The welded vertex of each corner, updated by the collapses. */
+        private final int[] corners = cornerWelded.clone();
+        /** The original vertex of each corner, updated by the collapses. */
+        private final int[] vertices = cornerVertices.clone();
+        private final double[] q = quadrics.clone();
+        private final boolean[] removed = new boolean[triangleCount];
+        /** The corners of a welded vertex, as linked lists. */
+        private final int[] firstCorner = new int[weldedCount];
+        private final int[] nextCorner = new int[corners.length];
+        private final int[] version = new int[weldedCount];
+        private final boolean[] collapsed = new boolean[weldedCount];
+        private final int[] marks = new int[weldedCount];
+        private final int[] vertexMap = new int[vertexCount];
+        private final int[] mappedVertices = new int[vertexCount];
+        private int mark;
+        private int liveTriangles;
+
+        // binary heap of the candidate collapses, ordered by cost
+        private float[] heapCost = new float[16];
+        private int[] heapFrom = new int[16];
+        private int[] heapTo = new int[16];
+        private int[] heapFromVersion = new int[16];
+        private int[] heapToVersion = new int[16];
+        private int heapSize;
+
+        Simplifier() {
+            Arrays.fill(firstCorner, -1);
+            Arrays.fill(vertexMap, -1);
+            for (int t = 0; t < triangleCount; t++) {
+                int a = corners[t * 3];
+                int b = corners[t * 3 + 1];
+                int c = corners[t * 3 + 2];
+                if (a == b || b == c || a == c) {
+                    removed[t] = true;
+                    continue;
+                }
+                liveTriangles++;
+                for (int k = t * 3; k < t * 3 + 3; k++) {
+                    nextCorner[k] = firstCorner[corners[k]];
+                    firstCorner[corners[k]] = k;
+                }
+            }
+            for (int c = 0; c < corners.length; c++) {
+                int a = corners[c];
+                int b = corners[QuadricLodGenerator.nextCorner(c)];
+                // each interior edge is seen from both of its triangles
+                if (!removed[c / 3] && a < b) {
+                    pushEdge(a, b);
+                }
+            }
+            for (int c = 0; c < corners.length; c++) {
+                int a = corners[c];
+                int b = corners[QuadricLodGenerator.nextCorner(c)];
+                // border edges are only seen in one direction
+                if (!removed[c / 3] && a > b && !hasEdge(b, a)) {
+                    pushEdge(a, b);
+                }
+            }
+        }
+
+        private boolean hasEdge(int a, int b) {
+            for (int c = firstCorner[a]; c >= 0; c = nextCorner[c]) {
+                if (corners[QuadricLodGenerator.nextCorner(c)] == b) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Collapses edges until the number of triangles reaches the target,
+         * or no collapse is cheaper than the maximum cost.
+         */
+        void simplify(int targetTriangles, double maxCost) {
+            while (liveTriangles > targetTriangles && heapSize > 0) {
+                if (heapCost[0] > maxCost) {
+                    break;
+                }
+                int from = heapFrom[0];
+                int to = heapTo[0];
+                boolean valid = !collapsed[from] && !collapsed[to]
+                        && heapFromVersion[0] == version[from]
+                        && heapToVersion[0] == version[to];
+                popHeap();
+                if (valid && !flips(from, to)) {
+                    collapse(from, to);
+                }
+            }
+        }
+
+        private void pushEdge(int a, int b) {
+            double ax = positions[a * 3], ay = positions[a * 3 + 1], az = positions[a * 3 + 2];
+            double bx = positions[b * 3], by = positions[b * 3 + 1], bz = positions[b * 3 + 2];
+            // cost of moving a onto b, and of moving b onto a
+            double toB = evaluate(q, a, bx, by, bz) + evaluate(q, b, bx, by, bz);
+            double toA = evaluate(q, a, ax, ay, az) + evaluate(q, b, ax, ay, az);
+            if (toB <= toA) {
+                pushHeap((float) Math.max(0, toB), a, b);
+            } else {
+                pushHeap((float) Math.max(0, toA), b, a);
+            }
+        }
+
+        /**
+         * Tells if moving a vertex onto another one would flip one of the
+         * triangles which aren't removed by the collapse.
+         */
+        private boolean flips(int from, int to) {
+            float tx = positions[to * 3], ty = positions[to * 3 + 1], tz = positions[to * 3 + 2];
+            for (int c = firstCorner[from]; c >= 0; c = nextCorner[c]) {
+                int t = c / 3;
+                if (removed[t]) {
+                    continue;
+                }
+                int c1 = QuadricLodGenerator.nextCorner(c);
+                int c2 = QuadricLodGenerator.nextCorner(c1);
+                int b = corners[c1];
+                int d = corners[c2];
+                if (b == to || d == to) {
+                    continue;
+                }
+                float bx = positions[b * 3], by = positions[b * 3 + 1], bz = positions[b * 3 + 2];
+                float dx = positions[d * 3], dy = positions[d * 3 + 1], dz = positions[d * 3 + 2];
+                float ex = dx - bx, ey = dy - by, ez = dz - bz;
+                // normals before and after the move
+                float fx = positions[from * 3] - bx, fy = positions[from * 3 + 1] - by;
+                float fz = positions[from * 3 + 2] - bz;
+                float n1x = ey * fz - ez * fy, n1y = ez * fx - ex * fz, n1z = ex * fy - ey * fx;
+                float gx = tx - bx, gy = ty - by, gz = tz - bz;
+                float n2x = ey * gz - ez * gy, n2y = ez * gx - ex * gz, n2z = ex * gy - ey * gx;
+                float dot = n1x * n2x + n1y * n2y + n1z * n2z;
+                float n2 = n2x * n2x + n2y * n2y + n2z * n2z;
+                if (dot <= 0 || n2 == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void collapse(int from, int to) {
+            // the vertices of the removed triangles tell which vertex of the
+            // target replaces each vertex of the source, across the seams
+            int mapped = 0;
+            int fallback = -1;
+            for (int c = firstCorner[from]; c >= 0; c = nextCorner[c]) {
+                int t = c / 3;
+                if (removed[t]) {
+                    continue;
+                }
+                for (int k = t * 3; k < t * 3 + 3; k++) {
+                    if (corners[k] == to) {
+                        removed[t] = true;
+                        liveTriangles--;
+                        if (vertexMap[vertices[c]] < 0) {
+                            vertexMap[vertices[c]] = vertices[k];
+                            mappedVertices[mapped++] = vertices[c];
+                        }
+                        fallback = vertices[k];
+                    }
+                }
+            }
+            if (fallback < 0) {
+                for (int c = firstCorner[to]; c >= 0; c = nextCorner[c]) {
+                    if (!removed[c / 3]) {
+                        fallback = vertices[c];
+                        break;
+                    }
+                }
+            }
+
+            // move the remaining corners to the target, dropping the ones of
+            // the removed triangles from the list
+            int head = -1;
+            int last = -1;
+            for (int c = firstCorner[from]; c >= 0; c = nextCorner[c]) {
+                if (removed[c / 3]) {
+                    continue;
+                }
+                corners[c] = to;
+                int vertex = vertexMap[vertices[c]];
+                vertices[c] = vertex >= 0 ? vertex : fallback;
+                if (last < 0) {
+                    head = c;
+                } else {
+                    nextCorner[last] = c;
+                }
+                last = c;
+            }
+            if (last >= 0) {
+                nextCorner[last] = firstCorner[to];
+                firstCorner[to] = head;
+            }
+            firstCorner[from] = -1;
+            for (int i = 0; i < mapped; i++) {
+                vertexMap[mappedVertices[i]] = -1;
+            }
+
+            collapsed[from] = true;
+            int o = from * 10;
+            int p = to * 10;
+            for (int i = 0; i < 10; i++) {
+                q[p + i] += q[o + i];
+            }
+            version[to]++;
+
+            // the costs of the edges around the target changed
+            mark++;
+            marks[to] = mark;
+            int previous = -1;
+            for (int c = firstCorner[to]; c >= 0; c = nextCorner[c]) {
+                if (removed[c / 3]) {
+                    if (previous < 0) {
+                        firstCorner[to] = nextCorner[c];
+                    } else {
+                        nextCorner[previous] = nextCorner[c];
+                    }
+                    continue;
+                }
+                previous = c;
+                int c1 = QuadricLodGenerator.nextCorner(c);
+                updateEdge(to, corners[c1]);
+                updateEdge(to, corners[QuadricLodGenerator.nextCorner(c1)]);
+            }
+        }
+
+        private void updateEdge(int vertex, int neighbor) {
+            if (marks[neighbor] != mark) {
+                marks[neighbor] = mark;
+                pushEdge(vertex, neighbor);
+            }
+        }
+
+        private void pushHeap(float cost, int from, int to) {
+            if (heapSize == heapCost.length) {
+                int capacity = heapSize * 2;
+                heapCost = Arrays.copyOf(heapCost, capacity);
+                heapFrom = Arrays.copyOf(heapFrom, capacity);
+                heapTo = Arrays.copyOf(heapTo, capacity);
+                heapFromVersion = Arrays.copyOf(heapFromVersion, capacity);
+                heapToVersion = Arrays.copyOf(heapToVersion, capacity);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapCost[parent] <= cost) {
+                    break;
+                }
+                moveHeap(parent, i);
+                i = parent;
+            }
+            heapCost[i] = cost;
+            heapFrom[i] = from;
+            heapTo[i] = to;
+            heapFromVersion[i] = version[from];
+            heapToVersion[i] = version[to];
+        }
+
+        private void popHeap() {
+            int lastIndex = --heapSize;
+            float cost = heapCost[lastIndex];
+            int i = 0;
+            while (true) {
+                int child = i * 2 + 1;
+                if (child >= lastIndex) {
+                    break;
+                }
+                if (child + 1 < lastIndex && heapCost[child + 1] < heapCost[child]) {
+                    child++;
+                }
+                if (heapCost[child] >= cost) {
+                    break;
+                }
+                moveHeap(child, i);
+                i = child;
+            }
+            if (lastIndex > 0) {
+                moveHeap(lastIndex, i);
+            }
+        }
+
+        private void moveHeap(int source, int destination) {
+            heapCost[destination] = heapCost[source];
+            heapFrom[destination] = heapFrom[source];
+            heapTo[destination] = heapTo[source];
+            heapFromVersion[destination] = heapFromVersion[source];
+            heapToVersion[destination] = heapToVersion[source];
+        }
+
+        /**
+         * Creates the index buffer of the remaining triangles, in the format
+         * of the index buffer of the mesh.
+         */
+        VertexBuffer makeLod() {
+            VertexBuffer indexBuffer = mesh.getBuffer(VertexBuffer.Type.Index);
+            boolean isShortBuffer = indexBuffer.getFormat() != VertexBuffer.Format.UnsignedInt;
+            // an empty level gets a dummy triangle, as with LodGenerator
+            int size = Math.max(liveTriangles * 3, 3);
+            VertexBuffer lod = new VertexBuffer(VertexBuffer.Type.Index);
+            if (isShortBuffer && vertexCount <= 65536) {
+                ShortBuffer data = BufferUtils.createShortBuffer(size);
+                for (int t = 0; t < triangleCount; t++) {
+                    if (!removed[t]) {
+                        data.put((short) vertices[t * 3]);
+                        data.put((short) vertices[t * 3 + 1]);
+                        data.put((short) vertices[t * 3 + 2]);
+                    }
+                }
+                data.clear();
+                lod.setupData(VertexBuffer.Usage.Static, 3, VertexBuffer.Format.UnsignedShort, data);
+            } else {
+                IntBuffer data = BufferUtils.createIntBuffer(size);
+                for (int t = 0; t < triangleCount; t++) {
+                    if (!removed[t]) {
+                        data.put(vertices[t * 3]);
+                        data.put(vertices[t * 3 + 1]);
+                        data.put(vertices[t * 3 + 2]);
+                    }
+                }
+                data.clear();
+                lod.setupData(VertexBuffer.Usage.Static, 3, VertexBuffer.Format.UnsignedInt, data);
+            }
+            return lod;
+        }
+    }
+}
@@ -0,0 +1,703 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3tools.optimize;
+
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.scene.mesh.MorphTarget;
+import com.jme3.util.BufferUtils;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Reorders the index buffers of triangle meshes for the post-transform
+ * vertex cache of the GPU, and optionally the vertices for the fetch
+ * locality.
+ *
+ * <ul>
+ * <li>{@link #optimize(Mesh)} reorders the triangles with the algorithm of
+ * Tom Forsyth, "Linear-Speed Vertex Cache Optimisation", which favors the
+ * triangles using recently emitted vertices and the vertices having few
+ * triangles left.</li>
+ * <li>{@link #optimizeOverdraw(Mesh, int)} then splits the triangle order into
+ * clusters at the triangles which miss the cache for all of their vertices,
+ * as in the "Tipsify" paper of Sander, Nehab and Barczak, and sorts the
+ * clusters so that the ones facing outwards are drawn first. The cache
+ * efficiency is preserved, since each cluster starts with a cold cache.</li>
+ * <li>{@link #remapVertices(Mesh)} reorders the vertices in the order of their
+ * first use, so that consecutive triangles read neighbouring memory.</li>
+ * </ul>
+ *
+ * The triangles keep their winding, and the LOD levels of the mesh are
+ * processed along with its index buffer. {@link #analyze(Mesh, int)} measures
+ * the result with a FIFO cache model.
+ *
+ * <p>The optimizations can be applied on load by a {@link MeshPostProcessor}.
+ */
+public class VertexCacheOptimizer {
+
+    /**
+     * The size of the LRU cache modeled by the triangle ordering.
+     */
+    private static final int MAX_CACHE_SIZE = 32;
+    private static final int MAX_VALENCE = 32;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float VALENCE_BOOST_SCALE = 2f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+
+    /**
+     * The default size of the FIFO cache used by the overdraw clustering and
+     * the statistics, typical of the GPUs of the last decade.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    private static final float[] CACHE_SCORES = new float[MAX_CACHE_SIZE];
+    private static final float[] VALENCE_SCORES = new float[MAX_VALENCE + 1];
+
+    static {
+        for (int i = 0; i < MAX_CACHE_SIZE; i++) {
+            if (i < 3) {
+                // the vertices of the last triangle are equally cheap
+                CACHE_SCORES[i] = LAST_TRIANGLE_SCORE;
+            } else {
+                float scaler = 1f / (MAX_CACHE_SIZE - 3);
+                CACHE_SCORES[i] = (float) Math.pow(1f - (i - 3) * scaler, CACHE_DECAY_POWER);
+            }
+        }
+        for (int i = 1; i <= MAX_VALENCE; i++) {
+            VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, -VALENCE_BOOST_POWER);
+        }
+    }
+
+    /**
+     * The cache efficiency of an index buffer, as simulated with a FIFO
+     * cache.
+     */
+    public static final class CacheStatistics {
+
+        private final int triangleCount;
+        private final int vertexCount;
+        private final int missCount;
+
+        CacheStatistics(int triangleCount, int vertexCount, int missCount) {
+            this.triangleCount = triangleCount;
+            this.vertexCount = vertexCount;
+            this.missCount = missCount;
+        }
+
+        /**
+         * @return the number of triangles
+         */
+        public int getTriangleCount() {
+            return triangleCount;
+        }
+
+        /**
+         * @return the number of distinct vertices used by the triangles
+         */
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        /**
+         * @return the number of vertices transformed, i.e. the cache misses
+         */
+        public int getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * Returns the average cache miss ratio: the number of vertices
+         * transformed per triangle, between 0.5 for a large regular grid and
+         * 3 without any reuse.
+         *
+         * @return the ratio, or 0 without triangles
+         */
+        public float getAcmr() {
+            return triangleCount == 0 ? 0f : (float) missCount / triangleCount;
+        }
+
+        /**
+         * Returns the average transform to vertex ratio: the number of times
+         * each vertex is transformed, 1 being optimal.
+         *
+         * @return the ratio, or 0 without vertices
+         */
+        public float getAtvr() {
+            return vertexCount == 0 ? 0f : (float) missCount / vertexCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("triangles=%d, ACMR=%.3f, ATVR=%.3f",
+                    triangleCount, getAcmr(), getAtvr());
+        }
+    }
+
+    /**
+     * A private constructor to inhibit instantiation of this class.
+     */
+    private VertexCacheOptimizer() {
+    }
+
+    /**
+     * Reorders the triangles of the index buffer and of the LOD levels of a
+     * mesh for the vertex cache. An index buffer is only changed if the new
+     * order transforms fewer vertices with the default FIFO cache. Meshes
+     * which aren't indexed triangle lists are left unchanged.
+     *
+     * @param mesh the mesh to optimize (not null)
+     */
+    public static void optimize(Mesh mesh) {
+        if (!isIndexedTriangleList(mesh)) {
+            return;
+        }
+        int vertexCount = mesh.getVertexCount();
+        for (VertexBuffer indices : getIndexBuffers(mesh)) {
+            int[] order = readIndices(indices);
+            int[] optimized = optimizeTriangleOrder(order, vertexCount);
+            // some authored orders are already better for a FIFO cache
+            if (analyze(optimized, vertexCount, DEFAULT_CACHE_SIZE).getMissCount()
+                    < analyze(order, vertexCount, DEFAULT_CACHE_SIZE).getMissCount()) {
+                writeIndices(indices, optimized);
+            }
+        }
+    }
+
+    /**
+     * Reorders the clusters of triangles of an optimized mesh so that the
+     * ones facing outwards are drawn first, to reduce the overdraw. Should be
+     * applied after {@link #optimize(Mesh)}. Meshes which aren't indexed
+     * triangle lists, or don't have float positions, are left unchanged.
+     *
+     * @param mesh the mesh to optimize (not null)
+     * @param cacheSize the size of the cache the clusters are built for
+     * (&gt;0, typically {@link #DEFAULT_CACHE_SIZE})
+     */
+    public static void optimizeOverdraw(Mesh mesh, int cacheSize) {
+        VertexBuffer positions = mesh.getBuffer(VertexBuffer.Type.Position);
+        if (!isIndexedTriangleList(mesh) || positions == null
+                || positions.getFormat() != VertexBuffer.Format.Float
+                || positions.getNumComponents() != 3) {
+            return;
+        }
+        FloatBuffer data = (FloatBuffer) positions.getData();
+        for (VertexBuffer indices : getIndexBuffers(mesh)) {
+            int[] order = readIndices(indices);
+            writeIndices(indices, sortClusters(order, data, cacheSize));
+        }
+    }
+
+    /**
+     * Reorders the vertices of a mesh in the order of their first use by its
+     * index buffer, followed by the unused ones, and updates the index buffer
+     * and the LOD levels accordingly. All the per-vertex buffers and morph
+     * targets are permuted. Meshes which aren't indexed triangle lists are
+     * left unchanged.
+     *
+     * @param mesh the mesh to optimize (not null)
+     */
+    public static void remapVertices(Mesh mesh) {
+        if (!isIndexedTriangleList(mesh)) {
+            return;
+        }
+        int vertexCount = mesh.getVertexCount();
+        VertexBuffer[] indexBuffers = getIndexBuffers(mesh);
+        int[] newIndices = new int[vertexCount];
+        Arrays.fill(newIndices, -1);
+        int next = 0;
+        int[][] indices = new int[indexBuffers.length][];
+        for (int i = 0; i < indexBuffers.length; i++) {
+            indices[i] = readIndices(indexBuffers[i]);
+            for (int index : indices[i]) {
+                if (newIndices[index] < 0) {
+                    newIndices[index] = next++;
+                }
+            }
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            if (newIndices[i] < 0) {
+                newIndices[i] = next++;
+            }
+        }
+
+        int[] oldIndices = new int[vertexCount];
+        boolean identity = true;
+        for (int i = 0; i < vertexCount; i++) {
+            oldIndices[newIndices[i]] = i;
+            identity &= newIndices[i] == i;
+        }
+        if (identity) {
+            return;
+        }
+
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            if (vb.getBufferType() == VertexBuffer.Type.Index || vb.isInstanced()
+                    || vb.getData() == null || vb.getNumElements() < vertexCount) {
+                continue;
+            }
+            int stride = vb.getNumComponents();
+            if (vb.getData() instanceof ByteBuffer) {
+                stride *= vb.getFormat().getComponentSize();
+            }
+            vb.updateData(permute(vb.getData(), stride, oldIndices));
+        }
+        if (mesh.hasMorphTargets()) {
+            for (MorphTarget target : mesh.getMorphTargets()) {
+                for (Map.Entry<VertexBuffer.Type, FloatBuffer> entry : target.getBuffers().entrySet()) {
+                    FloatBuffer data = entry.getValue();
+                    int stride = data.limit() / vertexCount;
+                    target.setBuffer(entry.getKey(), (FloatBuffer) permute(data, stride, oldIndices));
+                }
+            }
+        }
+
+        for (int i = 0; i < indexBuffers.length; i++) {
+            int[] remapped = indices[i];
+            for (int j = 0; j < remapped.length; j++) {
+                remapped[j] = newIndices[remapped[j]];
+            }
+            writeIndices(indexBuffers[i], remapped);
+        }
+    }
+
+    /**
+     * Simulates a FIFO vertex cache over the index buffer of a mesh.
+     *
+     * @param mesh the mesh to analyze (not null)
+     * @param cacheSize the number of vertices in the cache (&gt;0)
+     * @return the statistics, or null if the mesh isn't an indexed triangle
+     * list
+     */
+    public static CacheStatistics analyze(Mesh mesh, int cacheSize) {
+        if (!isIndexedTriangleList(mesh)) {
+            return null;
+        }
+        return analyze(readIndices(mesh.getBuffer(VertexBuffer.Type.Index)),
+                mesh.getVertexCount(), cacheSize);
+    }
+
+    /**
+     * Simulates a FIFO vertex cache over a triangle list.
+     *
+     * @param indices the indices of the triangles (not null, unaffected)
+     * @param vertexCount the number of vertices
+     * @param cacheSize the number of vertices in the cache (&gt;0)
+     * @return the statistics (not null)
+     */
+    public static CacheStatistics analyze(int[] indices, int vertexCount, int cacheSize) {
+        // the time each vertex entered the cache, the cache holding the
+        // vertices which entered it during the last cacheSize misses
+        int[] timestamps = new int[vertexCount];
+        int time = cacheSize + 1;
+        int misses = 0;
+        int used = 0;
+        boolean[] seen = new boolean[vertexCount];
+        for (int index : indices) {
+            if (time - timestamps[index] > cacheSize) {
+                timestamps[index] = time++;
+                misses++;
+            }
+            if (!seen[index]) {
+                seen[index] = true;
+                used++;
+            }
+        }
+        return new CacheStatistics(indices.length / 3, used, misses);
+    }
+
+    /**
+     * Returns the triangles of a list in an order which is efficient for the
+     * vertex cache.
+     *
+     * @param indices the indices of the triangles (not null, unaffected)
+     * @param vertexCount the number of vertices, greater than any index
+     * @return a new array with the same triangles in the new order
+     */
+    public static int[] optimizeTriangleOrder(int[] indices, int vertexCount) {
+        int triangleCount = indices.length / 3;
+        int[] result = new int[triangleCount * 3];
+        if (triangleCount == 0) {
+            return result;
+        }
+
+        // the live triangles of each vertex, stored contiguously
+        int[] remaining = new int[vertexCount];
+        for (int i = 0; i < triangleCount * 3; i++) {
+            remaining[indices[i]]++;
+        }
+        int[] offsets = new int[vertexCount];
+        for (int i = 1; i < vertexCount; i++) {
+            offsets[i] = offsets[i - 1] + remaining[i - 1];
+        }
+        int[] adjacency = new int[triangleCount * 3];
+        int[] fill = new int[vertexCount];
+        for (int i = 0; i < triangleCount * 3; i++) {
+            int vertex = indices[i];
+            adjacency[offsets[vertex] + fill[vertex]++] = i / 3;
+        }
+
+        int[] cachePositions = new int[vertexCount];
+        Arrays.fill(cachePositions, -1);
+        float[] vertexScores = new float[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            vertexScores[i] = vertexScore(-1, remaining[i]);
+        }
+        float[] triangleScores = new float[triangleCount];
+        int best = 0;
+        for (int i = 0; i < triangleCount; i++) {
+            triangleScores[i] = vertexScores[indices[i * 3]] + vertexScores[indices[i * 3 + 1]]
+                    + vertexScores[indices[i * 3 + 2]];
+            if (triangleScores[i] > triangleScores[best]) {
+                best = i;
+            }
+        }
+        boolean[] emitted = new boolean[triangleCount];
+
+        int[] cache = new int[MAX_CACHE_SIZE + 3];
+        int[] newCache = new int[MAX_CACHE_SIZE + 3];
+        int cacheSize = 0;
+        int cursor = 0;
+        for (int out = 0; out < triangleCount; out++) {
+            if (best < 0) {
+                // no live triangle uses a cached vertex, restart anywhere
+                while (emitted[cursor]) {
+                    cursor++;
+                }
+                best = cursor;
+            }
+            emitted[best] = true;
+            int newCacheSize = 0;
+            for (int k = 0; k < 3; k++) {
+                int vertex = indices[best * 3 + k];
+                result[out * 3 + k] = vertex;
+                // remove the triangle from the live ones of the vertex
+                int start = offsets[vertex];
+                int end = start + remaining[vertex];
+                for (int j = start; j < end; j++) {
+                    if (adjacency[j] == best) {
+                        adjacency[j] = adjacency[end - 1];
+                        adjacency[end - 1] = best;
+                        remaining[vertex]--;
+                        break;
+                    }
+                }
+                if (cachePositions[vertex] != -2) {
+                    newCache[newCacheSize++] = vertex;
+                    // marks the vertex as already added
+                    cachePositions[vertex] = -2;
+                }
+            }
+            for (int i = 0; i < cacheSize; i++) {
+                int vertex = cache[i];
+                if (cachePositions[vertex] != -2) {
+                    newCache[newCacheSize++] = vertex;
+                }
+            }
+
+            for (int i = 0; i < newCacheSize; i++) {
+                int vertex = newCache[i];
+                cachePositions[vertex] = i < MAX_CACHE_SIZE ? i : -1;
+                float score = vertexScore(cachePositions[vertex], remaining[vertex]);
+                float delta = score - vertexScores[vertex];
+                vertexScores[vertex] = score;
+                int start = offsets[vertex];
+                int end = start + remaining[vertex];
+                for (int j = start; j < end; j++) {
+                    triangleScores[adjacency[j]] += delta;
+                }
+            }
+            // the next triangle is the best one using a cached vertex
+            best = -1;
+            float bestScore = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < Math.min(newCacheSize, MAX_CACHE_SIZE); i++) {
+                int vertex = newCache[i];
+                int start = offsets[vertex];
+                int end = start + remaining[vertex];
+                for (int j = start; j < end; j++) {
+                    int triangle = adjacency[j];
+                    if (triangleScores[triangle] > bestScore) {
+                        bestScore = triangleScores[triangle];
+                        best = triangle;
+                    }
+                }
+            }
+
+            int[] temp = cache;
+            cache = newCache;
+            newCache = temp;
+            cacheSize = Math.min(newCacheSize, MAX_CACHE_SIZE);
+        }
+        return result;
+    }
+
+    private static float vertexScore(int cachePosition, int remainingTriangles) {
+        if (remainingTriangles == 0) {
+            return -1f;
+        }
+        float score = cachePosition < 0 ? 0f : CACHE_SCORES[cachePosition];
+        return score + VALENCE_SCORES[Math.min(remainingTriangles, MAX_VALENCE)];
+    }
+
+    private static int[] sortClusters(int[] indices, FloatBuffer positions, int cacheSize) {
+        int triangleCount = indices.length / 3;
+        if (triangleCount < 2) {
+            return indices;
+        }
+
+        // a cluster starts at each triangle which misses the cache for all
+        // of its vertices
+        int vertexCount = positions.limit() / 3;
+        int[] timestamps = new int[vertexCount];
+        int time = cacheSize + 1;
+        int[] clusterStarts = new int[triangleCount + 1];
+        int clusterCount = 0;
+        for (int t = 0; t < triangleCount; t++) {
+            int misses = 0;
+            for (int k = 0; k < 3; k++) {
+                int index = indices[t * 3 + k];
+                if (time - timestamps[index] > cacheSize) {
+                    timestamps[index] = time++;
+                    misses++;
+                }
+            }
+            if (t == 0 || misses == 3) {
+                clusterStarts[clusterCount++] = t;
+            }
+        }
+        clusterStarts[clusterCount] = triangleCount;
+        if (clusterCount < 2) {
+            return indices;
+        }
+
+        // the area weighted centroid and normal of each cluster
+        float[] centroids = new float[clusterCount * 3];
+        float[] normals = new float[clusterCount * 3];
+        float[] areas = new float[clusterCount];
+        float meshX = 0f, meshY = 0f, meshZ = 0f, meshArea = 0f;
+        for (int c = 0; c < clusterCount; c++) {
+            for (int t = clusterStarts[c]; t < clusterStarts[c + 1]; t++) {
+                int a = indices[t * 3] * 3;
+                int b = indices[t * 3 + 1] * 3;
+                int d = indices[t * 3 + 2] * 3;
+                float ax = positions.get(a), ay = positions.get(a + 1), az = positions.get(a + 2);
+                float e1x = positions.get(b) - ax, e1y = positions.get(b + 1) - ay, e1z = positions.get(b + 2) - az;
+                float e2x = positions.get(d) - ax, e2y = positions.get(d + 1) - ay, e2z = positions.get(d + 2) - az;
+                float nx = e1y * e2z - e1z * e2y;
+                float ny = e1z * e2x - e1x * e2z;
+                float nz = e1x * e2y - e1y * e2x;
+                float area = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                float cx = ax + (e1x + e2x) / 3f;
+                float cy = ay + (e1y + e2y) / 3f;
+                float cz = az + (e1z + e2z) / 3f;
+                centroids[c * 3] += cx * area;
+                centroids[c * 3 + 1] += cy * area;
+                centroids[c * 3 + 2] += cz * area;
+                normals[c * 3] += nx;
+                normals[c * 3 + 1] += ny;
+                normals[c * 3 + 2] += nz;
+                areas[c] += area;
+            }
+            meshX += centroids[c * 3];
+            meshY += centroids[c * 3 + 1];
+            meshZ += centroids[c * 3 + 2];
+            meshArea += areas[c];
+        }
+        if (meshArea > 0f) {
+            meshX /= meshArea;
+            meshY /= meshArea;
+            meshZ /= meshArea;
+        }
+
+        // the clusters are sorted by how much they face away from the center
+        final float[] keys = new float[clusterCount];
+        Integer[] order = new Integer[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            order[c] = c;
+            if (areas[c] == 0f) {
+                continue;
+            }
+            float dx = centroids[c * 3] / areas[c] - meshX;
+            float dy = centroids[c * 3 + 1] / areas[c] - meshY;
+            float dz = centroids[c * 3 + 2] / areas[c] - meshZ;
+            float nx = normals[c * 3], ny = normals[c * 3 + 1], nz = normals[c * 3 + 2];
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length > 0f) {
+                keys[c] = (dx * nx + dy * ny + dz * nz) / length;
+            }
+        }
+        // stable, so that clusters with equal keys keep their order
+        Arrays.sort(order, (c1, c2) -> Float.compare(keys[c2], keys[c1]));
+
+        int[] result = new int[indices.length];
+        int out = 0;
+        for (int c : order) {
+            int start = clusterStarts[c] * 3;
+            int length = clusterStarts[c + 1] * 3 - start;
+            System.arraycopy(indices, start, result, out, length);
+            out += length;
+        }
+        return result;
+    }
+
+    private static boolean isIndexedTriangleList(Mesh mesh) {
+        return mesh.getMode() == Mesh.Mode.Triangles
+                && mesh.getBuffer(VertexBuffer.Type.Index) != null
+                && mesh.getBuffer(VertexBuffer.Type.Index).getData() != null;
+    }
+
+    /**
+     * Returns the index buffer of a mesh, followed by its LOD levels other
+     * than the index buffer itself.
+     */
+    private static VertexBuffer[] getIndexBuffers(Mesh mesh) {
+        VertexBuffer indices = mesh.getBuffer(VertexBuffer.Type.Index);
+        int levels = mesh.getNumLodLevels();
+        VertexBuffer[] result = new VertexBuffer[levels + 1];
+        int count = 0;
+        result[count++] = indices;
+        for (int i = 0; i < levels; i++) {
+            VertexBuffer level = mesh.getLodLevel(i);
+            if (level != indices && level.getData() != null) {
+                result[count++] = level;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] readIndices(VertexBuffer indices) {
+        IndexBuffer buffer = IndexBuffer.wrapIndexBuffer(indices.getData());
+        int[] result = new int[buffer.size() / 3 * 3];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = buffer.get(i);
+        }
+        return result;
+    }
+
+    private static void writeIndices(VertexBuffer indices, int[] values) {
+        IndexBuffer buffer = IndexBuffer.wrapIndexBuffer(indices.getData());
+        for (int i = 0; i < values.length; i++) {
+            buffer.put(i, values[i]);
+        }
+        indices.setUpdateNeeded();
+    }
+
+    /**
+     * Returns a copy of a vertex buffer whose element i is the element
+     * oldIndices[i] of the original one. The elements after the last vertex
+     * are copied as they are.
+     */
+    private static Buffer permute(Buffer data, int stride, int[] oldIndices) {
+        int vertices = oldIndices.length;
+        int limit = data.limit();
+        if (data instanceof FloatBuffer) {
+            FloatBuffer source = (FloatBuffer) data;
+            FloatBuffer target = BufferUtils.createFloatBuffer(limit);
+            for (int i = 0; i < vertices; i++) {
+                int from = oldIndices[i] * stride;
+                for (int c = 0; c < stride; c++) {
+                    target.put(source.get(from + c));
+                }
+            }
+            for (int i = vertices * stride; i < limit; i++) {
+                target.put(source.get(i));
+            }
+            target.flip();
+            return target;
+        } else if (data instanceof ShortBuffer) {
+            ShortBuffer source = (ShortBuffer) data;
+            ShortBuffer target = BufferUtils.createShortBuffer(limit);
+            for (int i = 0; i < vertices; i++) {
+                int from = oldIndices[i] * stride;
+                for (int c = 0; c < stride; c++) {
+                    target.put(source.get(from + c));
+                }
+            }
+            for (int i = vertices * stride; i < limit; i++) {
+                target.put(source.get(i));
+            }
+            target.flip();
+            return target;
+        } else if (data instanceof IntBuffer) {
+            IntBuffer source = (IntBuffer) data;
+            IntBuffer target = BufferUtils.createIntBuffer(limit);
+            for (int i = 0; i < vertices; i++) {
+                int from = oldIndices[i] * stride;
+                for (int c = 0; c < stride; c++) {
+                    target.put(source.get(from + c));
+                }
+            }
+            for (int i = vertices * stride; i < limit; i++) {
+                target.put(source.get(i));
+            }
+            target.flip();
+            return target;
+        } else if (data instanceof ByteBuffer) {
+            ByteBuffer source = (ByteBuffer) data;
+            ByteBuffer target = BufferUtils.createByteBuffer(limit);
+            for (int i = 0; i < vertices; i++) {
+                int from = oldIndices[i] * stride;
+                for (int c = 0; c < stride; c++) {
+                    target.put(source.get(from + c));
+                }
+            }
+            for (int i = vertices * stride; i < limit; i++) {
+                target.put(source.get(i));
+            }
+            target.flip();
+            return target;
+        } else if (data instanceof DoubleBuffer) {
+            DoubleBuffer source = (DoubleBuffer) data;
+            DoubleBuffer target = BufferUtils.createDoubleBuffer(limit);
+            for (int i = 0; i < vertices; i++) {
+                int from = oldIndices[i] * stride;
+                for (int c = 0; c < stride; c++) {
+                    target.put(source.get(from + c));
+                }
+            }
+            for (int i = vertices * stride; i < limit; i++) {
+                target.put(source.get(i));
+            }
+            target.flip();
+            return target;
+        }
+        throw new UnsupportedOperationException("Unsupported buffer type: " + data.getClass());
+    }
+}
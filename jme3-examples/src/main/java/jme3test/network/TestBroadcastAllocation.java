@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.network;
+
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.Client;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Network;
+import com.jme3.network.Server;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the heap allocated by the server side of the network stack while
+ * broadcasting small reliable and unreliable messages to a couple hundred
+ * local clients, the fan-out of a busy game server. The number of clients
+ * can be given as the first argument.
+ *
+ * <p>Only the threads of the server are accounted for: the broadcasting
+ * thread, the TCP selector and the UDP writers. The numbers rely on the
+ * HotSpot thread allocation counters.</p>
+ */
+public class TestBroadcastAllocation {
+
+    private static final int PORT = 5111;
+    private static final int DEFAULT_CLIENTS = 200;
+    private static final int MESSAGES = 2000;
+
+    @Serializable
+    public static class StateMessage extends AbstractMessage {
+
+        private int entityId;
+        private float x, y, z;
+
+        public StateMessage() {
+        }
+
+        public StateMessage(int entityId, boolean reliable) {
+            super(reliable);
+            this.entityId = entityId;
+            this.x = entityId;
+            this.y = 1;
+            this.z = -entityId;
+        }
+    }
+
+    private static final AtomicInteger received = new AtomicInteger();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+        Serializer.registerClass(StateMessage.class);
+
+        Server server = Network.createServer(PORT);
+        server.start();
+
+        Client[] clients = new Client[clientCount];
+        for (int i = 0; i < clientCount; i++) {
+            clients[i] = Network.connectToServer("localhost", PORT);
+            clients[i].addMessageListener(new MessageListener<Client>() {
+                @Override
+                public void messageReceived(Client source, Message m) {
+                    received.incrementAndGet();
+                }
+            }, StateMessage.class);
+            clients[i].start();
+        }
+        while (server.getConnections().size() < clientCount) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(500);
+
+        for (int round = 0; round < 4; round++) {
+            run(server, clientCount, true, round > 0);
+            run(server, clientCount, false, round > 0);
+        }
+        System.out.println("Done");
+
+        for (Client client : clients) {
+            client.close();
+        }
+        server.close();
+    }
+
+    private static void run(Server server, int clientCount, boolean reliable, boolean report)
+            throws InterruptedException {
+        received.set(0);
+        long before = serverAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            server.broadcast(new StateMessage(i, reliable));
+            if ((i & 255) == 255) {
+                // Leave some room to the readers so the sockets don't
+                // back up
+                Thread.sleep(1);
+            }
+        }
+        long end = System.nanoTime();
+        // Give the writers time to drain
+        for (int i = 0; i < 100 && received.get() < MESSAGES * clientCount; i++) {
+            Thread.sleep(100);
+        }
+        Thread.sleep(200);
+        long allocated = serverAllocatedBytes() - before;
+        if (report) {
+            System.out.printf("%-10s %6d broadcasts in %5d ms, %6.0f bytes/broadcast,"
+                    + " %d/%d received%n",
+                    reliable ? "reliable" : "unreliable", MESSAGES, (end - start) / 1000000,
+                    allocated / (double) MESSAGES, received.get(), MESSAGES * clientCount);
+        }
+    }
+
+    private static long serverAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads
+                = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            String name = thread.getName();
+            if (thread == Thread.currentThread()
+                    || name.startsWith("Selector@")
+                    || name.contains("UdpKernel")
+                    || name.contains("SelectorKernel")) {
+                total += threads.getThreadAllocatedBytes(thread.getId());
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.network;
+
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.Client;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Network;
+import com.jme3.network.base.DefaultServer;
+import com.jme3.network.kernel.Endpoint;
+import com.jme3.network.kernel.tcp.SelectorKernel;
+import com.jme3.network.kernel.udp.UdpKernel;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares unbatched and batched delivery of small unreliable state
+ * messages over the loopback interface.
+ *
+ * <p>Each tick, the server sends a state message per entity to every
+ * client, then flushes. The datagrams written by the UDP kernel are counted,
+ * and the bytes on the wire include 28 bytes of IPv4 and UDP headers per
+ * datagram.</p>
+ */
+public class TestMessageBatching {
+
+    private static final int PORT = 5112;
+    private static final int CLIENTS = 4;
+    private static final int ENTITIES = 50;
+    private static final int TICKS = 400;
+    private static final int HEADER_SIZE = 28;
+
+    @Serializable
+    public static class StateMessage extends AbstractMessage {
+
+        private int entityId;
+        private float x, y, z;
+
+        public StateMessage() {
+        }
+
+        public StateMessage(int entityId) {
+            super(false);
+            this.entityId = entityId;
+            this.x = entityId;
+            this.y = 1;
+            this.z = -entityId;
+        }
+    }
+
+    private static class CountingUdpKernel extends UdpKernel {
+
+        final AtomicLong datagrams = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+
+        CountingUdpKernel(int port) throws IOException {
+            super(port);
+        }
+
+        @Override
+        protected void enqueueWrite(Endpoint endpoint, DatagramPacket packet, ByteBuffer pooled) {
+            datagrams.incrementAndGet();
+            bytes.addAndGet(packet.getLength() + HEADER_SIZE);
+            super.enqueueWrite(endpoint, packet, pooled);
+        }
+    }
+
+    private static final AtomicInteger received = new AtomicInteger();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Serializer.registerClass(StateMessage.class);
+
+        run(PORT, 0, 5);
+        run(PORT + 1, DefaultServer.DEFAULT_BATCH_FRAME_SIZE, 5);
+        run(PORT + 2, 0, 0);
+        run(PORT + 3, DefaultServer.DEFAULT_BATCH_FRAME_SIZE, 0);
+    }
+
+    private static void run(int port, int frameSize, int tickMillis)
+            throws IOException, InterruptedException {
+        // The previous server locked the registry
+        Serializer.setReadOnly(false);
+
+        CountingUdpKernel udp = new CountingUdpKernel(port);
+        DefaultServer server = new DefaultServer(Network.DEFAULT_GAME_NAME, Network.DEFAULT_VERSION,
+                new SelectorKernel(port), udp);
+        server.setBatchFrameSize(frameSize);
+        server.start();
+
+        Client[] clients = new Client[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = Network.connectToServer("localhost", port);
+            clients[i].addMessageListener(new MessageListener<Client>() {
+                @Override
+                public void messageReceived(Client source, Message m) {
+                    received.incrementAndGet();
+                }
+            }, StateMessage.class);
+            clients[i].start();
+        }
+        while (server.getConnections().size() < CLIENTS) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(500);
+
+        received.set(0);
+        long datagramsBefore = udp.datagrams.get();
+        long bytesBefore = udp.bytes.get();
+        long start = System.nanoTime();
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (HostedConnection conn : server.getConnections()) {
+                for (int e = 0; e < ENTITIES; e++) {
+                    conn.send(new StateMessage(e));
+                }
+            }
+            server.flush();
+            if (tickMillis > 0) {
+                Thread.sleep(tickMillis);
+            }
+        }
+        long end = System.nanoTime();
+        Thread.sleep(1000);
+
+        long datagrams = udp.datagrams.get() - datagramsBefore;
+        long bytes = udp.bytes.get() - bytesBefore;
+        int sent = TICKS * ENTITIES * CLIENTS;
+        double seconds = (end - start) / 1e9;
+        System.out.printf("%-10s tick %d ms: %7d datagrams, %8d bytes on the wire, %6.0f datagrams/s,"
+                + " %7.0f messages/s, %d/%d received%n",
+                frameSize > 0 ? "batched" : "unbatched", tickMillis, datagrams, bytes,
+                datagrams / seconds, sent / seconds, received.get(), sent);
+
+        for (Client client : clients) {
+            client.close();
+        }
+        server.close();
+        Thread.sleep(500);
+    }
+}
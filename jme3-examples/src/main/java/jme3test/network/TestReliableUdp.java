@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.network;
+
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.Client;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Network;
+import com.jme3.network.base.DefaultClient;
+import com.jme3.network.base.DefaultServer;
+import com.jme3.network.base.ReliableUdpConnectorFactory;
+import com.jme3.network.base.ReliableUdpKernelFactory;
+import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.udp.ReliableUdpConnector;
+import com.jme3.network.kernel.udp.ReliableUdpEndpoint;
+import com.jme3.network.kernel.udp.ReliableUdpKernel;
+import com.jme3.network.kernel.udp.UdpConnector;
+import com.jme3.network.kernel.udp.UdpKernel;
+import com.jme3.network.kernel.udp.UdpLinkSimulator;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Streams messages from a server to a client over the reliable UDP kernels,
+ * through a simulated lossy link on loopback.
+ *
+ * <p>The main reliable channel is ordered, the extra channel unordered. The
+ * plain UDP channel is left unused, the server can't add channels without
+ * it. The client
+ * checks that every message arrives exactly once, and in order on the ordered
+ * channel, then the delivery latencies, the round trip time and the
+ * retransmissions are reported. One message in ten is large enough to be
+ * split across several datagrams.</p>
+ */
+public class TestReliableUdp {
+
+    private static final int PORT = 5130;
+    private static final int MESSAGES = 1000;
+    private static final int RATE = 200;
+
+    @Serializable
+    public static class SequenceMessage extends AbstractMessage {
+
+        private int channel;
+        private int sequence;
+        private long sentTime;
+        private byte[] payload;
+
+        public SequenceMessage() {
+        }
+
+        public SequenceMessage(int channel, int sequence, int size) {
+            super(true);
+            this.channel = channel;
+            this.sequence = sequence;
+            this.sentTime = System.nanoTime();
+            this.payload = new byte[size];
+        }
+    }
+
+    private static class Receiver implements MessageListener<Client> {
+
+        final boolean[][] received = new boolean[2][MESSAGES];
+        final int[] counts = new int[2];
+        final int[] last = {-1, -1};
+        final List<List<Long>> latencies = Arrays.asList(new ArrayList<Long>(), new ArrayList<Long>());
+        int duplicates;
+        int outOfOrder;
+
+        @Override
+        public synchronized void messageReceived(Client source, Message m) {
+            SequenceMessage msg = (SequenceMessage) m;
+            latencies.get(msg.channel).add(System.nanoTime() - msg.sentTime);
+            if (received[msg.channel][msg.sequence]) {
+                duplicates++;
+                return;
+            }
+            received[msg.channel][msg.sequence] = true;
+            counts[msg.channel]++;
+            if (msg.sequence < last[msg.channel]) {
+                outOfOrder++;
+                if (msg.channel == 0) {
+                    System.out.println("Out of order on the ordered channel:" + msg.sequence);
+                }
+            }
+            last[msg.channel] = Math.max(last[msg.channel], msg.sequence);
+        }
+
+        synchronized boolean isComplete() {
+            return counts[0] == MESSAGES && counts[1] == MESSAGES;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Serializer.registerClass(SequenceMessage.class);
+
+        run(PORT, 0, 0, 0);
+        run(PORT + 3, 0.1f, 20, 10);
+        run(PORT + 6, 0.2f, 30, 20);
+    }
+
+    private static void run(int port, float lossRate, long latency, long jitter)
+            throws IOException, InterruptedException {
+        // The previous server locked the registry
+        Serializer.setReadOnly(false);
+
+        UdpLinkSimulator serverLink = new UdpLinkSimulator(new Random(1));
+        UdpLinkSimulator clientLink = new UdpLinkSimulator(new Random(2));
+        for (UdpLinkSimulator link : Arrays.asList(serverLink, clientLink)) {
+            link.setLossRate(lossRate);
+            link.setLatency(latency);
+            link.setJitter(jitter);
+        }
+
+        ReliableUdpKernel mainKernel = new ReliableUdpKernel(port, true);
+        mainKernel.setLinkSimulator(serverLink);
+        final List<ReliableUdpKernel> extraKernels = new ArrayList<>();
+        ReliableUdpKernelFactory kernelFactory = new ReliableUdpKernelFactory(false) {
+            @Override
+            public Kernel createKernel(int channel, int port) throws IOException {
+                ReliableUdpKernel result = (ReliableUdpKernel) super.createKernel(channel, port);
+                extraKernels.add(result);
+                return result;
+            }
+        };
+        kernelFactory.setLinkSimulator(serverLink);
+
+        DefaultServer server = new DefaultServer(Network.DEFAULT_GAME_NAME, Network.DEFAULT_VERSION,
+                mainKernel, new UdpKernel(port + 1));
+        server.setKernelFactory(kernelFactory);
+        server.addChannel(port + 2);
+        server.start();
+
+        InetAddress localhost = InetAddress.getByName("localhost");
+        ReliableUdpConnector mainConnector = new ReliableUdpConnector(localhost, port, true);
+        mainConnector.setLinkSimulator(clientLink);
+        ReliableUdpConnectorFactory connectorFactory = new ReliableUdpConnectorFactory(localhost, false);
+        connectorFactory.setLinkSimulator(clientLink);
+        DefaultClient client = new DefaultClient(Network.DEFAULT_GAME_NAME, Network.DEFAULT_VERSION,
+                mainConnector, new UdpConnector(localhost, port + 1), connectorFactory);
+        Receiver receiver = new Receiver();
+        client.addMessageListener(receiver, SequenceMessage.class);
+        client.start();
+
+        long timeout = System.currentTimeMillis() + 20000;
+        while (!client.isStarted() || server.getConnections().isEmpty()) {
+            if (System.currentTimeMillis() > timeout) {
+                throw new IllegalStateException("Client did not connect");
+            }
+            Thread.sleep(10);
+        }
+        HostedConnection conn = server.getConnections().iterator().next();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            int size = i % 10 == 0 ? 3000 : 100;
+            conn.send(new SequenceMessage(0, i, size));
+            conn.send(0, new SequenceMessage(1, i, size));
+            if (i % (RATE / 100) == 0) {
+                Thread.sleep(10);
+            }
+        }
+        timeout = System.currentTimeMillis() + 60000;
+        while (!receiver.isComplete() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long retransmits = 0;
+        double rtt = 0;
+        List<ReliableUdpKernel> kernels = new ArrayList<>(extraKernels);
+        kernels.add(mainKernel);
+        for (ReliableUdpKernel kernel : kernels) {
+            for (ReliableUdpEndpoint endpoint : kernel.getEndpoints()) {
+                retransmits += endpoint.getSession().getRetransmitCount();
+                rtt = Math.max(rtt, endpoint.getSession().getRoundTripTime());
+            }
+        }
+
+        long[][] sorted = new long[2][];
+        int duplicates, outOfOrder;
+        int[] counts;
+        synchronized (receiver) {
+            for (int ch = 0; ch < 2; ch++) {
+                List<Long> list = receiver.latencies.get(ch);
+                sorted[ch] = new long[list.size()];
+                for (int i = 0; i < sorted[ch].length; i++) {
+                    sorted[ch][i] = list.get(i);
+                }
+                Arrays.sort(sorted[ch]);
+            }
+            duplicates = receiver.duplicates;
+            outOfOrder = receiver.outOfOrder;
+            counts = receiver.counts.clone();
+        }
+
+        System.out.printf("loss %2.0f%%, latency %d+%d ms: ordered %d/%d, unordered %d/%d received in %.2f s,"
+                + " %d duplicates, %d reordered on the unordered channel%n",
+                lossRate * 100, latency, jitter, counts[0], MESSAGES, counts[1], MESSAGES, seconds,
+                duplicates, outOfOrder);
+        String[] names = {"ordered", "unordered"};
+        for (int ch = 0; ch < 2; ch++) {
+            System.out.printf("    %-9s latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", names[ch],
+                    percentile(sorted[ch], 0.5), percentile(sorted[ch], 0.99), percentile(sorted[ch], 1));
+        }
+        System.out.printf("    server rtt %.1f ms, %d of %d server datagrams dropped, %d segments resent%n",
+                rtt, serverLink.getDroppedCount(), serverLink.getSentCount(), retransmits);
+
+        client.close();
+        server.close();
+        serverLink.close();
+        clientLink.close();
+        Thread.sleep(500);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)));
+        return sorted[index] / 1e6;
+    }
+}
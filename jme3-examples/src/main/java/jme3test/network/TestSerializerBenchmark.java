@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.network;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.serializers.FieldSerializer;
+import com.jme3.network.serializing.serializers.MethodHandleFieldSerializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compares the reflective {@link FieldSerializer} with the
+ * {@link MethodHandleFieldSerializer} on a typical entity state message.
+ *
+ * <p>Both serializers first encode the same messages, which must give the same
+ * bytes, then each one repeatedly writes and reads a batch of messages.</p>
+ */
+public class TestSerializerBenchmark {
+
+    private static final int BATCH = 40000;
+    private static final int ROUNDS = 30;
+
+    @Serializable
+    public static class EntityStateMessage extends AbstractMessage {
+
+        private int entityId;
+        private long timestamp;
+        private float x, y, z;
+        private float qx, qy, qz, qw;
+        private Vector3f velocity;
+        private short health;
+        private byte flags;
+        private boolean visible;
+        private char team;
+        private double simTime;
+        private String animation;
+
+        public EntityStateMessage() {
+            super(false);
+        }
+
+        public EntityStateMessage(int i) {
+            super(false);
+            entityId = i;
+            timestamp = 1000000L + i;
+            x = i * 0.5f;
+            y = 1.25f;
+            z = -i * 0.25f;
+            qx = 0;
+            qy = 0.7071f;
+            qz = 0;
+            qw = 0.7071f;
+            velocity = new Vector3f(1, 0, i % 7);
+            health = (short) (i % 100);
+            flags = (byte) i;
+            visible = (i & 1) == 0;
+            team = (char) ('A' + i % 4);
+            simTime = i / 60.0;
+            animation = (i % 3 == 0) ? null : "walk";
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Serializer.registerClass(TestSerialization.SomeObject.class);
+        Serializer.registerClass(TestSerialization.TestSerializationMessage.class);
+        Serializer.registerClass(EntityStateMessage.class);
+
+        Serializer reflective = new FieldSerializer();
+        Serializer handles = new MethodHandleFieldSerializer();
+        reflective.initialize(EntityStateMessage.class);
+        handles.initialize(EntityStateMessage.class);
+        reflective.initialize(TestSerialization.TestSerializationMessage.class);
+        handles.initialize(TestSerialization.TestSerializationMessage.class);
+
+        EntityStateMessage[] messages = new EntityStateMessage[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            messages[i] = new EntityStateMessage(i);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BATCH * 128);
+
+        checkSameBytes(reflective, handles, new TestSerialization.TestSerializationMessage(true), buffer);
+        checkSameBytes(reflective, handles, new TestSerialization.TestSerializationMessage(false), buffer);
+        for (int i = 0; i < 100; i++) {
+            checkSameBytes(reflective, handles, messages[i], buffer);
+        }
+        System.out.println("Same bytes: yes");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean report = round >= ROUNDS - 5;
+            run("FieldSerializer", reflective, messages, buffer, report);
+            run("MethodHandleFieldSerializer", handles, messages, buffer, report);
+        }
+    }
+
+    private static void checkSameBytes(Serializer a, Serializer b, Object message,
+            ByteBuffer buffer) throws IOException {
+        byte[] bytesA = encode(a, message, buffer);
+        byte[] bytesB = encode(b, message, buffer);
+        if (!Arrays.equals(bytesA, bytesB)) {
+            throw new IllegalStateException("Serializers disagree on " + message);
+        }
+        buffer.clear();
+        buffer.put(bytesA);
+        buffer.flip();
+        Object copy = b.readObject(buffer, message.getClass());
+        if (!Arrays.equals(bytesA, encode(a, copy, buffer))) {
+            throw new IllegalStateException("Round trip failed for " + message);
+        }
+    }
+
+    private static byte[] encode(Serializer serializer, Object message, ByteBuffer buffer)
+            throws IOException {
+        buffer.clear();
+        serializer.writeObject(buffer, message);
+        buffer.flip();
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    private static void run(String name, Serializer serializer, EntityStateMessage[] messages,
+            ByteBuffer buffer, boolean report) throws IOException {
+        buffer.clear();
+        long start = System.nanoTime();
+        for (EntityStateMessage message : messages) {
+            serializer.writeObject(buffer, message);
+        }
+        long written = System.nanoTime();
+        buffer.flip();
+        int checksum = 0;
+        for (int i = 0; i < messages.length; i++) {
+            EntityStateMessage copy = serializer.readObject(buffer, EntityStateMessage.class);
+            checksum += copy.entityId;
+        }
+        long read = System.nanoTime();
+        if (report) {
+            System.out.printf("%-28s write %6.1f ns/msg  read %6.1f ns/msg  (checksum %d)%n",
+                    name, (written - start) / (double) messages.length,
+                    (read - written) / (double) messages.length, checksum);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.network;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.Client;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Network;
+import com.jme3.network.Server;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.service.replication.DistanceInterestFilter;
+import com.jme3.network.service.replication.ReplicationClientService;
+import com.jme3.network.service.replication.ReplicationHostedService;
+import com.jme3.network.service.replication.ReplicationListener;
+import com.jme3.network.service.replication.msg.ReplicationMessage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replicates a few thousand moving entities to several clients over the
+ * loopback interface, and compares the bandwidth with sending a full
+ * snapshot message per tick.
+ *
+ * <p>The last run keeps the default message size, too small for the changes
+ * of a tick, and delays the updates on the clients by more than a tick, as
+ * on a real network. The clients must then rebuild the entities from
+ * updates sliced across several frames in flight, without any of them
+ * going back, vanishing or showing up twice.</p>
+ *
+ * <p>The sizes are the serialized message sizes, averaged over the ticks
+ * where the entities move. The replication total includes the initial
+ * synchronization and whatever is sent once they stop, after which the
+ * states rebuilt by the clients are checked against the ones of the
+ * server.</p>
+ */
+public class TestStateReplication {
+
+    private static final int PORT = 5140;
+    private static final int ENTITIES = 3000;
+    private static final float WORLD_SIZE = 1000;
+    private static final float MOVING = 0.1f;
+    private static final int CLIENTS = 4;
+    private static final int TICKS = 200;
+    private static final int TICK_MILLIS = 50;
+    private static final float RADIUS = 200;
+    private static final long LATENCY_MILLIS = 120;
+
+    /**
+     * What the game sends without the service: the full state of every
+     * entity, every tick.
+     */
+    @Serializable
+    public static class SnapshotMessage extends AbstractMessage {
+
+        private int[] ids;
+        private Vector3f[] positions;
+        private float[] rotations;
+
+        public SnapshotMessage() {
+        }
+
+        public SnapshotMessage(int[] ids, Vector3f[] positions, Quaternion[] rotations) {
+            super(false);
+            this.ids = ids;
+            this.positions = positions;
+            this.rotations = new float[rotations.length * 4];
+            for (int i = 0; i < rotations.length; i++) {
+                this.rotations[i * 4] = rotations[i].getX();
+                this.rotations[i * 4 + 1] = rotations[i].getY();
+                this.rotations[i * 4 + 2] = rotations[i].getZ();
+                this.rotations[i * 4 + 3] = rotations[i].getW();
+            }
+        }
+    }
+
+    private static class ClientState implements ReplicationListener {
+
+        final Map<Integer, Vector3f> positions = new ConcurrentHashMap<>();
+        final Map<Integer, Quaternion> rotations = new ConcurrentHashMap<>();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong messages = new AtomicLong();
+        // Entities added twice or updated while absent, and removed
+        // without a filter since they are never removed on the server
+        final AtomicLong anomalies = new AtomicLong();
+        final boolean filtered;
+
+        ClientState(boolean filtered) {
+            this.filtered = filtered;
+        }
+
+        @Override
+        public void entityAdded(int entityId, Vector3f position, Quaternion rotation) {
+            if (positions.put(entityId, position.clone()) != null) {
+                anomalies.incrementAndGet();
+            }
+            rotations.put(entityId, rotation.clone());
+        }
+
+        @Override
+        public void entityUpdated(int entityId, Vector3f position, Quaternion rotation) {
+            Vector3f p = positions.get(entityId);
+            if (p == null) {
+                anomalies.incrementAndGet();
+                return;
+            }
+            p.set(position);
+            rotations.get(entityId).set(rotation);
+        }
+
+        @Override
+        public void entityRemoved(int entityId) {
+            if (!filtered || positions.get(entityId) == null) {
+                anomalies.incrementAndGet();
+            }
+            positions.remove(entityId);
+            rotations.remove(entityId);
+        }
+    }
+
+    /**
+     * Applies the updates some time after they were received, which
+     * delays the acknowledgements too.
+     */
+    private static class DelayedReplicationClientService extends ReplicationClientService {
+
+        private final ScheduledExecutorService delay = Executors.newSingleThreadScheduledExecutor();
+
+        @Override
+        protected void update(final Client client, final ReplicationMessage msg) {
+            delay.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    DelayedReplicationClientService.super.update(client, msg);
+                }
+            }, LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        void shutdown() {
+            delay.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Serializer.registerClass(SnapshotMessage.class);
+
+        // Sized for the few hundred entities moving per tick
+        run(PORT, false, 4096, false);
+        run(PORT + 1, true, 4096, false);
+        run(PORT + 2, false, ReplicationHostedService.DEFAULT_MAX_MESSAGE_SIZE, true);
+    }
+
+    private static void run(int port, boolean filtered, int maxMessageSize, boolean delayed)
+            throws IOException, InterruptedException {
+        // The previous server locked the registry
+        Serializer.setReadOnly(false);
+
+        Random random = new Random(1);
+        int[] ids = new int[ENTITIES];
+        Vector3f[] positions = new Vector3f[ENTITIES];
+        Vector3f[] velocities = new Vector3f[ENTITIES];
+        Quaternion[] rotations = new Quaternion[ENTITIES];
+        float[] angles = new float[ENTITIES];
+        for (int i = 0; i < ENTITIES; i++) {
+            ids[i] = i;
+            positions[i] = new Vector3f(random.nextFloat() * WORLD_SIZE, 0, random.nextFloat() * WORLD_SIZE);
+            velocities[i] = random.nextFloat() < MOVING
+                    ? new Vector3f(random.nextFloat() * 10 - 5, 0, random.nextFloat() * 10 - 5)
+                    : new Vector3f();
+            angles[i] = random.nextFloat() * FastMath.TWO_PI;
+            rotations[i] = new Quaternion().fromAngleAxis(angles[i], Vector3f.UNIT_Y);
+        }
+
+        Server server = Network.createServer(port);
+        ReplicationHostedService replication = new ReplicationHostedService();
+        replication.setMaxMessageSize(maxMessageSize);
+        DistanceInterestFilter filter = new DistanceInterestFilter(RADIUS);
+        if (filtered) {
+            replication.setInterestFilter(filter);
+        }
+        server.getServices().addService(replication);
+        server.start();
+
+        ClientState[] states = new ClientState[CLIENTS];
+        Client[] clients = new Client[CLIENTS];
+        ReplicationClientService[] services = new ReplicationClientService[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            final ClientState state = states[i] = new ClientState(filtered);
+            clients[i] = Network.connectToServer("localhost", port);
+            ReplicationClientService service = services[i] = delayed
+                    ? new DelayedReplicationClientService() : new ReplicationClientService();
+            service.addReplicationListener(state);
+            clients[i].getServices().addService(service);
+            clients[i].addMessageListener(new MessageListener<Client>() {
+                @Override
+                public void messageReceived(Client source, Message m) {
+                    state.bytes.addAndGet(serializedSize(m));
+                    state.messages.incrementAndGet();
+                }
+            }, ReplicationMessage.class);
+            clients[i].start();
+        }
+        Map<Integer, ClientState> statesById = new ConcurrentHashMap<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            while (!clients[i].isConnected()) {
+                Thread.sleep(10);
+            }
+            statesById.put(clients[i].getId(), states[i]);
+        }
+        while (server.getConnections().size() < CLIENTS) {
+            Thread.sleep(10);
+        }
+        int c = 0;
+        for (HostedConnection conn : server.getConnections()) {
+            float offset = WORLD_SIZE * (c + 1) / (CLIENTS + 1);
+            filter.setCenter(conn, new Vector3f(offset, 0, offset));
+            c++;
+        }
+        Thread.sleep(500);
+
+        long fullBytes = 0;
+        long start = System.nanoTime();
+        long replicationNanos = 0;
+        for (int tick = 0; tick < TICKS + 40; tick++) {
+            boolean moving = tick < TICKS;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < ENTITIES; i++) {
+                if (moving && velocities[i].x != 0) {
+                    positions[i].addLocal(velocities[i].x * TICK_MILLIS / 1000f, 0,
+                            velocities[i].z * TICK_MILLIS / 1000f);
+                    angles[i] += 0.05f;
+                    rotations[i].fromAngleAxis(angles[i], Vector3f.UNIT_Y);
+                }
+                replication.setEntity(ids[i], positions[i], rotations[i]);
+            }
+            replication.sendUpdates();
+            replicationNanos += System.nanoTime() - t0;
+            if (moving) {
+                fullBytes += serializedSize(new SnapshotMessage(ids, positions, rotations));
+            }
+            Thread.sleep(TICK_MILLIS);
+        }
+        Thread.sleep(500 + (delayed ? LATENCY_MILLIS : 0));
+
+        long bytes = 0;
+        long messages = 0;
+        long anomalies = 0;
+        for (ClientState state : states) {
+            bytes += state.bytes.get();
+            messages += state.messages.get();
+            anomalies += state.anomalies.get();
+        }
+        System.out.printf("%s, %d byte updates%s: full snapshot %.0f bytes/client/tick, replication %.0f bytes/client/tick"
+                + " (%.1fx less), %d updates, %.2f ms/tick to update and encode%n",
+                filtered ? "distance filter " + RADIUS : "no filter", maxMessageSize,
+                delayed ? ", " + LATENCY_MILLIS + " ms latency" : "",
+                (double) fullBytes / TICKS, (double) bytes / CLIENTS / TICKS,
+                (double) fullBytes / bytes * CLIENTS,
+                messages, replicationNanos / 1e6 / (TICKS + 40));
+
+        // Check the rebuilt states
+        float maxPositionError = 0;
+        float maxRotationError = 0;
+        int expected = 0;
+        int missing = 0;
+        for (HostedConnection conn : server.getConnections()) {
+            ClientState state = statesById.get(conn.getId());
+            Vector3f center = filter.getCenter(conn);
+            for (int i = 0; i < ENTITIES; i++) {
+                if (filtered && center.distance(positions[i]) > RADIUS) {
+                    if (state.positions.containsKey(i)) {
+                        missing++;
+                    }
+                    continue;
+                }
+                expected++;
+                Vector3f p = state.positions.get(i);
+                if (p == null) {
+                    missing++;
+                    continue;
+                }
+                maxPositionError = Math.max(maxPositionError, p.distance(positions[i]));
+                float dot = Math.abs(state.rotations.get(i).dot(rotations[i]));
+                maxRotationError = Math.max(maxRotationError,
+                        2 * FastMath.acos(Math.min(1, dot)) * FastMath.RAD_TO_DEG);
+            }
+        }
+        System.out.printf("    %d entity states checked, %d wrong, max position error %.4f,"
+                + " max rotation error %.3f degrees, %d listener anomalies%n",
+                expected, missing, maxPositionError, maxRotationError, anomalies);
+
+        for (ReplicationClientService service : services) {
+            if (service instanceof DelayedReplicationClientService) {
+                ((DelayedReplicationClientService) service).shutdown();
+            }
+        }
+        for (Client client : clients) {
+            client.close();
+        }
+        server.close();
+        Thread.sleep(500);
+    }
+
+    private static int serializedSize(Object message) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        try {
+            Serializer.writeClassAndObject(buffer, message);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return buffer.position();
+    }
+}
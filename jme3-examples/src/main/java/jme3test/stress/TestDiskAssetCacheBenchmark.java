@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.DiskAssetCache;
+import com.jme3.asset.ModelKey;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Measures the load time of models in fresh asset managers, as on the start
+ * of an application, without a disk cache and with a populated one.
+ *
+ * <p>The arguments are the model paths, by default the OBJ and Ogre versions
+ * of the teapot.
+ */
+public class TestDiskAssetCacheBenchmark {
+
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws IOException {
+        String[] models = args.length > 0 ? args
+                : new String[]{"Models/Teapot/Teapot.obj", "Models/Teapot/Teapot.mesh.xml"};
+        File directory = Files.createTempDirectory("diskcachebenchmark").toFile();
+        DiskAssetCache diskCache = new DiskAssetCache(directory);
+
+        System.out.printf("%-32s %12s %12s%n", "model", "parse ms", "cached ms");
+        for (int pass = 0; pass < 2; pass++) {
+            // the first pass only warms up the JIT
+            for (String model : models) {
+                double parse = benchmark(model, null);
+                diskCache.clear();
+                benchmark(model, diskCache);
+                double cached = benchmark(model, diskCache);
+                if (pass == 1) {
+                    System.out.printf("%-32s %12.1f %12.1f%n", model, parse, cached);
+                }
+            }
+        }
+        diskCache.clear();
+        directory.delete();
+    }
+
+    private static double benchmark(String model, DiskAssetCache diskCache) {
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            DesktopAssetManager assetManager = new DesktopAssetManager(true);
+            assetManager.setDiskCache(diskCache);
+            long start = System.nanoTime();
+            assetManager.loadModel(new ModelKey(model));
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+        return bestTime / 1e6;
+    }
+}
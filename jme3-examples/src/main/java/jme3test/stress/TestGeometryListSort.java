@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+
+/**
+ * Compares the time needed to sort an opaque bucket with the comparison sort
+ * (ListSort + OpaqueComparator) and with the key-based radix sort.
+ *
+ * <p>Every iteration moves the camera and resets the cached distances, like
+ * a new frame would, so both sorts pay for the distance computation.
+ */
+public class TestGeometryListSort {
+
+    private static final int GEOMETRIES = 50000;
+    private static final int MATERIALS = 64;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 500;
+    private static final int NANOS_TO_MS = 1000000;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+        Material[] materials = new Material[MATERIALS];
+        for (int i = 0; i < MATERIALS; i++) {
+            final int sortId = random.nextInt();
+            materials[i] = new Material() {
+                @Override
+                public int getSortId() {
+                    return sortId;
+                }
+            };
+        }
+
+        Geometry[] geometries = new Geometry[GEOMETRIES];
+        for (int i = 0; i < GEOMETRIES; i++) {
+            Geometry geom = new Geometry("geom" + i, mesh);
+            geom.setMaterial(materials[random.nextInt(MATERIALS)]);
+            geom.setLocalTranslation(random.nextFloat() * 1000f - 500f, 0f,
+                    random.nextFloat() * 1000f - 500f);
+            geom.updateGeometricState();
+            geometries[i] = geom;
+        }
+
+        Camera cam = new Camera(640, 480);
+        GeometryList listSort = new GeometryList(new OpaqueComparator());
+        GeometryList radixSort = new GeometryList(new OpaqueComparator());
+        radixSort.setRadixSortEnabled(true);
+
+        run(listSort, geometries, cam, WARMUP);
+        run(radixSort, geometries, cam, WARMUP);
+        long listNanos = run(listSort, geometries, cam, ITERATIONS);
+        long radixNanos = run(radixSort, geometries, cam, ITERATIONS);
+
+        System.out.println(GEOMETRIES + " geometries, " + ITERATIONS + " sorts");
+        System.out.println("ListSort:  " + listNanos / NANOS_TO_MS + " ms, "
+                + (listNanos / ITERATIONS) / 1000 + " us/sort");
+        System.out.println("RadixSort: " + radixNanos / NANOS_TO_MS + " ms, "
+                + (radixNanos / ITERATIONS) / 1000 + " us/sort");
+    }
+
+    private static long run(GeometryList list, Geometry[] geometries,
+            Camera cam, int iterations) {
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            list.clear();
+            for (Geometry geom : geometries) {
+                geom.queueDistance = Float.NEGATIVE_INFINITY;
+                list.add(geom);
+            }
+            float angle = i * 0.01f;
+            cam.setLocation(new Vector3f((float) Math.cos(angle) * 200f, 50f,
+                    (float) Math.sin(angle) * 200f));
+            cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+            list.setCamera(cam);
+
+            long start = System.nanoTime();
+            list.sort();
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+}
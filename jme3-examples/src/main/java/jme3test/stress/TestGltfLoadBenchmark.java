@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.asset.plugins.FileLocator;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Measures the load time of large GLB files, generated with one mesh whose
+ * attributes are either packed in separate buffer views, interleaved in a
+ * single one, or quantized (normalized short texture coordinates).
+ *
+ * <p>The optional argument is the number of vertices (default 1,000,000).
+ */
+public class TestGltfLoadBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int FLOAT = 5126;
+    private static final int UNSIGNED_SHORT = 5123;
+    private static final int UNSIGNED_INT = 5125;
+
+    public static void main(String[] args) throws IOException {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File directory = Files.createTempDirectory("gltfbenchmark").toFile();
+        String[] layouts = {"packed", "interleaved", "quantized"};
+        for (String layout : layouts) {
+            writeGlb(new File(directory, layout + ".glb"), layout, vertices);
+        }
+
+        DesktopAssetManager assetManager = new DesktopAssetManager(true);
+        assetManager.registerLocator(directory.getAbsolutePath(), FileLocator.class);
+
+        System.out.printf("%-12s %10s %10s%n", "layout", "file MB", "load ms");
+        for (int pass = 0; pass < 2; pass++) {
+            // the first pass only warms up the JIT
+            for (String layout : layouts) {
+                File file = new File(directory, layout + ".glb");
+                long bestTime = Long.MAX_VALUE;
+                for (int i = 0; i < RUNS; i++) {
+                    assetManager.clearCache();
+                    System.gc();
+                    long start = System.nanoTime();
+                    assetManager.loadModel(new ModelKey(file.getName()));
+                    bestTime = Math.min(bestTime, System.nanoTime() - start);
+                }
+                if (pass == 1) {
+                    System.out.printf("%-12s %10.1f %10.1f%n", layout,
+                            file.length() / (1024.0 * 1024.0), bestTime / 1e6);
+                }
+            }
+        }
+
+        for (String layout : layouts) {
+            new File(directory, layout + ".glb").delete();
+        }
+        directory.delete();
+    }
+
+    private static void writeGlb(File file, String layout, int vertices) throws IOException {
+        boolean interleaved = layout.equals("interleaved");
+        boolean quantized = layout.equals("quantized");
+        int texCoordSize = quantized ? 4 : 8;
+        int vertexSize = 24 + texCoordSize;
+        int triangles = vertices - 2;
+        int indexOffset = vertices * vertexSize;
+        ByteBuffer bin = ByteBuffer.allocate(indexOffset + triangles * 12)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        int normalOffset = interleaved ? 12 : vertices * 12;
+        int texCoordOffset = interleaved ? 24 : vertices * 24;
+        int stride = interleaved ? vertexSize : 0;
+        for (int i = 0; i < vertices; i++) {
+            float x = (i % 1000) * 0.01f;
+            float z = (i / 1000) * 0.01f;
+            int position = interleaved ? i * vertexSize : i * 12;
+            bin.putFloat(position, x).putFloat(position + 4, 0f).putFloat(position + 8, z);
+            int normal = normalOffset + (interleaved ? i * vertexSize : i * 12);
+            bin.putFloat(normal, 0f).putFloat(normal + 4, 1f).putFloat(normal + 8, 0f);
+            int texCoord = texCoordOffset + (interleaved ? i * vertexSize : i * texCoordSize);
+            if (quantized) {
+                bin.putShort(texCoord, (short) (i * 7)).putShort(texCoord + 2, (short) (i * 13));
+            } else {
+                bin.putFloat(texCoord, x).putFloat(texCoord + 4, z);
+            }
+        }
+        for (int i = 0; i < triangles; i++) {
+            bin.putInt(indexOffset + i * 12, i);
+            bin.putInt(indexOffset + i * 12 + 4, i + 1);
+            bin.putInt(indexOffset + i * 12 + 8, i + 2);
+        }
+
+        StringBuilder views = new StringBuilder();
+        if (interleaved) {
+            views.append(bufferView(0, indexOffset, stride)).append(',');
+        } else {
+            views.append(bufferView(0, vertices * 12, 0)).append(',');
+            views.append(bufferView(normalOffset, vertices * 12, 0)).append(',');
+            views.append(bufferView(texCoordOffset, vertices * texCoordSize, 0)).append(',');
+        }
+        views.append(bufferView(indexOffset, triangles * 12, 0));
+        int indexView = interleaved ? 1 : 3;
+        String accessors = accessor(0, 0, FLOAT, false, vertices, "VEC3") + ','
+                + accessor(interleaved ? 0 : 1, interleaved ? 12 : 0, FLOAT, false, vertices, "VEC3") + ','
+                + accessor(interleaved ? 0 : 2, interleaved ? 24 : 0,
+                        quantized ? UNSIGNED_SHORT : FLOAT, quantized, vertices, "VEC2") + ','
+                + accessor(indexView, 0, UNSIGNED_INT, false, triangles * 3, "SCALAR");
+        String json = "{\"asset\":{\"version\":\"2.0\"},\"scene\":0,\"scenes\":[{\"nodes\":[0]}],"
+                + "\"nodes\":[{\"mesh\":0}],\"meshes\":[{\"primitives\":[{\"attributes\":"
+                + "{\"POSITION\":0,\"NORMAL\":1,\"TEXCOORD_0\":2},\"indices\":3}]}],"
+                + "\"buffers\":[{\"byteLength\":" + bin.capacity() + "}],"
+                + "\"bufferViews\":[" + views + "],\"accessors\":[" + accessors + "]}";
+
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        int jsonLength = (jsonBytes.length + 3) & ~3;
+        int binLength = (bin.capacity() + 3) & ~3;
+        ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46546C67).putInt(2).putInt(12 + 8 + jsonLength + 8 + binLength);
+        header.putInt(jsonLength).putInt(0x4E4F534A);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(header.array());
+            out.write(jsonBytes);
+            for (int i = jsonBytes.length; i < jsonLength; i++) {
+                out.write(' ');
+            }
+            ByteBuffer binHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            binHeader.putInt(binLength).putInt(0x004E4942);
+            out.write(binHeader.array());
+            out.write(bin.array());
+            for (int i = bin.capacity(); i < binLength; i++) {
+                out.write(0);
+            }
+        }
+    }
+
+    private static String bufferView(int offset, int length, int stride) {
+        return "{\"buffer\":0,\"byteOffset\":" + offset + ",\"byteLength\":" + length
+                + (stride > 0 ? ",\"byteStride\":" + stride : "") + "}";
+    }
+
+    private static String accessor(int view, int offset, int componentType, boolean normalized,
+            int count, String type) {
+        return "{\"bufferView\":" + view + ",\"byteOffset\":" + offset + ",\"componentType\":"
+                + componentType + (normalized ? ",\"normalized\":true" : "") + ",\"count\":" + count
+                + ",\"type\":\"" + type + "\"}";
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import java.io.File;
+import java.io.IOException;
+import jme3tools.optimize.HlodGenerator;
+
+/**
+ * Builds the HLOD tree of a scene with {@link HlodGenerator}, and prints the
+ * time it took.
+ *
+ * <p>Without arguments, the scene is a grid of 200 boxes and spheres, and
+ * the result is discarded. Otherwise, a j3o scene is converted:
+ * <code>TestHlodGenerator input.j3o output.j3o [impostorSize]</code>
+ */
+public class TestHlodGenerator {
+
+    private static final int GRID_SIZE = 20;
+    private static final int GRID_ROWS = 10;
+    private static final int NANOS_TO_MS = 1000000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 1) {
+            System.err.println("Usage: TestHlodGenerator [input.j3o output.j3o [impostorSize]]");
+            return;
+        }
+
+        AssetManager assetManager = new DesktopAssetManager(true);
+        Spatial scene;
+        if (args.length == 0) {
+            scene = createScene(assetManager);
+        } else {
+            File input = new File(args[0]).getAbsoluteFile();
+            assetManager.registerLocator(input.getParent(), FileLocator.class);
+            scene = assetManager.loadModel(input.getName());
+        }
+
+        HlodGenerator generator = new HlodGenerator(assetManager);
+        if (args.length > 2) {
+            generator.setImpostorSize(Integer.parseInt(args[2]));
+        } else if (args.length == 0) {
+            generator.setImpostorSize(64);
+        }
+        long start = System.nanoTime();
+        Node result = generator.generate(scene);
+        System.out.println("HLOD tree built in " + (System.nanoTime() - start) / NANOS_TO_MS
+                + " ms");
+
+        if (args.length > 1) {
+            BinaryExporter.getInstance().save(result, new File(args[1]));
+        }
+    }
+
+    private static Node createScene(AssetManager assetManager) {
+        Mesh box = new Box(1f, 1f, 1f);
+        Mesh sphere = new Sphere(16, 24, 1f);
+        Material red = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        red.setColor("Color", ColorRGBA.Red);
+        Material blue = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        blue.setColor("Color", ColorRGBA.Blue);
+
+        Node scene = new Node("scene");
+        for (int row = 0; row < GRID_ROWS; row++) {
+            for (int column = 0; column < GRID_SIZE; column++) {
+                boolean even = (row + column) % 2 == 0;
+                Geometry geom = new Geometry("geom" + row + "-" + column, even ? box : sphere);
+                geom.setMaterial(even ? red : blue);
+                geom.setLocalTranslation(column * 4f, 0f, row * 4f);
+                scene.attachChild(geom);
+            }
+        }
+        return scene;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.scene.Node;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Measures the time and the peak heap usage of the export of a large scene,
+ * with the capsule data kept in memory and with the streaming mode of the
+ * BinaryExporter.
+ *
+ * <p>The optional argument is the approximate size of the exported file in
+ * megabytes (default 128). The scene is the one of
+ * {@link TestJ3oLoadBenchmark}, and its buffers are direct, so they aren't
+ * part of the heap usage.
+ */
+public class TestJ3oExportBenchmark {
+
+    private static final int RUNS = 3;
+    private static final int BYTES_TO_MB = 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        Node scene = TestJ3oLoadBenchmark.createScene(megabytes);
+        File file = File.createTempFile("exportbenchmark", ".j3o");
+        file.deleteOnExit();
+
+        System.out.printf("%-10s %10s %14s %10s%n", "mode", "save ms", "peak heap MB", "file MB");
+        for (int pass = 0; pass < 2; pass++) {
+            // the first pass only warms up the JIT
+            boolean print = pass == 1;
+            benchmark("regular", scene, file, false, print);
+            benchmark("streaming", scene, file, true, print);
+        }
+        file.delete();
+    }
+
+    private static void benchmark(String mode, Node scene, File file,
+            boolean streaming, boolean print) throws IOException {
+        long bestTime = Long.MAX_VALUE;
+        long peakHeap = 0;
+        for (int i = 0; i < RUNS; i++) {
+            System.gc();
+            long heapBefore = TestJ3oLoadBenchmark.resetPeakHeap();
+            long start = System.nanoTime();
+            BinaryExporter exporter = BinaryExporter.getInstance();
+            exporter.setStreaming(streaming);
+            exporter.save(scene, file);
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+            peakHeap = Math.max(peakHeap, TestJ3oLoadBenchmark.getPeakHeap() - heapBefore);
+        }
+        if (print) {
+            System.out.printf("%-10s %10.1f %14.1f %10.1f%n", mode, bestTime / 1e6,
+                    peakHeap / (double) BYTES_TO_MB, file.length() / (double) BYTES_TO_MB);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the load time and the peak heap usage of a large J3O file, read
+ * as a stream, read directly into a single buffer, through a memory mapping
+ * with the large buffers returned as read-only mappings, and with the large
+ * objects decoded by a thread pool.
+ *
+ * <p>The optional argument is the approximate size of the generated file in
+ * megabytes (default 128). Each mode loads the file several times, and the
+ * table gives the fastest load and the largest heap growth seen during a
+ * load, along with the direct and mapped memory held by the result. Mappings
+ * which are no longer referenced may still be counted until they're
+ * collected, and the pages of a mapped buffer are only read from the disk when
+ * it's first accessed.
+ */
+public class TestJ3oLoadBenchmark {
+
+    private static final int VERTICES_PER_MESH = 65536;
+    private static final int RUNS = 5;
+    private static final int BYTES_TO_MB = 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        File file = File.createTempFile("loadbenchmark", ".j3o");
+        file.deleteOnExit();
+        BinaryExporter.getInstance().save(createScene(megabytes), file);
+        System.out.printf("%s: %d MB%n", file, file.length() / BYTES_TO_MB);
+
+        System.out.printf("%-18s %10s %14s %12s %12s%n", "mode", "load ms",
+                "peak heap MB", "direct MB", "mapped MB");
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        for (int pass = 0; pass < 2; pass++) {
+            // the first pass only warms up the JIT
+            boolean print = pass == 1;
+            benchmark("stream", file, false, -1, null, print);
+            benchmark("stream, parallel", file, false, -1, executor, print);
+            benchmark("direct", file, true, -1, null, print);
+            benchmark("direct, parallel", file, true, -1, executor, print);
+            benchmark("mapped, zero-copy", file, true, 64 * 1024, null, print);
+        }
+        executor.shutdown();
+        file.delete();
+    }
+
+    private static void benchmark(String mode, File file, boolean directLoad,
+            int threshold, ExecutorService executor, boolean print) throws IOException {
+        BinaryImporter.setMemoryMappingEnabled(directLoad);
+        BinaryImporter.setMappedBufferThreshold(threshold);
+        BinaryImporter.setDecodeExecutor(executor);
+        long bestTime = Long.MAX_VALUE;
+        long peakHeap = 0;
+        Node scene = null;
+        for (int i = 0; i < RUNS; i++) {
+            scene = null;
+            System.gc();
+            long heapBefore = resetPeakHeap();
+            long start = System.nanoTime();
+            scene = (Node) BinaryImporter.getInstance().load(file);
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+            peakHeap = Math.max(peakHeap, getPeakHeap() - heapBefore);
+        }
+        // what's left once the temporary buffers are collected
+        System.gc();
+        long direct = getBufferPool("direct");
+        long mappedBytes = getBufferPool("mapped");
+        if (scene.getQuantity() == 0) {
+            throw new IllegalStateException("Empty scene");
+        }
+        BinaryImporter.setMemoryMappingEnabled(true);
+        BinaryImporter.setMappedBufferThreshold(-1);
+        BinaryImporter.setDecodeExecutor(null);
+        if (print) {
+            System.out.printf("%-18s %10.1f %14.1f %12.1f %12.1f%n", mode,
+                    bestTime / 1e6, peakHeap / (double) BYTES_TO_MB,
+                    direct / (double) BYTES_TO_MB, mappedBytes / (double) BYTES_TO_MB);
+        }
+    }
+
+    static Node createScene(int megabytes) {
+        Random random = new Random(42);
+        // positions, normals and indices
+        int meshBytes = VERTICES_PER_MESH * (3 + 3 + 3) * 4;
+        int meshes = Math.max(1, megabytes * BYTES_TO_MB / meshBytes);
+        Node scene = new Node("scene");
+        for (int m = 0; m < meshes; m++) {
+            FloatBuffer positions = BufferUtils.createFloatBuffer(VERTICES_PER_MESH * 3);
+            FloatBuffer normals = BufferUtils.createFloatBuffer(VERTICES_PER_MESH * 3);
+            IntBuffer indices = BufferUtils.createIntBuffer(VERTICES_PER_MESH * 3);
+            for (int i = 0; i < VERTICES_PER_MESH * 3; i++) {
+                positions.put(random.nextFloat());
+                normals.put(random.nextFloat());
+                indices.put(random.nextInt(VERTICES_PER_MESH));
+            }
+            Mesh mesh = new Mesh();
+            mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+            mesh.setBuffer(VertexBuffer.Type.Normal, 3, normals);
+            mesh.setBuffer(VertexBuffer.Type.Index, 3, indices);
+            mesh.updateBound();
+            Geometry geometry = new Geometry("mesh-" + m, mesh);
+            geometry.setUserData("index", m);
+            scene.attachChild(geometry);
+        }
+        return scene;
+    }
+
+    static long resetPeakHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long getBufferPool(String name) {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals(name)) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.system.JmeSystem;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jme3tools.optimize.GeometryBatchFactory;
+import jme3tools.optimize.LodGenerator;
+import jme3tools.optimize.LodGenerator.TriangleReductionMethod;
+import jme3tools.optimize.QuadricLodGenerator;
+
+/**
+ * Compares the time and the error of LodGenerator and QuadricLodGenerator on
+ * a fixed set of meshes from jme3-testdata, plus a dense synthetic mesh.
+ *
+ * <p>For each mesh, the table gives the time of LodGenerator (skipped above
+ * {@link #OGRE_MAX_TRIANGLES}), of QuadricLodGenerator with progressive
+ * levels, and with the levels computed in parallel, and for the coarsest
+ * level of each generator the mean and maximum distance from the original
+ * vertices to the simplified surface, in percent of the radius of the mesh.
+ * The whole set is then baked serially and with one task per mesh.
+ */
+public class TestLodGeneratorBenchmark {
+
+    private static final String[] MODELS = {
+        "Models/Teapot/Teapot.obj",
+        "Models/MonkeyHead/MonkeyHead.mesh.xml",
+        "Models/Jaime/Jaime.j3o",
+        "Models/Elephant/Elephant.mesh.xml",
+        "Models/Ninja/Ninja.mesh.xml",
+        "Models/Sinbad/Sinbad.mesh.xml",
+        "Models/Buggy/Buggy.j3o"
+    };
+    private static final float[] REDUCTION_VALUES = {0.25f, 0.5f, 0.75f, 0.9f};
+    private static final int OGRE_MAX_TRIANGLES = 20000;
+    private static final int ERROR_SAMPLES = 1000;
+    private static final int NANOS_TO_MS = 1000000;
+
+    public static void main(String[] args) {
+        AssetManager assetManager = JmeSystem.newAssetManager(
+                TestLodGeneratorBenchmark.class.getResource("/com/jme3/asset/Desktop.cfg"));
+        List<Mesh> meshes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (String model : MODELS) {
+            List<Geometry> geoms = new ArrayList<>();
+            GeometryBatchFactory.gatherGeoms(assetManager.loadModel(model), geoms);
+            Mesh largest = null;
+            for (Geometry geom : geoms) {
+                if (largest == null || geom.getTriangleCount() > largest.getTriangleCount()) {
+                    largest = geom.getMesh();
+                }
+            }
+            meshes.add(largest);
+            names.add(model.substring(model.lastIndexOf('/') + 1));
+        }
+        meshes.add(noisySphere(400, 600));
+        names.add("noisy sphere");
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        try {
+            // warm up the JIT on a small mesh
+            for (int i = 0; i < 5; i++) {
+                new QuadricLodGenerator(meshes.get(0)).computeLods(
+                        TriangleReductionMethod.PROPORTIONAL, REDUCTION_VALUES);
+                new QuadricLodGenerator(meshes.get(0)).computeLods(executor,
+                        TriangleReductionMethod.PROPORTIONAL, REDUCTION_VALUES);
+            }
+
+            System.out.printf("%-20s %8s | %10s %15s | %10s %10s %15s%n", "mesh", "tris",
+                    "ogre ms", "ogre err %", "qem ms", "qem par ms", "qem err %");
+            for (int i = 0; i < meshes.size(); i++) {
+                benchmark(names.get(i), meshes.get(i), executor);
+            }
+
+            Node scene = new Node("scene");
+            for (Mesh mesh : meshes) {
+                scene.attachChild(new Geometry("geom", mesh));
+            }
+            long start = System.nanoTime();
+            for (Mesh mesh : meshes) {
+                new QuadricLodGenerator(mesh).bakeLods(
+                        TriangleReductionMethod.PROPORTIONAL, REDUCTION_VALUES);
+            }
+            long serial = System.nanoTime() - start;
+            start = System.nanoTime();
+            QuadricLodGenerator.bakeLods(scene, executor,
+                    TriangleReductionMethod.PROPORTIONAL, REDUCTION_VALUES);
+            long parallel = System.nanoTime() - start;
+            System.out.println("all meshes: serial " + serial / NANOS_TO_MS
+                    + " ms, one task per mesh " + parallel / NANOS_TO_MS + " ms");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void benchmark(String name, Mesh mesh, ExecutorService executor) {
+        String ogreTime = "skipped";
+        String ogreError = "";
+        if (mesh.getTriangleCount() <= OGRE_MAX_TRIANGLES) {
+            long start = System.nanoTime();
+            VertexBuffer[] lods = new LodGenerator(mesh).computeLods(
+                    TriangleReductionMethod.PROPORTIONAL, REDUCTION_VALUES);
+            ogreTime = String.valueOf((System.nanoTime() - start) / NANOS_TO_MS);
+            ogreError = error(mesh, lods[lods.length - 1]);
+        }
+
+        long start = System.nanoTime();
+        VertexBuffer[] lods = new QuadricLodGenerator(mesh).computeLods(
+                TriangleReductionMethod.PROPORTIONAL, REDUCTION_VALUES);
+        long qemTime = (System.nanoTime() - start) / NANOS_TO_MS;
+        start = System.nanoTime();
+        new QuadricLodGenerator(mesh).computeLods(executor,
+                TriangleReductionMethod.PROPORTIONAL, REDUCTION_VALUES);
+        long parallelTime = (System.nanoTime() - start) / NANOS_TO_MS;
+
+        System.out.printf("%-20s %8d | %10s %15s | %10d %10d %15s%n", name,
+                mesh.getTriangleCount(), ogreTime, ogreError, qemTime, parallelTime,
+                error(mesh, lods[lods.length - 1]));
+    }
+
+    /**
+     * Builds a sphere whose radius varies with a deterministic noise, so that
+     * it can't be simplified without error. The indices are integers, as the
+     * sphere has more than 65536 vertices.
+     */
+    private static Mesh noisySphere(int rings, int segments) {
+        int columns = segments + 1;
+        float[] positions = new float[(rings + 1) * columns * 3];
+        for (int r = 0; r <= rings; r++) {
+            float theta = FastMath.PI * r / rings;
+            for (int s = 0; s <= segments; s++) {
+                float phi = FastMath.TWO_PI * s / segments;
+                float x = FastMath.sin(theta) * FastMath.cos(phi);
+                float y = FastMath.cos(theta);
+                float z = FastMath.sin(theta) * FastMath.sin(phi);
+                float noise = 1f + 0.05f * FastMath.sin(x * 13f)
+                        * FastMath.sin(y * 17f) * FastMath.sin(z * 11f);
+                int i = (r * columns + s) * 3;
+                positions[i] = x * noise;
+                positions[i + 1] = y * noise;
+                positions[i + 2] = z * noise;
+            }
+        }
+        int[] indices = new int[rings * segments * 6];
+        int i = 0;
+        for (int r = 0; r < rings; r++) {
+            for (int s = 0; s < segments; s++) {
+                int a = r * columns + s;
+                int b = a + columns;
+                indices[i++] = a;
+                indices[i++] = a + 1;
+                indices[i++] = b;
+                indices[i++] = b;
+                indices[i++] = a + 1;
+                indices[i++] = b + 1;
+            }
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, indices);
+        mesh.updateCounts();
+        mesh.updateBound();
+        return mesh;
+    }
+
+    /**
+     * Returns the mean and maximum distance from a fixed sample of the
+     * original vertices to the triangles of a level.
+     */
+    private static String error(Mesh mesh, VertexBuffer lod) {
+        FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.BindPosePosition);
+        if (positions == null) {
+            positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        }
+        IndexBuffer indices = IndexBuffer.wrapIndexBuffer(lod.getData());
+        int triangles = indices.size() / 3;
+        float[] corners = new float[triangles * 9];
+        float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        float minZ = Float.POSITIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < triangles * 3; i++) {
+            int v = indices.get(i);
+            corners[i * 3] = positions.get(v * 3);
+            corners[i * 3 + 1] = positions.get(v * 3 + 1);
+            corners[i * 3 + 2] = positions.get(v * 3 + 2);
+        }
+        int vertexCount = positions.limit() / 3;
+        for (int v = 0; v < vertexCount; v++) {
+            minX = Math.min(minX, positions.get(v * 3));
+            maxX = Math.max(maxX, positions.get(v * 3));
+            minY = Math.min(minY, positions.get(v * 3 + 1));
+            maxY = Math.max(maxY, positions.get(v * 3 + 1));
+            minZ = Math.min(minZ, positions.get(v * 3 + 2));
+            maxZ = Math.max(maxZ, positions.get(v * 3 + 2));
+        }
+        float radius = new Vector3f(maxX - minX, maxY - minY, maxZ - minZ).length() * 0.5f;
+
+        Random random = new Random(1);
+        Vector3f point = new Vector3f();
+        double sum = 0;
+        double max = 0;
+        for (int s = 0; s < ERROR_SAMPLES; s++) {
+            int v = random.nextInt(vertexCount);
+            point.set(positions.get(v * 3), positions.get(v * 3 + 1), positions.get(v * 3 + 2));
+            float best = Float.POSITIVE_INFINITY;
+            for (int t = 0; t < triangles; t++) {
+                best = Math.min(best, distanceSquared(point, corners, t * 9));
+            }
+            double distance = Math.sqrt(best);
+            sum += distance;
+            max = Math.max(max, distance);
+        }
+        return String.format("%.3f / %.3f", 100 * sum / ERROR_SAMPLES / radius, 100 * max / radius);
+    }
+
+    /**
+     * Computes the squared distance from a point to a triangle, from the
+     * closest point of the triangle (Ericson, Real-Time Collision Detection).
+     */
+    private static float distanceSquared(Vector3f p, float[] c, int o) {
+        float ax = c[o], ay = c[o + 1], az = c[o + 2];
+        float abx = c[o + 3] - ax, aby = c[o + 4] - ay, abz = c[o + 5] - az;
+        float acx = c[o + 6] - ax, acy = c[o + 7] - ay, acz = c[o + 8] - az;
+        float apx = p.x - ax, apy = p.y - ay, apz = p.z - az;
+        float d1 = abx * apx + aby * apy + abz * apz;
+        float d2 = acx * apx + acy * apy + acz * apz;
+        if (d1 <= 0 && d2 <= 0) {
+            return apx * apx + apy * apy + apz * apz;
+        }
+        float bpx = p.x - c[o + 3], bpy = p.y - c[o + 4], bpz = p.z - c[o + 5];
+        float d3 = abx * bpx + aby * bpy + abz * bpz;
+        float d4 = acx * bpx + acy * bpy + acz * bpz;
+        if (d3 >= 0 && d4 <= d3) {
+            return bpx * bpx + bpy * bpy + bpz * bpz;
+        }
+        float vc = d1 * d4 - d3 * d2;
+        float u;
+        float w;
+        if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            u = d1 / (d1 - d3);
+            w = 0;
+        } else {
+            float cpx = p.x - c[o + 6], cpy = p.y - c[o + 7], cpz = p.z - c[o + 8];
+            float d5 = abx * cpx + aby * cpy + abz * cpz;
+            float d6 = acx * cpx + acy * cpy + acz * cpz;
+            if (d6 >= 0 && d5 <= d6) {
+                return cpx * cpx + cpy * cpy + cpz * cpz;
+            }
+            float vb = d5 * d2 - d1 * d6;
+            float va = d3 * d6 - d5 * d4;
+            if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+                u = 0;
+                w = d2 / (d2 - d6);
+            } else if (va <= 0 && (d4 - d3) >= 0 && (d5 - d6) >= 0) {
+                w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+                u = 1 - w;
+            } else {
+                float denom = 1f / (va + vb + vc);
+                u = vb * denom;
+                w = vc * denom;
+            }
+        }
+        float x = apx - abx * u - acx * w;
+        float y = apy - aby * u - acy * w;
+        float z = apz - abz * u - acz * w;
+        return x * x + y * y + z * z;
+    }
+}
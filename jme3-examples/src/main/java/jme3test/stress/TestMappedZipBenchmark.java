@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.AssetLocator;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.asset.plugins.MappedZipLocator;
+import com.jme3.asset.plugins.ZipLocator;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryLoader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures the load time and the peak heap usage of a large J3O file stored
+ * in a ZIP archive, uncompressed and compressed, through a
+ * {@link ZipLocator} and through a {@link MappedZipLocator}.
+ *
+ * <p>The optional argument is the approximate size of the J3O file in
+ * megabytes (default 64). The scene is the one of {@link TestJ3oLoadBenchmark}.
+ */
+public class TestMappedZipBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int BYTES_TO_MB = 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        ByteArrayOutputStream model = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(TestJ3oLoadBenchmark.createScene(megabytes), model);
+        byte[] data = model.toByteArray();
+        model = null;
+
+        File archive = File.createTempFile("zipbenchmark", ".zip");
+        archive.deleteOnExit();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            ZipEntry stored = new ZipEntry("stored.j3o");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(data.length);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(data);
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("deflated.j3o"));
+            zip.write(data);
+            zip.closeEntry();
+        }
+        data = null;
+
+        System.out.printf("%-18s %-10s %10s %14s%n", "locator", "entry", "load ms", "peak heap MB");
+        for (int pass = 0; pass < 2; pass++) {
+            // the first pass only warms up the JIT
+            boolean print = pass == 1;
+            for (String entry : new String[]{"stored.j3o", "deflated.j3o"}) {
+                benchmark(ZipLocator.class, archive, entry, print);
+                benchmark(MappedZipLocator.class, archive, entry, print);
+            }
+        }
+        archive.delete();
+    }
+
+    private static void benchmark(Class<? extends AssetLocator> locator, File archive,
+            String entry, boolean print) {
+        long bestTime = Long.MAX_VALUE;
+        long peakHeap = 0;
+        // a single manager, so that the loaders of the previous runs don't
+        // keep their last content alive
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator(archive.getAbsolutePath(), locator);
+        assetManager.registerLoader(BinaryLoader.class, "j3o");
+        for (int i = 0; i < RUNS; i++) {
+            assetManager.clearCache();
+            System.gc();
+            long heapBefore = TestJ3oLoadBenchmark.resetPeakHeap();
+            long start = System.nanoTime();
+            assetManager.loadModel(new ModelKey(entry));
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+            peakHeap = Math.max(peakHeap, TestJ3oLoadBenchmark.getPeakHeap() - heapBefore);
+        }
+        if (print) {
+            System.out.printf("%-18s %-10s %10.1f %14.1f%n", locator.getSimpleName(), entry,
+                    bestTime / 1e6, peakHeap / (double) BYTES_TO_MB);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Sphere;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jme3tools.optimize.MeshPostProcessor;
+import jme3tools.optimize.MeshPostProcessor.TangentGeneration;
+
+/**
+ * Measures the time taken by a {@link MeshPostProcessor} generating the
+ * tangents and bounds of a scene of spheres, on the calling thread and on an
+ * executor with one thread per processor.
+ *
+ * <p>The optional argument is the number of spheres (default 200).
+ */
+public class TestMeshPostProcessorBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int spheres = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        System.out.printf("%-12s %-10s %10s%n", "tangents", "mode", "ms");
+        for (int pass = 0; pass < 2; pass++) {
+            // the first pass only warms up the JIT
+            boolean print = pass == 1;
+            for (TangentGeneration tangents : new TangentGeneration[]{
+                    TangentGeneration.MikkTSpace, TangentGeneration.Legacy}) {
+                benchmark(tangents, null, spheres, print);
+                benchmark(tangents, executor, spheres, print);
+            }
+        }
+        System.out.println(threads + " thread(s)");
+        executor.shutdown();
+    }
+
+    private static void benchmark(TangentGeneration tangents, ExecutorService executor,
+            int spheres, boolean print) {
+        MeshPostProcessor processor = new MeshPostProcessor();
+        processor.setTangentGeneration(tangents);
+        processor.setExecutor(executor);
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            Node scene = new Node("scene");
+            for (int j = 0; j < spheres; j++) {
+                scene.attachChild(new Geometry("sphere" + j, new Sphere(32, 32, 1f + j)));
+            }
+            long start = System.nanoTime();
+            processor.process(scene);
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+        if (print) {
+            System.out.printf("%-12s %-10s %10.1f%n", tangents,
+                    executor == null ? "serial" : "parallel", bestTime / 1e6);
+        }
+    }
+}
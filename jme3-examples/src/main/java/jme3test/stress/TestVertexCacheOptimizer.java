@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+import com.jme3.scene.Spatial;
+import jme3tools.optimize.VertexCacheOptimizer;
+import jme3tools.optimize.VertexCacheOptimizer.CacheStatistics;
+
+/**
+ * Prints the cache efficiency of the meshes of some models before and after
+ * the optimizations of {@link VertexCacheOptimizer}, with a 16-entry FIFO
+ * cache. Runs headless.
+ *
+ * <p>The arguments are the model paths, by default a few of the test models
+ * in various formats.
+ */
+public class TestVertexCacheOptimizer {
+
+    public static void main(String[] args) {
+        String[] models = args.length > 0 ? args : new String[]{
+                "Models/Teapot/Teapot.obj",
+                "Models/Ferrari/Car.mesh.xml",
+                "Models/Sinbad/Sinbad.mesh.xml",
+                "Models/Jaime/Jaime.j3o",
+                "Models/Elephant/Elephant.mesh.xml"};
+        DesktopAssetManager assetManager = new DesktopAssetManager(true);
+        final int cacheSize = VertexCacheOptimizer.DEFAULT_CACHE_SIZE;
+
+        System.out.printf("%-40s %9s %7s %7s %7s %7s %7s %7s%n", "mesh", "triangles",
+                "ACMR", "ATVR", "ACMR", "ATVR", "ACMR", "ATVR");
+        System.out.printf("%-40s %9s %15s %15s %15s%n", "", "", "as authored", "optimized", "+overdraw");
+        for (final String model : models) {
+            Spatial scene = assetManager.loadModel(model);
+            scene.depthFirstTraversal(new SceneGraphVisitorAdapter() {
+                @Override
+                public void visit(Geometry geom) {
+                    Mesh mesh = geom.getMesh();
+                    CacheStatistics authored = VertexCacheOptimizer.analyze(mesh, cacheSize);
+                    if (authored == null) {
+                        return;
+                    }
+                    VertexCacheOptimizer.optimize(mesh);
+                    CacheStatistics optimized = VertexCacheOptimizer.analyze(mesh, cacheSize);
+                    VertexCacheOptimizer.optimizeOverdraw(mesh, cacheSize);
+                    CacheStatistics sorted = VertexCacheOptimizer.analyze(mesh, cacheSize);
+                    String name = model.substring(model.lastIndexOf('/') + 1) + ":" + geom.getName();
+                    if (name.length() > 40) {
+                        name = name.substring(0, 40);
+                    }
+                    System.out.printf("%-40s %9d %7.3f %7.3f %7.3f %7.3f %7.3f %7.3f%n", name,
+                            authored.getTriangleCount(), authored.getAcmr(), authored.getAtvr(),
+                            optimized.getAcmr(), optimized.getAtvr(), sorted.getAcmr(), sorted.getAtvr());
+                }
+            });
+        }
+    }
+}
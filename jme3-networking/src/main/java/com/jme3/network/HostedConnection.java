@@ -86,4 +86,11 @@ public interface HostedConnection extends MessageConnection
      *  for this client session.
      */
     public Set<String> attributeNames();     
+
+    /**
+     *  Sends the messages batched for this connection, if the server
+     *  batches messages.  Does nothing otherwise.
+     */
+    public default void flush() {
+    }
 }
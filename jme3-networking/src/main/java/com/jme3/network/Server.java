@@ -62,6 +62,13 @@ public interface Server
      */
     public HostedServiceManager getServices();     
 
+    /**
+     *  Sends the messages batched for all connections, if the server
+     *  batches messages.  Does nothing otherwise.
+     */
+    public default void flush() {
+    }
+
     /**
      *  Sends the specified message to all connected clients.
      */ 
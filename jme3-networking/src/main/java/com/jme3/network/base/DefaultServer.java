@@ -33,8 +33,10 @@ package com.jme3.network.base;
 
 import com.jme3.network.*;
 import com.jme3.network.base.protocol.SerializerMessageProtocol;
+import com.jme3.network.kernel.BufferPool;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.NamedThreadFactory;
 import com.jme3.network.message.ChannelInfoMessage;
 import com.jme3.network.message.ClientRegistrationMessage;
 import com.jme3.network.message.DisconnectMessage;
@@ -45,6 +47,9 @@ import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -65,12 +70,18 @@ public class DefaultServer implements Server
     private static final int CH_RELIABLE = 0;
     private static final int CH_UNRELIABLE = 1;
     private static final int CH_FIRST = 2;
+
+    /**
+     *  A batch frame size that keeps UDP datagrams below the usual
+     *  1500 byte Ethernet MTU once the IP and UDP headers are added.
+     */
+    public static final int DEFAULT_BATCH_FRAME_SIZE = 1200;
     
     private boolean isRunning = false;
     private final AtomicInteger nextId = new AtomicInteger(0);
     private String gameName;
     private int version;
-    private final KernelFactory kernelFactory = KernelFactory.DEFAULT;
+    private KernelFactory kernelFactory = KernelFactory.DEFAULT;
     private KernelAdapter reliableAdapter;
     private KernelAdapter fastAdapter;
     private final List<KernelAdapter> channels = new ArrayList<>();
@@ -90,6 +101,12 @@ public class DefaultServer implements Server
     
     private HostedServiceManager services;
     private MessageProtocol protocol = new SerializerMessageProtocol();
+
+    // Message batching is off by default
+    private final BufferPool bufferPool = BufferPool.getDefault();
+    private int batchFrameSize = 0;
+    private long batchFlushInterval = 0;
+    private ScheduledExecutorService batchFlusher;
     
     public DefaultServer( String gameName, int version, Kernel reliable, Kernel fast )
     {
@@ -163,6 +180,86 @@ public class DefaultServer implements Server
         } 
     } 
 
+    /**
+     *  Sets the factory creating the kernels of the channels added
+     *  afterwards with addChannel().  Defaults to KernelFactory.DEFAULT,
+     *  which hosts them over TCP.
+     */
+    public void setKernelFactory( KernelFactory kernelFactory )
+    {
+        if( isRunning )
+            throw new IllegalStateException( "Kernel factory cannot be changed once server is started." );
+        if( kernelFactory == null )
+            throw new IllegalArgumentException( "Kernel factory cannot be null." );
+        this.kernelFactory = kernelFactory;
+    }
+
+    public KernelFactory getKernelFactory()
+    {
+        return kernelFactory;
+    }
+
+    /**
+     *  Enables message batching when frameSize is greater than zero.  The
+     *  messages sent to a connection, directly or through a broadcast, are
+     *  then packed into frames of up to frameSize bytes, one per channel, that
+     *  are sent when full or when flush() is called.  The clients unpack
+     *  them transparently, so this only needs to be set on the server.
+     *  For the UDP channel, the frame size should stay below the path MTU,
+     *  see DEFAULT_BATCH_FRAME_SIZE.  Messages larger than a frame are sent
+     *  on their own.  Must be set before the server is started.
+     */
+    public void setBatchFrameSize( int frameSize )
+    {
+        if( isRunning )
+            throw new IllegalStateException( "Batching cannot be changed once server is started." );
+        if( frameSize < 0 )
+            throw new IllegalArgumentException( "Frame size cannot be negative:" + frameSize );
+        this.batchFrameSize = frameSize;
+    }
+
+    public int getBatchFrameSize()
+    {
+        return batchFrameSize;
+    }
+
+    /**
+     *  Sets how often, in milliseconds, the batched messages are flushed
+     *  automatically.  Zero, the default, means they are only sent when
+     *  their frame is full or when flush() is called, typically at the
+     *  end of each server tick.  Must be set before the server is started.
+     */
+    public void setBatchFlushInterval( long millis )
+    {
+        if( isRunning )
+            throw new IllegalStateException( "Batching cannot be changed once server is started." );
+        if( millis < 0 )
+            throw new IllegalArgumentException( "Flush interval cannot be negative:" + millis );
+        this.batchFlushInterval = millis;
+    }
+
+    public long getBatchFlushInterval()
+    {
+        return batchFlushInterval;
+    }
+
+    /**
+     *  Sends the messages currently batched for all connections.
+     */
+    @Override
+    public void flush()
+    {
+        for( HostedConnection conn : connections.values() ) {
+            try {
+                conn.flush();
+            } catch( RuntimeException e ) {
+                // Most likely a connection closing at the same time,
+                // it shouldn't keep the others from getting their data
+                log.log( Level.WARNING, "Error flushing batched messages for:" + conn, e );
+            }
+        }
+    }
+
     protected void checkChannel( int channel )
     {
         if( channel < MessageConnection.CHANNEL_DEFAULT_RELIABLE 
@@ -188,6 +285,18 @@ public class DefaultServer implements Server
         }
         
         isRunning = true;
+
+        if( batchFrameSize > 0 && batchFlushInterval > 0 ) {
+            batchFlusher = Executors.newSingleThreadScheduledExecutor(
+                                new NamedThreadFactory(toString() + "-flusher", true));
+            batchFlusher.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        flush();
+                    }
+                }, batchFlushInterval, batchFlushInterval, TimeUnit.MILLISECONDS);
+        }
         
         // Start the services
         services.start();             
@@ -208,6 +317,12 @@ public class DefaultServer implements Server
         // First stop the services since we are about to
         // kill the connections they are using
         services.stop();
+
+        if( batchFlusher != null ) {
+            batchFlusher.shutdownNow();
+            batchFlusher = null;
+        }
+        flush();
  
         try {
             // Kill the adapters, they will kill the kernels
@@ -242,15 +357,29 @@ public class DefaultServer implements Server
  
         ByteBuffer buffer = protocol.toByteBuffer(message, null);
  
+        if( batchFrameSize > 0 ) {
+            try {
+                int channel = message.isReliable() || fastAdapter == null ? CH_RELIABLE : CH_UNRELIABLE;
+                batch( filter, channel, buffer );
+            } finally {
+                protocol.releaseBuffer(buffer);
+            }
+            return;
+        }
+ 
         FilterAdapter adapter = filter == null ? null : new FilterAdapter(filter);
                
-        if( message.isReliable() || fastAdapter == null ) {
-            // Don't need to copy the data because message protocol is already
-            // giving us a fresh buffer
-            reliableAdapter.broadcast( adapter, buffer, true, false );
-        } else {
-            fastAdapter.broadcast( adapter, buffer, false, false );
-        }               
+        // The kernels copy the data into their own pooled buffers, so the
+        // message buffer can go back to the protocol right away
+        try {
+            if( message.isReliable() || fastAdapter == null ) {
+                reliableAdapter.broadcast( adapter, buffer, true, true );
+            } else {
+                fastAdapter.broadcast( adapter, buffer, false, true );
+            }
+        } finally {
+            protocol.releaseBuffer(buffer);
+        }
     }
 
     @Override
@@ -267,9 +396,36 @@ public class DefaultServer implements Server
         
         ByteBuffer buffer = protocol.toByteBuffer(message, null);
  
+        if( batchFrameSize > 0 ) {
+            try {
+                batch( filter, channel + CH_FIRST, buffer );
+            } finally {
+                protocol.releaseBuffer(buffer);
+            }
+            return;
+        }
+ 
         FilterAdapter adapter = filter == null ? null : new FilterAdapter(filter);
 
-        channels.get(channel+CH_FIRST).broadcast( adapter, buffer, true, false );               
+        try {
+            channels.get(channel+CH_FIRST).broadcast( adapter, buffer, true, true );
+        } finally {
+            protocol.releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     *  Broadcasts through the connection batches instead of the kernels
+     *  so that the broadcast messages stay ordered with the ones sent
+     *  directly to each connection.
+     */
+    protected void batch( Filter<? super HostedConnection> filter, int channel, ByteBuffer buffer )
+    {
+        for( HostedConnection conn : connections.values() ) {
+            if( filter != null && !filter.apply(conn) )
+                continue;
+            ((Connection)conn).send( channel, buffer );
+        }
     }
 
     @Override
@@ -454,6 +610,10 @@ public class DefaultServer implements Server
             m.setId(-1);
             m.setReliable(true);
             addedConnection.send(m);            
+            
+            // The handshake went out unbatched, from now on the messages
+            // can wait for the next flush
+            addedConnection.batching = batchFrameSize > 0;
         }            
     }
 
@@ -522,6 +682,9 @@ public class DefaultServer implements Server
         private boolean closed;
         private Endpoint[] channels;
         private int setChannelCount = 0; 
+        
+        private volatile boolean batching;
+        private final ByteBuffer[] frames;
        
         private final Map<String,Object> sessionData = new ConcurrentHashMap<>();       
         
@@ -529,6 +692,7 @@ public class DefaultServer implements Server
         {
             id = nextId.getAndIncrement();
             channels = new Endpoint[channelCount];
+            frames = new ByteBuffer[channelCount];
         }
         
         boolean hasEndpoint( Endpoint p )
@@ -582,10 +746,15 @@ public class DefaultServer implements Server
                 log.log(Level.FINER, "send({0})", message);
             }
             ByteBuffer buffer = protocol.toByteBuffer(message, null);
-            if( message.isReliable() || channels[CH_UNRELIABLE] == null ) {
-                channels[CH_RELIABLE].send( buffer );
-            } else {
-                channels[CH_UNRELIABLE].send( buffer );
+            try {
+                if( message.isReliable() || channels[CH_UNRELIABLE] == null ) {
+                    send( CH_RELIABLE, buffer );
+                } else {
+                    send( CH_UNRELIABLE, buffer );
+                }
+            } finally {
+                // The endpoints copy the data before returning
+                protocol.releaseBuffer(buffer);
             }
         }
 
@@ -597,7 +766,78 @@ public class DefaultServer implements Server
             }
             checkChannel(channel);
             ByteBuffer buffer = protocol.toByteBuffer(message, null);
-            channels[channel+CH_FIRST].send(buffer);
+            try {
+                send( channel + CH_FIRST, buffer );
+            } finally {
+                protocol.releaseBuffer(buffer);
+            }
+        }
+
+        /**
+         *  Sends the serialized message data over the specified channel,
+         *  or appends it to the channel's batch frame when batching.  The
+         *  data buffer is left unchanged.
+         */
+        protected void send( int channel, ByteBuffer data )
+        {
+            if( channel == CH_UNRELIABLE && channels[CH_UNRELIABLE] == null ) {
+                channel = CH_RELIABLE;
+            }
+            if( !batching ) {
+                channels[channel].send(data);
+                return;
+            }
+            
+            int size = data.remaining();
+            synchronized( frames ) {
+                ByteBuffer frame = frames[channel];
+                if( frame != null && frame.remaining() < size ) {
+                    flush(channel);
+                    frame = null;
+                }
+                if( size > batchFrameSize ) {
+                    // Doesn't fit in a frame, send it as is
+                    channels[channel].send(data);
+                    return;
+                }
+                if( frame == null ) {
+                    frame = bufferPool.acquire(batchFrameSize);
+                    frames[channel] = frame;
+                }
+                int position = data.position();
+                frame.put(data);
+                data.position(position);
+            }
+        }
+
+        /**
+         *  Sends the messages batched for this connection.
+         */
+        @Override
+        public void flush()
+        {
+            synchronized( frames ) {
+                for( int i = 0; i < frames.length; i++ ) {
+                    flush(i);
+                }
+            }
+        }
+
+        private void flush( int channel )
+        {
+            ByteBuffer frame = frames[channel];
+            if( frame == null ) {
+                return;
+            }
+            frames[channel] = null;
+            try {
+                if( !closed ) {
+                    frame.flip();
+                    channels[channel].send(frame);
+                }
+            } finally {
+                bufferPool.release(frame);
+            }
         }
  
         protected void closeConnection()
@@ -606,6 +846,9 @@ public class DefaultServer implements Server
                 return;
             closed = true;
             
+            // Drop anything still batched
+            flush();
+            
             // Make sure all endpoints are closed.  Note: reliable
             // should always already be closed through all paths that I
             // can conceive... but it doesn't hurt to be sure. 
@@ -627,6 +870,7 @@ public class DefaultServer implements Server
             m.setReason( reason );
             m.setReliable( true );
             send( m );
+            flush();
             
             // Just close the reliable endpoint
             // fast.  Will be cleaned up as a side effect
@@ -51,6 +51,14 @@ public interface MessageProtocol {
     public ByteBuffer toByteBuffer( Message message, ByteBuffer target );
     public Message toMessage( ByteBuffer bytes );
     public MessageBuffer createBuffer();
+
+    /**
+     *  Called with a buffer returned by toByteBuffer() for a null target
+     *  once the caller is done with it, so that the implementation can
+     *  reuse it.  The default implementation does nothing.
+     */
+    public default void releaseBuffer( ByteBuffer buffer ) {
+    }
 }
 
 
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.base;
+
+import com.jme3.network.kernel.Connector;
+import com.jme3.network.kernel.udp.ReliableUdpConnector;
+import com.jme3.network.kernel.udp.UdpLinkSimulator;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ *  Creates reliable UDP connectors to a specific remote address, the
+ *  client side counterpart of the ReliableUdpKernelFactory.  The ordering
+ *  of each channel should match the one of the server.
+ */
+public class ReliableUdpConnectorFactory implements ConnectorFactory
+{
+    private InetAddress remoteAddress;
+    private boolean ordered;
+    private Map<Integer,Boolean> channelOrdering = new HashMap<>();
+    private UdpLinkSimulator linkSimulator;
+
+    public ReliableUdpConnectorFactory( InetAddress remoteAddress )
+    {
+        this(remoteAddress, true);
+    }
+
+    public ReliableUdpConnectorFactory( InetAddress remoteAddress, boolean ordered )
+    {
+        this.remoteAddress = remoteAddress;
+        this.ordered = ordered;
+    }
+
+    /**
+     *  Sets whether the messages of the specified channel are delivered
+     *  in order, overriding the factory default.
+     */
+    public void setOrdered( int channel, boolean ordered )
+    {
+        channelOrdering.put(channel, ordered);
+    }
+
+    public boolean isOrdered( int channel )
+    {
+        Boolean result = channelOrdering.get(channel);
+        return result != null ? result : ordered;
+    }
+
+    /**
+     *  Sets the link simulator used by the connectors created afterwards,
+     *  for testing on loopback.
+     */
+    public void setLinkSimulator( UdpLinkSimulator linkSimulator )
+    {
+        this.linkSimulator = linkSimulator;
+    }
+
+    public UdpLinkSimulator getLinkSimulator()
+    {
+        return linkSimulator;
+    }
+
+    @Override
+    public Connector createConnector( int channel, int port ) throws IOException
+    {
+        ReliableUdpConnector result = new ReliableUdpConnector(remoteAddress, port, isOrdered(channel));
+        result.setLinkSimulator(linkSimulator);
+        return result;
+    }
+}
@@ -33,7 +33,7 @@
 package com.jme3.network.base.protocol;
 
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 
 import com.jme3.network.Message;
 import com.jme3.network.base.MessageBuffer;
@@ -55,7 +55,7 @@ import com.jme3.network.base.MessageProtocol;
 public class GreedyMessageBuffer implements MessageBuffer {
 
     private MessageProtocol protocol;
-    private final LinkedList<Message> messages = new LinkedList<>();
+    private final ArrayDeque<Message> messages = new ArrayDeque<>();
     private ByteBuffer current;
     private int size;
     private Byte carry;
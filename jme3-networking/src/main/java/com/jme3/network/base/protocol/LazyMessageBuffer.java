@@ -33,7 +33,7 @@
 package com.jme3.network.base.protocol;
 
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 
 import com.jme3.network.Message;
 import com.jme3.network.base.MessageBuffer;
@@ -52,7 +52,7 @@ import com.jme3.network.base.MessageProtocol;
 public class LazyMessageBuffer implements MessageBuffer {
 
     private MessageProtocol protocol;
-    private final LinkedList<ByteBuffer> messages = new LinkedList<>();
+    private final ArrayDeque<ByteBuffer> messages = new ArrayDeque<>();
     private ByteBuffer current;
     private int size;
     private Byte carry;
@@ -32,10 +32,12 @@
 package com.jme3.network.base.protocol;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import com.jme3.network.Message;
 import com.jme3.network.base.MessageBuffer;
 import com.jme3.network.base.MessageProtocol;
+import com.jme3.network.kernel.BufferPool;
 import com.jme3.network.serializing.Serializer;
 
 /**
@@ -51,20 +53,46 @@ import com.jme3.network.serializing.Serializer;
  */ 
 public class SerializerMessageProtocol implements MessageProtocol {
  
+    private static final int INITIAL_LEASE_SIZE = 1024;
+    private static final int MAX_LEASE_SIZE = 32767 + 2;
+ 
+    private final BufferPool bufferPool;
+ 
     public SerializerMessageProtocol() {
+        this(BufferPool.getDefault());
+    }
+ 
+    public SerializerMessageProtocol( BufferPool bufferPool ) {
+        this.bufferPool = bufferPool;
     }
  
     /**
      *  Converts a message to a ByteBuffer using the com.jme3.network.serializing.Serializer
      *  and the (short length) + data protocol.  If target is null
-     *  then a 32k byte buffer will be created and filled.
+     *  then a buffer is leased from the buffer pool and filled, starting
+     *  small and leasing a bigger one, up to the 32k message limit, when
+     *  the message doesn't fit.  It can be given back with releaseBuffer().
      */
     @Override
     public ByteBuffer toByteBuffer( Message message, ByteBuffer target ) {
-    
-        // Could let the caller pass their own in       
-        ByteBuffer buffer = target == null ? ByteBuffer.allocate(32767 + 2) : target;
+        if( target != null ) {
+            return write(message, target);
+        }
         
+        for( int size = INITIAL_LEASE_SIZE; ; size = Math.min(size * 2, MAX_LEASE_SIZE) ) {
+            ByteBuffer buffer = bufferPool.acquire(size);
+            try {
+                return write(message, buffer);
+            } catch( BufferOverflowException e ) {
+                bufferPool.release(buffer);
+                if( size == MAX_LEASE_SIZE ) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    private ByteBuffer write( Message message, ByteBuffer buffer ) {
         try {
             buffer.position(2);
             Serializer.writeClassAndObject(buffer, message);
@@ -92,6 +120,11 @@ public class SerializerMessageProtocol implements MessageProtocol {
         }         
     }
       
+    @Override
+    public void releaseBuffer( ByteBuffer buffer ) {
+        bufferPool.release(buffer);
+    }
+      
     @Override
     public MessageBuffer createBuffer() {
         // Defaulting to LazyMessageBuffer
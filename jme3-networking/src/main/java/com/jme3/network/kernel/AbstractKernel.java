@@ -65,10 +65,29 @@ public abstract class AbstractKernel implements Kernel
      */
     private LinkedBlockingQueue<Envelope> envelopes = new LinkedBlockingQueue<>();
 
+    private volatile BufferPool bufferPool = BufferPool.getDefault();
+
     protected AbstractKernel()
     {
     }
 
+    /**
+     *  Sets the pool from which the outbound data copies are leased.
+     *  Defaults to the shared BufferPool.getDefault() pool.
+     */
+    public void setBufferPool( BufferPool bufferPool )
+    {
+        if( bufferPool == null ) {
+            throw new IllegalArgumentException( "Buffer pool cannot be null." );
+        }
+        this.bufferPool = bufferPool;
+    }
+
+    public BufferPool getBufferPool()
+    {
+        return bufferPool;
+    }
+
     protected void reportError( Exception e )
     {
         // Should really be queued up so the outer thread can
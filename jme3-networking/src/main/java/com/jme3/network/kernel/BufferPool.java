@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ *  A bounded, thread-safe pool of ByteBuffers used by the kernels and
+ *  message protocols to avoid allocating a new buffer for every outbound
+ *  message.
+ *
+ *  <p>Buffers are pooled by power-of-two capacity from 64 bytes to 64 KB,
+ *  and each size keeps at most a fixed number of free buffers.  When a size
+ *  runs dry a new buffer is allocated and, when its size is full, a released
+ *  buffer is simply left to the garbage collector, so leasing never blocks
+ *  and a buffer that is never released is not an error.  Larger requests
+ *  are allocated and never pooled.</p>
+ *
+ *  <p>A buffer must only be released once, by the code that owns it at that
+ *  point, and must not be used afterwards.</p>
+ */
+public class BufferPool
+{
+    private static final int MIN_SHIFT = 6;
+    private static final int MAX_SHIFT = 16;
+
+    /**
+     *  The number of free buffers of each size kept by the default pool,
+     *  enough for a server to have a message queued to each of a couple
+     *  hundred connections at once.  Only buffers that were actually leased
+     *  are kept, so the bound costs nothing until it is needed.
+     */
+    public static final int DEFAULT_MAX_PER_SIZE = 256;
+
+    private static final BufferPool DEFAULT = new BufferPool(DEFAULT_MAX_PER_SIZE, false);
+
+    private final boolean direct;
+    private final ArrayBlockingQueue<ByteBuffer>[] free;
+
+    /**
+     *  Creates a pool keeping up to maxPerSize free buffers of each
+     *  size.
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool( int maxPerSize, boolean direct )
+    {
+        if( maxPerSize < 1 ) {
+            throw new IllegalArgumentException( "Pool size must be at least 1:" + maxPerSize );
+        }
+        this.direct = direct;
+        this.free = new ArrayBlockingQueue[MAX_SHIFT - MIN_SHIFT + 1];
+        for( int i = 0; i < free.length; i++ ) {
+            free[i] = new ArrayBlockingQueue<>(maxPerSize);
+        }
+    }
+
+    /**
+     *  Returns the pool shared by the kernels and protocols that
+     *  aren't given a specific one.  It holds heap buffers.
+     */
+    public static BufferPool getDefault()
+    {
+        return DEFAULT;
+    }
+
+    public boolean isDirect()
+    {
+        return direct;
+    }
+
+    /**
+     *  Leases a buffer that can hold at least the specified number of
+     *  bytes.  As with ByteBuffer.allocate(), its position is zero and its
+     *  limit is the requested size, though its capacity may be larger.
+     */
+    public ByteBuffer acquire( int size )
+    {
+        int index = sizeIndex(size);
+        if( index < 0 ) {
+            return allocate(size);
+        }
+        ByteBuffer result = free[index].poll();
+        if( result == null ) {
+            result = allocate(1 << (index + MIN_SHIFT));
+        }
+        result.limit(size);
+        return result;
+    }
+
+    /**
+     *  Leases a buffer and fills it with the remaining bytes of data, without
+     *  changing the position of data.  The returned buffer is flipped,
+     *  ready to be read.
+     */
+    public ByteBuffer copy( ByteBuffer data )
+    {
+        ByteBuffer result = acquire(data.remaining());
+        int position = data.position();
+        result.put(data);
+        data.position(position);
+        result.flip();
+        return result;
+    }
+
+    /**
+     *  Leases a buffer filled with the remaining bytes of data, as with
+     *  copy(), that can be handed to several owners.  The caller holds
+     *  the first reference.
+     */
+    public SharedBuffer share( ByteBuffer data )
+    {
+        return new SharedBuffer(this, copy(data));
+    }
+
+    /**
+     *  Gives back a buffer previously leased from this pool.  Buffers of
+     *  any other size or kind are ignored.
+     */
+    public void release( ByteBuffer buffer )
+    {
+        if( buffer == null || buffer.isDirect() != direct || buffer.isReadOnly() ) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        if( Integer.bitCount(capacity) != 1 || capacity < 1 << MIN_SHIFT ) {
+            return;
+        }
+        int index = sizeIndex(capacity);
+        if( index < 0 ) {
+            return;
+        }
+        buffer.clear();
+        free[index].offer(buffer);
+    }
+
+    private static int sizeIndex( int size )
+    {
+        if( size <= 1 << MIN_SHIFT ) {
+            return 0;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        if( shift > MAX_SHIFT ) {
+            return -1;
+        }
+        return shift - MIN_SHIFT;
+    }
+
+    private ByteBuffer allocate( int capacity )
+    {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BufferPool[direct=" + direct + "]";
+    }
+}
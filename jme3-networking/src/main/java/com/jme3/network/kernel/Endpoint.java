@@ -67,7 +67,9 @@ public interface Endpoint
 
     /**
      *  Sends data to the other end of the connection represented
-     *  by this endpoint.
+     *  by this endpoint.  The built-in endpoints copy the data into
+     *  a pooled buffer before queuing it, so the caller can reuse the
+     *  data buffer as soon as this method returns.
      */
     public void send( ByteBuffer data );
 
@@ -68,7 +68,9 @@ public interface Kernel
      *  If 'copy' is true then the implementation will copy the byte buffer
      *  before delivering it to endpoints.  This allows the caller to reuse
      *  the data buffer.  Though it is important that the buffer not be changed
-     *  by another thread while this call is running.
+     *  by another thread while this call is running.  The built-in kernels
+     *  always copy the data into buffers leased from their BufferPool, one
+     *  per endpoint.
      *  Only the bytes from data.position() to data.remaining() are sent.  
      */ 
     public void broadcast( Filter<? super Endpoint> filter, ByteBuffer data, boolean reliable, 
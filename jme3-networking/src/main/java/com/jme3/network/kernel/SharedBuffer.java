@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  A buffer leased from a BufferPool that several owners hold at
+ *  once, such as the endpoints a broadcast is queued to.  It starts out
+ *  with a single reference, each additional owner calls retain() and
+ *  the buffer goes back to the pool when the last owner calls release().
+ *
+ *  <p>The contents must not be modified while shared.  Owners that need
+ *  their own position, like an endpoint tracking a partial write, read
+ *  through a view().</p>
+ */
+public final class SharedBuffer
+{
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    SharedBuffer( BufferPool pool, ByteBuffer buffer )
+    {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    /**
+     *  Returns the shared buffer itself, for an owner that knows it
+     *  is the only one.
+     */
+    public ByteBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    /**
+     *  Returns a new buffer over the same content with its own
+     *  position and limit.
+     */
+    public ByteBuffer view()
+    {
+        return buffer.duplicate();
+    }
+
+    /**
+     *  Adds an owner.  Must be called by a current owner, before
+     *  it releases its own reference.
+     */
+    public SharedBuffer retain()
+    {
+        if( refs.getAndIncrement() <= 0 ) {
+            throw new IllegalStateException( "Buffer already released." );
+        }
+        return this;
+    }
+
+    /**
+     *  Drops an owner, giving the buffer back to the pool if it was
+     *  the last one.
+     */
+    public void release()
+    {
+        int remaining = refs.decrementAndGet();
+        if( remaining == 0 ) {
+            pool.release(buffer);
+        } else if( remaining < 0 ) {
+            throw new IllegalStateException( "Buffer released too many times." );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SharedBuffer[refs=" + refs.get() + ", " + buffer + "]";
+    }
+}
@@ -34,6 +34,7 @@ package com.jme3.network.kernel.tcp;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
 import com.jme3.network.kernel.KernelException;
+import com.jme3.network.kernel.SharedBuffer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
@@ -55,7 +56,7 @@ public class NioEndpoint implements Endpoint
     private long id;
     private SocketChannel socket;
     private SelectorKernel kernel;
-    private ConcurrentLinkedQueue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private ConcurrentLinkedQueue<Pending> outbound = new ConcurrentLinkedQueue<>();
     private boolean closing = false;
 
     public NioEndpoint( SelectorKernel kernel, long id, SocketChannel socket )
@@ -121,7 +122,10 @@ public class NioEndpoint implements Endpoint
     /**
      *  The wakeup option is used internally when the kernel is
      *  broadcasting out to a bunch of endpoints and doesn't want to
-     *  necessarily wakeup right away.
+     *  necessarily wakeup right away.  When copy is true, the data is
+     *  copied into a buffer leased from the kernel's pool, else the
+     *  endpoint takes ownership of the buffer and releases it to that pool
+     *  once written.  Either way, the position of data is left unchanged.
      */
     protected void send( ByteBuffer data, boolean copy, boolean wakeup )
     {
@@ -132,14 +136,24 @@ public class NioEndpoint implements Endpoint
         if( !copy ) {
             buffer = data;
         } else {
-            // Copy the buffer
-            buffer = ByteBuffer.allocate(data.remaining());
-            buffer.put(data);
-            buffer.flip();
+            buffer = kernel.getBufferPool().copy(data);
         }
 
         // Queue it up
-        outbound.add(buffer);
+        outbound.add(new Pending(buffer, null));
+
+        if( wakeup )
+            kernel.wakeupSelector();
+    }
+
+    /**
+     *  Queues a buffer shared with other endpoints, as when the kernel
+     *  broadcasts.  The endpoint takes its own reference and reads through
+     *  its own view, releasing the reference once written.
+     */
+    protected void send( SharedBuffer shared, boolean wakeup )
+    {
+        outbound.add(new Pending(shared.view(), shared.retain()));
 
         if( wakeup )
             kernel.wakeupSelector();
@@ -151,16 +165,42 @@ public class NioEndpoint implements Endpoint
      */
     protected ByteBuffer peekPending()
     {
-        return outbound.peek();
+        Pending pending = outbound.peek();
+        return pending == null ? null : pending.data;
     }
 
     /**
      *  Called by the SelectorKernel when the top buffer
-     *  has been exhausted.
+     *  has been exhausted.  The buffer goes back to the kernel's
+     *  pool.
      */
-    protected ByteBuffer removePending()
+    protected void removePending()
     {
-        return outbound.poll();
+        release(outbound.poll());
+    }
+
+    /**
+     *  Called by the SelectorKernel once the endpoint is closed to
+     *  give back any buffers that will never be written.
+     */
+    protected void discardPending()
+    {
+        Pending pending;
+        while( (pending = outbound.poll()) != null ) {
+            release(pending);
+        }
+    }
+
+    private void release( Pending pending )
+    {
+        if( pending == null ) {
+            return;
+        }
+        if( pending.shared != null ) {
+            pending.shared.release();
+        } else if( pending.data != CLOSE_MARKER ) {
+            kernel.getBufferPool().release(pending.data);
+        }
     }
 
     protected boolean hasPending()
@@ -185,4 +225,20 @@ public class NioEndpoint implements Endpoint
     {
         return "NioEndpoint[" + id + ", " + socket + "]";
     }
+
+    /**
+     *  An outbound buffer along with the shared lease it reads,
+     *  if any.
+     */
+    private static final class Pending
+    {
+        final ByteBuffer data;
+        final SharedBuffer shared;
+
+        Pending( ByteBuffer data, SharedBuffer shared )
+        {
+            this.data = data;
+            this.shared = shared;
+        }
+    }
 }
@@ -123,23 +123,21 @@ public class SelectorKernel extends AbstractKernel
         if( !reliable )
             throw new UnsupportedOperationException( "Unreliable send not supported by this kernel." );
 
-        if( copy ) {
-            // Copy the data just once
-            byte[] temp = new byte[data.remaining()];
-            System.arraycopy(data.array(), data.position(), temp, 0, data.remaining());
-            data = ByteBuffer.wrap(temp);
-        }
-
-        // Hand it to all of the endpoints that match our routing
-        for( NioEndpoint p : endpoints.values() ) {
-            // Does it match the filter?
-            if( filter != null && !filter.apply(p) )
-                continue;
+        // One pooled copy is shared by all of the endpoints that match
+        // our routing, each writing from its own view of it.  It goes back
+        // to the pool once the last of them has written it, so the caller
+        // can always reuse the data buffer.
+        SharedBuffer shared = getBufferPool().share(data);
+        try {
+            for( NioEndpoint p : endpoints.values() ) {
+                // Does it match the filter?
+                if( filter != null && !filter.apply(p) )
+                    continue;
 
-            // Give it the data... but let each endpoint track their
-            // own completion over the shared array of bytes by
-            // duplicating it
-            p.send( data.duplicate(), false, false );
+                p.send( shared, false );
+            }
+        } finally {
+            shared.release();
         }
 
         // Wake up the selector so it can reinitialize its
@@ -167,6 +165,9 @@ public class SelectorKernel extends AbstractKernel
         endpoints.remove( p.getId() );
         log.log( Level.FINE, "Endpoints size:{0}", endpoints.size() );
 
+        // Nothing left in its queue will be written now
+        p.discardPending();
+
         // Enqueue an endpoint event for the listeners
         addEvent( EndpointEvent.createRemove( this, p ) );
 
@@ -0,0 +1,775 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import com.jme3.network.kernel.BufferPool;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *  The reliability layer shared by the ReliableUdpKernel endpoints and the
+ *  ReliableUdpConnector.  It runs one side of a reliable UDP connection:
+ *  the chunks given to send() are split into sequenced segments that are
+ *  resent until acknowledged, and the segments received from the other
+ *  side are acknowledged, de-duplicated and reassembled before being
+ *  delivered.
+ *
+ *  <p>Each chunk is delivered whole, exactly once.  An ordered session
+ *  delivers the chunks in the order they were sent, an unordered one as
+ *  soon as all of their segments arrived, so a lost segment only delays
+ *  its own chunk.</p>
+ *
+ *  <p>Every data packet is acknowledged with the cumulative sequence number
+ *  received and a bit field of the 32 following segments.  Round trip
+ *  times are sampled from the segments acknowledged after a single
+ *  transmission and give the retransmission timeout as in RFC 6298.
+ *  Segments skipped by three acknowledgements are resent right away.  The
+ *  number of segments in flight is capped by an AIMD congestion window
+ *  that is halved once per loss event, fast retransmit or timeout.  It
+ *  never goes below a few segments: game traffic is light, and random
+ *  losses on wireless links would otherwise throttle it to a crawl.</p>
+ *
+ *  <p>Every packet carries the id of the session, picked at random by the
+ *  connecting side, and packets of any other session are ignored.  The id
+ *  is also the first sequence number in both directions, so the first
+ *  segment of a session is recognized by the other side, and a late packet
+ *  of a previous connection from the same address can't open a new one.
+ *  Only the packets that could have been sent by the other side of this
+ *  session keep it alive.  A close is sent a few times, and a kernel
+ *  answers the packets of sessions it doesn't know with one, so that
+ *  neither side is left waiting for a peer that is gone.</p>
+ *
+ *  <p>Packet formats, in network byte order:</p>
+ *  <pre>
+ *  DATA:  type(1) session(4) sequence(4) fragment index(2) fragment count(2) payload
+ *  ACK:   type(1) session(4) next expected sequence(4) received bits(4)
+ *  CLOSE: type(1) session(4)
+ *  </pre>
+ *
+ *  <p>All methods are thread safe.</p>
+ */
+public class ReliableSession
+{
+    private static final Logger log = Logger.getLogger(ReliableSession.class.getName());
+
+    static final byte DATA = 1;
+    static final byte ACK = 2;
+    static final byte CLOSE = 3;
+
+    /**
+     *  The maximum size of the datagrams, small enough to not be
+     *  fragmented on common links.
+     */
+    public static final int MAX_PACKET_SIZE = 1200;
+
+    static final int HEADER_SIZE = 5;
+    static final int DATA_HEADER_SIZE = 13;
+    static final int ACK_SIZE = 13;
+    static final int CLOSE_SIZE = HEADER_SIZE;
+    static final int MAX_PAYLOAD_SIZE = MAX_PACKET_SIZE - DATA_HEADER_SIZE;
+
+    /**
+     *  The maximum number of segments in flight or waiting for the rest
+     *  of their chunk, which also caps the size of a chunk.
+     */
+    static final int WINDOW = 1024;
+    private static final int WINDOW_MASK = WINDOW - 1;
+    private static final int MAX_CONGESTION_WINDOW = 256;
+    private static final int MIN_CONGESTION_WINDOW = 32;
+    private static final int FAST_RETRANSMIT_THRESHOLD = 3;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long INITIAL_RTO = 250 * NANOS_PER_MILLI;
+    private static final long MIN_RTO = 30 * NANOS_PER_MILLI;
+    private static final long MAX_RTO = 2000 * NANOS_PER_MILLI;
+    private static final long CLOCK_GRANULARITY = 10 * NANOS_PER_MILLI;
+    private static final long KEEP_ALIVE = 1000 * NANOS_PER_MILLI;
+    private static final long CLOSE_TIMEOUT = 5000 * NANOS_PER_MILLI;
+    private static final int CLOSE_REPEAT = 3;
+
+    /**
+     *  Receives the packets to send and the chunks received from the
+     *  session.
+     */
+    interface Transport
+    {
+        /**
+         *  Sends a datagram.  The packet buffer must not be modified
+         *  nor kept after this returns.
+         */
+        public void sendPacket( ByteBuffer packet ) throws IOException;
+
+        /**
+         *  Called with each chunk received, in delivery order.
+         */
+        public void deliver( byte[] chunk );
+
+        /**
+         *  Called once when the session gets closed, by either side or by
+         *  a timeout.
+         */
+        public void closed();
+    }
+
+    private final Transport transport;
+    private final int sessionId;
+    private final boolean ordered;
+    private final BufferPool bufferPool;
+    private final long timeout;
+    private final LongSupplier clock;
+
+    // Sending side
+    private final ArrayDeque<Segment> queue = new ArrayDeque<>();
+    private final Segment[] sent = new Segment[WINDOW];
+    private int nextSeq;
+    private int nextSend;
+    private int sendBase;
+    private double congestionWindow = MIN_CONGESTION_WINDOW;
+    private double slowStartThreshold = MAX_CONGESTION_WINDOW;
+    private int recoveryEnd;
+    private double smoothedRtt = -1;
+    private double rttVariance;
+    private long rto = INITIAL_RTO;
+    private long retransmitCount;
+    private long lastSendTime;
+    private long lastTimeout;
+
+    // Receiving side
+    private final Received[] received = new Received[WINDOW];
+    private int recvNext;
+    private long lastReceiveTime;
+
+    private boolean closing;
+    private long closingTime;
+    private boolean closed;
+
+    ReliableSession( Transport transport, int sessionId, boolean ordered, BufferPool bufferPool,
+                     long timeoutMillis )
+    {
+        this(transport, sessionId, ordered, bufferPool, timeoutMillis, System::nanoTime);
+    }
+
+    /**
+     *  Creates a session reading the time in nanoseconds from the
+     *  specified clock.
+     */
+    ReliableSession( Transport transport, int sessionId, boolean ordered, BufferPool bufferPool,
+                     long timeoutMillis, LongSupplier clock )
+    {
+        this.transport = transport;
+        this.sessionId = sessionId;
+        this.ordered = ordered;
+        this.bufferPool = bufferPool;
+        this.timeout = timeoutMillis * NANOS_PER_MILLI;
+        this.clock = clock;
+        this.nextSeq = this.nextSend = this.sendBase = this.recoveryEnd = sessionId;
+        this.recvNext = sessionId;
+        this.lastReceiveTime = this.lastSendTime = clock.getAsLong();
+        this.lastTimeout = lastReceiveTime - MAX_RTO;
+    }
+
+    /**
+     *  Returns the session id of a packet, which must be at least
+     *  HEADER_SIZE bytes long.
+     */
+    static int getSessionId( ByteBuffer packet )
+    {
+        return packet.getInt(packet.position() + 1);
+    }
+
+    /**
+     *  Returns true if the packet is the first segment of its session,
+     *  the only packet that opens a connection.
+     */
+    static boolean isOpening( ByteBuffer packet )
+    {
+        int start = packet.position();
+        return packet.remaining() >= DATA_HEADER_SIZE && packet.get(start) == DATA
+                && packet.getInt(start + 5) == packet.getInt(start + 1);
+    }
+
+    /**
+     *  Returns true if the packet could come from an early segment of
+     *  a session whose first one was lost or delayed.
+     */
+    static boolean isEarlyData( ByteBuffer packet )
+    {
+        int start = packet.position();
+        return packet.remaining() >= DATA_HEADER_SIZE && packet.get(start) == DATA
+                && Integer.compareUnsigned(packet.getInt(start + 5) - packet.getInt(start + 1), WINDOW) < 0;
+    }
+
+    /**
+     *  Returns a close packet for the specified session, as sent back
+     *  to a peer whose session is unknown.
+     */
+    static ByteBuffer createClose( int sessionId )
+    {
+        ByteBuffer packet = ByteBuffer.allocate(CLOSE_SIZE);
+        packet.put(CLOSE).putInt(sessionId).flip();
+        return packet;
+    }
+
+    public int getSessionId()
+    {
+        return sessionId;
+    }
+
+    public boolean isOrdered()
+    {
+        return ordered;
+    }
+
+    public synchronized boolean isOpen()
+    {
+        return !closed && !closing;
+    }
+
+    /**
+     *  Returns the smoothed round trip time in milliseconds, or -1 if
+     *  it hasn't been measured yet.
+     */
+    public synchronized double getRoundTripTime()
+    {
+        return smoothedRtt < 0 ? -1 : smoothedRtt / NANOS_PER_MILLI;
+    }
+
+    /**
+     *  Returns the current retransmission timeout in milliseconds.
+     */
+    public synchronized double getRetransmitTimeout()
+    {
+        return rto / (double)NANOS_PER_MILLI;
+    }
+
+    /**
+     *  Returns the number of segments that could be in flight.
+     */
+    public synchronized int getCongestionWindow()
+    {
+        return (int)congestionWindow;
+    }
+
+    /**
+     *  Returns how many segments have been sent more than once.
+     */
+    public synchronized long getRetransmitCount()
+    {
+        return retransmitCount;
+    }
+
+    /**
+     *  Returns the number of segments that are either waiting to be sent
+     *  or waiting for their acknowledgement.
+     */
+    public synchronized int getPendingCount()
+    {
+        return nextSeq - sendBase;
+    }
+
+    /**
+     *  Queues the remaining bytes of data for reliable delivery, without
+     *  changing its position.
+     */
+    public synchronized void send( ByteBuffer data )
+    {
+        if( closed || closing ) {
+            throw new IllegalStateException( "Session is closed." );
+        }
+        int length = data.remaining();
+        int count = Math.max(1, (length + MAX_PAYLOAD_SIZE - 1) / MAX_PAYLOAD_SIZE);
+        if( count > WINDOW ) {
+            // The receiver could never hold all of its segments at once
+            throw new IllegalArgumentException( "Data is too large:" + length );
+        }
+
+        int position = data.position();
+        int limit = data.limit();
+        try {
+            for( int i = 0; i < count; i++ ) {
+                int size = Math.min(MAX_PAYLOAD_SIZE, limit - data.position());
+                ByteBuffer packet = bufferPool.acquire(DATA_HEADER_SIZE + size);
+                int seq = nextSeq++;
+                packet.put(DATA).putInt(sessionId).putInt(seq).putShort((short)i).putShort((short)count);
+                data.limit(data.position() + size);
+                packet.put(data);
+                data.limit(limit);
+                packet.flip();
+                queue.add(new Segment(seq, packet));
+            }
+        } finally {
+            data.limit(limit);
+            data.position(position);
+        }
+        transmitQueued(clock.getAsLong());
+    }
+
+    /**
+     *  Processes a datagram received from the other side.  Packets of
+     *  other sessions, malformed ones and those that the other side could
+     *  not have sent in this session are dropped without counting as a
+     *  sign of life.
+     */
+    public synchronized void receive( ByteBuffer packet )
+    {
+        if( closed || packet.remaining() < HEADER_SIZE ) {
+            return;
+        }
+        long time = clock.getAsLong();
+        byte type = packet.get();
+        if( packet.getInt() != sessionId ) {
+            return;
+        }
+        boolean valid = false;
+        if( type == DATA && packet.remaining() >= DATA_HEADER_SIZE - HEADER_SIZE ) {
+            int seq = packet.getInt();
+            int index = packet.getShort() & 0xffff;
+            int count = packet.getShort() & 0xffff;
+            valid = receiveData(seq, index, count, packet);
+        } else if( type == ACK && packet.remaining() >= ACK_SIZE - HEADER_SIZE ) {
+            valid = receiveAck(packet.getInt(), packet.getInt(), time);
+        } else if( type == CLOSE ) {
+            log.log(Level.FINE, "Session closed by the remote end:{0}", transport);
+            close(false);
+        }
+        if( valid ) {
+            lastReceiveTime = time;
+        }
+    }
+
+    /**
+     *  Resends the segments whose acknowledgement timed out, keeps the
+     *  connection alive and checks for a dead peer.  Must be called
+     *  regularly, every few milliseconds.
+     */
+    public synchronized void update()
+    {
+        if( closed ) {
+            return;
+        }
+        long time = clock.getAsLong();
+        if( time - lastReceiveTime > timeout ) {
+            log.log(Level.FINE, "Session timed out:{0}", transport);
+            close(false);
+            return;
+        }
+
+        // A timeout shrinks the congestion window and backs the timer
+        // off, at most once per timeout period.  The segments that expired
+        // go out as far as the window allows.
+        long expiry = rto;
+        int budget = (int)congestionWindow;
+        boolean checked = false;
+        for( int seq = sendBase; seq != nextSend && budget > 0; seq++ ) {
+            Segment s = sent[seq & WINDOW_MASK];
+            if( s == null || time - s.sentTime < expiry ) {
+                continue;
+            }
+            if( !checked ) {
+                checked = true;
+                if( time - lastTimeout >= expiry ) {
+                    lastTimeout = time;
+                    rto = Math.min(rto * 2, MAX_RTO);
+                    reduceWindow();
+                    budget = (int)congestionWindow;
+                }
+            }
+            retransmit(s, time);
+            budget--;
+        }
+        transmitQueued(time);
+
+        if( closing ) {
+            if( sendBase == nextSeq || time - closingTime > CLOSE_TIMEOUT ) {
+                close(true);
+            }
+            return;
+        }
+
+        if( time - lastSendTime > KEEP_ALIVE ) {
+            sendAck();
+        }
+    }
+
+    /**
+     *  Closes the session, notifying the other side unless the close was
+     *  initiated by it.  The notification isn't acknowledged, so it is sent
+     *  a few times in case some are lost.
+     */
+    public synchronized void close( boolean notify )
+    {
+        if( closed ) {
+            return;
+        }
+        closed = true;
+        if( notify ) {
+            ByteBuffer packet = bufferPool.acquire(CLOSE_SIZE);
+            packet.put(CLOSE).putInt(sessionId).flip();
+            for( int i = 0; i < CLOSE_REPEAT; i++ ) {
+                sendPacket(packet);
+                packet.rewind();
+            }
+            bufferPool.release(packet);
+        }
+        for( int i = 0; i < WINDOW; i++ ) {
+            if( sent[i] != null ) {
+                bufferPool.release(sent[i].packet);
+                sent[i] = null;
+            }
+            received[i] = null;
+        }
+        for( Segment s : queue ) {
+            bufferPool.release(s.packet);
+        }
+        queue.clear();
+        transport.closed();
+    }
+
+    /**
+     *  Closes the session once all of the queued data has been
+     *  acknowledged, or after a few seconds.
+     */
+    public synchronized void closeWhenFlushed()
+    {
+        if( closed || closing ) {
+            return;
+        }
+        closing = true;
+        closingTime = clock.getAsLong();
+        if( sendBase == nextSeq ) {
+            close(true);
+        }
+    }
+
+    private void transmitQueued( long time )
+    {
+        int window = Math.min(WINDOW, (int)congestionWindow);
+        while( !queue.isEmpty() && nextSend - sendBase < window ) {
+            Segment s = queue.poll();
+            sent[s.seq & WINDOW_MASK] = s;
+            nextSend++;
+            s.sentTime = time;
+            s.sendCount = 1;
+            sendPacket(s.packet);
+        }
+    }
+
+    private void retransmit( Segment s, long time )
+    {
+        s.sentTime = time;
+        s.sendCount++;
+        retransmitCount++;
+        sendPacket(s.packet);
+    }
+
+    /**
+     *  Returns false for acknowledgements that are stale or
+     *  acknowledge segments that were never sent.
+     */
+    private boolean receiveAck( int next, int bits, long time )
+    {
+        if( next - sendBase < 0 || next - nextSend > 0 ) {
+            return false;
+        }
+
+        int highestAcked = sendBase - 1;
+        int acked = 0;
+        for( int seq = sendBase; seq != next; seq++ ) {
+            if( acknowledge(seq, time) ) {
+                acked++;
+                highestAcked = seq;
+            }
+        }
+        for( int i = 0; i < 32; i++ ) {
+            if( (bits & (1 << i)) == 0 ) {
+                continue;
+            }
+            int seq = next + 1 + i;
+            if( seq - nextSend >= 0 ) {
+                break;
+            }
+            if( acknowledge(seq, time) ) {
+                acked++;
+                highestAcked = seq;
+            }
+        }
+        if( acked == 0 ) {
+            return true;
+        }
+
+        // Fresh acknowledgements clear the timer backoff
+        updateRto();
+
+        for( int i = 0; i < acked; i++ ) {
+            if( congestionWindow < slowStartThreshold ) {
+                congestionWindow += 1;
+            } else {
+                congestionWindow += 1 / congestionWindow;
+            }
+        }
+        congestionWindow = Math.min(congestionWindow, MAX_CONGESTION_WINDOW);
+
+        // Segments skipped over by later acknowledgements are likely lost
+        for( int seq = sendBase; seq - highestAcked < 0; seq++ ) {
+            Segment s = sent[seq & WINDOW_MASK];
+            if( s == null ) {
+                continue;
+            }
+            if( ++s.skipped == FAST_RETRANSMIT_THRESHOLD ) {
+                if( seq - recoveryEnd >= 0 ) {
+                    reduceWindow();
+                }
+                retransmit(s, time);
+            }
+        }
+
+        while( sendBase != nextSend && sent[sendBase & WINDOW_MASK] == null ) {
+            sendBase++;
+        }
+        transmitQueued(time);
+        return true;
+    }
+
+    private void reduceWindow()
+    {
+        slowStartThreshold = Math.max(congestionWindow / 2, MIN_CONGESTION_WINDOW);
+        congestionWindow = slowStartThreshold;
+        recoveryEnd = nextSend;
+    }
+
+    private boolean acknowledge( int seq, long time )
+    {
+        Segment s = sent[seq & WINDOW_MASK];
+        if( s == null ) {
+            return false;
+        }
+        sent[seq & WINDOW_MASK] = null;
+        if( s.sendCount == 1 ) {
+            // Karn's algorithm: only the segments sent once tell which
+            // transmission is being acknowledged
+            sampleRtt(time - s.sentTime);
+        }
+        bufferPool.release(s.packet);
+        return true;
+    }
+
+    private void sampleRtt( long rtt )
+    {
+        if( smoothedRtt < 0 ) {
+            smoothedRtt = rtt;
+            rttVariance = rtt / 2.0;
+        } else {
+            rttVariance = 0.75 * rttVariance + 0.25 * Math.abs(smoothedRtt - rtt);
+            smoothedRtt = 0.875 * smoothedRtt + 0.125 * rtt;
+        }
+        updateRto();
+    }
+
+    private void updateRto()
+    {
+        if( smoothedRtt < 0 ) {
+            rto = INITIAL_RTO;
+            return;
+        }
+        long value = (long)(smoothedRtt + Math.max(CLOCK_GRANULARITY, 4 * rttVariance));
+        rto = Math.max(MIN_RTO, Math.min(MAX_RTO, value));
+    }
+
+    /**
+     *  Returns false for segments that are malformed or too far from
+     *  the delivery point to have been sent in this session.
+     */
+    private boolean receiveData( int seq, int index, int count, ByteBuffer payload )
+    {
+        int offset = seq - recvNext;
+        if( offset >= WINDOW || offset <= -WINDOW || count == 0 || count > WINDOW || index >= count ) {
+            // Too far ahead to be tracked, the sender will try again,
+            // or too far behind to be from this session
+            return false;
+        }
+        if( offset >= 0 && received[seq & WINDOW_MASK] == null ) {
+            byte[] data = new byte[payload.remaining()];
+            payload.get(data);
+            received[seq & WINDOW_MASK] = new Received(index, count, data);
+            if( ordered ) {
+                deliverOrdered();
+            } else {
+                deliverUnordered(seq - index, count);
+            }
+        }
+        // Duplicates are acknowledged again in case the previous
+        // acknowledgement was lost
+        sendAck();
+        return true;
+    }
+
+    private void deliverOrdered()
+    {
+        while( true ) {
+            Received first = received[recvNext & WINDOW_MASK];
+            if( first == null || !isComplete(recvNext, first.count) ) {
+                return;
+            }
+            byte[] chunk = assemble(recvNext, first.count);
+            for( int i = 0; i < first.count; i++ ) {
+                received[(recvNext + i) & WINDOW_MASK] = null;
+            }
+            recvNext += first.count;
+            transport.deliver(chunk);
+        }
+    }
+
+    private void deliverUnordered( int start, int count )
+    {
+        if( start - recvNext < 0 || !isComplete(start, count) ) {
+            return;
+        }
+        byte[] chunk = assemble(start, count);
+        for( int i = 0; i < count; i++ ) {
+            Received r = received[(start + i) & WINDOW_MASK];
+            r.data = null;
+            r.delivered = true;
+        }
+        while( received[recvNext & WINDOW_MASK] != null
+                && received[recvNext & WINDOW_MASK].delivered ) {
+            received[recvNext & WINDOW_MASK] = null;
+            recvNext++;
+        }
+        transport.deliver(chunk);
+    }
+
+    private boolean isComplete( int start, int count )
+    {
+        if( start + count - recvNext > WINDOW ) {
+            return false;
+        }
+        for( int i = 0; i < count; i++ ) {
+            Received r = received[(start + i) & WINDOW_MASK];
+            if( r == null || r.delivered || r.index != i ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] assemble( int start, int count )
+    {
+        if( count == 1 ) {
+            return received[start & WINDOW_MASK].data;
+        }
+        int size = 0;
+        for( int i = 0; i < count; i++ ) {
+            size += received[(start + i) & WINDOW_MASK].data.length;
+        }
+        byte[] chunk = new byte[size];
+        int pos = 0;
+        for( int i = 0; i < count; i++ ) {
+            byte[] data = received[(start + i) & WINDOW_MASK].data;
+            System.arraycopy(data, 0, chunk, pos, data.length);
+            pos += data.length;
+        }
+        return chunk;
+    }
+
+    private void sendAck()
+    {
+        // Segments are kept until their chunk is delivered, so the first
+        // missing one can be past the delivery point
+        int next = recvNext;
+        while( next - recvNext < WINDOW && received[next & WINDOW_MASK] != null ) {
+            next++;
+        }
+        int bits = 0;
+        for( int i = 0; i < 32; i++ ) {
+            int seq = next + 1 + i;
+            if( seq - recvNext < WINDOW && received[seq & WINDOW_MASK] != null ) {
+                bits |= 1 << i;
+            }
+        }
+        ByteBuffer packet = bufferPool.acquire(ACK_SIZE);
+        packet.put(ACK).putInt(sessionId).putInt(next).putInt(bits).flip();
+        sendPacket(packet);
+        bufferPool.release(packet);
+    }
+
+    private void sendPacket( ByteBuffer packet )
+    {
+        lastSendTime = clock.getAsLong();
+        try {
+            transport.sendPacket(packet);
+        } catch( IOException e ) {
+            // Handled like a lost packet, the timeouts will sort it out
+            log.log(Level.FINE, "Error sending packet for:" + transport, e);
+        }
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "ReliableSession[id=" + sessionId + ", ordered=" + ordered + ", rtt=" + getRoundTripTime()
+                + ", cwnd=" + getCongestionWindow() + ", pending=" + getPendingCount() + "]";
+    }
+
+    private static final class Segment
+    {
+        final int seq;
+        final ByteBuffer packet;
+        long sentTime;
+        int sendCount;
+        int skipped;
+
+        Segment( int seq, ByteBuffer packet )
+        {
+            this.seq = seq;
+            this.packet = packet;
+        }
+    }
+
+    private static final class Received
+    {
+        final int index;
+        final int count;
+        byte[] data;
+        boolean delivered;
+
+        Received( int index, int count, byte[] data )
+        {
+            this.index = index;
+            this.count = count;
+            this.data = data;
+        }
+    }
+}
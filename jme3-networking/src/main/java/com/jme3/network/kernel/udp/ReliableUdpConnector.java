@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import com.jme3.network.kernel.BufferPool;
+import com.jme3.network.kernel.Connector;
+import com.jme3.network.kernel.ConnectorException;
+import com.jme3.network.kernel.NamedThreadFactory;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  A Connector to a ReliableUdpKernel.  The data written is delivered
+ *  reliably, in order or not depending on the 'ordered' flag, which must
+ *  match the one of the kernel for the delivery guarantees to hold on both
+ *  sides.
+ *
+ *  <p>The acknowledgements are processed by the thread calling read(),
+ *  the retransmissions and keep alives by a timer thread owned by the
+ *  connector.</p>
+ */
+public class ReliableUdpConnector implements Connector
+{
+    private static final long UPDATE_INTERVAL = 10;
+
+    private DatagramSocket sock;
+    private SocketAddress remoteAddress;
+    private byte[] buffer = new byte[65535];
+    private ReliableSession session;
+    private ConcurrentLinkedQueue<byte[]> delivered = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService timer;
+    private volatile UdpLinkSimulator linkSimulator;
+    private volatile boolean closed;
+
+    public ReliableUdpConnector( InetAddress remote, int remotePort, boolean ordered ) throws IOException
+    {
+        this( remote, remotePort, ordered, ReliableUdpKernel.DEFAULT_TIMEOUT );
+    }
+
+    /**
+     *  Creates a new reliable UDP connection to the specified address
+     *  and port, that is closed when nothing was received from the
+     *  kernel for 'timeout' milliseconds.
+     */
+    public ReliableUdpConnector( InetAddress remote, int remotePort, boolean ordered,
+                                 long timeout ) throws IOException
+    {
+        this.sock = new DatagramSocket( new InetSocketAddress(0) );
+        this.remoteAddress = new InetSocketAddress( remote, remotePort );
+
+        // Setup to receive only from the remote address
+        sock.connect( remoteAddress );
+
+        // A new id for each connection, so that the kernel can tell it
+        // from an earlier one from the same address
+        int sessionId = ThreadLocalRandom.current().nextInt();
+        this.session = new ReliableSession( new SessionTransport(), sessionId, ordered,
+                                            BufferPool.getDefault(), timeout );
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                        new NamedThreadFactory("ReliableUdpConnector@" + remoteAddress, true));
+        timer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run()
+                {
+                    session.update();
+                }
+            }, UPDATE_INTERVAL, UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     *  Sends the outbound packets through the specified link simulator,
+     *  or directly if null.
+     */
+    public void setLinkSimulator( UdpLinkSimulator linkSimulator )
+    {
+        this.linkSimulator = linkSimulator;
+    }
+
+    public UdpLinkSimulator getLinkSimulator()
+    {
+        return linkSimulator;
+    }
+
+    /**
+     *  Returns the session tracking the round trip time and the
+     *  retransmissions of this connection.
+     */
+    public ReliableSession getSession()
+    {
+        return session;
+    }
+
+    protected void checkClosed()
+    {
+        if( closed )
+            throw new ConnectorException( "Connection is closed:" + remoteAddress );
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return !closed;
+    }
+
+    /**
+     *  Closes the connection right away, notifying the kernel.
+     */
+    @Override
+    public void close()
+    {
+        checkClosed();
+        session.close(true);
+    }
+
+    @Override
+    public boolean available()
+    {
+        checkClosed();
+        return !delivered.isEmpty();
+    }
+
+    /**
+     *  Returns the next chunk of data delivered by the session, reading
+     *  and processing the incoming packets until there is one.  Returns
+     *  null once the connection is closed.
+     */
+    @Override
+    public ByteBuffer read()
+    {
+        DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+        while( true ) {
+            byte[] data = delivered.poll();
+            if( data != null ) {
+                return ByteBuffer.wrap(data);
+            }
+            if( closed ) {
+                return null;
+            }
+            try {
+                packet.setLength( buffer.length );
+                sock.receive(packet);
+            } catch( IOException e ) {
+                if( closed ) {
+                    // Nothing to see here... just move along
+                    return null;
+                }
+                if( e instanceof PortUnreachableException ) {
+                    // The kernel isn't up (yet), the session resends
+                    // or times out
+                    continue;
+                }
+                throw new ConnectorException( "Error reading from connection to:" + remoteAddress, e );
+            }
+            session.receive( ByteBuffer.wrap(buffer, 0, packet.getLength()) );
+        }
+    }
+
+    @Override
+    public void write( ByteBuffer data )
+    {
+        checkClosed();
+        try {
+            session.send(data);
+        } catch( IllegalStateException e ) {
+            throw new ConnectorException( "Connection is closed:" + remoteAddress, e );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReliableUdpConnector[" + remoteAddress + ", ordered=" + session.isOrdered() + "]";
+    }
+
+    private class SessionTransport implements ReliableSession.Transport
+    {
+        @Override
+        public void sendPacket( ByteBuffer packet ) throws IOException
+        {
+            DatagramPacket p = new DatagramPacket( packet.array(), packet.arrayOffset() + packet.position(),
+                                                   packet.remaining(), remoteAddress );
+            UdpLinkSimulator simulator = linkSimulator;
+            if( simulator != null ) {
+                simulator.send( sock, p );
+            } else {
+                sock.send(p);
+            }
+        }
+
+        @Override
+        public void deliver( byte[] chunk )
+        {
+            delivered.add(chunk);
+        }
+
+        @Override
+        public void closed()
+        {
+            // Called once by the session, from close() or when the
+            // kernel closed the connection or timed out
+            closed = true;
+            timer.shutdown();
+            sock.close();
+        }
+
+        @Override
+        public String toString()
+        {
+            return ReliableUdpConnector.this.toString();
+        }
+    }
+}
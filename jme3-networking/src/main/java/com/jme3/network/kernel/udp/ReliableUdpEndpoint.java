@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import com.jme3.network.kernel.Endpoint;
+import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.KernelException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ *  Endpoint implementation of the ReliableUdpKernel, delivering the
+ *  data sent to it through its ReliableSession.
+ */
+public class ReliableUdpEndpoint implements Endpoint
+{
+    private long id;
+    private SocketAddress address;
+    private ReliableUdpKernel kernel;
+    private ReliableSession session;
+
+    public ReliableUdpEndpoint( ReliableUdpKernel kernel, long id, SocketAddress address,
+                                int sessionId, boolean ordered, long timeout )
+    {
+        this.id = id;
+        this.address = address;
+        this.kernel = kernel;
+        this.session = new ReliableSession( new SessionTransport(), sessionId, ordered,
+                                            kernel.getBufferPool(), timeout );
+    }
+
+    @Override
+    public Kernel getKernel()
+    {
+        return kernel;
+    }
+
+    protected SocketAddress getRemoteAddress()
+    {
+        return address;
+    }
+
+    /**
+     *  Returns the session tracking the round trip time and the
+     *  retransmissions of this endpoint.
+     */
+    public ReliableSession getSession()
+    {
+        return session;
+    }
+
+    @Override
+    public void close()
+    {
+        close( false );
+    }
+
+    /**
+     *  Closes the endpoint, right away or once the data already sent
+     *  has been acknowledged if 'flush' is true.
+     */
+    @Override
+    public void close( boolean flush )
+    {
+        if( flush ) {
+            session.closeWhenFlushed();
+        } else {
+            session.close(true);
+        }
+    }
+
+    @Override
+    public long getId()
+    {
+        return id;
+    }
+
+    @Override
+    public String getAddress()
+    {
+        return String.valueOf(address);
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return session.isOpen();
+    }
+
+    @Override
+    public void send( ByteBuffer data )
+    {
+        if( !isConnected() ) {
+            throw new KernelException( "Endpoint is not connected:" + this );
+        }
+        try {
+            session.send(data);
+        } catch( IllegalStateException e ) {
+            // Closed in the mean time
+            throw new KernelException( "Endpoint is not connected:" + this, e );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReliableUdpEndpoint[" + id + ", " + address + "]";
+    }
+
+    private class SessionTransport implements ReliableSession.Transport
+    {
+        @Override
+        public void sendPacket( ByteBuffer packet ) throws IOException
+        {
+            kernel.sendPacket(packet, address);
+        }
+
+        @Override
+        public void deliver( byte[] chunk )
+        {
+            kernel.deliver(ReliableUdpEndpoint.this, chunk);
+        }
+
+        @Override
+        public void closed()
+        {
+            kernel.closeEndpoint(ReliableUdpEndpoint.this);
+        }
+
+        @Override
+        public String toString()
+        {
+            return ReliableUdpEndpoint.this.toString();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import com.jme3.network.Filter;
+import com.jme3.network.kernel.*;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *  A Kernel implementation providing reliable delivery over UDP.  Each
+ *  endpoint runs a ReliableSession that resends the lost packets and
+ *  paces the sending to the measured round trip time, so the data goes
+ *  through without the head of line blocking of a TCP stream across
+ *  messages when the kernel is unordered.
+ *
+ *  <p>It can replace the TCP kernel of a DefaultServer, or host one of its
+ *  extra channels through a ReliableUdpKernelFactory, and talks to
+ *  ReliableUdpConnectors.  Only reliable sends are supported.</p>
+ */
+public class ReliableUdpKernel extends AbstractKernel
+{
+    private static final Logger log = Logger.getLogger(ReliableUdpKernel.class.getName());
+
+    /**
+     *  The default time after which an endpoint that received nothing is
+     *  closed, in milliseconds.
+     */
+    public static final long DEFAULT_TIMEOUT = 10000;
+
+    private static final long UPDATE_INTERVAL = 10;
+
+    private InetSocketAddress address;
+    private boolean ordered;
+    private volatile long timeout = DEFAULT_TIMEOUT;
+    private volatile UdpLinkSimulator linkSimulator;
+    private HostThread thread;
+    private ScheduledExecutorService timer;
+
+    private Map<SocketAddress,ReliableUdpEndpoint> socketEndpoints = new ConcurrentHashMap<>();
+
+    public ReliableUdpKernel( InetAddress host, int port, boolean ordered )
+    {
+        this( new InetSocketAddress(host, port), ordered );
+    }
+
+    public ReliableUdpKernel( int port, boolean ordered )
+    {
+        this( new InetSocketAddress(port), ordered );
+    }
+
+    /**
+     *  Creates a kernel that will listen on the specified address.  The
+     *  messages of each endpoint are delivered in the order they were sent
+     *  if 'ordered' is true, as soon as they are complete otherwise.
+     */
+    public ReliableUdpKernel( InetSocketAddress address, boolean ordered )
+    {
+        this.address = address;
+        this.ordered = ordered;
+    }
+
+    public boolean isOrdered()
+    {
+        return ordered;
+    }
+
+    /**
+     *  Sets the pool from which the outbound packets are leased.  It
+     *  must hold heap buffers, as DatagramPackets need a backing array.
+     */
+    @Override
+    public void setBufferPool( BufferPool bufferPool )
+    {
+        if( bufferPool != null && bufferPool.isDirect() ) {
+            throw new IllegalArgumentException( "UDP kernel requires a heap buffer pool." );
+        }
+        super.setBufferPool(bufferPool);
+    }
+
+    /**
+     *  Sets the time after which an endpoint that received nothing,
+     *  not even a keep alive, is closed.  Applies to the endpoints created
+     *  afterwards.
+     */
+    public void setTimeout( long millis )
+    {
+        this.timeout = millis;
+    }
+
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    /**
+     *  Sends the outbound packets through the specified link simulator,
+     *  or directly if null.
+     */
+    public void setLinkSimulator( UdpLinkSimulator linkSimulator )
+    {
+        this.linkSimulator = linkSimulator;
+    }
+
+    public UdpLinkSimulator getLinkSimulator()
+    {
+        return linkSimulator;
+    }
+
+    /**
+     *  Returns the endpoints currently connected, giving access to their
+     *  session statistics.
+     */
+    public Collection<ReliableUdpEndpoint> getEndpoints()
+    {
+        return Collections.unmodifiableCollection(socketEndpoints.values());
+    }
+
+    @Override
+    public void initialize()
+    {
+        if( thread != null )
+            throw new IllegalStateException( "Kernel already initialized." );
+
+        thread = new HostThread();
+
+        try {
+            thread.connect();
+            thread.start();
+        } catch( IOException e ) {
+            throw new KernelException( "Error hosting:" + address, e );
+        }
+
+        timer = Executors.newSingleThreadScheduledExecutor(
+                    new NamedThreadFactory(toString() + "-timer", true));
+        timer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run()
+                {
+                    update();
+                }
+            }, UPDATE_INTERVAL, UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void terminate() throws InterruptedException
+    {
+        if( thread == null )
+            throw new IllegalStateException( "Kernel not initialized." );
+
+        try {
+            timer.shutdown();
+            for( ReliableUdpEndpoint p : socketEndpoints.values() ) {
+                p.close();
+            }
+            thread.close();
+            thread = null;
+
+            // Need to let any caller waiting for a read() wakeup
+            wakeupReader();
+        } catch( IOException e ) {
+            throw new KernelException( "Error closing host connection:" + address, e );
+        }
+    }
+
+    /**
+     *  Queues the data on all endpoints managed by the kernel.  Each
+     *  session copies the data into its own packets, so 'copy' is
+     *  ignored.
+     */
+    @Override
+    public void broadcast( Filter<? super Endpoint> filter, ByteBuffer data, boolean reliable,
+                           boolean copy )
+    {
+        if( !reliable )
+            throw new UnsupportedOperationException( "Unreliable send not supported by this kernel." );
+
+        for( ReliableUdpEndpoint p : socketEndpoints.values() ) {
+            // Does it match the filter?
+            if( filter != null && !filter.apply(p) )
+                continue;
+
+            p.send( data );
+        }
+    }
+
+    protected void update()
+    {
+        for( ReliableUdpEndpoint p : socketEndpoints.values() ) {
+            try {
+                p.getSession().update();
+            } catch( RuntimeException e ) {
+                reportError(e);
+            }
+        }
+    }
+
+    protected void sendPacket( ByteBuffer packet, SocketAddress target ) throws IOException
+    {
+        DatagramPacket p = new DatagramPacket( packet.array(), packet.arrayOffset() + packet.position(),
+                                               packet.remaining(), target );
+        UdpLinkSimulator simulator = linkSimulator;
+        if( simulator != null ) {
+            simulator.send( thread.getSocket(), p );
+        } else {
+            thread.getSocket().send(p);
+        }
+    }
+
+    /**
+     *  Called by the endpoints when their session is closed.
+     */
+    protected void closeEndpoint( ReliableUdpEndpoint p )
+    {
+        // Just book-keeping to do here.
+        if( socketEndpoints.remove( p.getRemoteAddress() ) == null )
+            return;
+
+        log.log( Level.FINE, "Closing endpoint:{0}.", p );
+        log.log( Level.FINE, "Socket endpoints size:{0}", socketEndpoints.size() );
+
+        addEvent( EndpointEvent.createRemove( this, p ) );
+
+        wakeupReader();
+    }
+
+    protected void newData( DatagramPacket packet )
+    {
+        ByteBuffer data = ByteBuffer.wrap( packet.getData(), packet.getOffset(), packet.getLength() );
+        if( data.remaining() < ReliableSession.HEADER_SIZE ) {
+            return;
+        }
+        SocketAddress source = packet.getSocketAddress();
+        int sessionId = ReliableSession.getSessionId(data);
+        ReliableUdpEndpoint p = socketEndpoints.get(source);
+        if( p != null && p.getSession().getSessionId() != sessionId ) {
+            if( !ReliableSession.isOpening(data) ) {
+                // Late packets of an earlier session from that address
+                return;
+            }
+            // The client reconnected from the same address, the old
+            // session is gone with it
+            p.getSession().close(false);
+            p = null;
+        }
+        if( p == null ) {
+            // Only the first segment of a session opens a connection
+            if( !ReliableSession.isOpening(data) ) {
+                // Anything else is left over from a session closed on
+                // this side, whose close may have been lost.  Tell the
+                // client again, unless it may be the early data of a
+                // session whose first segment is still on its way.
+                if( data.get(data.position()) != ReliableSession.CLOSE
+                        && !ReliableSession.isEarlyData(data) ) {
+                    try {
+                        sendPacket( ReliableSession.createClose(sessionId), source );
+                    } catch( IOException e ) {
+                        log.log( Level.FINE, "Error closing stale session from:" + source, e );
+                    }
+                }
+                return;
+            }
+            p = new ReliableUdpEndpoint( this, nextEndpointId(), source, sessionId, ordered, timeout );
+            socketEndpoints.put( source, p );
+
+            // Add an event for it.
+            addEvent( EndpointEvent.createAdd( this, p ) );
+        }
+        p.getSession().receive(data);
+    }
+
+    /**
+     *  Called by the endpoint sessions with each complete chunk of data.
+     */
+    protected void deliver( ReliableUdpEndpoint p, byte[] data )
+    {
+        addEnvelope( new Envelope( p, data, true ) );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReliableUdpKernel[" + address + ", ordered=" + ordered + "]";
+    }
+
+    protected class HostThread extends Thread
+    {
+        private DatagramSocket socket;
+        private AtomicBoolean go = new AtomicBoolean(true);
+
+        private byte[] buffer = new byte[65535]; // slightly bigger than needed.
+
+        public HostThread()
+        {
+            setName( "Reliable UDP Host@" + address );
+            setDaemon(true);
+        }
+
+        protected DatagramSocket getSocket()
+        {
+            return socket;
+        }
+
+        public void connect() throws IOException
+        {
+            socket = new DatagramSocket( address );
+            log.log( Level.FINE, "Hosting reliable UDP connection:{0}.", address );
+        }
+
+        public void close() throws IOException, InterruptedException
+        {
+            // Set the thread to stop
+            go.set(false);
+
+            // Make sure the channel is closed
+            socket.close();
+
+            // And wait for it
+            join();
+        }
+
+        @Override
+        public void run()
+        {
+            log.log( Level.FINE, "Kernel started for connection:{0}.", address );
+
+            DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+            while( go.get() ) {
+                try {
+                    // The sessions copy what they keep, so the
+                    // packet and its buffer can be reused
+                    packet.setLength( buffer.length );
+                    socket.receive(packet);
+
+                    newData( packet );
+                } catch( IOException e ) {
+                    if( !go.get() )
+                        return;
+                    reportError( e );
+                }
+            }
+        }
+    }
+}
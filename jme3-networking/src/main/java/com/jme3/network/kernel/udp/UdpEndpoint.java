@@ -34,6 +34,7 @@ package com.jme3.network.kernel.udp;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
 import com.jme3.network.kernel.KernelException;
+import com.jme3.network.kernel.SharedBuffer;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
@@ -125,14 +126,35 @@ public class UdpEndpoint implements Endpoint
             throw new KernelException( "Endpoint is not connected:" + this );
         }
         
-        
+        // The write happens later on the kernel's writer threads, so
+        // take a pooled copy that the writer releases once sent
+        SharedBuffer shared = kernel.getBufferPool().share(data);
+        try {
+            send( shared );
+        } finally {
+            shared.release();
+        }
+    }
+
+    /**
+     *  Queues a datagram reading the shared buffer, which may also be
+     *  queued to other endpoints.  The endpoint takes its own reference
+     *  that the kernel's writer releases once the datagram is sent.
+     */
+    protected void send( SharedBuffer shared )
+    {
+        if( !isConnected() ) {
+            throw new KernelException( "Endpoint is not connected:" + this );
+        }
+
         try {
-            DatagramPacket p = new DatagramPacket( data.array(), data.position(), 
-                                                   data.remaining(), address );
+            ByteBuffer buffer = shared.getBuffer();
+            DatagramPacket p = new DatagramPacket( buffer.array(), buffer.arrayOffset() + buffer.position(), 
+                                                   buffer.remaining(), address );
                                                    
             // Just queue it up for the kernel threads to write
             // out
-            kernel.enqueueWrite( this, p );
+            kernel.enqueueWrite( this, p, shared.retain() );
                                                                
             //socket.send(p);
         } catch (Exception e) {
@@ -79,6 +79,19 @@ public class UdpKernel extends AbstractKernel
         this.address = address;
     }
 
+    /**
+     *  Sets the pool from which the outbound datagrams are leased.  It
+     *  must hold heap buffers, as DatagramPackets need a backing array.
+     */
+    @Override
+    public void setBufferPool( BufferPool bufferPool )
+    {
+        if( bufferPool != null && bufferPool.isDirect() ) {
+            throw new IllegalArgumentException( "UDP kernel requires a heap buffer pool." );
+        }
+        super.setBufferPool(bufferPool);
+    }
+
     protected HostThread createHostThread()
     {
         return new HostThread();
@@ -131,21 +144,21 @@ public class UdpKernel extends AbstractKernel
         if( reliable )
             throw new UnsupportedOperationException( "Reliable send not supported by this kernel." );
 
-        if( copy ) {
-            // Copy the data just once
-            byte[] temp = new byte[data.remaining()];
-            System.arraycopy(data.array(), data.position(), temp, 0, data.remaining());
-            data = ByteBuffer.wrap(temp);
-        }
+        // Hand it to all of the endpoints that match our routing.  They
+        // share one pooled copy of the data, which goes back to the pool
+        // once the last of their datagrams has been written.
+        SharedBuffer shared = getBufferPool().share(data);
+        try {
+            for( UdpEndpoint p : socketEndpoints.values() ) {
+                // Does it match the filter?
+                if( filter != null && !filter.apply(p) )
+                    continue;
 
-        // Hand it to all of the endpoints that match our routing
-        for( UdpEndpoint p : socketEndpoints.values() ) {
-            // Does it match the filter?
-            if( filter != null && !filter.apply(p) )
-                continue;
-    
-            // Send the data
-            p.send( data );
+                // Send the data
+                p.send( shared );
+            }
+        } finally {
+            shared.release();
         }
     }
 
@@ -201,32 +214,52 @@ public class UdpKernel extends AbstractKernel
         writer.execute( new MessageWriter(endpoint, packet) );
     } 
 
+    /**
+     *  Queues the packet for writing and releases the caller's reference
+     *  to the pooled buffer backing its data once it has been written.
+     */
+    protected void enqueueWrite( Endpoint endpoint, DatagramPacket packet, SharedBuffer pooled )
+    {
+        writer.execute( new MessageWriter(endpoint, packet, pooled) );
+    } 
+
     protected class MessageWriter implements Runnable
     {
         private Endpoint endpoint;
         private DatagramPacket packet;
+        private SharedBuffer pooled;
         
         public MessageWriter( Endpoint endpoint, DatagramPacket packet )
+        {
+            this(endpoint, packet, null);
+        }
+        
+        public MessageWriter( Endpoint endpoint, DatagramPacket packet, SharedBuffer pooled )
         {
             this.endpoint = endpoint;
             this.packet = packet;
+            this.pooled = pooled;
         }
         
         @Override
         public void run()
         {
-            // Not guaranteed to always work but an extra datagram
-            // to a dead connection isn't so big of a deal.
-            if( !endpoint.isConnected() ) {
-                return;
-            }
-            
             try {
+                // Not guaranteed to always work but an extra datagram
+                // to a dead connection isn't so big of a deal.
+                if( !endpoint.isConnected() ) {
+                    return;
+                }
+                
                 thread.getSocket().send(packet);
             } catch( Exception e ) {
                 KernelException exc = new KernelException( "Error sending datagram to:" + address, e );
                 exc.fillInStackTrace();
                 reportError(exc);
+            } finally {
+                if( pooled != null ) {
+                    pooled.release();
+                }
             }
         } 
     }
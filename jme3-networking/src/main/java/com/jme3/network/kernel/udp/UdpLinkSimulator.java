@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import com.jme3.network.kernel.NamedThreadFactory;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *  Degrades the outbound datagrams of a ReliableUdpKernel or
+ *  ReliableUdpConnector to simulate a bad link on loopback: packets are
+ *  dropped at random and the others are delayed by a fixed latency plus a
+ *  random jitter, which also reorders them.
+ *
+ *  <p>Each side only affects the datagrams it sends, so a simulator is
+ *  usually set on both the kernel and the connector.</p>
+ */
+public class UdpLinkSimulator
+{
+    private static final Logger log = Logger.getLogger(UdpLinkSimulator.class.getName());
+
+    private final Random random;
+    private volatile float lossRate;
+    private volatile long latency;
+    private volatile long jitter;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+
+    public UdpLinkSimulator()
+    {
+        this(new Random());
+    }
+
+    /**
+     *  Creates a simulator whose losses and delays are drawn from
+     *  the specified random generator, for repeatable runs.
+     */
+    public UdpLinkSimulator( Random random )
+    {
+        this.random = random;
+    }
+
+    /**
+     *  Sets the fraction of the datagrams to drop, from 0 to 1.
+     */
+    public void setLossRate( float lossRate )
+    {
+        if( lossRate < 0 || lossRate > 1 ) {
+            throw new IllegalArgumentException( "Loss rate must be between 0 and 1:" + lossRate );
+        }
+        this.lossRate = lossRate;
+    }
+
+    public float getLossRate()
+    {
+        return lossRate;
+    }
+
+    /**
+     *  Sets the minimum delay added to each datagram, in milliseconds.
+     */
+    public void setLatency( long latency )
+    {
+        if( latency < 0 ) {
+            throw new IllegalArgumentException( "Latency cannot be negative:" + latency );
+        }
+        this.latency = latency;
+    }
+
+    public long getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     *  Sets the maximum random delay added on top of the latency, in
+     *  milliseconds.
+     */
+    public void setJitter( long jitter )
+    {
+        if( jitter < 0 ) {
+            throw new IllegalArgumentException( "Jitter cannot be negative:" + jitter );
+        }
+        this.jitter = jitter;
+    }
+
+    public long getJitter()
+    {
+        return jitter;
+    }
+
+    /**
+     *  Returns the number of datagrams that went through, including the
+     *  dropped ones.
+     */
+    public long getSentCount()
+    {
+        return sent.get();
+    }
+
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     *  Sends the packet through the simulated link.  Delayed packets are
+     *  copied, so the caller may reuse the data right away.
+     */
+    public void send( DatagramSocket socket, DatagramPacket packet ) throws IOException
+    {
+        sent.incrementAndGet();
+        if( lossRate > 0 && random.nextFloat() < lossRate ) {
+            dropped.incrementAndGet();
+            return;
+        }
+        long delay = latency;
+        if( jitter > 0 ) {
+            delay += (long)(random.nextDouble() * jitter);
+        }
+        if( delay <= 0 ) {
+            socket.send(packet);
+            return;
+        }
+
+        byte[] data = new byte[packet.getLength()];
+        System.arraycopy(packet.getData(), packet.getOffset(), data, 0, data.length);
+        final DatagramPacket copy = new DatagramPacket(data, data.length, packet.getSocketAddress());
+        getScheduler().schedule(new Runnable() {
+                @Override
+                public void run()
+                {
+                    try {
+                        if( !socket.isClosed() ) {
+                            socket.send(copy);
+                        }
+                    } catch( IOException e ) {
+                        log.log(Level.FINE, "Error sending delayed packet", e);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     *  Stops the thread sending the delayed packets, dropping the ones
+     *  still pending.
+     */
+    public synchronized void close()
+    {
+        if( scheduler != null ) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private synchronized ScheduledExecutorService getScheduler()
+    {
+        if( scheduler == null ) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                            new NamedThreadFactory("UdpLinkSimulator", true));
+        }
+        return scheduler;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "UdpLinkSimulator[lossRate=" + lossRate + ", latency=" + latency
+                + ", jitter=" + jitter + "]";
+    }
+}
@@ -37,6 +37,7 @@ import com.jme3.network.serializing.Serializable;
 import com.jme3.network.serializing.Serializer;
 import com.jme3.network.serializing.SerializerRegistration;
 import com.jme3.network.serializing.serializers.FieldSerializer;
+import com.jme3.network.serializing.serializers.MethodHandleFieldSerializer;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.jar.Attributes;
@@ -118,7 +119,6 @@ public class SerializerRegistrationsMessage extends AbstractMessage {
  
     public static SerializerRegistrationsMessage INSTANCE;   
     public static Registration[] compiled;
-    private static final Serializer fieldSerializer = new FieldSerializer();
     
     private Registration[] registrations;    
 
@@ -199,8 +199,12 @@ public class SerializerRegistrationsMessage extends AbstractMessage {
         
             this.id = reg.getId();
             this.className = reg.getType().getName();
-            if( reg.getSerializer().getClass() != FieldSerializer.class ) {
-                this.serializerClassName = reg.getSerializer().getClass().getName();
+            // Both field serializers share the same format, so the other end
+            // can use whichever one it has configured
+            Class serializerType = reg.getSerializer().getClass();
+            if( serializerType != FieldSerializer.class
+                    && serializerType != MethodHandleFieldSerializer.class ) {
+                this.serializerClassName = serializerType.getName();
             } 
         }
  
@@ -210,7 +214,7 @@ public class SerializerRegistrationsMessage extends AbstractMessage {
                 Class type = Class.forName(className);
                 Serializer serializer;
                 if( serializerClassName == null ) {
-                    serializer = fieldSerializer;
+                    serializer = Serializer.getFieldSerializer();
                 } else {
                     Class serializerType = Class.forName(serializerClassName);
                     serializer = (Serializer) serializerType.getDeclaredConstructor().newInstance();
@@ -63,7 +63,7 @@ public abstract class Serializer {
     private static final Map<Class, SerializerRegistration> classRegistrations      = new HashMap<Class, SerializerRegistration>();
     private static final List<SerializerRegistration> registrations                 = new ArrayList<SerializerRegistration>();
 
-    private static final Serializer                         fieldSerializer         = new FieldSerializer();
+    private static volatile Serializer                      fieldSerializer         = new MethodHandleFieldSerializer();
     private static final Serializer                         arraySerializer         = new ArraySerializer();
 
     private static short nextAvailableId = -2; // historically the first ID was always -2
@@ -160,6 +160,29 @@ public abstract class Serializer {
         strictRegistration = b;
     }
 
+    /**
+     *  Sets the serializer used for the {@code @Serializable } classes that
+     *  don't specify their own serializer.  Defaults to a
+     *  {@link MethodHandleFieldSerializer}.  Both it and the reflective
+     *  {@link FieldSerializer} write the same data, so they can be mixed
+     *  between clients and servers.  Only affects the classes registered
+     *  afterwards.
+     */
+    public static void setFieldSerializer( Serializer serializer ) {
+        if( serializer == null ) {
+            throw new IllegalArgumentException("Field serializer cannot be null");
+        }
+        fieldSerializer = serializer;
+    }
+
+    /**
+     *  Returns the serializer used for the {@code @Serializable } classes that
+     *  don't specify their own serializer.
+     */
+    public static Serializer getFieldSerializer() {
+        return fieldSerializer;
+    }
+
     public static SerializerRegistration registerClass(Class cls) {
         return registerClass(cls, true);
     }
@@ -44,7 +44,9 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * The field serializer is the default serializer used for custom class.
+ * The field serializer is the reflective serializer for custom classes. The
+ * {@link MethodHandleFieldSerializer} writes the same data faster and is
+ * used by default.
  *
  * @author Lars Wesselius, Nathan Sweet
  */
@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.SerializerException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A drop-in replacement for the {@link FieldSerializer} which accesses the
+ * fields through method handles instead of reflection.
+ *
+ * <p>When a class is registered, the fields are collected and ordered exactly
+ * like the FieldSerializer does, and each one gets a codec bound to typed
+ * getter and setter handles. Primitive fields whose type still uses the
+ * stock serializer are then copied between the object and the buffer
+ * without boxing nor going through their serializer, while other fields are
+ * handled the way the FieldSerializer handles them. The wire format is
+ * identical, so both serializers can be used on either end of a
+ * connection.</p>
+ *
+ * <p>This is the default serializer for <code>@Serializable</code> classes,
+ * see {@link Serializer#setFieldSerializer(Serializer)}.</p>
+ */
+public class MethodHandleFieldSerializer extends Serializer {
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private static final MethodHandle fieldSet;
+    static {
+        try {
+            fieldSet = lookup.findVirtual(Field.class, "set",
+                    MethodType.methodType(void.class, Object.class, Object.class));
+        } catch( NoSuchMethodException | IllegalAccessException e ) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Map<Class, ClassCodec> codecs = new HashMap<Class, ClassCodec>();
+
+    @Override
+    public void initialize(Class clazz) {
+
+        MethodHandle ctor = findConstructor(clazz);
+
+        List<Field> fields = new ArrayList<>();
+
+        Class processingClass = clazz;
+        while (processingClass != Object.class ) {
+            Collections.addAll(fields, processingClass.getDeclaredFields());
+            processingClass = processingClass.getSuperclass();
+        }
+
+        List<FieldCodec> fieldCodecs = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isTransient(modifiers)) continue;
+            if (Modifier.isStatic(modifiers)) continue;
+            if (field.isSynthetic()) continue;
+            field.setAccessible(true);
+
+            // Resolved in the same order as the FieldSerializer, as it may
+            // register the field type and take the next ID.
+            Serializer serializer = null;
+            if (Modifier.isFinal(field.getType().getModifiers())) {
+                serializer = Serializer.getSerializer(field.getType(), false);
+            }
+
+            try {
+                fieldCodecs.add(createCodec(field, serializer));
+            } catch( IllegalAccessException e ) {
+                throw new RuntimeException( "Registration error: unable to access field:" + field, e );
+            }
+        }
+
+        Collections.sort(fieldCodecs, new Comparator<FieldCodec>() {
+            @Override
+            public int compare (FieldCodec o1, FieldCodec o2) {
+                    return o1.field.getName().compareTo(o2.field.getName());
+            }
+        });
+        codecs.put(clazz, new ClassCodec(ctor, fieldCodecs.toArray(new FieldCodec[fieldCodecs.size()])));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MethodHandle findConstructor(Class clazz) {
+        Constructor ctor;
+        try {
+            ctor = clazz.getConstructor();
+        } catch( NoSuchMethodException e ) {
+            try {
+                ctor = clazz.getDeclaredConstructor();
+                ctor.setAccessible(true);
+            } catch( NoSuchMethodException e2 ) {
+                throw new RuntimeException( "Registration error: no-argument constructor not found on:" + clazz );
+            }
+        }
+        try {
+            return lookup.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+        } catch( IllegalAccessException e ) {
+            throw new RuntimeException( "Registration error: unable to access constructor of:" + clazz, e );
+        }
+    }
+
+    private static FieldCodec createCodec( Field field, Serializer serializer ) throws IllegalAccessException {
+        Class type = field.getType();
+        MethodHandle getter = lookup.unreflectGetter(field);
+        MethodHandle setter;
+        try {
+            setter = lookup.unreflectSetter(field);
+        } catch( IllegalAccessException e ) {
+            // Final fields can only be written through reflection
+            setter = fieldSet.bindTo(field);
+        }
+
+        if( type.isPrimitive() && serializer != null && isStockSerializer(type, serializer) ) {
+            getter = getter.asType(MethodType.methodType(type, Object.class));
+            setter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+            if( type == boolean.class ) {
+                return new BooleanCodec(field, getter, setter);
+            } else if( type == byte.class ) {
+                return new ByteCodec(field, getter, setter);
+            } else if( type == char.class ) {
+                return new CharCodec(field, getter, setter);
+            } else if( type == short.class ) {
+                return new ShortCodec(field, getter, setter);
+            } else if( type == int.class ) {
+                return new IntCodec(field, getter, setter);
+            } else if( type == long.class ) {
+                return new LongCodec(field, getter, setter);
+            } else if( type == float.class ) {
+                return new FloatCodec(field, getter, setter);
+            } else if( type == double.class ) {
+                return new DoubleCodec(field, getter, setter);
+            }
+        }
+
+        getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+        setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return new ObjectCodec(field, getter, setter, serializer);
+    }
+
+    /**
+     * Only inline the primitives that are still written by their default
+     * serializer, in case an application replaced one of them.
+     */
+    private static boolean isStockSerializer( Class type, Serializer serializer ) {
+        Class serializerType = serializer.getClass();
+        if( type == boolean.class ) return serializerType == BooleanSerializer.class;
+        if( type == byte.class ) return serializerType == ByteSerializer.class;
+        if( type == char.class ) return serializerType == CharSerializer.class;
+        if( type == short.class ) return serializerType == ShortSerializer.class;
+        if( type == int.class ) return serializerType == IntSerializer.class;
+        if( type == long.class ) return serializerType == LongSerializer.class;
+        if( type == float.class ) return serializerType == FloatSerializer.class;
+        if( type == double.class ) return serializerType == DoubleSerializer.class;
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T readObject(ByteBuffer data, Class<T> c) throws IOException {
+
+        // Read the null/non-null marker
+        if (data.get() == 0x0)
+            return null;
+
+        ClassCodec codec = codecs.get(c);
+        if (codec == null)
+            throw new IOException("The " + c + " is not registered"
+                                + " in the serializer!");
+
+        T object;
+        try {
+            object = (T)(Object)codec.ctor.invokeExact();
+        } catch (Throwable e) {
+            throw new SerializerException( "Error creating object of type:" + c, e );
+        }
+
+        for (FieldCodec fieldCodec : codec.fields) {
+            try {
+                fieldCodec.read(data, object);
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SerializerException( "Error reading object", e);
+            }
+        }
+        return object;
+    }
+
+    @Override
+    public void writeObject(ByteBuffer buffer, Object object) throws IOException {
+
+        // Add the null/non-null marker
+        buffer.put( (byte)(object != null ? 0x1 : 0x0) );
+        if (object == null) {
+            // Nothing left to do
+            return;
+        }
+
+        ClassCodec codec = codecs.get(object.getClass());
+        if (codec == null)
+            throw new IOException("The " + object.getClass() + " is not registered"
+                                + " in the serializer!");
+
+        for (FieldCodec fieldCodec : codec.fields) {
+            try {
+                fieldCodec.write(buffer, object);
+            } catch (BufferOverflowException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SerializerException( "Error writing object for field:" + fieldCodec.field, e );
+            }
+        }
+    }
+
+    private static final class ClassCodec {
+        final MethodHandle ctor;
+        final FieldCodec[] fields;
+
+        ClassCodec( MethodHandle ctor, FieldCodec[] fields ) {
+            this.ctor = ctor;
+            this.fields = fields;
+        }
+    }
+
+    private static abstract class FieldCodec {
+        final Field field;
+        final MethodHandle getter;
+        final MethodHandle setter;
+
+        FieldCodec( Field field, MethodHandle getter, MethodHandle setter ) {
+            this.field = field;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        abstract void read( ByteBuffer data, Object object ) throws Throwable;
+
+        abstract void write( ByteBuffer buffer, Object object ) throws Throwable;
+    }
+
+    private static final class BooleanCodec extends FieldCodec {
+        BooleanCodec( Field field, MethodHandle getter, MethodHandle setter ) {
+            super(field, getter, setter);
+        }
+
+        @Override
+        void read( ByteBuffer data, Object object ) throws Throwable {
+            setter.invokeExact(object, data.get() == 1);
+        }
+
+        @Override
+        void write( ByteBuffer buffer, Object object ) throws Throwable {
+            buffer.put((boolean)getter.invokeExact(object) ? (byte)1 : (byte)0);
+        }
+    }
+
+    private static final class ByteCodec extends FieldCodec {
+        ByteCodec( Field field, MethodHandle getter, MethodHandle setter ) {
+            super(field, getter, setter);
+        }
+
+        @Override
+        void read( ByteBuffer data, Object object ) throws Throwable {
+            setter.invokeExact(object, data.get());
+        }
+
+        @Override
+        void write( ByteBuffer buffer, Object object ) throws Throwable {
+            buffer.put((byte)getter.invokeExact(object));
+        }
+    }
+
+    private static final class CharCodec extends FieldCodec {
+        CharCodec( Field field, MethodHandle getter, MethodHandle setter ) {
+            super(field, getter, setter);
+        }
+
+        @Override
+        void read( ByteBuffer data, Object object ) throws Throwable {
+            setter.invokeExact(object, data.getChar());
+        }
+
+        @Override
+        void write( ByteBuffer buffer, Object object ) throws Throwable {
+            buffer.putChar((char)getter.invokeExact(object));
+        }
+    }
+
+    private static final class ShortCodec extends FieldCodec {
+        ShortCodec( Field field, MethodHandle getter, MethodHandle setter ) {
+            super(field, getter, setter);
+        }
+
+        @Override
+        void read( ByteBuffer data, Object object ) throws Throwable {
+            setter.invokeExact(object, data.getShort());
+        }
+
+        @Override
+        void write( ByteBuffer buffer, Object object ) throws Throwable {
+            buffer.putShort((short)getter.invokeExact(object));
+        }
+    }
+
+    private static final class IntCodec extends FieldCodec {
+        IntCodec( Field field, MethodHandle getter, MethodHandle setter ) {
+            super(field, getter, setter);
+        }
+
+        @Override
+        void read( ByteBuffer data, Object object ) throws Throwable {
+            setter.invokeExact(object, data.getInt());
+        }
+
+        @Override
+        void write( ByteBuffer buffer, Object object ) throws Throwable {
+            buffer.putInt((int)getter.invokeExact(object));
+        }
+    }
+
+    private static final class LongCodec extends FieldCodec {
+        LongCodec( Field field, MethodHandle getter, MethodHandle setter ) {
+            super(field, getter, setter);
+        }
+
+        @Override
+        void read( ByteBuffer data, Object object ) throws Throwable {
+            setter.invokeExact(object, data.getLong());
+        }
+
+        @Override
+        void write( ByteBuffer buffer, Object object ) throws Throwable {
+            buffer.putLong((long)getter.invokeExact(object));
+        }
+    }
+
+    private static final class FloatCodec extends FieldCodec {
+        FloatCodec( Field field, MethodHandle getter, MethodHandle setter ) {
+            super(field, getter, setter);
+        }
+
+        @Override
+        void read( ByteBuffer data, Object object ) throws Throwable {
+            setter.invokeExact(object, data.getFloat());
+        }
+
+        @Override
+        void write( ByteBuffer buffer, Object object ) throws Throwable {
+            buffer.putFloat((float)getter.invokeExact(object));
+        }
+    }
+
+    private static final class DoubleCodec extends FieldCodec {
+        DoubleCodec( Field field, MethodHandle getter, MethodHandle setter ) {
+            super(field, getter, setter);
+        }
+
+        @Override
+        void read( ByteBuffer data, Object object ) throws Throwable {
+            setter.invokeExact(object, data.getDouble());
+        }
+
+        @Override
+        void write( ByteBuffer buffer, Object object ) throws Throwable {
+            buffer.putDouble((double)getter.invokeExact(object));
+        }
+    }
+
+    /**
+     * Handles the other fields like the FieldSerializer does: through the
+     * serializer of their type when it is final, else along with their class.
+     */
+    private static final class ObjectCodec extends FieldCodec {
+        final Serializer serializer;
+
+        ObjectCodec( Field field, MethodHandle getter, MethodHandle setter, Serializer serializer ) {
+            super(field, getter, setter);
+            this.serializer = serializer;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void read( ByteBuffer data, Object object ) throws Throwable {
+            Object value;
+            if (serializer != null) {
+                value = serializer.readObject(data, field.getType());
+            } else {
+                value = Serializer.readClassAndObject(data);
+            }
+            setter.invokeExact(object, value);
+        }
+
+        @Override
+        void write( ByteBuffer buffer, Object object ) throws Throwable {
+            Object value = (Object)getter.invokeExact(object);
+            if (serializer != null) {
+                serializer.writeObject(buffer, value);
+            } else {
+                Serializer.writeClassAndObject(buffer, value);
+            }
+        }
+    }
+}
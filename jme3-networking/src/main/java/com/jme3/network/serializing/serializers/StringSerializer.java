@@ -33,7 +33,6 @@ package com.jme3.network.serializing.serializers;
 
 import com.jme3.network.serializing.Serializer;
 import java.io.IOException;
-import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 /**
@@ -53,22 +52,19 @@ public class StringSerializer extends Serializer {
         byte[] stringBytes = s.getBytes("UTF-8");
         int bufferLength = stringBytes.length;
 
-        try {
-            if (bufferLength <= Byte.MAX_VALUE) {
-                buffer.put((byte)1);
-                buffer.put((byte)bufferLength);
-            } else if (bufferLength <= Short.MAX_VALUE) {
-                buffer.put((byte)2);
-                buffer.putShort((short)bufferLength);
-            } else {
-                buffer.put((byte)3);
-                buffer.putInt(bufferLength);
-            }
-            buffer.put(stringBytes);
+        // A buffer overflow is left to the caller, which may retry
+        // with a bigger buffer
+        if (bufferLength <= Byte.MAX_VALUE) {
+            buffer.put((byte)1);
+            buffer.put((byte)bufferLength);
+        } else if (bufferLength <= Short.MAX_VALUE) {
+            buffer.put((byte)2);
+            buffer.putShort((short)bufferLength);
+        } else {
+            buffer.put((byte)3);
+            buffer.putInt(bufferLength);
         }
-        catch (BufferOverflowException e) {
-            e.printStackTrace();
-        }    
+        buffer.put(stringBytes);
     }
 
     public static String readString( ByteBuffer data ) throws IOException {
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
+import com.jme3.network.HostedConnection;
+
+
+/**
+ *  Replicates the entities contained in an area set per connection,
+ *  for example the zone or room the player is in.  Connections without
+ *  an area receive every entity.
+ */
+public class AreaInterestFilter implements InterestFilter {
+
+    private static final String ATTRIBUTE_NAME = "replicationArea";
+
+    public AreaInterestFilter() {
+    }
+
+    /**
+     *  Sets the volume within which the entities are replicated to the
+     *  connection, or null to replicate all of them.  The volume is kept
+     *  by reference and must not be modified while sendUpdates() runs.
+     */
+    public void setArea( HostedConnection conn, BoundingVolume area ) {
+        conn.setAttribute(ATTRIBUTE_NAME, area);
+    }
+
+    public BoundingVolume getArea( HostedConnection conn ) {
+        return conn.getAttribute(ATTRIBUTE_NAME);
+    }
+
+    @Override
+    public boolean isInterested( HostedConnection conn, int entityId, Vector3f position ) {
+        BoundingVolume area = conn.getAttribute(ATTRIBUTE_NAME);
+        return area == null || area.contains(position);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import java.util.Arrays;
+
+
+/**
+ *  Packs values of arbitrary bit widths into a growing byte array,
+ *  least significant bits first.  The written bits can be rolled back
+ *  with truncate().
+ */
+final class BitWriter {
+
+    private byte[] data = new byte[256];
+    private int size;
+    private long bits;
+    private int pending;
+
+    /**
+     *  Writes the 'count' lowest bits of value, count being from 0 to 32.
+     */
+    public void write( int value, int count ) {
+        bits |= (value & mask(count)) << pending;
+        pending += count;
+        while( pending >= 8 ) {
+            if( size == data.length ) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = (byte)bits;
+            bits >>>= 8;
+            pending -= 8;
+        }
+    }
+
+    public void writeBoolean( boolean value ) {
+        write(value ? 1 : 0, 1);
+    }
+
+    /**
+     *  Returns the number of bits written so far.
+     */
+    public int getBitCount() {
+        return size * 8 + pending;
+    }
+
+    /**
+     *  Discards the bits written after the specified bit count.
+     */
+    public void truncate( int bitCount ) {
+        int bytes = bitCount >>> 3;
+        int remainder = bitCount & 7;
+        if( bytes < size ) {
+            bits = data[bytes] & mask(remainder);
+            size = bytes;
+        } else {
+            bits &= mask(remainder);
+        }
+        pending = remainder;
+    }
+
+    public void reset() {
+        size = 0;
+        bits = 0;
+        pending = 0;
+    }
+
+    /**
+     *  Returns the written bits, the last byte padded with zeros.
+     */
+    public byte[] toByteArray() {
+        byte[] result = Arrays.copyOf(data, size + (pending > 0 ? 1 : 0));
+        if( pending > 0 ) {
+            result[size] = (byte)bits;
+        }
+        return result;
+    }
+
+    static long mask( int count ) {
+        return count == 64 ? -1L : (1L << count) - 1;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+
+
+/**
+ *  Quantizes entity states and writes the bit-packed differences between
+ *  two snapshots.
+ *
+ *  <p>Positions are stored as a whole number of resolution steps per axis.
+ *  Rotations use the "smallest three" encoding: the index of the largest
+ *  quaternion component followed by the three others, each in
+ *  rotationBits bits, packed in a single int.</p>
+ *
+ *  <p>The delta data is a list of records, each one preceded by a 1 bit.
+ *  A record holds the signed difference between its entity ID and the
+ *  previous one, a removal bit and, for the entities still present, a 4 bit
+ *  mask of the changed x, y, z and rotation fields followed by those
+ *  fields.  Positions are written as signed differences to the baseline,
+ *  rotations as their packed value.  New entities are written against an
+ *  all zero baseline.  A 0 bit ends the list.</p>
+ */
+final class DeltaCodec {
+
+    public static final int MIN_ROTATION_BITS = 2;
+    public static final int MAX_ROTATION_BITS = 10;
+
+    private static final int[] SIZE_CLASSES = {4, 8, 16, 32};
+    private static final int[] ZERO_STATE = new int[Snapshot.STRIDE];
+    private static final float SQRT2 = FastMath.sqrt(2);
+
+    private DeltaCodec() {
+    }
+
+    public static void quantize( Vector3f position, Quaternion rotation, float resolution,
+                                 int rotationBits, int[] store, int offset ) {
+        store[offset] = Math.round(position.x / resolution);
+        store[offset + 1] = Math.round(position.y / resolution);
+        store[offset + 2] = Math.round(position.z / resolution);
+        store[offset + 3] = packRotation(rotation, rotationBits);
+    }
+
+    public static void dequantize( int[] states, int offset, float resolution, int rotationBits,
+                                   Vector3f position, Quaternion rotation ) {
+        position.set(states[offset] * resolution,
+                     states[offset + 1] * resolution,
+                     states[offset + 2] * resolution);
+        unpackRotation(states[offset + 3], rotationBits, rotation);
+    }
+
+    public static int packRotation( Quaternion rotation, int bits ) {
+        float[] q = {rotation.getX(), rotation.getY(), rotation.getZ(), rotation.getW()};
+        int largest = 3;
+        for( int i = 0; i < 3; i++ ) {
+            if( Math.abs(q[i]) > Math.abs(q[largest]) ) {
+                largest = i;
+            }
+        }
+        // q and -q are the same rotation, so the largest one is made
+        // positive and can be rebuilt from the others
+        float sign = q[largest] < 0 ? -1 : 1;
+        float length = (float)Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+        if( length == 0 ) {
+            return packRotation(Quaternion.IDENTITY, bits);
+        }
+        float scale = sign / length;
+        int max = (1 << bits) - 1;
+        int result = largest;
+        int shift = 2;
+        for( int i = 0; i < 4; i++ ) {
+            if( i == largest ) {
+                continue;
+            }
+            // The others are within +/- 1/sqrt(2)
+            float unit = q[i] * scale * SQRT2 * 0.5f + 0.5f;
+            int value = Math.max(0, Math.min(max, Math.round(unit * max)));
+            result |= value << shift;
+            shift += bits;
+        }
+        return result;
+    }
+
+    public static Quaternion unpackRotation( int packed, int bits, Quaternion store ) {
+        int largest = packed & 3;
+        int max = (1 << bits) - 1;
+        float[] q = new float[4];
+        float sum = 0;
+        int shift = 2;
+        for( int i = 0; i < 4; i++ ) {
+            if( i == largest ) {
+                continue;
+            }
+            int value = (packed >>> shift) & max;
+            float c = ((float)value / max - 0.5f) * 2 / SQRT2;
+            q[i] = c;
+            sum += c * c;
+            shift += bits;
+        }
+        q[largest] = (float)Math.sqrt(Math.max(0, 1 - sum));
+        store.set(q[0], q[1], q[2], q[3]);
+        return store.normalizeLocal();
+    }
+
+    /**
+     *  Returns the mask of the fields that differ between the two
+     *  states, bit i being set when field i changed.
+     */
+    public static int diff( int[] a, int aOffset, int[] b, int bOffset ) {
+        int mask = 0;
+        for( int i = 0; i < Snapshot.STRIDE; i++ ) {
+            if( a[aOffset + i] != b[bOffset + i] ) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     *  Writes the record of an entity, against the baseline state if
+     *  base is not null.  A null state writes a removal.
+     */
+    public static void writeRecord( BitWriter out, int idDelta, int[] base, int baseOffset,
+                                    int[] state, int stateOffset, int rotationBits ) {
+        out.writeBoolean(true);
+        writeSigned(out, idDelta);
+        out.writeBoolean(state == null);
+        if( state == null ) {
+            return;
+        }
+        if( base == null ) {
+            base = ZERO_STATE;
+            baseOffset = 0;
+        }
+        int mask = diff(base, baseOffset, state, stateOffset);
+        out.write(mask, Snapshot.STRIDE);
+        for( int i = 0; i < 3; i++ ) {
+            if( (mask & (1 << i)) != 0 ) {
+                writeSigned(out, state[stateOffset + i] - base[baseOffset + i]);
+            }
+        }
+        if( (mask & (1 << 3)) != 0 ) {
+            out.write(state[stateOffset + 3], 2 + 3 * rotationBits);
+        }
+    }
+
+    /**
+     *  Ends the list of records.
+     */
+    public static void writeEnd( BitWriter out ) {
+        out.writeBoolean(false);
+    }
+
+    /**
+     *  Applies the delta data to the baseline, returning the resulting
+     *  snapshot.
+     */
+    public static Snapshot decode( Snapshot base, byte[] data, int rotationBits, int frame ) {
+        BitReader in = new BitReader(data);
+        int count = 0;
+        int[] ids = new int[16];
+        boolean[] removed = new boolean[16];
+        int[] states = new int[16 * Snapshot.STRIDE];
+        int id = 0;
+        while( in.readBoolean() ) {
+            if( count == ids.length ) {
+                ids = Arrays.copyOf(ids, count * 2);
+                removed = Arrays.copyOf(removed, count * 2);
+                states = Arrays.copyOf(states, count * 2 * Snapshot.STRIDE);
+            }
+            id += readSigned(in);
+            ids[count] = id;
+            removed[count] = in.readBoolean();
+            if( !removed[count] ) {
+                int index = base.indexOf(id);
+                int[] baseStates = index >= 0 ? base.states : ZERO_STATE;
+                int baseOffset = index >= 0 ? index * Snapshot.STRIDE : 0;
+                int offset = count * Snapshot.STRIDE;
+                System.arraycopy(baseStates, baseOffset, states, offset, Snapshot.STRIDE);
+                int mask = in.read(Snapshot.STRIDE);
+                for( int i = 0; i < 3; i++ ) {
+                    if( (mask & (1 << i)) != 0 ) {
+                        states[offset + i] += readSigned(in);
+                    }
+                }
+                if( (mask & (1 << 3)) != 0 ) {
+                    states[offset + 3] = in.read(2 + 3 * rotationBits);
+                }
+            }
+            count++;
+        }
+
+        // The records may start anywhere in the ID range and wrap around,
+        // sort them before merging them with the baseline
+        long[] order = new long[count];
+        for( int i = 0; i < count; i++ ) {
+            order[i] = ((long)ids[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        Snapshot result = new Snapshot(frame, base.count + count);
+        int b = 0;
+        for( int k = 0; k <= count; k++ ) {
+            int next = k < count ? (int)order[k] : -1;
+            int nextId = k < count ? ids[next] : Integer.MAX_VALUE;
+            while( b < base.count && (base.ids[b] < nextId || k == count) ) {
+                result.add(base.ids[b], base.states, b * Snapshot.STRIDE);
+                b++;
+            }
+            if( k == count ) {
+                break;
+            }
+            if( b < base.count && base.ids[b] == nextId ) {
+                b++;
+            }
+            if( !removed[next] ) {
+                result.add(nextId, states, next * Snapshot.STRIDE);
+            }
+        }
+        return result;
+    }
+
+    static void writeSigned( BitWriter out, int value ) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        for( int i = 0; i < SIZE_CLASSES.length; i++ ) {
+            int size = SIZE_CLASSES[i];
+            if( size == 32 || (zigzag >>> size) == 0 ) {
+                out.write(i, 2);
+                out.write(zigzag, size);
+                return;
+            }
+        }
+    }
+
+    static int readSigned( BitReader in ) {
+        int zigzag = in.read(SIZE_CLASSES[in.read(2)]);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
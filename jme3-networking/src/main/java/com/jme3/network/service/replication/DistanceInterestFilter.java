@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.HostedConnection;
+
+
+/**
+ *  Replicates the entities within a fixed distance of a point set per
+ *  connection, usually the position of the player's avatar.  Connections
+ *  without a center receive every entity.
+ */
+public class DistanceInterestFilter implements InterestFilter {
+
+    private static final String ATTRIBUTE_NAME = "replicationCenter";
+
+    private float radius;
+
+    public DistanceInterestFilter( float radius ) {
+        setRadius(radius);
+    }
+
+    public final void setRadius( float radius ) {
+        if( radius < 0 ) {
+            throw new IllegalArgumentException("Radius cannot be negative:" + radius);
+        }
+        this.radius = radius;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     *  Sets the point around which the entities are replicated to the
+     *  connection, or null to replicate all of them.
+     */
+    public void setCenter( HostedConnection conn, Vector3f center ) {
+        conn.setAttribute(ATTRIBUTE_NAME, center == null ? null : center.clone());
+    }
+
+    public Vector3f getCenter( HostedConnection conn ) {
+        return conn.getAttribute(ATTRIBUTE_NAME);
+    }
+
+    @Override
+    public boolean isInterested( HostedConnection conn, int entityId, Vector3f position ) {
+        Vector3f center = conn.getAttribute(ATTRIBUTE_NAME);
+        return center == null || center.distanceSquared(position) <= radius * radius;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.Client;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.service.AbstractClientService;
+import com.jme3.network.service.ClientServiceManager;
+import com.jme3.network.service.replication.msg.ReplicationAckMessage;
+import com.jme3.network.service.replication.msg.ReplicationMessage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ *  Client side of the ReplicationHostedService.  Rebuilds the replicated
+ *  entities from the updates of the server, acknowledges them, and notifies
+ *  the registered ReplicationListeners of the entities added, moved and
+ *  removed.
+ *
+ *  <p>The frames rebuilt from the updates are kept as the baselines of the
+ *  next ones.  An update that doesn't hold all of the changes since its
+ *  baseline may leave out some that an earlier update, not acknowledged
+ *  yet, did hold.  For the IDs it left out, the entities keep the newest
+ *  state received instead, so that they never go back in time.</p>
+ */
+public class ReplicationClientService extends AbstractClientService {
+
+    private static final Logger log = Logger.getLogger(ReplicationClientService.class.getName());
+
+    private static final int S = Snapshot.STRIDE;
+
+    private final Snapshot[] history = new Snapshot[ReplicationConnection.HISTORY];
+    // The newest state of each entity, as seen by the listeners
+    private Snapshot current = Snapshot.EMPTY;
+    private final List<ReplicationListener> listeners = new CopyOnWriteArrayList<>();
+    private final UpdateListener updateListener = new UpdateListener();
+    private final Vector3f position = new Vector3f();
+    private final Quaternion rotation = new Quaternion();
+
+    /**
+     *  Creates a new ReplicationClientService that can be registered
+     *  with the network Client object.
+     */
+    public ReplicationClientService() {
+    }
+
+    public void addReplicationListener( ReplicationListener listener ) {
+        listeners.add(listener);
+    }
+
+    public void removeReplicationListener( ReplicationListener listener ) {
+        listeners.remove(listener);
+    }
+
+    /**
+     *  Returns the number of entities currently replicated.
+     */
+    public synchronized int getEntityCount() {
+        return current.count;
+    }
+
+    /**
+     *  Returns the last frame applied, or -1 if none was received yet.
+     */
+    public synchronized int getFrame() {
+        return current.frame;
+    }
+
+    /**
+     *  Used internally to listen for the updates of the server.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void onInitialize( ClientServiceManager serviceManager ) {
+        Client client = serviceManager.getClient();
+        client.addMessageListener(updateListener, ReplicationMessage.class);
+    }
+
+    /**
+     *  Used internally to remove the update listener from the client.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void terminate( ClientServiceManager serviceManager ) {
+        Client client = serviceManager.getClient();
+        client.removeMessageListener(updateListener, ReplicationMessage.class);
+    }
+
+    protected void update( Client client, ReplicationMessage msg ) {
+        if( apply(msg) ) {
+            client.send(new ReplicationAckMessage(msg.getFrame()));
+        }
+    }
+
+    /**
+     *  Applies the update, returning true if it must be acknowledged
+     *  or false if it was dropped.
+     */
+    synchronized boolean apply( ReplicationMessage msg ) {
+        int frame = msg.getFrame();
+        if( frame <= current.frame ) {
+            // Late, a more recent update was already applied
+            return false;
+        }
+        Snapshot base = Snapshot.EMPTY;
+        if( msg.getBaseFrame() >= 0 ) {
+            base = history[msg.getBaseFrame() % history.length];
+            if( base == null || base.frame != msg.getBaseFrame() ) {
+                log.log(Level.FINE, "Baseline not found for:{0}", msg);
+                return false;
+            }
+        }
+        Snapshot next = DeltaCodec.decode(base, msg.getData(), msg.getRotationBits(), frame);
+        history[frame % history.length] = next;
+
+        Snapshot newest = msg.isComplete() ? next : merge(base, next, msg);
+        notifyChanges(current, newest, msg.getResolution(), msg.getRotationBits());
+        current = newest;
+        return true;
+    }
+
+    /**
+     *  Returns the frame rebuilt from a partial update, with the newest
+     *  states kept for the entities it may have left out.
+     */
+    private Snapshot merge( Snapshot base, Snapshot next, ReplicationMessage msg ) {
+        Snapshot result = new Snapshot(next.frame, Math.max(next.count, current.count));
+        int i = 0;
+        int j = 0;
+        while( i < next.count || j < current.count ) {
+            int id;
+            int n = -1;
+            int c = -1;
+            if( j == current.count || (i < next.count && next.ids[i] <= current.ids[j]) ) {
+                id = next.ids[i];
+                n = i++;
+                if( j < current.count && current.ids[j] == id ) {
+                    c = j++;
+                }
+            } else {
+                id = current.ids[j];
+                c = j++;
+            }
+            boolean useNext = true;
+            if( msg.isSkipped(id) ) {
+                // Only the entities that changed since the baseline were
+                // part of the update
+                int b = base.indexOf(id);
+                boolean changed = b >= 0
+                        ? n < 0 || DeltaCodec.diff(base.states, b * S, next.states, n * S) != 0
+                        : n >= 0;
+                useNext = changed;
+            }
+            if( useNext ) {
+                if( n >= 0 ) {
+                    result.add(id, next.states, n * S);
+                }
+            } else if( c >= 0 ) {
+                result.add(id, current.states, c * S);
+            }
+        }
+        return result;
+    }
+
+    private void notifyChanges( Snapshot before, Snapshot after, float resolution, int rotationBits ) {
+        if( listeners.isEmpty() ) {
+            return;
+        }
+        int i = 0;
+        int j = 0;
+        while( i < before.count || j < after.count ) {
+            if( j == after.count || (i < before.count && before.ids[i] < after.ids[j]) ) {
+                for( ReplicationListener l : listeners ) {
+                    l.entityRemoved(before.ids[i]);
+                }
+                i++;
+            } else if( i == before.count || after.ids[j] < before.ids[i] ) {
+                DeltaCodec.dequantize(after.states, j * S, resolution, rotationBits, position, rotation);
+                for( ReplicationListener l : listeners ) {
+                    l.entityAdded(after.ids[j], position, rotation);
+                }
+                j++;
+            } else {
+                if( DeltaCodec.diff(before.states, i * S, after.states, j * S) != 0 ) {
+                    DeltaCodec.dequantize(after.states, j * S, resolution, rotationBits, position, rotation);
+                    for( ReplicationListener l : listeners ) {
+                        l.entityUpdated(after.ids[j], position, rotation);
+                    }
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    private class UpdateListener implements MessageListener<Client> {
+        @Override
+        public void messageReceived( Client source, Message m ) {
+            update(source, (ReplicationMessage)m);
+        }
+    }
+}
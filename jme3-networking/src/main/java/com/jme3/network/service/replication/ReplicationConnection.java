@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import com.jme3.network.service.replication.msg.ReplicationMessage;
+import java.util.Arrays;
+
+
+/**
+ *  The replication state of one hosted connection: the snapshots sent
+ *  recently, as the client will rebuild them, and the last one it
+ *  acknowledged, which is the baseline of the next update.
+ */
+final class ReplicationConnection {
+
+    /**
+     *  The number of frames kept on both sides.  An acknowledgement
+     *  older than that is ignored and the next update is sent whole.
+     */
+    static final int HISTORY = 32;
+
+    private static final int S = Snapshot.STRIDE;
+
+    private final Snapshot[] history = new Snapshot[HISTORY];
+    private final Snapshot visible = new Snapshot(-1, 64);
+    private volatile int nextFrame;
+    private int ackedFrame = -1;
+    private int resumeId;
+
+    // Scratch space for the changes of an update
+    private final BitWriter writer = new BitWriter();
+    private int[] changeIds = new int[64];
+    private int[] changeBase = new int[64];
+    private int[] changeCurrent = new int[64];
+    private boolean[] written = new boolean[64];
+
+    /**
+     *  Returns the snapshot to fill with the entities currently
+     *  replicated to the connection before calling createUpdate().
+     */
+    Snapshot getVisible() {
+        return visible;
+    }
+
+    synchronized void acknowledge( int frame ) {
+        if( frame > ackedFrame && frame < nextFrame ) {
+            ackedFrame = frame;
+        }
+    }
+
+    private synchronized Snapshot getBaseline( int frame ) {
+        if( ackedFrame < 0 || frame - ackedFrame >= HISTORY ) {
+            return Snapshot.EMPTY;
+        }
+        Snapshot result = history[ackedFrame % HISTORY];
+        return result != null && result.frame == ackedFrame ? result : Snapshot.EMPTY;
+    }
+
+    /**
+     *  Returns the message holding the differences between the visible
+     *  snapshot and the acknowledged one, or null if there are none.
+     *  When the changes don't fit in maxMessageSize bytes, the remaining
+     *  ones are left for the next updates, which start where this one
+     *  stopped so that every entity gets its turn.  The message tells the
+     *  range of IDs left out, where the client keeps the newer states it
+     *  may have from the updates sent since the baseline.
+     */
+    ReplicationMessage createUpdate( float resolution, int rotationBits, int maxMessageSize ) {
+        int frame = nextFrame;
+        Snapshot base = getBaseline(frame);
+        Snapshot current = visible;
+
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while( i < base.count || j < current.count ) {
+            if( j == current.count || (i < base.count && base.ids[i] < current.ids[j]) ) {
+                count = addChange(count, base.ids[i++], i - 1, -1);
+            } else if( i == base.count || current.ids[j] < base.ids[i] ) {
+                count = addChange(count, current.ids[j++], -1, j - 1);
+            } else {
+                if( DeltaCodec.diff(base.states, i * S, current.states, j * S) != 0 ) {
+                    count = addChange(count, current.ids[j], i, j);
+                }
+                i++;
+                j++;
+            }
+        }
+        if( count == 0 ) {
+            return null;
+        }
+
+        int start = 0;
+        while( start < count && changeIds[start] < resumeId ) {
+            start++;
+        }
+        start %= count;
+        resumeId = 0;
+        boolean partial = false;
+        Arrays.fill(written, 0, count, false);
+        writer.reset();
+        int budget = maxMessageSize * 8 - 1;
+        int previousId = 0;
+        for( int k = 0; k < count; k++ ) {
+            int c = (start + k) % count;
+            int mark = writer.getBitCount();
+            DeltaCodec.writeRecord(writer, changeIds[c] - previousId,
+                                   changeBase[c] >= 0 ? base.states : null, changeBase[c] * S,
+                                   changeCurrent[c] >= 0 ? current.states : null, changeCurrent[c] * S,
+                                   rotationBits);
+            if( k > 0 && writer.getBitCount() > budget ) {
+                writer.truncate(mark);
+                resumeId = changeIds[c];
+                partial = true;
+                break;
+            }
+            written[c] = true;
+            previousId = changeIds[c];
+        }
+        DeltaCodec.writeEnd(writer);
+
+        // Record what the client will have once it applied the update:
+        // the changes left out keep their baseline state
+        Snapshot recorded = history[frame % HISTORY];
+        if( recorded == null ) {
+            recorded = history[frame % HISTORY] = new Snapshot(frame, current.count);
+        }
+        recorded.frame = frame;
+        recorded.clear();
+        int c = 0;
+        i = 0;
+        j = 0;
+        while( i < base.count || j < current.count ) {
+            if( j == current.count || (i < base.count && base.ids[i] < current.ids[j]) ) {
+                if( !written[c++] ) {
+                    recorded.add(base.ids[i], base.states, i * S);
+                }
+                i++;
+            } else if( i == base.count || current.ids[j] < base.ids[i] ) {
+                if( written[c++] ) {
+                    recorded.add(current.ids[j], current.states, j * S);
+                }
+                j++;
+            } else {
+                if( DeltaCodec.diff(base.states, i * S, current.states, j * S) != 0 && !written[c++] ) {
+                    recorded.add(base.ids[i], base.states, i * S);
+                } else {
+                    recorded.add(current.ids[j], current.states, j * S);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        nextFrame = frame + 1;
+        return new ReplicationMessage(frame, base.frame, resolution, rotationBits, writer.toByteArray(),
+                                      partial ? resumeId : 0, partial ? changeIds[start] : 0);
+    }
+
+    private int addChange( int count, int id, int baseIndex, int currentIndex ) {
+        if( count == changeIds.length ) {
+            int capacity = count * 2;
+            changeIds = Arrays.copyOf(changeIds, capacity);
+            changeBase = Arrays.copyOf(changeBase, capacity);
+            changeCurrent = Arrays.copyOf(changeCurrent, capacity);
+            written = Arrays.copyOf(written, capacity);
+        }
+        changeIds[count] = id;
+        changeBase[count] = baseIndex;
+        changeCurrent[count] = currentIndex;
+        return count + 1;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
+import com.jme3.network.MessageListener;
+import com.jme3.network.Server;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.service.AbstractHostedConnectionService;
+import com.jme3.network.service.HostedServiceManager;
+import com.jme3.network.service.replication.msg.ReplicationAckMessage;
+import com.jme3.network.service.replication.msg.ReplicationMessage;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ *  Replicates the position and rotation of a set of entities to the
+ *  clients running a ReplicationClientService.
+ *
+ *  <p>The application sets the entity states with setEntity() and calls
+ *  sendUpdates() once per network tick.  Each connection then receives
+ *  only the fields that changed since the last update it acknowledged,
+ *  quantized and bit-packed, so entities at rest cost nothing and moving
+ *  ones a few bytes.  Updates are sent unreliably: a lost one is simply
+ *  covered by the next, which is still relative to the last acknowledged
+ *  frame.</p>
+ *
+ *  <p>An optional InterestFilter restricts the entities replicated to each
+ *  connection, for example to the ones near its player.</p>
+ *
+ *  <p>setEntity(), removeEntity() and sendUpdates() are expected to be
+ *  called from the same thread, usually the game's update loop.</p>
+ */
+public class ReplicationHostedService extends AbstractHostedConnectionService {
+
+    private static final String ATTRIBUTE_NAME = "replication";
+
+    /**
+     *  The default position precision, in world units.
+     */
+    public static final float DEFAULT_RESOLUTION = 0.01f;
+
+    /**
+     *  The default number of bits of the three smallest rotation
+     *  components.
+     */
+    public static final int DEFAULT_ROTATION_BITS = 10;
+
+    /**
+     *  The default limit of the update size, which keeps them in a
+     *  single datagram.
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 1200;
+
+    private final Map<Integer, Entity> entities = new HashMap<>();
+    private Entity[] sorted = new Entity[0];
+    private boolean sortedValid = true;
+    private InterestFilter interestFilter;
+    private float resolution = DEFAULT_RESOLUTION;
+    private int rotationBits = DEFAULT_ROTATION_BITS;
+    private int maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
+    private final AckListener ackListener = new AckListener();
+
+    /**
+     *  Creates a new replication service that will replicate the entities
+     *  to every new connection.
+     */
+    public ReplicationHostedService() {
+        this(true);
+    }
+
+    /**
+     *  Creates a new replication service that will replicate the entities
+     *  to new connections only if autoHost is true.  Otherwise, replication
+     *  starts with startHostingOnConnection().
+     */
+    public ReplicationHostedService( boolean autoHost ) {
+        super(autoHost);
+        Serializer.registerClasses(ReplicationMessage.class, ReplicationAckMessage.class);
+    }
+
+    /**
+     *  Sets the precision of the replicated positions, in world units.
+     *  Must be set before entities are added.
+     */
+    public void setResolution( float resolution ) {
+        if( resolution <= 0 ) {
+            throw new IllegalArgumentException("Resolution must be positive:" + resolution);
+        }
+        checkEmpty();
+        this.resolution = resolution;
+    }
+
+    public float getResolution() {
+        return resolution;
+    }
+
+    /**
+     *  Sets the number of bits of each of the three smallest components
+     *  of the replicated rotations, from 2 to 10.  Must be set before
+     *  entities are added.
+     */
+    public void setRotationBits( int rotationBits ) {
+        if( rotationBits < DeltaCodec.MIN_ROTATION_BITS || rotationBits > DeltaCodec.MAX_ROTATION_BITS ) {
+            throw new IllegalArgumentException("Rotation bits out of range:" + rotationBits);
+        }
+        checkEmpty();
+        this.rotationBits = rotationBits;
+    }
+
+    public int getRotationBits() {
+        return rotationBits;
+    }
+
+    /**
+     *  Sets the maximum size of the update sent to a connection per
+     *  sendUpdates() call.  The changes that don't fit are sent by the next
+     *  calls.
+     */
+    public void setMaxMessageSize( int maxMessageSize ) {
+        if( maxMessageSize < 16 ) {
+            throw new IllegalArgumentException("Message size too small:" + maxMessageSize);
+        }
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     *  Sets the filter deciding which entities are replicated to each
+     *  connection, or null to replicate all of them everywhere.
+     */
+    public void setInterestFilter( InterestFilter interestFilter ) {
+        this.interestFilter = interestFilter;
+    }
+
+    public InterestFilter getInterestFilter() {
+        return interestFilter;
+    }
+
+    /**
+     *  Adds or updates an entity.  The ID must not be negative.  The
+     *  position and rotation are copied.
+     */
+    public void setEntity( int id, Vector3f position, Quaternion rotation ) {
+        if( id < 0 ) {
+            throw new IllegalArgumentException("Entity ID cannot be negative:" + id);
+        }
+        Entity entity = entities.get(id);
+        if( entity == null ) {
+            entity = new Entity(id);
+            entities.put(id, entity);
+            sortedValid = false;
+        }
+        entity.position.set(position);
+        DeltaCodec.quantize(position, rotation, resolution, rotationBits, entity.state, 0);
+    }
+
+    /**
+     *  Removes an entity, from the clients too on the next update.
+     */
+    public void removeEntity( int id ) {
+        if( entities.remove(id) != null ) {
+            sortedValid = false;
+        }
+    }
+
+    public int getEntityCount() {
+        return entities.size();
+    }
+
+    /**
+     *  Sends each hosted connection the changes since the last update it
+     *  acknowledged.
+     */
+    public void sendUpdates() {
+        if( !sortedValid ) {
+            sorted = entities.values().toArray(new Entity[entities.size()]);
+            Arrays.sort(sorted, ENTITY_ORDER);
+            sortedValid = true;
+        }
+        InterestFilter filter = interestFilter;
+        for( HostedConnection hc : getServer().getConnections() ) {
+            ReplicationConnection rc = hc.getAttribute(ATTRIBUTE_NAME);
+            if( rc == null ) {
+                continue;
+            }
+            Snapshot visible = rc.getVisible();
+            visible.clear();
+            for( Entity entity : sorted ) {
+                if( filter == null || filter.isInterested(hc, entity.id, entity.position) ) {
+                    visible.add(entity.id, entity.state, 0);
+                }
+            }
+            ReplicationMessage msg = rc.createUpdate(resolution, rotationBits, maxMessageSize);
+            if( msg != null ) {
+                hc.send(msg);
+            }
+        }
+    }
+
+    /**
+     *  Used internally to listen for the acknowledgements of the clients.
+     */
+    @Override
+    protected void onInitialize( HostedServiceManager serviceManager ) {
+        Server server = serviceManager.getServer();
+        server.addMessageListener(ackListener, ReplicationAckMessage.class);
+    }
+
+    /**
+     *  Used internally to remove the acknowledgement listener from the
+     *  server.
+     */
+    @Override
+    public void terminate( HostedServiceManager serviceManager ) {
+        Server server = serviceManager.getServer();
+        server.removeMessageListener(ackListener, ReplicationAckMessage.class);
+    }
+
+    /**
+     *  Starts replicating the entities to the connection.  Called
+     *  automatically for all new connections if autohost is true.
+     */
+    @Override
+    public void startHostingOnConnection( HostedConnection hc ) {
+        hc.setAttribute(ATTRIBUTE_NAME, new ReplicationConnection());
+    }
+
+    /**
+     *  Stops replicating the entities to the connection.  Its client
+     *  keeps the last state it received.
+     */
+    @Override
+    public void stopHostingOnConnection( HostedConnection hc ) {
+        hc.setAttribute(ATTRIBUTE_NAME, null);
+    }
+
+    private void checkEmpty() {
+        if( !entities.isEmpty() ) {
+            throw new IllegalStateException("Quantization cannot be changed once entities are added");
+        }
+    }
+
+    private static final Comparator<Entity> ENTITY_ORDER = new Comparator<Entity>() {
+        @Override
+        public int compare( Entity a, Entity b ) {
+            return Integer.compare(a.id, b.id);
+        }
+    };
+
+    private static class Entity {
+        final int id;
+        final Vector3f position = new Vector3f();
+        final int[] state = new int[Snapshot.STRIDE];
+
+        Entity( int id ) {
+            this.id = id;
+        }
+    }
+
+    private class AckListener implements MessageListener<HostedConnection> {
+        @Override
+        public void messageReceived( HostedConnection source, Message m ) {
+            ReplicationConnection rc = source.getAttribute(ATTRIBUTE_NAME);
+            if( rc != null ) {
+                rc.acknowledge(((ReplicationAckMessage)m).getFrame());
+            }
+        }
+    }
+}
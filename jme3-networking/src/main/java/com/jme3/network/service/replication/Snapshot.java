@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import java.util.Arrays;
+
+
+/**
+ *  The quantized state of a set of entities at a given frame, sorted by
+ *  entity ID.  Each entity has STRIDE ints of state: the x, y and z
+ *  position steps followed by the packed rotation.
+ */
+final class Snapshot {
+
+    public static final int STRIDE = 4;
+    public static final Snapshot EMPTY = new Snapshot(-1, 0);
+
+    int frame;
+    int count;
+    int[] ids;
+    int[] states;
+
+    Snapshot( int frame, int capacity ) {
+        this.frame = frame;
+        this.ids = new int[capacity];
+        this.states = new int[capacity * STRIDE];
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    void add( int id, int[] source, int offset ) {
+        if( count == ids.length ) {
+            int capacity = Math.max(16, count * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            states = Arrays.copyOf(states, capacity * STRIDE);
+        }
+        ids[count] = id;
+        System.arraycopy(source, offset, states, count * STRIDE, STRIDE);
+        count++;
+    }
+
+    /**
+     *  Returns the index of the entity, or a negative value if it isn't
+     *  part of this snapshot.
+     */
+    int indexOf( int id ) {
+        return Arrays.binarySearch(ids, 0, count, id);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication.msg;
+
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.serializing.Serializable;
+
+
+/**
+ *  Used internally to send the bit-packed entity changes of a frame,
+ *  relative to a frame previously acknowledged by the client.
+ *
+ *  <p>When the changes don't all fit, the ones left out for later updates
+ *  are within an ID range that wraps around, from skipFrom included to
+ *  skipTo excluded.  Outside of it the frame is complete.</p>
+ */
+@Serializable
+public class ReplicationMessage extends AbstractMessage {
+
+    private int frame;
+    private int baseFrame;
+    private float resolution;
+    private byte rotationBits;
+    private byte[] data;
+    private int skipFrom;
+    private int skipTo;
+
+    public ReplicationMessage() {
+        super(false);
+    }
+
+    public ReplicationMessage( int frame, int baseFrame, float resolution, int rotationBits, byte[] data ) {
+        this(frame, baseFrame, resolution, rotationBits, data, 0, 0);
+    }
+
+    public ReplicationMessage( int frame, int baseFrame, float resolution, int rotationBits, byte[] data,
+                               int skipFrom, int skipTo ) {
+        super(false);
+        this.frame = frame;
+        this.baseFrame = baseFrame;
+        this.resolution = resolution;
+        this.rotationBits = (byte)rotationBits;
+        this.data = data;
+        this.skipFrom = skipFrom;
+        this.skipTo = skipTo;
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     *  Returns the frame the changes are relative to, or -1 if they
+     *  are relative to an empty frame.
+     */
+    public int getBaseFrame() {
+        return baseFrame;
+    }
+
+    public float getResolution() {
+        return resolution;
+    }
+
+    public int getRotationBits() {
+        return rotationBits;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     *  Returns true if all of the changes since the base frame are
+     *  part of this one.
+     */
+    public boolean isComplete() {
+        return skipFrom == skipTo;
+    }
+
+    /**
+     *  Returns true if the changes of the entity since the base frame
+     *  may have been left out of this one.
+     */
+    public boolean isSkipped( int id ) {
+        if( skipFrom < skipTo ) {
+            return id >= skipFrom && id < skipTo;
+        }
+        return skipFrom != skipTo && (id >= skipFrom || id < skipTo);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[frame=" + frame + ", baseFrame=" + baseFrame
+                                          + ", size=" + (data == null ? 0 : data.length)
+                                          + (isComplete() ? "" : ", skipped=" + skipFrom + ".." + skipTo) + "]";
+    }
+}
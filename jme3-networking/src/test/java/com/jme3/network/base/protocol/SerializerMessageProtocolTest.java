@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.base.protocol;
+
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.kernel.BufferPool;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that SerializerMessageProtocol grows its leased buffer for the
+ * messages that don't fit the first one.
+ */
+public class SerializerMessageProtocolTest {
+
+    @Serializable
+    public static class TextMessage extends AbstractMessage {
+        public String text;
+        public TextMessage() {
+        }
+        TextMessage( String text ) {
+            this.text = text;
+        }
+    }
+
+    @BeforeClass
+    public static void register() {
+        Serializer.setReadOnly(false);
+        Serializer.registerClass(TextMessage.class);
+    }
+
+    private static String text( int length ) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
+    private static void assertRoundTrip( int length ) {
+        SerializerMessageProtocol protocol = new SerializerMessageProtocol(new BufferPool(4, false));
+        String text = text(length);
+        ByteBuffer buffer = protocol.toByteBuffer(new TextMessage(text), null);
+        Assert.assertEquals(buffer.remaining() - 2, buffer.getShort(0));
+        buffer.position(2);
+        TextMessage read = (TextMessage)protocol.toMessage(buffer);
+        Assert.assertEquals(text, read.text);
+        protocol.releaseBuffer(buffer);
+    }
+
+    @Test
+    public void testSmallMessage() {
+        assertRoundTrip(10);
+    }
+
+    @Test
+    public void testGrownMessage() {
+        assertRoundTrip(5000);
+        assertRoundTrip(30000);
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testTooLarge() {
+        new SerializerMessageProtocol().toByteBuffer(new TextMessage(text(40000)), null);
+    }
+}
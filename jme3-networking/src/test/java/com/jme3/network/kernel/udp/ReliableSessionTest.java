@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.udp;
+
+import com.jme3.network.kernel.BufferPool;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Drives two ReliableSessions against each other through an in-memory link
+ * with a simulated clock, so that losses, reordering and timeouts play out
+ * the same way on every run.
+ */
+public class ReliableSessionTest {
+
+    private static final long MILLI = 1000000L;
+    private static final long TIMEOUT = 2000;
+
+    private final BufferPool pool = new BufferPool(16, false);
+    private final Random random = new Random(42);
+    private final List<InFlight> inFlight = new ArrayList<>();
+    private long now = 1000 * MILLI;
+
+    private Link client;
+    private Link server;
+
+    private void connect( int sessionId, boolean ordered, long latency ) {
+        client = new Link("client", latency);
+        server = new Link("server", latency);
+        client.peer = server;
+        server.peer = client;
+        client.session = new ReliableSession(client, sessionId, ordered, pool, TIMEOUT, () -> now);
+        server.session = new ReliableSession(server, sessionId, ordered, pool, TIMEOUT, () -> now);
+    }
+
+    /**
+     * Moves the clock forward a millisecond at a time, delivering the
+     * packets that are due and updating the sessions every 10 ms like the
+     * kernel timers do.
+     */
+    private void advance( long millis ) {
+        for( long i = 0; i < millis; i++ ) {
+            now += MILLI;
+            while( true ) {
+                InFlight next = null;
+                for( InFlight f : inFlight ) {
+                    if( f.time <= now && (next == null || f.time < next.time) ) {
+                        next = f;
+                    }
+                }
+                if( next == null ) {
+                    break;
+                }
+                inFlight.remove(next);
+                next.target.session.receive(ByteBuffer.wrap(next.data));
+            }
+            if( (now / MILLI) % 10 == 0 ) {
+                client.session.update();
+                server.session.update();
+            }
+        }
+    }
+
+    private static byte[] chunk( int id, int size ) {
+        byte[] data = new byte[size];
+        for( int i = 0; i < size; i++ ) {
+            data[i] = (byte)(id * 31 + i);
+        }
+        return data;
+    }
+
+    private static int type( ByteBuffer packet ) {
+        return packet.get(0);
+    }
+
+    private static int seq( ByteBuffer packet ) {
+        return packet.getInt(5);
+    }
+
+    private void sendChunks( int count, boolean ordered ) {
+        for( int i = 0; i < count; i++ ) {
+            // Single and multi-segment chunks
+            int size = (i % 4 == 0) ? 3 * ReliableSession.MAX_PAYLOAD_SIZE + 7 : 20 + i;
+            client.session.send(ByteBuffer.wrap(chunk(i, size)));
+            advance(5);
+        }
+        advance(3000);
+
+        Assert.assertEquals(count, server.chunks.size());
+        Set<Integer> seen = new HashSet<>();
+        for( int i = 0; i < count; i++ ) {
+            byte[] received = server.chunks.get(i);
+            int id = -1;
+            for( int j = 0; j < count && id < 0; j++ ) {
+                int size = (j % 4 == 0) ? 3 * ReliableSession.MAX_PAYLOAD_SIZE + 7 : 20 + j;
+                if( Arrays.equals(received, chunk(j, size)) ) {
+                    id = j;
+                }
+            }
+            Assert.assertTrue("Unexpected chunk", id >= 0);
+            Assert.assertTrue("Duplicate chunk:" + id, seen.add(id));
+            if( ordered ) {
+                Assert.assertEquals(i, id);
+            }
+        }
+        Assert.assertEquals(0, client.session.getPendingCount());
+    }
+
+    @Test
+    public void testSequenceWraparoundOrdered() {
+        // Starts a few segments short of 2^32
+        connect(-5, true, 20);
+        client.lossRate = 0.2;
+        client.jitter = 15;
+        server.lossRate = 0.2;
+        sendChunks(40, true);
+        Assert.assertTrue(client.session.getRetransmitCount() > 0);
+    }
+
+    @Test
+    public void testSequenceWraparoundUnordered() {
+        connect(-5, false, 20);
+        client.lossRate = 0.2;
+        client.jitter = 15;
+        server.lossRate = 0.2;
+        sendChunks(40, false);
+    }
+
+    @Test
+    public void testAckBitfield() {
+        int id = 100;
+        connect(id, true, 20);
+        // The first segment is lost once
+        client.drop = p -> type(p) == ReliableSession.DATA && seq(p) == id && client.countSegment(id) == 1;
+        for( int i = 0; i < 4; i++ ) {
+            client.session.send(ByteBuffer.wrap(chunk(i, 10)));
+        }
+        advance(25);
+
+        // Segments 1 to 3 arrived past the missing first one
+        ByteBuffer ack = server.lastSent(ReliableSession.ACK);
+        Assert.assertEquals(id, ack.getInt(5));
+        Assert.assertEquals(0b111, ack.getInt(9));
+        Assert.assertEquals(0, server.chunks.size());
+
+        advance(500);
+        ack = server.lastSent(ReliableSession.ACK);
+        Assert.assertEquals(id + 4, ack.getInt(5));
+        Assert.assertEquals(0, ack.getInt(9));
+        Assert.assertEquals(4, server.chunks.size());
+
+        // Only the lost segment was sent again
+        Assert.assertEquals(1, client.session.getRetransmitCount());
+        Assert.assertEquals(5, client.countSent(ReliableSession.DATA));
+    }
+
+    @Test
+    public void testFastRetransmit() {
+        int id = 7;
+        connect(id, true, 20);
+        client.drop = p -> type(p) == ReliableSession.DATA && seq(p) == id && client.countSegment(id) == 1;
+        for( int i = 0; i < 4; i++ ) {
+            client.session.send(ByteBuffer.wrap(chunk(i, 10)));
+        }
+        // The three acknowledgements skipping the first segment come back
+        // after a round trip, well before the 250 ms initial timeout
+        advance(45);
+        Assert.assertEquals(1, client.session.getRetransmitCount());
+        advance(25);
+        Assert.assertEquals(4, server.chunks.size());
+    }
+
+    @Test
+    public void testClose() {
+        connect(1, true, 20);
+        client.session.send(ByteBuffer.wrap(chunk(0, 10)));
+        advance(100);
+
+        // The first two close notifications are lost
+        client.drop = p -> type(p) == ReliableSession.CLOSE && client.countSent(ReliableSession.CLOSE) <= 2;
+        client.session.close(true);
+        Assert.assertTrue(client.closed);
+        advance(50);
+        Assert.assertTrue(server.closed);
+        Assert.assertFalse(server.session.isOpen());
+        Assert.assertEquals(3, client.countSent(ReliableSession.CLOSE));
+    }
+
+    @Test
+    public void testCloseWhenFlushed() {
+        connect(1, true, 20);
+        client.lossRate = 0.3;
+        for( int i = 0; i < 10; i++ ) {
+            client.session.send(ByteBuffer.wrap(chunk(i, 10)));
+        }
+        client.session.closeWhenFlushed();
+        Assert.assertFalse(client.closed);
+        client.lossRate = 0;
+        advance(3000);
+        Assert.assertEquals(10, server.chunks.size());
+        Assert.assertTrue(client.closed);
+        Assert.assertTrue(server.closed);
+    }
+
+    @Test
+    public void testOnlyValidPacketsKeepAlive() {
+        int id = 1000;
+        connect(id, true, 20);
+        // The client is gone, the server only gets packets of another
+        // session and stale acknowledgements
+        client.lossRate = 1;
+        for( int i = 0; i < TIMEOUT / 100 + 5; i++ ) {
+            ByteBuffer other = ByteBuffer.allocate(ReliableSession.ACK_SIZE);
+            other.put(ReliableSession.ACK).putInt(id + 1).putInt(id + 1).putInt(0).flip();
+            server.session.receive(other);
+            ByteBuffer stale = ByteBuffer.allocate(ReliableSession.ACK_SIZE);
+            stale.put(ReliableSession.ACK).putInt(id).putInt(id - 500).putInt(0).flip();
+            server.session.receive(stale);
+            advance(100);
+        }
+        Assert.assertTrue(server.closed);
+    }
+
+    @Test
+    public void testKeepAlive() {
+        connect(1, true, 20);
+        advance(3 * TIMEOUT);
+        Assert.assertTrue(client.session.isOpen());
+        Assert.assertTrue(server.session.isOpen());
+    }
+
+    @Test
+    public void testChunkLimit() {
+        connect(1, true, 20);
+        int max = ReliableSession.WINDOW * ReliableSession.MAX_PAYLOAD_SIZE;
+        client.session.send(ByteBuffer.allocate(max));
+        try {
+            client.session.send(ByteBuffer.allocate(max + 1));
+            Assert.fail("Chunk longer than the window was accepted");
+        } catch( IllegalArgumentException e ) {
+            // Expected
+        }
+        advance(10000);
+        Assert.assertEquals(1, server.chunks.size());
+        Assert.assertEquals(max, server.chunks.get(0).length);
+    }
+
+    @Test
+    public void testOpeningPackets() {
+        ByteBuffer first = ByteBuffer.allocate(ReliableSession.DATA_HEADER_SIZE);
+        first.put(ReliableSession.DATA).putInt(-1).putInt(-1).putShort((short)0).putShort((short)1).flip();
+        Assert.assertTrue(ReliableSession.isOpening(first));
+        Assert.assertEquals(-1, ReliableSession.getSessionId(first));
+
+        ByteBuffer early = ByteBuffer.allocate(ReliableSession.DATA_HEADER_SIZE);
+        early.put(ReliableSession.DATA).putInt(-1).putInt(2).putShort((short)0).putShort((short)1).flip();
+        Assert.assertFalse(ReliableSession.isOpening(early));
+        Assert.assertTrue(ReliableSession.isEarlyData(early));
+
+        ByteBuffer late = ByteBuffer.allocate(ReliableSession.DATA_HEADER_SIZE);
+        late.put(ReliableSession.DATA).putInt(-1).putInt(5000).putShort((short)0).putShort((short)1).flip();
+        Assert.assertFalse(ReliableSession.isEarlyData(late));
+
+        ByteBuffer close = ReliableSession.createClose(12);
+        Assert.assertEquals(ReliableSession.CLOSE, type(close));
+        Assert.assertEquals(12, ReliableSession.getSessionId(close));
+    }
+
+    private static final class InFlight {
+        final long time;
+        final Link target;
+        final byte[] data;
+
+        InFlight( long time, Link target, byte[] data ) {
+            this.time = time;
+            this.target = target;
+            this.data = data;
+        }
+    }
+
+    private final class Link implements ReliableSession.Transport {
+        final String name;
+        final long latency;
+        final List<ByteBuffer> sent = new ArrayList<>();
+        final List<byte[]> chunks = new ArrayList<>();
+        Link peer;
+        ReliableSession session;
+        double lossRate;
+        long jitter;
+        Predicate<ByteBuffer> drop;
+        boolean closed;
+
+        Link( String name, long latency ) {
+            this.name = name;
+            this.latency = latency;
+        }
+
+        @Override
+        public void sendPacket( ByteBuffer packet ) {
+            byte[] data = new byte[packet.remaining()];
+            packet.duplicate().get(data);
+            ByteBuffer copy = ByteBuffer.wrap(data);
+            sent.add(copy);
+            if( drop != null && drop.test(copy) ) {
+                return;
+            }
+            if( lossRate > 0 && random.nextDouble() < lossRate ) {
+                return;
+            }
+            long delay = latency + (jitter > 0 ? (long)(random.nextDouble() * jitter) : 0);
+            inFlight.add(new InFlight(now + delay * MILLI, peer, data));
+        }
+
+        @Override
+        public void deliver( byte[] chunk ) {
+            chunks.add(chunk);
+        }
+
+        @Override
+        public void closed() {
+            Assert.assertFalse("Closed twice", closed);
+            closed = true;
+        }
+
+        int countSent( byte type ) {
+            int count = 0;
+            for( ByteBuffer p : sent ) {
+                if( type(p) == type ) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int countSegment( int seq ) {
+            int count = 0;
+            for( ByteBuffer p : sent ) {
+                if( type(p) == ReliableSession.DATA && seq(p) == seq ) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        ByteBuffer lastSent( int type ) {
+            for( int i = sent.size() - 1; i >= 0; i-- ) {
+                if( type(sent.get(i)) == type ) {
+                    return sent.get(i);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the MethodHandleFieldSerializer writes exactly the same bytes
+ * as the reflective FieldSerializer, and that each one reads the output of
+ * the other.
+ */
+public class MethodHandleFieldSerializerTest {
+
+    private static final FieldSerializer reflective = new FieldSerializer();
+    private static final MethodHandleFieldSerializer methodHandles = new MethodHandleFieldSerializer();
+
+    @Serializable
+    public static class Base {
+        protected int baseValue;
+        protected String baseName;
+    }
+
+    @Serializable
+    public static class Nested {
+        public float weight;
+        public Nested() {
+        }
+        Nested( float weight ) {
+            this.weight = weight;
+        }
+    }
+
+    @Serializable
+    public static class AllFields extends Base {
+        public boolean flag;
+        public byte b;
+        public char c;
+        public short s;
+        public int i;
+        public long l;
+        public float f;
+        public double d;
+        // final types are written by their serializer, which rejects null
+        public Integer boxed = 0;
+        public String text;
+        public Vector3f vector = new Vector3f();
+        public Nested nested;
+        public Object anything;
+        public int[] values;
+        private final long finalValue;
+        public transient int skipped;
+        public static int ignored;
+
+        public AllFields() {
+            this(0L);
+        }
+
+        AllFields( long finalValue ) {
+            this.finalValue = finalValue;
+        }
+    }
+
+    @BeforeClass
+    public static void registerClasses() {
+        Serializer.registerClasses(Base.class, Nested.class, AllFields.class);
+        reflective.initialize(Base.class);
+        reflective.initialize(AllFields.class);
+        methodHandles.initialize(Base.class);
+        methodHandles.initialize(AllFields.class);
+    }
+
+    private static AllFields createFilled() {
+        AllFields object = new AllFields(-1234567890123L);
+        object.baseValue = 42;
+        object.baseName = "base";
+        object.flag = true;
+        object.b = -7;
+        object.c = 'é';
+        object.s = Short.MIN_VALUE;
+        object.i = 0x12345678;
+        object.l = Long.MAX_VALUE - 3;
+        object.f = -0.125f;
+        object.d = Math.PI;
+        object.boxed = 99;
+        object.text = "field text";
+        object.vector = new Vector3f(1f, -2f, 3.5f);
+        object.nested = new Nested(7.5f);
+        object.anything = "any";
+        object.values = new int[]{3, 1, 4, 1, 5};
+        object.skipped = 17;
+        return object;
+    }
+
+    private static byte[] write( Serializer serializer, Object object ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        serializer.writeObject(buffer, object);
+        buffer.flip();
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    private static void assertSameFields( AllFields expected, AllFields actual ) {
+        Assert.assertEquals(expected.baseValue, actual.baseValue);
+        Assert.assertEquals(expected.baseName, actual.baseName);
+        Assert.assertEquals(expected.flag, actual.flag);
+        Assert.assertEquals(expected.b, actual.b);
+        Assert.assertEquals(expected.c, actual.c);
+        Assert.assertEquals(expected.s, actual.s);
+        Assert.assertEquals(expected.i, actual.i);
+        Assert.assertEquals(expected.l, actual.l);
+        Assert.assertEquals(expected.f, actual.f, 0f);
+        Assert.assertEquals(expected.d, actual.d, 0.0);
+        Assert.assertEquals(expected.boxed, actual.boxed);
+        Assert.assertEquals(expected.text, actual.text);
+        Assert.assertEquals(expected.vector, actual.vector);
+        if (expected.nested == null) {
+            Assert.assertNull(actual.nested);
+        } else {
+            Assert.assertEquals(expected.nested.weight, actual.nested.weight, 0f);
+        }
+        Assert.assertEquals(expected.anything, actual.anything);
+        Assert.assertArrayEquals(expected.values, actual.values);
+        Assert.assertEquals(expected.finalValue, actual.finalValue);
+        Assert.assertEquals(0, actual.skipped);
+    }
+
+    @Test
+    public void testSameBytes() throws IOException {
+        AllFields filled = createFilled();
+        byte[] expected = write(reflective, filled);
+        Assert.assertArrayEquals(expected, write(methodHandles, filled));
+
+        AllFields empty = new AllFields();
+        Assert.assertArrayEquals(write(reflective, empty), write(methodHandles, empty));
+        Assert.assertArrayEquals(write(reflective, null), write(methodHandles, null));
+        Assert.assertFalse(Arrays.equals(expected, write(methodHandles, empty)));
+    }
+
+    @Test
+    public void testCrossRead() throws IOException {
+        AllFields filled = createFilled();
+        ByteBuffer fromReflective = ByteBuffer.wrap(write(reflective, filled));
+        assertSameFields(filled, methodHandles.readObject(fromReflective, AllFields.class));
+        Assert.assertFalse(fromReflective.hasRemaining());
+
+        ByteBuffer fromMethodHandles = ByteBuffer.wrap(write(methodHandles, filled));
+        assertSameFields(filled, reflective.readObject(fromMethodHandles, AllFields.class));
+        Assert.assertFalse(fromMethodHandles.hasRemaining());
+
+        AllFields empty = new AllFields();
+        assertSameFields(empty, methodHandles.readObject(
+                ByteBuffer.wrap(write(reflective, empty)), AllFields.class));
+        Assert.assertNull(methodHandles.readObject(
+                ByteBuffer.wrap(write(reflective, null)), AllFields.class));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that BitReader reads back what BitWriter packed, at every width
+ * and alignment, and that truncate() rolls the writer back.
+ */
+public class BitWriterTest {
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(1);
+        int[] values = new int[5000];
+        int[] widths = new int[values.length];
+        BitWriter out = new BitWriter();
+        int bits = 0;
+        for( int i = 0; i < values.length; i++ ) {
+            widths[i] = random.nextInt(33);
+            values[i] = random.nextInt();
+            out.write(values[i], widths[i]);
+            bits += widths[i];
+            Assert.assertEquals(bits, out.getBitCount());
+        }
+        byte[] data = out.toByteArray();
+        Assert.assertEquals((bits + 7) / 8, data.length);
+
+        BitReader in = new BitReader(data);
+        for( int i = 0; i < values.length; i++ ) {
+            int expected = (int)(values[i] & BitWriter.mask(widths[i]));
+            Assert.assertEquals("Value " + i, expected, in.read(widths[i]));
+        }
+    }
+
+    @Test
+    public void testFullWidth() {
+        BitWriter out = new BitWriter();
+        out.writeBoolean(true);
+        out.write(0x80000001, 32);
+        out.write(-1, 32);
+        out.write(Integer.MIN_VALUE, 32);
+        BitReader in = new BitReader(out.toByteArray());
+        Assert.assertTrue(in.readBoolean());
+        Assert.assertEquals(0x80000001, in.read(32));
+        Assert.assertEquals(-1, in.read(32));
+        Assert.assertEquals(Integer.MIN_VALUE, in.read(32));
+    }
+
+    @Test
+    public void testTruncate() {
+        Random random = new Random(2);
+        for( int run = 0; run < 200; run++ ) {
+            BitWriter out = new BitWriter();
+            int keep = random.nextInt(600);
+            int[] kept = new int[keep];
+            for( int i = 0; i < keep; i++ ) {
+                kept[i] = random.nextInt(2);
+                out.write(kept[i], 1);
+            }
+            // Enough discarded bits to flush whole bytes, or just a few
+            int mark = out.getBitCount();
+            int discarded = random.nextInt(100);
+            for( int i = 0; i < discarded; i++ ) {
+                out.write(random.nextInt(), 1);
+            }
+            out.truncate(mark);
+            Assert.assertEquals(mark, out.getBitCount());
+            out.write(0x2a5, 11);
+
+            BitReader in = new BitReader(out.toByteArray());
+            for( int i = 0; i < keep; i++ ) {
+                Assert.assertEquals(kept[i], in.read(1));
+            }
+            Assert.assertEquals(0x2a5, in.read(11));
+        }
+    }
+
+    @Test
+    public void testReset() {
+        BitWriter out = new BitWriter();
+        out.write(0x1234567, 27);
+        out.reset();
+        Assert.assertEquals(0, out.getBitCount());
+        out.write(5, 3);
+        Assert.assertArrayEquals(new byte[] {5}, out.toByteArray());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadPastEnd() {
+        BitWriter out = new BitWriter();
+        out.write(3, 5);
+        BitReader in = new BitReader(out.toByteArray());
+        in.read(8);
+        in.read(1);
+    }
+}
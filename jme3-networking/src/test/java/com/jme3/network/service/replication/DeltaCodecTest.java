@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the size classes of the signed values and that decoding the
+ * records written between two snapshots rebuilds the second one.
+ */
+public class DeltaCodecTest {
+
+    private static final int S = Snapshot.STRIDE;
+
+    private static int signedBits( int value ) {
+        BitWriter out = new BitWriter();
+        DeltaCodec.writeSigned(out, value);
+        BitReader in = new BitReader(out.toByteArray());
+        Assert.assertEquals(value, DeltaCodec.readSigned(in));
+        return out.getBitCount();
+    }
+
+    @Test
+    public void testSignedSizeClasses() {
+        // 2 bits of size class followed by 4, 8, 16 or 32 bits of
+        // zigzag value
+        Assert.assertEquals(6, signedBits(0));
+        Assert.assertEquals(6, signedBits(7));
+        Assert.assertEquals(6, signedBits(-8));
+        Assert.assertEquals(10, signedBits(8));
+        Assert.assertEquals(10, signedBits(-9));
+        Assert.assertEquals(10, signedBits(127));
+        Assert.assertEquals(10, signedBits(-128));
+        Assert.assertEquals(18, signedBits(128));
+        Assert.assertEquals(18, signedBits(-129));
+        Assert.assertEquals(18, signedBits(32767));
+        Assert.assertEquals(18, signedBits(-32768));
+        Assert.assertEquals(34, signedBits(32768));
+        Assert.assertEquals(34, signedBits(-32769));
+        Assert.assertEquals(34, signedBits(Integer.MAX_VALUE));
+        Assert.assertEquals(34, signedBits(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void testRotationRoundTrip() {
+        Quaternion q = new Quaternion();
+        Quaternion back = new Quaternion();
+        Random random = new Random(4);
+        for( int bits = DeltaCodec.MIN_ROTATION_BITS; bits <= DeltaCodec.MAX_ROTATION_BITS; bits++ ) {
+            float tolerance = 4f / (1 << bits);
+            for( int i = 0; i < 100; i++ ) {
+                q.fromAngleAxis(random.nextFloat() * FastMath.TWO_PI,
+                        new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f,
+                                     random.nextFloat() - 0.5f).normalizeLocal());
+                int packed = DeltaCodec.packRotation(q, bits);
+                if( bits * 3 + 2 < 32 ) {
+                    Assert.assertEquals(0, packed >>> (bits * 3 + 2));
+                }
+                DeltaCodec.unpackRotation(packed, bits, back);
+                Assert.assertTrue(bits + " bits, " + q + " vs " + back,
+                                  1 - Math.abs(q.dot(back)) < tolerance);
+            }
+        }
+    }
+
+    private static Snapshot randomSnapshot( Random random, int frame ) {
+        Snapshot result = new Snapshot(frame, 16);
+        int[] state = new int[S];
+        int id = random.nextInt(4);
+        for( int i = 0; i < 300; i++ ) {
+            id += 1 + random.nextInt(random.nextBoolean() ? 3 : 100000);
+            state[0] = random.nextInt(200) - 100;
+            state[1] = random.nextBoolean() ? random.nextInt() : random.nextInt(40000) - 20000;
+            state[2] = random.nextInt(3);
+            // Ten bits rotations fill the whole int, sign bit included
+            state[3] = random.nextInt();
+            result.add(id, state, 0);
+        }
+        return result;
+    }
+
+    private static byte[] encode( Snapshot base, Snapshot current, int start ) {
+        BitWriter out = new BitWriter();
+        int previous = 0;
+        // Written from an arbitrary ID, wrapping around like the sliced
+        // updates
+        int[] ids = new int[base.count + current.count];
+        int count = 0;
+        for( int i = 0; i < base.count; i++ ) {
+            ids[count++] = base.ids[i];
+        }
+        for( int i = 0; i < current.count; i++ ) {
+            if( base.indexOf(current.ids[i]) < 0 ) {
+                ids[count++] = current.ids[i];
+            }
+        }
+        Arrays.sort(ids, 0, count);
+        for( int k = 0; k < count; k++ ) {
+            int id = ids[(start + k) % count];
+            int b = base.indexOf(id);
+            int c = current.indexOf(id);
+            if( b >= 0 && c >= 0 && DeltaCodec.diff(base.states, b * S, current.states, c * S) == 0 ) {
+                continue;
+            }
+            DeltaCodec.writeRecord(out, id - previous, b >= 0 ? base.states : null, b * S,
+                                   c >= 0 ? current.states : null, c * S, DeltaCodec.MAX_ROTATION_BITS);
+            previous = id;
+        }
+        DeltaCodec.writeEnd(out);
+        return out.toByteArray();
+    }
+
+    private static void assertSnapshotEquals( Snapshot expected, Snapshot actual ) {
+        Assert.assertEquals(expected.count, actual.count);
+        for( int i = 0; i < expected.count; i++ ) {
+            Assert.assertEquals(expected.ids[i], actual.ids[i]);
+            for( int k = 0; k < S; k++ ) {
+                Assert.assertEquals(expected.states[i * S + k], actual.states[i * S + k]);
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeAgainstBaseline() {
+        Random random = new Random(5);
+        for( int run = 0; run < 20; run++ ) {
+            Snapshot base = randomSnapshot(random, 1);
+            // Keep some of the baseline entities, unchanged or not
+            Snapshot current = new Snapshot(2, 16);
+            Snapshot extra = randomSnapshot(random, 2);
+            int j = 0;
+            for( int i = 0; i < base.count; i++ ) {
+                while( j < extra.count && extra.ids[j] < base.ids[i] ) {
+                    current.add(extra.ids[j], extra.states, j * S);
+                    j++;
+                }
+                if( j < extra.count && extra.ids[j] == base.ids[i] ) {
+                    j++;
+                }
+                switch( random.nextInt(4) ) {
+                    case 0:
+                        break;
+                    case 1:
+                        current.add(base.ids[i], extra.states, (j % extra.count) * S);
+                        break;
+                    default:
+                        current.add(base.ids[i], base.states, i * S);
+                }
+            }
+            while( j < extra.count ) {
+                current.add(extra.ids[j], extra.states, j * S);
+                j++;
+            }
+
+            byte[] data = encode(base, current, random.nextInt(base.count));
+            Snapshot decoded = DeltaCodec.decode(base, data, DeltaCodec.MAX_ROTATION_BITS, 2);
+            Assert.assertEquals(2, decoded.frame);
+            assertSnapshotEquals(current, decoded);
+        }
+    }
+
+    @Test
+    public void testDecodeAgainstEmpty() {
+        Snapshot current = randomSnapshot(new Random(6), 1);
+        byte[] data = encode(Snapshot.EMPTY, current, 17);
+        assertSnapshotEquals(current, DeltaCodec.decode(Snapshot.EMPTY, data, DeltaCodec.MAX_ROTATION_BITS, 1));
+    }
+
+    @Test
+    public void testUnchanged() {
+        Snapshot base = randomSnapshot(new Random(7), 1);
+        byte[] data = encode(base, base, 0);
+        Assert.assertEquals(1, data.length);
+        assertSnapshotEquals(base, DeltaCodec.decode(base, data, DeltaCodec.MAX_ROTATION_BITS, 2));
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.service.replication;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.service.replication.msg.ReplicationMessage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Replicates moving entities from a ReplicationConnection to a
+ * ReplicationClientService through a simulated link whose round trip
+ * is several ticks, with updates too large for the default message size,
+ * and checks that the client never sees an entity go back in time, vanish
+ * or appear twice.
+ */
+public class ReplicationConnectionTest {
+
+    private static final int ROTATION_BITS = DeltaCodec.MAX_ROTATION_BITS;
+
+    private final Random random = new Random(3);
+    // The x position of each entity is the last tick it moved, so that
+    // it only ever grows
+    private final TreeMap<Integer, Integer> world = new TreeMap<>();
+    private final Set<Integer> removed = new HashSet<>();
+    private final ReplicationConnection server = new ReplicationConnection();
+    private final ReplicationClientService client = new ReplicationClientService();
+    private final Checker checker = new Checker();
+    private final List<Delayed<ReplicationMessage>> updates = new ArrayList<>();
+    private final List<Delayed<Integer>> acks = new ArrayList<>();
+    private int tick;
+
+    private void tick( int latency, float lossRate, boolean dropAcks, boolean moving ) {
+        tick++;
+        if( moving ) {
+            for( Map.Entry<Integer, Integer> e : world.entrySet() ) {
+                e.setValue(tick);
+            }
+        }
+        Snapshot visible = server.getVisible();
+        visible.clear();
+        int[] state = new int[Snapshot.STRIDE];
+        for( Map.Entry<Integer, Integer> e : world.entrySet() ) {
+            state[0] = e.getValue();
+            state[1] = e.getKey();
+            state[3] = DeltaCodec.packRotation(Quaternion.IDENTITY, ROTATION_BITS);
+            visible.add(e.getKey(), state, 0);
+        }
+        ReplicationMessage msg = server.createUpdate(1, ROTATION_BITS,
+                                                     ReplicationHostedService.DEFAULT_MAX_MESSAGE_SIZE);
+        if( msg != null && random.nextFloat() >= lossRate ) {
+            // Some jitter reorders the updates too
+            updates.add(new Delayed<>(tick + latency + random.nextInt(2), msg));
+        }
+
+        for( int i = 0; i < updates.size(); i++ ) {
+            Delayed<ReplicationMessage> d = updates.get(i);
+            if( d.time <= tick ) {
+                updates.remove(i--);
+                if( client.apply(d.value) && !dropAcks ) {
+                    acks.add(new Delayed<>(tick + latency, d.value.getFrame()));
+                }
+            }
+        }
+        for( int i = 0; i < acks.size(); i++ ) {
+            Delayed<Integer> d = acks.get(i);
+            if( d.time <= tick ) {
+                acks.remove(i--);
+                server.acknowledge(d.value);
+            }
+        }
+    }
+
+    private void checkSynchronized() {
+        Assert.assertEquals(world.size(), client.getEntityCount());
+        Assert.assertEquals(world, checker.positions);
+    }
+
+    @Test
+    public void testSlicedUpdatesWithLatency() {
+        client.addReplicationListener(checker);
+        for( int i = 0; i < 800; i++ ) {
+            world.put(i * 3, 0);
+        }
+
+        // Initial synchronization against the empty baseline, then
+        // everything moving every tick
+        for( int i = 0; i < 100; i++ ) {
+            tick(3, 0.1f, false, true);
+        }
+        Assert.assertTrue("Updates were not sliced", checker.updated < 100 * world.size());
+
+        // Acknowledgements lost for longer than the history, while
+        // entities come and go
+        for( int i = 0; i < 50; i++ ) {
+            if( i == 10 ) {
+                for( int id = 0; id < 150; id += 3 ) {
+                    world.remove(id);
+                    removed.add(id);
+                }
+            }
+            if( i == 20 ) {
+                for( int id = 5000; id < 5100; id++ ) {
+                    world.put(id, tick);
+                }
+            }
+            tick(3, 0.1f, true, true);
+        }
+        for( int i = 0; i < 100; i++ ) {
+            tick(3, 0.1f, false, true);
+        }
+
+        // Everything settles once the entities stop
+        for( int i = 0; i < 100; i++ ) {
+            tick(3, 0, false, false);
+        }
+        checkSynchronized();
+        Assert.assertEquals(removed.size(), checker.removedCount);
+    }
+
+    @Test
+    public void testCompleteUpdates() {
+        client.addReplicationListener(checker);
+        for( int i = 0; i < 20; i++ ) {
+            world.put(i, 0);
+        }
+        for( int i = 0; i < 20; i++ ) {
+            tick(2, 0, false, true);
+        }
+        world.remove(5);
+        removed.add(5);
+        for( int i = 0; i < 10; i++ ) {
+            tick(2, 0, false, false);
+        }
+        checkSynchronized();
+    }
+
+    private static final class Delayed<T> {
+        final int time;
+        final T value;
+
+        Delayed( int time, T value ) {
+            this.time = time;
+            this.value = value;
+        }
+    }
+
+    private final class Checker implements ReplicationListener {
+        final Map<Integer, Integer> positions = new HashMap<>();
+        int updated;
+        int removedCount;
+
+        @Override
+        public void entityAdded( int entityId, Vector3f position, Quaternion rotation ) {
+            Assert.assertFalse("Added twice:" + entityId, positions.containsKey(entityId));
+            Assert.assertFalse("Added back after removal:" + entityId, removed.contains(entityId));
+            Assert.assertEquals(entityId, (int)position.y);
+            positions.put(entityId, (int)position.x);
+        }
+
+        @Override
+        public void entityUpdated( int entityId, Vector3f position, Quaternion rotation ) {
+            Integer previous = positions.get(entityId);
+            Assert.assertNotNull("Updated while absent:" + entityId, previous);
+            Assert.assertTrue("Went back in time:" + entityId + " from " + previous + " to " + position.x,
+                              position.x >= previous);
+            positions.put(entityId, (int)position.x);
+            updated++;
+        }
+
+        @Override
+        public void entityRemoved( int entityId ) {
+            Assert.assertTrue("Removed while still replicated:" + entityId, removed.contains(entityId));
+            Assert.assertNotNull("Removed twice:" + entityId, positions.remove(entityId));
+            removedCount++;
+        }
+    }
+}
@@ -56,6 +56,8 @@ public class GlbLoader extends GltfLoader {
     public Object load(AssetInfo assetInfo) throws IOException {
         data.clear();
         LittleEndien stream = new LittleEndien(new DataInputStream(assetInfo.openStream()));
+        // read() may return before the end of a large chunk
+        DataInputStream chunks = new DataInputStream(stream);
         /* magic */ stream.readInt();
 
         int version = stream.readInt();
@@ -76,10 +78,10 @@ public class GlbLoader extends GltfLoader {
             int chunkType = stream.readInt();
             if (chunkType == JSON_TYPE) {
                 json = new byte[chunkLength];
-                stream.read(json);
+                chunks.readFully(json);
             } else {
                 byte[] bin = new byte[chunkLength];
-                stream.read(bin);
+                chunks.readFully(bin);
                 data.add(bin);
             }
             //8 is the byte size of the 2 ints chunkLength and chunkType.
@@ -289,27 +289,28 @@ public class GltfUtils {
             buffer.clear();
             if (buffer instanceof ByteBuffer) {
                 populateByteBuffer((ByteBuffer) buffer, source, count, byteOffset, byteStride, numComponents, format);
-                return;
-            }
-            LittleEndien stream = getStream(source);
-            if (buffer instanceof ShortBuffer) {
-                populateShortBuffer((ShortBuffer) buffer, stream, count, byteOffset, byteStride, numComponents, format);
+            } else if (buffer instanceof ShortBuffer) {
+                populateShortBuffer((ShortBuffer) buffer, source, count, byteOffset, byteStride, numComponents, format);
             } else if (buffer instanceof IntBuffer) {
-                populateIntBuffer((IntBuffer) buffer, stream, count, byteOffset, byteStride, numComponents, format);
+                populateIntBuffer((IntBuffer) buffer, source, count, byteOffset, byteStride, numComponents, format);
             } else if (buffer instanceof FloatBuffer) {
-                populateFloatBuffer((FloatBuffer) buffer, stream, count, byteOffset, byteStride, numComponents, format);
+                populateFloatBuffer((FloatBuffer) buffer, source, count, byteOffset, byteStride, numComponents, format);
             }
             buffer.rewind();
             return;
         }
-        LittleEndien stream = getStream(source);
         if (store instanceof byte[]) {
-            populateByteArray((byte[]) store, stream, count, byteOffset, byteStride, numComponents, format);
+            populateByteArray((byte[]) store, source, count, byteOffset, byteStride, numComponents, format);
+            return;
         } else if (store instanceof short[]) {
-            populateShortArray((short[]) store, stream, count, byteOffset, byteStride, numComponents, format);
+            populateShortArray((short[]) store, source, count, byteOffset, byteStride, numComponents, format);
+            return;
         } else if (store instanceof float[]) {
-            populateFloatArray((float[]) store, stream, count, byteOffset, byteStride, numComponents, format);
-        } else if (store instanceof Vector3f[]) {
+            populateFloatArray((float[]) store, source, count, byteOffset, byteStride, numComponents, format);
+            return;
+        }
+        LittleEndien stream = getStream(source);
+        if (store instanceof Vector3f[]) {
             populateVector3fArray((Vector3f[]) store, stream, count, byteOffset, byteStride, numComponents, format);
         } else if (store instanceof Quaternion[]) {
             populateQuaternionArray((Quaternion[]) store, stream, count, byteOffset, byteStride, numComponents, format);
@@ -318,73 +319,88 @@ public class GltfUtils {
         }
     }
 
+    /**
+     * Wraps the specified range of a glTF buffer, which is always little
+     * endian. The views of the result are used for bulk copies, which the JDK
+     * performs as a plain memory copy when the destination is in the same byte
+     * order.
+     */
+    private static ByteBuffer wrap(byte[] source, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > source.length) {
+            throw new AssetLoadException("Data ended prematurely");
+        }
+        return ByteBuffer.wrap(source, offset, length).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the number of bytes read from the source for the specified
+     * accessor, the padding after the last element excluded.
+     */
+    private static int getReadLength(int count, int stride, int dataLength) {
+        return count == 0 ? 0 : (count - 1) * stride + dataLength;
+    }
+
     private static void populateByteBuffer(ByteBuffer buffer, byte[] source, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) {
         int componentSize = format.getComponentSize();
-        int index = byteOffset;
         int dataLength = componentSize * numComponents;
         int stride = Math.max(dataLength, byteStride);
-        int end = count * stride + byteOffset;
-        while (index < end) {
+        ByteBuffer data = wrap(source, byteOffset, getReadLength(count, stride, dataLength));
+        if (stride == dataLength) {
+            buffer.put(data);
+            return;
+        }
+        for (int index = 0; index < data.limit(); index += stride) {
             for (int i = 0; i < numComponents; i++) {
-                buffer.put(source[index + i]);
+                buffer.put(data.get(index + i));
             }
-            index += stride;
         }
     }
 
-    private static void populateShortBuffer(ShortBuffer buffer, LittleEndien stream, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) throws IOException {
+    private static void populateShortBuffer(ShortBuffer buffer, byte[] source, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) {
         int componentSize = format.getComponentSize();
-        int index = byteOffset;
         int dataLength = componentSize * numComponents;
         int stride = Math.max(dataLength, byteStride);
-        int end = count * stride + byteOffset;
-        stream.skipBytes(byteOffset);
-        while (index < end) {
+        ByteBuffer data = wrap(source, byteOffset, getReadLength(count, stride, dataLength));
+        if (stride == dataLength) {
+            buffer.put(data.asShortBuffer());
+            return;
+        }
+        for (int index = 0; index < data.limit(); index += stride) {
             for (int i = 0; i < numComponents; i++) {
-                buffer.put(stream.readShort());
+                buffer.put(data.getShort(index + i * 2));
             }
-
-            if (dataLength < stride) {
-                stream.skipBytes(stride - dataLength);
-            }
-            index += stride;
         }
     }
 
-
-    private static void populateIntBuffer(IntBuffer buffer, LittleEndien stream, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) throws IOException {
+    private static void populateIntBuffer(IntBuffer buffer, byte[] source, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) {
         int componentSize = format.getComponentSize();
-        int index = byteOffset;
         int dataLength = componentSize * numComponents;
         int stride = Math.max(dataLength, byteStride);
-        int end = count * stride + byteOffset;
-        stream.skipBytes(byteOffset);
-        while (index < end) {
+        ByteBuffer data = wrap(source, byteOffset, getReadLength(count, stride, dataLength));
+        if (stride == dataLength) {
+            buffer.put(data.asIntBuffer());
+            return;
+        }
+        for (int index = 0; index < data.limit(); index += stride) {
             for (int i = 0; i < numComponents; i++) {
-                buffer.put(stream.readInt());
-            }
-            if (dataLength < stride) {
-                stream.skipBytes(stride - dataLength);
+                buffer.put(data.getInt(index + i * 4));
             }
-            index += stride;
         }
     }
 
-    private static void populateFloatBuffer(FloatBuffer buffer, LittleEndien stream, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) throws IOException {
+    private static void populateFloatBuffer(FloatBuffer buffer, byte[] source, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) {
         int componentSize = format.getComponentSize();
-        int index = byteOffset;
         int dataLength = componentSize * numComponents;
         int stride = Math.max(dataLength, byteStride);
-        int end = count * stride + byteOffset;
-        stream.skipBytes(byteOffset);
-        while (index < end) {
+        ByteBuffer data = wrap(source, byteOffset, getReadLength(count, stride, dataLength));
+        if (stride == dataLength && format == VertexBuffer.Format.Float) {
+            buffer.put(data.asFloatBuffer());
+            return;
+        }
+        for (int index = 0; index < data.limit(); index += stride) {
             for (int i = 0; i < numComponents; i++) {
-                buffer.put(readAsFloat(stream, format));
-            }
-            if (dataLength < stride) {
-                stream.skipBytes(stride - dataLength);
+                buffer.put(readAsFloat(data, index + i * componentSize, format));
             }
-            index += stride;
         }
     }
 
@@ -417,65 +433,65 @@ public class GltfUtils {
 
     }
 
-    private static void populateByteArray(byte[] array, LittleEndien stream, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) throws IOException {
+    /**
+     * Reads a component at an absolute position, see
+     * {@link #readAsFloat(LittleEndien, VertexBuffer.Format)}.
+     */
+    private static float readAsFloat(ByteBuffer data, int index, VertexBuffer.Format format) {
+        switch (format) {
+            case Byte:
+                return Math.max(data.get(index) / 127f, -1f);
+            case UnsignedByte:
+                return (data.get(index) & 0xff) / 255f;
+            case Short:
+                return Math.max(data.getShort(index) / 32767f, -1f);
+            case UnsignedShort:
+                return (data.getShort(index) & 0xffff) / 65535f;
+            default:
+                return data.getFloat(index);
+        }
+    }
+
+    private static void populateByteArray(byte[] array, byte[] source, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) {
         int componentSize = format.getComponentSize();
-        int index = byteOffset;
         int dataLength = componentSize * numComponents;
         int stride = Math.max(dataLength, byteStride);
-        int end = count * stride + byteOffset;
-        stream.skipBytes(byteOffset);
+        int length = getReadLength(count, stride, dataLength);
+        if (byteOffset < 0 || byteOffset + length > source.length) {
+            throw new AssetLoadException("Data ended prematurely");
+        }
 
         if (dataLength == stride) {
-            read(stream, array, end - index);
-
+            System.arraycopy(source, byteOffset, array, 0, count * dataLength);
             return;
         }
 
         int arrayIndex = 0;
-        byte[] buffer = new byte[numComponents];
-        while (index < end) {
-            read(stream, buffer, numComponents);
-            System.arraycopy(buffer, 0, array, arrayIndex, numComponents);
+        for (int index = byteOffset; index < byteOffset + length; index += stride) {
+            System.arraycopy(source, index, array, arrayIndex, numComponents);
             arrayIndex += numComponents;
-            if (dataLength < stride) {
-                stream.skipBytes(stride - dataLength);
-            }
-            index += stride;
         }
     }
 
-    private static void read(LittleEndien stream, byte[] buffer, int length) throws IOException {
-        int n = 0;
-        while (n < length) {
-            int cnt = stream.read(buffer, n, length - n);
-            if (cnt < 0) {
-                throw new AssetLoadException("Data ended prematurely");
-            }
-            n += cnt;
-        }
-    }
-
-    private static void populateShortArray(short[] array, LittleEndien stream, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) throws IOException {
+    private static void populateShortArray(short[] array, byte[] source, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) {
         int componentSize = format.getComponentSize();
-        int index = byteOffset;
         int dataLength = componentSize * numComponents;
         int stride = Math.max(dataLength, byteStride);
-        int end = count * stride + byteOffset;
-        stream.skipBytes(byteOffset);
+        ByteBuffer data = wrap(source, byteOffset, getReadLength(count, stride, dataLength));
+        if (stride == dataLength && componentSize == 2) {
+            data.asShortBuffer().get(array, 0, count * numComponents);
+            return;
+        }
         int arrayIndex = 0;
-        while (index < end) {
+        for (int index = 0; index < data.limit(); index += stride) {
             for (int i = 0; i < numComponents; i++) {
                 if (componentSize == 2) {
-                    array[arrayIndex] = stream.readShort();
+                    array[arrayIndex] = data.getShort(index + i * 2);
                 } else {
-                    array[arrayIndex] = stream.readByte();
+                    array[arrayIndex] = data.get(index + i);
                 }
                 arrayIndex++;
             }
-            if (dataLength < stride) {
-                stream.skipBytes(stride - dataLength);
-            }
-            index += stride;
         }
     }
 
@@ -557,23 +573,21 @@ public class GltfUtils {
         mesh.getBuffer(VertexBuffer.Type.BoneWeight).setUsage(VertexBuffer.Usage.CpuOnly);
     }
 
-    private static void populateFloatArray(float[] array, LittleEndien stream, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) throws IOException {
+    private static void populateFloatArray(float[] array, byte[] source, int count, int byteOffset, int byteStride, int numComponents, VertexBuffer.Format format) {
         int componentSize = format.getComponentSize();
-        int index = byteOffset;
         int dataLength = componentSize * numComponents;
         int stride = Math.max(dataLength, byteStride);
-        int end = count * stride + byteOffset;
-        stream.skipBytes(byteOffset);
+        ByteBuffer data = wrap(source, byteOffset, getReadLength(count, stride, dataLength));
+        if (stride == dataLength && format == VertexBuffer.Format.Float) {
+            data.asFloatBuffer().get(array, 0, count * numComponents);
+            return;
+        }
         int arrayIndex = 0;
-        while (index < end) {
+        for (int index = 0; index < data.limit(); index += stride) {
             for (int i = 0; i < numComponents; i++) {
-                array[arrayIndex] = readAsFloat(stream, format);
+                array[arrayIndex] = readAsFloat(data, index + i * componentSize, format);
                 arrayIndex++;
             }
-            if (dataLength < stride) {
-                stream.skipBytes(stride - dataLength);
-            }
-            index += stride;
         }
     }
 
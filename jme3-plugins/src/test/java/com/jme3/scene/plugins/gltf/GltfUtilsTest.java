@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2009-2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.plugins.gltf;
+
+import com.jme3.asset.AssetLoadException;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link GltfUtils#populateBuffer} reads packed, interleaved
+ * and normalized accessors.
+ */
+public class GltfUtilsTest {
+
+    @Test
+    public void testPackedFloats() throws IOException {
+        ByteBuffer source = littleEndian(4 + 6 * 4);
+        source.putInt(-1);
+        for (int i = 0; i < 6; i++) {
+            source.putFloat(i * 1.5f);
+        }
+
+        FloatBuffer store = BufferUtils.createFloatBuffer(6);
+        GltfUtils.populateBuffer(store, source.array(), 2, 4, 0, 3, VertexBuffer.Format.Float);
+        Assert.assertEquals(0, store.position());
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals(i * 1.5f, store.get(i), 0f);
+        }
+
+        float[] array = new float[6];
+        GltfUtils.populateBuffer(array, source.array(), 2, 4, 12, 3, VertexBuffer.Format.Float);
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals(i * 1.5f, array[i], 0f);
+        }
+    }
+
+    @Test
+    public void testInterleavedFloats() throws IOException {
+        // position and texture coordinates, the last vertex has no padding
+        ByteBuffer source = littleEndian(3 * 20);
+        for (int i = 0; i < 3; i++) {
+            source.putFloat(i).putFloat(i + 0.25f).putFloat(i + 0.5f);
+            source.putFloat(-i).putFloat(-i - 0.5f);
+        }
+
+        FloatBuffer positions = BufferUtils.createFloatBuffer(9);
+        GltfUtils.populateBuffer(positions, source.array(), 3, 0, 20, 3, VertexBuffer.Format.Float);
+        FloatBuffer texCoords = BufferUtils.createFloatBuffer(6);
+        GltfUtils.populateBuffer(texCoords, source.array(), 3, 12, 20, 2, VertexBuffer.Format.Float);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(i, positions.get(i * 3), 0f);
+            Assert.assertEquals(i + 0.25f, positions.get(i * 3 + 1), 0f);
+            Assert.assertEquals(i + 0.5f, positions.get(i * 3 + 2), 0f);
+            Assert.assertEquals(-i, texCoords.get(i * 2), 0f);
+            Assert.assertEquals(-i - 0.5f, texCoords.get(i * 2 + 1), 0f);
+        }
+    }
+
+    @Test
+    public void testNormalizedComponents() throws IOException {
+        ByteBuffer source = littleEndian(8);
+        source.putShort((short) 0).putShort((short) 65535).putShort((short) 32767).putShort((short) 0);
+
+        FloatBuffer store = BufferUtils.createFloatBuffer(3);
+        GltfUtils.populateBuffer(store, source.array(), 3, 0, 0, 1, VertexBuffer.Format.UnsignedShort);
+        Assert.assertEquals(0f, store.get(0), 0f);
+        Assert.assertEquals(1f, store.get(1), 0f);
+        Assert.assertEquals(32767f / 65535f, store.get(2), 1e-6f);
+
+        float[] array = new float[3];
+        GltfUtils.populateBuffer(array, source.array(), 3, 2, 0, 1, VertexBuffer.Format.Short);
+        Assert.assertEquals(-1f / 32767f, array[0], 1e-6f);
+        Assert.assertEquals(1f, array[1], 0f);
+        Assert.assertEquals(0f, array[2], 0f);
+    }
+
+    @Test
+    public void testIndices() throws IOException {
+        ByteBuffer source = littleEndian(24);
+        for (int i = 0; i < 6; i++) {
+            source.putInt(i * 100000);
+        }
+
+        IntBuffer ints = BufferUtils.createIntBuffer(6);
+        GltfUtils.populateBuffer(ints, source.array(), 6, 0, 0, 1, VertexBuffer.Format.UnsignedInt);
+        ShortBuffer shorts = BufferUtils.createShortBuffer(6);
+        GltfUtils.populateBuffer(shorts, source.array(), 6, 0, 4, 1, VertexBuffer.Format.UnsignedShort);
+        ByteBuffer bytes = BufferUtils.createByteBuffer(3);
+        GltfUtils.populateBuffer(bytes, source.array(), 3, 0, 8, 1, VertexBuffer.Format.UnsignedByte);
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals(i * 100000, ints.get(i));
+            Assert.assertEquals((short) (i * 100000), shorts.get(i));
+        }
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals((byte) (i * 200000), bytes.get(i));
+        }
+    }
+
+    @Test
+    public void testJoints() throws IOException {
+        byte[] source = {1, 2, 3, 4, 0, 0, 0, 0, 5, 6, 7, 8};
+
+        short[] joints = new short[8];
+        GltfUtils.populateBuffer(joints, source, 2, 0, 8, 4, VertexBuffer.Format.UnsignedByte);
+        Assert.assertArrayEquals(new short[]{1, 2, 3, 4, 5, 6, 7, 8}, joints);
+
+        byte[] bytes = new byte[8];
+        GltfUtils.populateBuffer(bytes, source, 2, 0, 8, 4, VertexBuffer.Format.UnsignedByte);
+        Assert.assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, bytes);
+    }
+
+    @Test(expected = AssetLoadException.class)
+    public void testTruncatedData() throws IOException {
+        GltfUtils.populateBuffer(BufferUtils.createFloatBuffer(6), new byte[20], 2, 0, 0, 3,
+                VertexBuffer.Format.Float);
+    }
+
+    private static ByteBuffer littleEndian(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}